@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2021. Equipment & Tool Institute
+ */
+package org.etools.j1939_84.batch;
+
+import static org.etools.j1939_84.controllers.QuestionListener.AnswerType.CANCEL;
+import static org.etools.j1939_84.controllers.QuestionListener.AnswerType.NO;
+import static org.etools.j1939_84.controllers.QuestionListener.AnswerType.YES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link AnswerScript} class
+ */
+public class AnswerScriptTest {
+
+    private static void assertInvalid(String line, String reason) {
+        try {
+            AnswerScript.parse(List.of("# first", line));
+            fail(line);
+        } catch (IOException e) {
+            assertEquals("Line 2: " + reason + ": " + line, e.getMessage());
+        }
+    }
+
+    @Test
+    public void testAnswers() throws Exception {
+        AnswerScript instance = AnswerScript.parse(List.of("# stop before the engine is started",
+                                                           "",
+                                                           "answer Please start the engine = cancel",
+                                                           "answer ^Step 6\\.2\\. = NO",
+                                                           "answer Step = YES"));
+        assertEquals(CANCEL, instance.answer("Step 6.1.4.1.a", "Please start the engine"));
+        assertEquals(NO, instance.answer("Step 6.2.1.1", "Please turn the key on with the engine off"));
+        assertEquals(YES, instance.answer("Step 6.1.2.1", "Please turn the key on with the engine off"));
+        assertEquals(YES, instance.answer("Error", "Not matched"));
+        assertEquals(YES, new AnswerScript().answer("Step 6.1.4.1.a", "Please start the engine"));
+    }
+
+    @Test
+    public void testInvalid() {
+        assertInvalid("question x = YES", "unknown line kind question");
+        assertInvalid("answer x", "expected <kind> <name> = <value>");
+        assertInvalid("answer x = MAYBE",
+                      "No enum constant org.etools.j1939_84.controllers.QuestionListener.AnswerType.MAYBE");
+        assertInvalid("answer (x = YES", "Unclosed group near index 2");
+        assertInvalid("vehicle color = red", "unknown vehicle field color");
+        assertInvalid("vehicle calIds = two", "For input string: \"two\"");
+    }
+
+    @Test
+    public void testVehicleValues() throws Exception {
+        AnswerScript instance = AnswerScript.parse(List.of("vehicle vin = 3HAMKAAN0JL123456",
+                                                           "vehicle fuelType = DSL",
+                                                           "vehicle calIds=2",
+                                                           "vehicle certificationIntent = US EPA"));
+        assertEquals(Map.of("vin",
+                            "3HAMKAAN0JL123456",
+                            "fuelType",
+                            "DSL",
+                            "calIds",
+                            "2",
+                            "certificationIntent",
+                            "US EPA"),
+                     instance.getVehicleValues());
+        assertEquals(List.of("vin", "fuelType", "calIds", "certificationIntent"),
+                     List.copyOf(instance.getVehicleValues().keySet()));
+    }
+}
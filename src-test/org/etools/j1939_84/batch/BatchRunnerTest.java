@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2021. Equipment & Tool Institute
+ */
+package org.etools.j1939_84.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import org.etools.j1939_84.J1939_84;
+import org.etools.j1939_84.controllers.DataRepository;
+import org.etools.j1939_84.controllers.PartResultRepository;
+import org.etools.j1939_84.modules.DateTimeModule;
+import org.etools.j1939_84.utils.Clock;
+import org.etools.j1939_84.utils.VirtualClock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link BatchRunner} class
+ */
+public class BatchRunnerTest {
+
+    private VirtualClock clock;
+
+    private Path dir;
+
+    private ByteArrayOutputStream out;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("batch");
+        out = new ByteArrayOutputStream();
+        DataRepository.clearInstance();
+        PartResultRepository.setInstance(null);
+        DateTimeModule.setInstance(null);
+        clock = new VirtualClock();
+        Clock.set(clock);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Clock.set(null);
+        clock.close();
+        J1939_84.setTesting(false);
+        // the results of the run are not those of the next test
+        DataRepository.clearInstance();
+        PartResultRepository.setInstance(null);
+        try (var files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    private int run(String... args) {
+        return BatchRunner.run(args, new PrintStream(out, true, StandardCharsets.UTF_8));
+    }
+
+    private String output() {
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Two vehicles tested at once, each in its own session.
+     */
+    @Test
+    public void testConcurrentRuns() throws Exception {
+        Path answers = dir.resolve("answers.txt");
+        Files.write(answers, List.of("vehicle certificationIntent = US"));
+        List<CompletableFuture<String>> runs = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            String report = dir.resolve("report" + i + ".j1939-84").toString();
+            BatchRunner runner = new BatchRunner("--simulator",
+                                                 "--report",
+                                                 report,
+                                                 "--answers",
+                                                 answers.toString(),
+                                                 "--to",
+                                                 "1.2");
+            runs.add(CompletableFuture.supplyAsync(() -> {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try {
+                    assertEquals(BatchRunner.COMPLETED,
+                                 runner.run(new PrintStream(bytes, true, StandardCharsets.UTF_8)));
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+                return bytes.toString(StandardCharsets.UTF_8);
+            }, r -> new Thread(r).start()));
+        }
+        for (CompletableFuture<String> run : runs) {
+            String output = run.get(1, TimeUnit.MINUTES);
+            assertTrue(output, output.contains("End Test 1.2 - "));
+            // each session saw its own vehicle information once
+            assertEquals(output, output.indexOf("User Data Entry:"), output.lastIndexOf("User Data Entry:"));
+        }
+    }
+
+    /**
+     * A replay at the maximum speed runs on virtual time, so the steps that
+     * listen over a time window see the broadcasts recorded in it. The log only
+     * has the engine speed, so the run stops at the first request.
+     */
+    @Test
+    public void testReplayAtMaxSpeed() throws Exception {
+        List<String> asc = new ArrayList<>(List.of("date Thu Jan 14 10:00:00.000 am 2021",
+                                                   "base hex  timestamps absolute"));
+        for (int ms = 0; ms < 600_000; ms += 100) {
+            // EEC1 with the engine off
+            asc.add(String.format(Locale.ROOT,
+                                  "%11.6f 1  0CF00400x       Rx   d 8 FF 00 00 00 00 FF FF FF",
+                                  ms / 1000.0));
+        }
+        Path log = Files.write(dir.resolve("vehicle.asc"), asc);
+        Path answers = dir.resolve("answers.txt");
+        Files.write(answers, List.of("vehicle certificationIntent = US"));
+        File report = dir.resolve("report.j1939-84").toFile();
+
+        // the runner installs the virtual clock for the run
+        Clock.set(null);
+        long start = System.nanoTime();
+        run(BatchRunner.BATCH_ARG,
+            "--replay",
+            log.toString(),
+            "--speed",
+            "max",
+            "--report",
+            report.toString(),
+            "--answers",
+            answers.toString(),
+            "--to",
+            "1.1");
+        // and restores the clock of the other runs afterwards
+        assertSame(Clock.SYSTEM, Clock.get());
+        System.err.printf("Replayed Test 1.1 at max speed in %,d ms%n",
+                          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        String output = output();
+        assertTrue(output, output.contains("Initial Engine Speed = 0.0 RPMs"));
+        assertTrue(output, output.contains("Final Engine Speed = 0.0 RPMs"));
+        // the request waited for its answer
+        assertTrue(output, output.contains("Global Request for Address Claim"));
+        assertTrue(output, output.contains("Timeout - No Response"));
+    }
+
+    /**
+     * Parts 1 to 12 on the simulated engine. The simulator runs on virtual
+     * time, so the run takes seconds of real time; the time is printed.
+     */
+    @Test
+    public void testSimulatorPartsOneToTwelve() throws Exception {
+        Path answers = dir.resolve("answers.txt");
+        Files.write(answers, List.of("vehicle certificationIntent = US"));
+        File report = dir.resolve("report.j1939-84").toFile();
+
+        long start = System.nanoTime();
+        long virtualStart = clock.millis();
+        int result = run(BatchRunner.BATCH_ARG,
+                         "--simulator",
+                         "--report",
+                         report.toString(),
+                         "--answers",
+                         answers.toString());
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        System.err.printf("Parts 1 to 12 on the simulator: %,d ms real, %,d s virtual%n",
+                          elapsed,
+                          TimeUnit.MILLISECONDS.toSeconds(clock.millis() - virtualStart));
+
+        String output = output();
+        assertEquals(output, BatchRunner.COMPLETED, result);
+        for (int part = 1; part <= 12; part++) {
+            assertTrue("Part " + part, output.contains("End Part " + part + " "));
+        }
+    }
+
+    @Test
+    public void testStepRangeOnSimulator() throws Exception {
+        Path answers = dir.resolve("answers.txt");
+        Files.write(answers, List.of("# the simulated engine has no family name", "vehicle certificationIntent = US"));
+        File report = dir.resolve("report.j1939-84").toFile();
+
+        assertEquals(BatchRunner.COMPLETED,
+                     run(BatchRunner.BATCH_ARG,
+                         "--simulator",
+                         "--report",
+                         report.toString(),
+                         "--answers",
+                         answers.toString(),
+                         "--from",
+                         "1",
+                         "--to",
+                         "1.2"));
+
+        String output = output();
+        assertTrue(output, output.contains("Start Test 1.1 - "));
+        assertTrue(output, output.contains("Answered YES"));
+        assertTrue(output, output.contains("End Test 1.2 - "));
+        assertFalse(output, output.contains("Test 1.3 - "));
+        String reportText = Files.readString(report.toPath());
+        assertTrue(reportText, reportText.contains("End Test 1.2 - "));
+    }
+
+    @Test
+    public void testUsage() throws Exception {
+        assertEquals(BatchRunner.NOT_STARTED, run(BatchRunner.BATCH_ARG, "--simulator"));
+        assertEquals(BatchRunner.NOT_STARTED,
+                     run(BatchRunner.BATCH_ARG, "--report", dir.resolve("r").toString(), "--simulator", "--replay", "x"));
+
+        Path existing = Files.createFile(dir.resolve("existing.j1939-84"));
+        assertEquals(BatchRunner.NOT_STARTED,
+                     run(BatchRunner.BATCH_ARG, "--report", existing.toString(), "--simulator"));
+        assertEquals("", output());
+    }
+}
@@ -5,10 +5,18 @@ package org.etools.j1939_84.bus;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.etools.testdoc.TestDoc;
@@ -16,6 +24,49 @@ import org.junit.Test;
 
 @TestDoc(description = "Verifies queuing system works as expected.")
 public class MultiQueueTest {
+    /**
+     * @return total CPU time in ns used by readers parked on an idle queue.
+     */
+    private static long idleCpu(MultiQueue<Long> queue, int readers, int millis) throws InterruptedException {
+        ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        AtomicLong cpu = new AtomicLong();
+        Thread[] threads = new Thread[readers];
+        for (int i = 0; i < readers; i++) {
+            Stream<Long> stream = queue.stream(millis, TimeUnit.MILLISECONDS);
+            threads[i] = new Thread(() -> {
+                long start = mx.getCurrentThreadCpuTime();
+                stream.count();
+                cpu.addAndGet(mx.getCurrentThreadCpuTime() - start);
+            });
+            threads[i].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        return cpu.get();
+    }
+
+    /**
+     * @return sorted latencies in ns from add() to the item being seen by a
+     *         parked reader.
+     */
+    private static long[] wakeLatency(MultiQueue<Long> queue, int count) throws Exception {
+        long[] latencies = new long[count];
+        Stream<Long> stream = queue.stream(10, TimeUnit.SECONDS).limit(count);
+        Thread reader = new Thread(() -> {
+            int[] i = { 0 };
+            stream.forEach(t -> latencies[i[0]++] = System.nanoTime() - t);
+        });
+        reader.start();
+        for (int i = 0; i < count; i++) {
+            Thread.sleep(1);
+            queue.add(System.nanoTime());
+        }
+        reader.join();
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
     /** Add 10000 items from 25 different threads in less than 1 s */
     @Test(timeout = 1000)
     @TestDoc(description = "Verifies that 10,000 items can be added from 25 threads and all 250,000 items are read by one thread in less than 1 s.")
@@ -63,16 +114,15 @@ public class MultiQueueTest {
     @Test
     @TestDoc(description = "Verify that closed streams are empty.")
     public void testClose() {
-        try (MultiQueue<Integer> queue = new MultiQueue<>()) {
-            Stream<Integer> stream1 = queue.stream(10, TimeUnit.MILLISECONDS);
-            Stream<Integer> stream2 = queue.stream(10, TimeUnit.MILLISECONDS);
+        MultiQueue<Integer> queue = new MultiQueue<>();
+        Stream<Integer> stream1 = queue.stream(10, TimeUnit.MILLISECONDS);
+        Stream<Integer> stream2 = queue.stream(10, TimeUnit.MILLISECONDS);
 
-            queue.add(1);
-            queue.add(2);
-            assertEquals(2, stream1.count());
-            queue.close();
-            assertEquals(0, stream2.count());
-        }
+        queue.add(1);
+        queue.add(2);
+        assertEquals(2, stream1.count());
+        queue.close();
+        assertEquals(0, stream2.count());
     }
 
     @Test
@@ -151,4 +201,277 @@ public class MultiQueueTest {
             exe.awaitTermination(1, TimeUnit.MINUTES);
         }
     }
+
+    @Test
+    @TestDoc(description = "Benchmark: parked ring buffer readers use less CPU on an idle queue than polling linked list readers. Reports the wake latency.")
+    public void ringBenchmark() throws Exception {
+        long linkedCpu, ringCpu;
+        long[] linkedLatency, ringLatency;
+        try (MultiQueue<Long> linked = new MultiQueue<>(); MultiQueue<Long> ring = new MultiQueue<>(1024)) {
+            linkedCpu = idleCpu(linked, 12, 500);
+            ringCpu = idleCpu(ring, 12, 500);
+            linkedLatency = wakeLatency(linked, 200);
+            ringLatency = wakeLatency(ring, 200);
+        }
+        System.err.printf("idle CPU 12 readers 500 ms: linked %,d ns ring %,d ns%n", linkedCpu, ringCpu);
+        System.err.printf("wake latency p50/p99: linked %,d/%,d ns ring %,d/%,d ns%n",
+                          linkedLatency[100],
+                          linkedLatency[198],
+                          ringLatency[100],
+                          ringLatency[198]);
+        // the latency depends on the load of the machine, so it is only reported
+        assertTrue("ring readers should not poll", ringCpu < linkedCpu);
+    }
+
+    @Test(timeout = 1000)
+    @TestDoc(description = "Verifies that 10,000 items can be added to a ring buffer from 25 threads and all 250,000 items are read by one thread in less than 1 s.")
+    public void ringBandwidthTest() {
+        try (MultiQueue<Integer> queue = new MultiQueue<>(1 << 18)) {
+            long COUNT = 10000;
+            int THREADS = 25;
+
+            Stream<Integer> stream = queue.stream(10, TimeUnit.SECONDS).limit(COUNT * THREADS);
+            ExecutorService e = Executors.newFixedThreadPool(THREADS);
+            for (int thread = 0; thread < THREADS; thread++) {
+                e.execute(() -> {
+                    for (int i = 0; i < COUNT; i++) {
+                        queue.add(i);
+                    }
+                });
+            }
+            assertEquals(COUNT * THREADS, stream.count());
+            e.shutdown();
+        }
+    }
+
+    @Test
+    @TestDoc(description = "Verifies that ring buffer streams support multiple items, findFirst(), skip(), duplicate() and an empty stream.")
+    public void ringSimpleTest() {
+        try (MultiQueue<Integer> q = new MultiQueue<>(16)) {
+            Stream<Integer> stream = q.stream(100, TimeUnit.MILLISECONDS);
+            Stream<Integer> stream1 = q.stream(200, TimeUnit.MILLISECONDS);
+            Stream<Integer> stream3 = q.stream(200, TimeUnit.MILLISECONDS);
+            Stream<Integer> streamn = q.stream(300, TimeUnit.MILLISECONDS);
+            q.add(1);
+            Stream<Integer> dup = q.duplicate(stream, 200, TimeUnit.MILLISECONDS);
+            q.add(2);
+            q.add(3);
+            assertEquals(3, stream.count());
+            assertEquals(3, dup.count());
+            assertEquals(1, (int) stream1.findFirst().get());
+            assertEquals(3, (int) stream3.skip(2).findFirst().get());
+            assertFalse(streamn.skip(3).findFirst().isPresent());
+        }
+    }
+
+    @Test
+    @TestDoc(description = "Verify that items added as a batch are read in order, by filtered and unfiltered streams of both queue types.")
+    public void addAllTest() {
+        try (MultiQueue<Integer> ring = new MultiQueue<>(16); MultiQueue<Integer> linked = new MultiQueue<>()) {
+            for (MultiQueue<Integer> q : Arrays.asList(ring, linked)) {
+                Stream<Integer> stream = q.stream(100, TimeUnit.MILLISECONDS);
+                Stream<Integer> odd = q.stream(i -> i % 2 == 1, null, 200, TimeUnit.MILLISECONDS);
+                q.addAll(Arrays.asList(1, 2, 3));
+                q.add(4);
+                q.addAll(Arrays.asList(5));
+                assertEquals("1,2,3,4,5", stream.map(i -> "" + i).collect(Collectors.joining(",")));
+                assertEquals("1,3,5", odd.map(i -> "" + i).collect(Collectors.joining(",")));
+            }
+        }
+    }
+
+    @Test
+    @TestDoc(description = "Verify that a ring buffer stream that falls behind skips to the oldest retained item.")
+    public void ringOverrunTest() {
+        try (MultiQueue<Integer> q = new MultiQueue<>(4)) {
+            Stream<Integer> stream = q.stream(50, TimeUnit.MILLISECONDS);
+            for (int i = 0; i < 10; i++) {
+                q.add(i);
+            }
+            assertEquals("6,7,8,9", stream.map(i -> "" + i).collect(Collectors.joining(",")));
+        }
+    }
+
+    @Test(timeout = 1000)
+    @TestDoc(description = "Verify that parked ring buffer readers are released by close() and by a shorter timeout.")
+    public void ringWakeTest() throws Exception {
+        MultiQueue<Integer> q = new MultiQueue<>(16);
+        AtomicLong count = new AtomicLong(-1);
+        Stream<Integer> closed = q.stream(1, TimeUnit.DAYS);
+        Thread t = new Thread(() -> count.set(closed.count()));
+        t.start();
+        Thread.sleep(50);
+        q.close();
+        t.join();
+        assertEquals(0, count.get());
+
+        Stream<Integer> shortened = q.stream(1, TimeUnit.DAYS);
+        q.add(1);
+        t = new Thread(() -> count.set(shortened.count()));
+        t.start();
+        Thread.sleep(50);
+        q.resetTimeout(shortened, 0, TimeUnit.MILLISECONDS);
+        t.join();
+        assertEquals(1, count.get());
+    }
+
+    @Test
+    @TestDoc(description = "Verify that items older than the retention age are evicted and that a stream that falls behind is told how many items it lost.")
+    public void retainForTest() throws Exception {
+        try (MultiQueue<Integer> q = new MultiQueue<Integer>(16).retainFor(50, TimeUnit.MILLISECONDS)) {
+            Stream<Integer> stream = q.stream(200, TimeUnit.MILLISECONDS);
+            q.add(1);
+            q.add(2);
+            assertEquals(2, q.getMetrics().getDepth());
+            assertEquals(2, q.getLag(stream));
+            Thread.sleep(100);
+            q.add(3);
+
+            MultiQueue.Metrics metrics = q.getMetrics();
+            assertEquals(1, metrics.getDepth());
+            assertEquals(3, metrics.getMaxLag());
+            assertTrue(metrics.getOldestTimestamp().isPresent());
+
+            assertEquals(3, (int) stream.findFirst().get());
+            assertEquals(2, q.getLost(stream));
+            assertEquals(2, q.getMetrics().getLost());
+            assertEquals(0, q.getLag(stream));
+        }
+    }
+
+    @Test
+    @TestDoc(description = "Verify that items are evicted once the retained size exceeds the byte limit, and that slow streams are detached when requested.")
+    public void retainBytesTest() {
+        try (MultiQueue<String> q = new MultiQueue<String>(16).retainBytes(10, String::length)
+                                                                   .detachSlowReaders()) {
+            Stream<String> stream = q.stream(100, TimeUnit.MILLISECONDS);
+            q.add("1234");
+            q.add("5678");
+            assertEquals(8, q.getMetrics().getBytes());
+            q.add("90");
+            assertEquals(10, q.getMetrics().getBytes());
+            q.add("AB");
+            assertEquals(8, q.getMetrics().getBytes());
+            assertEquals(3, q.getMetrics().getDepth());
+
+            assertEquals(0, stream.count());
+            assertEquals(1, q.getLost(stream));
+            assertEquals(1, q.getMetrics().getDetached());
+        }
+    }
+
+    @Test
+    @TestDoc(description = "Verify that an abandoned ring buffer stream does not keep evicted items reachable.")
+    public void retentionReclaimsTest() throws Exception {
+        try (MultiQueue<Object> q = new MultiQueue<>(4)) {
+            @SuppressWarnings("unused")
+            Stream<Object> abandoned = q.stream(1, TimeUnit.DAYS);
+            WeakReference<Object> first = new WeakReference<>(new Object());
+            q.add(first.get());
+            for (int i = 0; i < 4; i++) {
+                q.add(i);
+            }
+            System.gc();
+            assertNull(first.get());
+            assertEquals(5, q.getMetrics().getMaxLag());
+        }
+    }
+
+    @Test
+    @TestDoc(description = "Verify that filtered streams only see matching items, on both ring buffer and linked list backed queues, including duplicates.")
+    public void filterTest() {
+        try (MultiQueue<Integer> ring = new MultiQueue<Integer>(16).indexBy(i -> i % 10);
+                MultiQueue<Integer> linked = new MultiQueue<>()) {
+            for (MultiQueue<Integer> q : Arrays.asList(ring, linked)) {
+                Stream<Integer> indexed = q.stream(i -> i > 10 && (i % 10 == 1 || i % 10 == 3),
+                                                   new int[] { 1, 3 },
+                                                   100,
+                                                   TimeUnit.MILLISECONDS);
+                Stream<Integer> unindexed = q.stream(i -> i % 2 == 0, null, 300, TimeUnit.MILLISECONDS);
+                q.add(1);
+                q.add(11);
+                Stream<Integer> dup = q.duplicate(indexed, 200, TimeUnit.MILLISECONDS);
+                q.add(12);
+                q.add(13);
+                q.add(15);
+                assertEquals("11,13", indexed.map(i -> "" + i).collect(Collectors.joining(",")));
+                assertEquals("11,13", dup.map(i -> "" + i).collect(Collectors.joining(",")));
+                assertEquals("12", unindexed.map(i -> "" + i).collect(Collectors.joining(",")));
+            }
+        }
+    }
+
+    @Test
+    @TestDoc(description = "Verify that a filtered stream retains as many items as the queue, with the retention of the queue.")
+    public void filterRetentionTest() {
+        try (MultiQueue<Integer> q = new MultiQueue<>(4096)) {
+            Stream<Integer> even = q.stream(i -> i % 2 == 0, null, 100, TimeUnit.MILLISECONDS);
+            for (int i = 0; i < 6000; i++) {
+                q.add(i);
+            }
+            assertEquals(3000, even.count());
+            assertEquals(0, q.getLost(even));
+        }
+        try (MultiQueue<String> q = new MultiQueue<String>(16).retainBytes(10, String::length)
+                                                                   .detachSlowReaders()) {
+            Stream<String> all = q.stream(s -> true, null, 100, TimeUnit.MILLISECONDS);
+            q.add("1234");
+            q.add("5678");
+            q.add("90");
+            q.add("AB");
+            assertEquals(0, all.count());
+            assertEquals(1, q.getLost(all));
+        }
+    }
+
+    @Test
+    @TestDoc(description = "Benchmark: readers of an indexed queue interested in one key are only woken for that key. Reports the wake-ups of unfiltered readers for comparison.")
+    public void filterBenchmark() throws Exception {
+        final int READERS = 12, KEYS = 50, COUNT = 5000;
+        long[] wakeups = new long[2];
+        for (int filtered = 0; filtered < 2; filtered++) {
+            try (MultiQueue<Integer> q = new MultiQueue<Integer>(1 << 14).indexBy(i -> i % KEYS)) {
+                AtomicLong matched = new AtomicLong();
+                Thread[] threads = new Thread[READERS];
+                for (int r = 0; r < READERS; r++) {
+                    int key = r;
+                    Stream<Integer> stream = filtered == 1
+                            ? q.stream(i -> i % KEYS == key, new int[] { key }, 500, TimeUnit.MILLISECONDS)
+                            : q.stream(500, TimeUnit.MILLISECONDS).filter(i -> i % KEYS == key);
+                    threads[r] = new Thread(() -> matched.addAndGet(stream.count()));
+                    threads[r].start();
+                }
+                for (int i = 0; i < COUNT; i++) {
+                    q.add(i);
+                    if (i % 100 == 0) {
+                        Thread.sleep(1);
+                    }
+                }
+                for (Thread t : threads) {
+                    t.join();
+                }
+                assertEquals(COUNT / KEYS * READERS, matched.get());
+                wakeups[filtered] = q.getMetrics().getWakeups();
+                if (filtered == 1) {
+                    // woken only by an item it wants, and once at its deadline
+                    assertTrue("filtered wake-ups " + wakeups[1], wakeups[1] <= matched.get() + READERS);
+                }
+            }
+        }
+        System.err.printf("wake-ups for %,d items %d readers: unfiltered %,d filtered %,d (%.3f/%.3f per item)%n",
+                          COUNT,
+                          READERS,
+                          wakeups[0],
+                          wakeups[1],
+                          (double) wakeups[0] / COUNT,
+                          (double) wakeups[1] / COUNT);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    @TestDoc(description = "Verify that retention is only available on ring buffer backed queues.")
+    public void retentionRequiresRingTest() {
+        try (MultiQueue<Integer> q = new MultiQueue<>()) {
+            q.retainFor(1, TimeUnit.SECONDS);
+        }
+    }
 }
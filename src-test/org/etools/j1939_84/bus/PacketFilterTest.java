@@ -0,0 +1,59 @@
+/*
+ * Copyright 2021 Equipment & Tool Institute
+ */
+package org.etools.j1939_84.bus;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.etools.testdoc.TestDoc;
+import org.junit.Test;
+
+@TestDoc(description = "Verifies PGN, source, destination and id/mask packet filters.")
+public class PacketFilterTest {
+
+    @Test
+    @TestDoc(description = "Verify that each part of the filter is matched.")
+    public void testMatch() {
+        Packet ds = Packet.create(0xEA00 | 0xF9, 0x00, 1, 2, 3);
+        Packet global = Packet.create(0xFECA, 0x00, 1, 2, 3);
+
+        assertTrue(PacketFilter.all().test(ds));
+        assertNull(PacketFilter.all().getPgns());
+
+        assertTrue(PacketFilter.pgns(0xEA00).test(ds));
+        assertFalse(PacketFilter.pgns(0xEA00).test(global));
+        assertArrayEquals(new int[] { 0xEA00, 0xFECA }, PacketFilter.pgns(0xEA00, 0xFECA).getPgns());
+
+        assertTrue(PacketFilter.pgns(0xEA00).from(0x00).test(ds));
+        assertFalse(PacketFilter.pgns(0xEA00).from(0x01).test(ds));
+
+        assertTrue(PacketFilter.all().to(0xF9).test(ds));
+        assertFalse(PacketFilter.all().to(0xF9).test(global));
+        assertTrue(PacketFilter.all().to(0xF9, 0xFF).test(global));
+
+        assertTrue(PacketFilter.all().id(0xEAF9, 0xFFFF).test(ds));
+        assertFalse(PacketFilter.all().id(0xEAF8, 0xFFFF).test(ds));
+    }
+
+    @Test
+    @TestDoc(description = "Verify that a filtered read of an EchoBus only returns the matching packets.")
+    public void testEchoBusRead() throws Exception {
+        try (EchoBus bus = new EchoBus(0xF9)) {
+            Stream<Packet> stream = bus.read(PacketFilter.pgns(0xFECA).from(0x01), 100, TimeUnit.MILLISECONDS);
+            bus.send(Packet.create(0xFECA, 0x00, 1, 2, 3));
+            bus.send(Packet.create(0xFECA, 0x01, 4, 5, 6));
+            bus.send(Packet.create(0xFECB, 0x01, 7, 8, 9));
+            List<String> packets = stream.map(Packet::toString).collect(Collectors.toList());
+            assertArrayEquals(new String[] { Packet.create(0xFECA, 0x01, 4, 5, 6).toString() },
+                              packets.toArray());
+        }
+    }
+}
@@ -7,6 +7,13 @@ import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
 
 import org.etools.j1939_84.modules.DateTimeModule;
 import org.etools.j1939_84.modules.TestDateTimeModule;
@@ -230,4 +237,154 @@ public class PacketTest {
         assertEquals(expected, actual);
     }
 
+    @Test
+    public void testHighBytes() {
+        Packet instance = Packet.create(0x1234, 56, 0xFF, 0x80, 0xFE, 0x81);
+        assertEquals(0xFF, instance.get(0));
+        assertEquals(0x80FF, instance.get16(0));
+        assertEquals(0xFF80, instance.get16Big(0));
+        assertEquals(0xFE80FF, instance.get24(0));
+        assertEquals(0xFF80FE, instance.get24Big(0));
+        assertEquals(0x81FE80FFL, instance.get32(0));
+        assertEquals(0xFF80FE81L, instance.get32Big(0));
+        assertArrayEquals(new int[] { 0x80, 0xFE, 0x81, 0 }, instance.getData(1, 5));
+        assertArrayEquals(new byte[] { (byte) 0xFF, (byte) 0x80, (byte) 0xFE, (byte) 0x81 }, instance.getBytes());
+    }
+
+    @Test
+    public void testTimestampNanos() {
+        LocalDateTime time = LocalDateTime.of(2021, 3, 4, 5, 6, 7, 123456789);
+        long nanos = time.atZone(ZoneId.systemDefault()).toInstant().getEpochSecond() * 1_000_000_000L + 123456789;
+
+        Packet instance = Packet.create(nanos, 6, 0x1234, 56, false, new byte[] { 1, 2, 3 });
+        assertEquals(nanos, instance.getTimestampNanos());
+        assertEquals(time, instance.getTimestamp());
+
+        instance.setTimestamp(time.plusSeconds(1));
+        assertEquals(nanos + 1_000_000_000L, instance.getTimestampNanos());
+
+        assertEquals(nanos, Packet.create(time, 6, 0x1234, 56, false, new byte[3]).getTimestampNanos());
+    }
+
+    @Test
+    public void testCreateDoesNotShareBytes() {
+        byte[] bytes = { 1, 2, 3 };
+        Packet instance = Packet.create(0x1234, 56, bytes);
+        bytes[0] = 9;
+        assertEquals(1, instance.get(0));
+        instance.getBytes()[1] = 9;
+        assertEquals(2, instance.get(1));
+    }
+
+    /**
+     * Benchmark: the rate and the allocation of creating and decoding received
+     * packets. Reports the numbers only.
+     */
+    @Test
+    public void testAllocationBenchmark() {
+        java.lang.management.ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        assumeTrue(mx instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) mx;
+        long tid = Thread.currentThread().getId();
+
+        final int COUNT = 1_000_000;
+        long sum = 0;
+        for (int run = 0; run < 2; run++) {
+            // first run warms up
+            long bytes = threads.getThreadAllocatedBytes(tid);
+            long start = System.nanoTime();
+            for (int i = 0; i < COUNT; i++) {
+                Packet p = Packet.create(start + i, 6, 0xF004, 0, false, new byte[] { 1, 2, 3, 4, 5, 6, 7, (byte) i });
+                sum += p.get16(3) + p.get(7) + p.getPgn() + p.getLength();
+            }
+            long nanos = System.nanoTime() - start;
+            bytes = threads.getThreadAllocatedBytes(tid) - bytes;
+            if (run == 1) {
+                // about 96 bytes: the packet header and fields, plus the 8 byte
+                // array. Reported only, as it depends on the JVM.
+                System.err.printf("Packet create+decode: %,.0f packets/s %,d bytes/packet%n",
+                                  COUNT * 1e9 / nanos,
+                                  bytes / COUNT);
+            }
+        }
+        assertTrue(sum > 0);
+    }
+
+    /** The toString of the String.format version. */
+    private static String formatReference(Packet p) {
+        StringBuilder data = new StringBuilder();
+        for (int i = 0; i < p.getLength(); i++) {
+            data.append(i == 0 ? "" : " ").append(String.format("%02X", p.get(i)));
+        }
+        return String.format("%06X%02X [%s] %s",
+                             p.getPriority() << 18 | p.getId(0x3FFFF),
+                             p.getSource(),
+                             p.getLength(),
+                             data + (p.isTransmitted() ? Packet.TX : Packet.RX));
+    }
+
+    /**
+     * toString and toTimeString match the String.format and DateTimeFormatter
+     * output they replace.
+     */
+    @Test
+    public void testFormatGolden() {
+        DateTimeModule.setInstance(null);
+        DateTimeFormatter formatter = DateTimeModule.getInstance().getTimeFormatter();
+        Random random = new Random(1939);
+        long day = 86_400_000_000_000L;
+        long[] edges = { 0, 999_999_999, 1_000_000_000, day - 1, 12 * 3600 * 1_000_000_000L + 50_000 };
+        for (int i = 0; i < 20_000; i++) {
+            int length = i % 100 == 0 ? 1785 : 3 + random.nextInt(30);
+            byte[] bytes = new byte[length];
+            random.nextBytes(bytes);
+            long nanos = i < edges.length ? edges[i] : (random.nextLong() >>> 4) % (day * 365 * 40);
+            Packet p = Packet.create(nanos,
+                                     random.nextInt(8),
+                                     random.nextInt(0x40000),
+                                     random.nextInt(0x100),
+                                     random.nextBoolean(),
+                                     bytes);
+            assertEquals(formatReference(p), p.toString());
+            assertEquals(formatter.format(p.getTimestamp()) + " " + formatReference(p), p.toTimeString());
+        }
+        assertEquals("18FEEC00 [3] 00 0A FF (TX)",
+                     Packet.create(6, 0xFEEC, 0, true, (byte) 0x00, (byte) 0x0A, (byte) 0xFF).toString());
+    }
+
+    /**
+     * Benchmark: toTimeString against String.format and the formatter.
+     */
+    @Test
+    public void testFormatBenchmark() {
+        DateTimeModule.setInstance(null);
+        DateTimeFormatter formatter = DateTimeModule.getInstance().getTimeFormatter();
+        final int COUNT = 100_000;
+        Packet[] packets = new Packet[1000];
+        for (int i = 0; i < packets.length; i++) {
+            packets[i] = Packet.create(i * 1_000_000L, 6, 0xF004, i & 0xFF, false, new byte[] { 1, 2, 3, 4, 5, 6, 7, (byte) i });
+        }
+        long sum = 0;
+        for (int run = 0; run < 2; run++) {
+            // first run warms up
+            long start = System.nanoTime();
+            for (int i = 0; i < COUNT; i++) {
+                Packet p = packets[i % packets.length];
+                sum += (formatter.format(p.getTimestamp()) + " " + formatReference(p)).length();
+            }
+            long reference = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < COUNT; i++) {
+                sum += packets[i % packets.length].toTimeString().length();
+            }
+            long nanos = System.nanoTime() - start;
+            if (run == 1) {
+                System.err.printf("Packet toTimeString: %,d ns/packet, was %,d ns/packet%n",
+                                  nanos / COUNT,
+                                  reference / COUNT);
+            }
+        }
+        assertTrue(sum > 0);
+    }
+
 }
@@ -7,6 +7,7 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.AdditionalMatchers.aryEq;
 import static org.mockito.ArgumentMatchers.any;
@@ -21,9 +22,12 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
@@ -39,6 +43,7 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatchers;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
 
 /**
  * Unit tests for the {@link RP1210Bus} class
@@ -50,6 +55,109 @@ import org.mockito.junit.MockitoJUnitRunner;
 @RunWith(MockitoJUnitRunner.class)
 public class RP1210BusTest {
 
+    /**
+     * An adapter reporting a saturated bus. Each frame has a 24 bit frame
+     * number in the first data bytes and a 1 us later timestamp.
+     */
+    private static class FakeRP1210Library implements RP1210Library {
+        private final int count;
+        private int next;
+
+        FakeRP1210Library(int count) {
+            this.count = count;
+        }
+
+        @Override
+        public short RP1210_ClientConnect(int hwndClient,
+                                          short nDeviceID,
+                                          String fpchProtocol,
+                                          int lTxBufferSize,
+                                          int lRcvBufferSize,
+                                          short nIsAppPacketizingIncomingMsgs) {
+            return 1;
+        }
+
+        @Override
+        public short RP1210_ClientDisconnect(short nClientID) {
+            return 0;
+        }
+
+        @Override
+        public short RP1210_GetErrorMsg(short errCode, byte[] fpchMessage) {
+            return 0;
+        }
+
+        @Override
+        public short RP1210_GetHardwareStatus(short nClientID,
+                                              String fpchClientInfo,
+                                              short nInfoSize,
+                                              short nBlockOnRequest) {
+            return 0;
+        }
+
+        @Override
+        public short RP1210_GetLastErrorMsg(short errCode, int[] subErrorCode, String fpchMessage) {
+            return 0;
+        }
+
+        @Override
+        public short RP1210_ReadDetailedVersion(short nClientID,
+                                                String fpchAPIVersionInfo,
+                                                String fpchDLLVersionInfo,
+                                                String fpchFWVersionInfo) {
+            return 0;
+        }
+
+        @Override
+        public short RP1210_ReadMessage(short nClientID, byte[] data, short nBufferSize, short nBlockOnSend) {
+            if (next == count) {
+                return 0;
+            }
+            int n = next++;
+            int timestamp = 1000 + n;
+            data[0] = (byte) (timestamp >> 24);
+            data[1] = (byte) (timestamp >> 16);
+            data[2] = (byte) (timestamp >> 8);
+            data[3] = (byte) timestamp;
+            data[4] = 0;
+            data[5] = (byte) 0xCA;
+            data[6] = (byte) 0xFE;
+            data[7] = 0;
+            data[8] = 6;
+            data[9] = 0;
+            data[10] = (byte) 0xFF;
+            data[11] = (byte) n;
+            data[12] = (byte) (n >> 8);
+            data[13] = (byte) (n >> 16);
+            Arrays.fill(data, 14, 19, (byte) 0xFF);
+            return 19;
+        }
+
+        @Override
+        public void RP1210_ReadVersion(String fpchDLLMajorVersion,
+                                       String fpchDLLMinorVersion,
+                                       String fpchAPIMajorVersion,
+                                       String fpchAPIMinorVersion) {
+        }
+
+        @Override
+        public short RP1210_SendCommand(short nCommandNumber,
+                                        short nClientID,
+                                        byte[] fpchClientCommand,
+                                        short nMessageSize) {
+            return 0;
+        }
+
+        @Override
+        public short RP1210_SendMessage(short nClientID,
+                                        byte[] fpchClientMessage,
+                                        short nMessageSize,
+                                        short nNotifyStatusOnTx,
+                                        short nBlockOnSend) {
+            return 0;
+        }
+    }
+
     private static final int ADDRESS = 0xA5;
     private static final byte[] ADDRESS_CLAIM_PARAMS = new byte[] { (byte) ADDRESS, 0, 0, (byte) 0xE0, (byte) 0xFF, 0,
             (byte) 0x81, 0, 0, 0 };
@@ -434,16 +542,17 @@ public class RP1210BusTest {
                                                                                                                })
                                                                                                                .thenReturn((short) 0);
 
+        when(logger.isLoggable(Level.FINE)).thenReturn(true);
         startInstance();
         rp1210Captor.getAllValues().forEach(v->v.run());
         decodingCaptor.getAllValues().forEach(v->v.run());
 
-        ArgumentCaptor<Packet> packetCaptor = ArgumentCaptor.forClass(Packet.class);
-        verify(queue).add(packetCaptor.capture());
+        ArgumentCaptor<List<Packet>> packetCaptor = ArgumentCaptor.forClass(List.class);
+        verify(queue).addAll(packetCaptor.capture());
 
-        Packet actual = packetCaptor.getValue();
-        assertEquals(packet, actual);
+        assertEquals(List.of(packet), packetCaptor.getValue());
 
+        verify(logger).isLoggable(Level.FINE);
         verify(logger).log(eq(Level.FINE), anyString());
         verify(logger).log(eq(Level.INFO), anyString());
         verify(rp1210Library, atLeast(2)).RP1210_ReadMessage(eq((short) 1),
@@ -454,6 +563,132 @@ public class RP1210BusTest {
         verify(rp1210Executor, times(2)).submit(any(Runnable.class));
     }
 
+    @Test
+    public void testPollBatch() throws Exception {
+        byte[] encodedPacket = new byte[] { 0x00, 0x00, 0x00, 0x00, 0x00, (byte) 0x34, (byte) 0x12, (byte) 0x00,
+                (byte) 0x06, (byte) 0x56, (byte) 0x34, (byte) 0x77, (byte) 0x88, (byte) 0x99 };
+        Answer<Short> frame = arg0 -> {
+            byte[] data = arg0.getArgument(1);
+            System.arraycopy(encodedPacket, 0, data, 0, encodedPacket.length);
+            return (short) encodedPacket.length;
+        };
+        when(rp1210Library.RP1210_ReadMessage(eq((short) 1), any(byte[].class), eq((short) 32), eq((short) 0)))
+                                                                                                               .thenAnswer(frame)
+                                                                                                               .thenAnswer(frame)
+                                                                                                               .thenReturn((short) -RP1210Library.ERR_RX_QUEUE_FULL)
+                                                                                                               .thenAnswer(frame)
+                                                                                                               .thenReturn((short) 0);
+
+        when(logger.isLoggable(Level.FINE)).thenReturn(true);
+        startInstance();
+        rp1210Captor.getAllValues().forEach(v -> v.run());
+        decodingCaptor.getAllValues().forEach(v -> v.run());
+
+        ArgumentCaptor<List<Packet>> packetCaptor = ArgumentCaptor.forClass(List.class);
+        verify(queue).addAll(packetCaptor.capture());
+        assertEquals(3, packetCaptor.getValue().size());
+
+        RP1210Bus.Metrics metrics = instance.getMetrics();
+        assertEquals(3, metrics.getFrames());
+        assertEquals(1, metrics.getBatches());
+        assertEquals(3, metrics.getMaxBatchSize());
+        assertEquals(1, metrics.getQueueFull());
+
+        verify(logger, times(3)).isLoggable(Level.FINE);
+        verify(logger, times(3)).log(eq(Level.FINE), anyString());
+        verify(logger).log(eq(Level.INFO), anyString());
+        verify(logger).log(eq(Level.SEVERE), anyString());
+        verify(rp1210Library).RP1210_GetErrorMsg(eq((short) RP1210Library.ERR_RX_QUEUE_FULL), any());
+        verify(rp1210Library, times(5)).RP1210_ReadMessage(eq((short) 1),
+                                                           any(byte[].class),
+                                                           eq((short) 32),
+                                                           eq((short) 0));
+        verify(decodingExecutor).submit(any(Runnable.class));
+        verify(rp1210Executor, times(2)).submit(any(Runnable.class));
+    }
+
+    @Test
+    public void testPollShortFrame() throws Exception {
+        byte[] encodedPacket = new byte[] { 0x00, 0x00, 0x00, 0x00, 0x00, (byte) 0x34, (byte) 0x12, (byte) 0x00,
+                (byte) 0x06, (byte) 0x56, (byte) 0x34, (byte) 0x77, (byte) 0x88, (byte) 0x99 };
+        Answer<Short> frame = arg0 -> {
+            byte[] data = arg0.getArgument(1);
+            System.arraycopy(encodedPacket, 0, data, 0, encodedPacket.length);
+            return (short) encodedPacket.length;
+        };
+        when(rp1210Library.RP1210_ReadMessage(eq((short) 1), any(byte[].class), eq((short) 32), eq((short) 0)))
+                                                                                                               .thenAnswer(frame)
+                                                                                                               .thenReturn((short) 5)
+                                                                                                               .thenAnswer(frame)
+                                                                                                               .thenReturn((short) 0);
+
+        startInstance();
+        rp1210Captor.getAllValues().forEach(v -> v.run());
+        decodingCaptor.getAllValues().forEach(v -> v.run());
+
+        // the short frame is dropped, the rest of the batch is queued
+        ArgumentCaptor<List<Packet>> packetCaptor = ArgumentCaptor.forClass(List.class);
+        verify(queue).addAll(packetCaptor.capture());
+        assertEquals(2, packetCaptor.getValue().size());
+        verify(logger).log(eq(Level.SEVERE), eq("Failed to decode frame of 5 bytes"), any(RuntimeException.class));
+        verify(logger, times(2)).isLoggable(Level.FINE);
+        verify(logger).log(eq(Level.INFO), anyString());
+        verify(rp1210Library, times(4)).RP1210_ReadMessage(eq((short) 1),
+                                                           any(byte[].class),
+                                                           eq((short) 32),
+                                                           eq((short) 0));
+        verify(decodingExecutor).submit(any(Runnable.class));
+        verify(rp1210Executor, times(2)).submit(any(Runnable.class));
+    }
+
+    /**
+     * Replays a synthetic, saturated bus through a real RP1210Bus with 4
+     * decoding threads, and verifies that every frame is queued once, in order,
+     * with increasing timestamps.
+     */
+    @Test(timeout = 60000)
+    public void testPollOrderStress() throws Exception {
+        final int COUNT = 100_000;
+        RP1210Library fake = new FakeRP1210Library(COUNT);
+        ExecutorService decoding = Executors.newFixedThreadPool(4);
+        RP1210Bus bus = new RP1210Bus(fake,
+                                      decoding,
+                                      Executors.newSingleThreadExecutor(),
+                                      new MultiQueue<>(1 << 18),
+                                      adapter,
+                                      "J1939:Baud=Auto",
+                                      ADDRESS,
+                                      true,
+                                      Logger.getLogger(RP1210BusTest.class.getName()));
+        try {
+            long start = System.nanoTime();
+            long[] previous = { -1, Long.MIN_VALUE };
+            long count = bus.read(10, TimeUnit.SECONDS)
+                            .limit(COUNT)
+                            .peek(p -> {
+                                long n = p.get24(0);
+                                assertEquals(previous[0] + 1, n);
+                                long nanos = p.getTimestamp().toLocalTime().toNanoOfDay();
+                                assertTrue(nanos >= previous[1] || n == 0);
+                                previous[0] = n;
+                                previous[1] = nanos;
+                            })
+                            .count();
+            long elapsed = System.nanoTime() - start;
+            assertEquals(COUNT, count);
+            RP1210Bus.Metrics metrics = bus.getMetrics();
+            assertEquals(COUNT, metrics.getFrames());
+            System.err.printf("RP1210Bus decoded %,d frames in %,d ms (%,.0f frames/s) %s%n",
+                              COUNT,
+                              elapsed / 1_000_000,
+                              COUNT * 1e9 / elapsed,
+                              metrics);
+        } finally {
+            bus.stop();
+            decoding.shutdown();
+        }
+    }
+
     @Test
     public void testPollFails() throws Exception {
         when(rp1210Library.RP1210_ReadMessage(eq((short) 1), any(byte[].class), eq((short) 32), eq((short) 0)))
@@ -470,7 +705,7 @@ public class RP1210BusTest {
         Runnable runnable = rp1210Captor.getValue();
         runnable.run();
 
-        verify(queue, never()).add(any(Packet.class));
+        verify(queue, never()).addAll(any());
         verify(rp1210Library).RP1210_ReadMessage(eq((short) 1), any(byte[].class), eq((short) 32), eq((short) 0));
         verify(rp1210Library).RP1210_GetErrorMsg(eq((short) 99), any());
         verify(logger).log(eq(Level.SEVERE), eq("Failed to read RP1210"), any(BusException.class));
@@ -505,17 +740,18 @@ public class RP1210BusTest {
                                                                                                                })
                                                                                                                .thenReturn((short) 0);
 
+        when(logger.isLoggable(Level.FINE)).thenReturn(true);
         startInstance();
         Runnable runnable = rp1210Captor.getValue();
         runnable.run();
 
         decodingCaptor.getValue().run();
 
-        ArgumentCaptor<Packet> packetCaptor = ArgumentCaptor.forClass(Packet.class);
-        verify(queue).add(packetCaptor.capture());
-        Packet actual = packetCaptor.getValue();
+        ArgumentCaptor<List<Packet>> packetCaptor = ArgumentCaptor.forClass(List.class);
+        verify(queue).addAll(packetCaptor.capture());
 
-        assertEquals(packet, actual);
+        assertEquals(List.of(packet), packetCaptor.getValue());
+        verify(logger).isLoggable(Level.FINE);
         verify(logger).log(eq(Level.FINE), anyString());
         verify(logger).log(eq(Level.INFO), anyString());
         verify(rp1210Library, atLeast(2)).RP1210_ReadMessage(eq((short) 1),
@@ -5,22 +5,30 @@ package org.etools.j1939_84.bus;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 import org.etools.j1939_84.J1939_84;
 import org.etools.j1939_84.bus.j1939.J1939;
 import org.etools.j1939_84.bus.j1939.J1939TP;
 import org.etools.j1939_84.bus.j1939.packets.DM29DtcCounts;
 import org.etools.j1939_84.controllers.TestResultsListener;
+import org.etools.j1939_84.resources.Resources;
+import org.etools.j1939_84.utils.Clock;
+import org.etools.j1939_84.utils.VirtualClock;
 import org.ini4j.InvalidFileFormatException;
 import org.junit.After;
 import org.junit.Test;
@@ -216,4 +224,40 @@ public class RP1210Test {
         assertTrue(bus instanceof EchoBus);
         assertEquals(0xA5, bus.getAddress());
     }
+
+    @Test
+    public void testSetAdapterWithVirtualTime() throws Exception {
+        J1939_84.setTesting(true);
+        System.setProperty(RP1210.VIRTUAL_TIME_PROPERTY, "true");
+        RP1210 instance = createInstance("test/rp1210/RP121032.INI");
+        try {
+            instance.setAdapter(instance.getAdapters().get(0), "J1939:Baud=Auto", 0xA5);
+            assertTrue(Clock.get() instanceof VirtualClock);
+        } finally {
+            instance.stopEngine();
+            System.clearProperty(RP1210.VIRTUAL_TIME_PROPERTY);
+        }
+        // an adapter chosen later runs on the system clock
+        assertSame(Clock.SYSTEM, Clock.get());
+    }
+
+    @Test
+    public void testSetAdapterWithVehicleProfile() throws Exception {
+        J1939_84.setTesting(true);
+        Path profile = Files.createTempFile("vehicle", ".ini");
+        try (InputStream sample = Resources.class.getResourceAsStream("simulated-vehicle.ini")) {
+            Files.copy(sample, profile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        System.setProperty(RP1210.SIMULATOR_PROFILE_PROPERTY, profile.toString());
+        RP1210 instance = createInstance("test/rp1210/RP121032.INI");
+        try {
+            Bus bus = instance.setAdapter(instance.getAdapters().get(0), "J1939:Baud=Auto", 0xA5);
+            // the aftertreatment module of the profile broadcasts
+            assertTrue(bus.read(500, TimeUnit.MILLISECONDS).anyMatch(p -> p.getSource() == 0x3D));
+        } finally {
+            instance.stopEngine();
+            System.clearProperty(RP1210.SIMULATOR_PROFILE_PROPERTY);
+            Files.delete(profile);
+        }
+    }
 }
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2021. Equipment & Tool Institute
+ */
+package org.etools.j1939_84.bus.capture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.etools.j1939_84.bus.Packet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link CaptureWriter} and {@link CaptureReader} classes
+ */
+public class CaptureWriterTest {
+
+    private static List<Packet> readAll(Path capture) throws IOException {
+        try (Stream<Packet> packets = CaptureReader.read(capture)) {
+            return packets.collect(Collectors.toList());
+        }
+    }
+
+    private Path directory;
+
+    private void assertSame(List<Packet> expected, List<Packet> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Packet e = expected.get(i);
+            Packet a = actual.get(i);
+            assertEquals(e.toString(), a.toString());
+            assertEquals(e.getTimestampNanos(), a.getTimestampNanos());
+            assertEquals(e.getPriority(), a.getPriority());
+            assertEquals(e.getId(0xFFFFFF), a.getId(0xFFFFFF));
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("capture");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(Path::toFile).forEach(File::delete);
+        }
+        Files.delete(directory);
+    }
+
+    /**
+     * Benchmark: writing a frame should not allocate, and should keep up with
+     * a fully loaded 500 kbps bus, about 4000 frames/s.
+     */
+    @Test
+    public void testAllocationBenchmark() throws IOException {
+        java.lang.management.ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        assumeTrue(mx instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) mx;
+        long tid = Thread.currentThread().getId();
+
+        final int COUNT = 1_000_000;
+        Packet packet = Packet.create(6, 0xF004, 0, false, (byte) 1, (byte) 2, (byte) 3, (byte) 4, (byte) 5, (byte) 6,
+                                      (byte) 7, (byte) 8);
+        try (CaptureWriter instance = new CaptureWriter(directory, CaptureWriter.DEFAULT_SEGMENT_SIZE)) {
+            for (int run = 0; run < 2; run++) {
+                // first run warms up
+                long bytes = threads.getThreadAllocatedBytes(tid);
+                long start = System.nanoTime();
+                for (int i = 0; i < COUNT; i++) {
+                    instance.write(packet);
+                }
+                long nanos = System.nanoTime() - start;
+                bytes = threads.getThreadAllocatedBytes(tid) - bytes;
+                if (run == 1) {
+                    System.err.printf("Capture write: %,.0f frames/s %,d bytes/frame%n",
+                                      COUNT * 1e9 / nanos,
+                                      bytes / COUNT);
+                    // the rate depends on the machine, so it is only reported
+                    assertTrue("allocated " + bytes / COUNT + " bytes per frame", bytes / COUNT < 1);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        List<Packet> packets = new ArrayList<>();
+        packets.add(Packet.create(1_600_000_000_123_456_789L, 6, 0xFECA, 0x00, false, new byte[] { 0, 1, 2 }));
+        packets.add(Packet.create(1_600_000_000_223_456_789L, 3, 0x1EAF9, 0xF9, true, new byte[] { 3, 4, 5, 6 }));
+        byte[] tp = new byte[1785];
+        for (int i = 0; i < tp.length; i++) {
+            tp[i] = (byte) i;
+        }
+        packets.add(Packet.create(1_600_000_001_000_000_000L, 7, 0xD300, 0x17, false, tp));
+
+        try (CaptureWriter instance = new CaptureWriter(directory, CaptureWriter.DEFAULT_SEGMENT_SIZE)) {
+            for (Packet p : packets) {
+                instance.write(p);
+            }
+            assertEquals(3, instance.getRecords());
+        }
+        assertSame(packets, readAll(directory));
+    }
+
+    @Test
+    public void testSegments() throws IOException {
+        List<Packet> packets = new ArrayList<>();
+        try (CaptureWriter instance = new CaptureWriter(directory, 1000)) {
+            for (int i = 0; i < 200; i++) {
+                Packet p = Packet.create(i * 1000L, 6, 0xF004, i, false, new byte[] { 1, 2, 3, 4, 5, 6, 7, (byte) i });
+                packets.add(p);
+                instance.write(p);
+            }
+            assertEquals(5, instance.getSegments());
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            assertTrue(files.allMatch(f -> f.toFile().length() <= 1000));
+        }
+        assertSame(packets, readAll(directory));
+
+        // a second run continues in a new segment
+        try (CaptureWriter instance = new CaptureWriter(directory, 1000)) {
+            instance.write(packets.get(0));
+        }
+        packets.add(packets.get(0));
+        assertSame(packets, readAll(directory));
+    }
+
+    @Test
+    public void testTruncated() throws IOException {
+        try (CaptureWriter instance = new CaptureWriter(directory, CaptureWriter.DEFAULT_SEGMENT_SIZE)) {
+            instance.write(Packet.create(0L, 6, 0xF004, 0, false, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 }));
+            instance.write(Packet.create(1L, 6, 0xF004, 0, false, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 }));
+        }
+        Path segment = directory.resolve(CaptureWriter.segmentName(0));
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+        List<Packet> packets = readAll(directory);
+        assertEquals(1, packets.size());
+        assertEquals(0L, packets.get(0).getTimestampNanos());
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2021. Equipment & Tool Institute
+ */
+package org.etools.j1939_84.bus.capture;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.etools.j1939_84.bus.EchoBus;
+import org.etools.j1939_84.bus.Packet;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link RecordingBus} class
+ */
+public class RecordingBusTest {
+
+    @Test
+    public void testRecordsEverything() throws Exception {
+        Path directory = Files.createTempDirectory("capture");
+        try {
+            EchoBus echoBus = new EchoBus(0xF9);
+            try (RecordingBus instance = new RecordingBus(echoBus, new CaptureWriter(directory, 1 << 20))) {
+                Stream<Packet> stream = instance.read(1, TimeUnit.SECONDS);
+                for (int i = 0; i < 100; i++) {
+                    instance.send(Packet.create(0xEA00 | i, 0xF9, i, 1, 2));
+                }
+                // from another module
+                echoBus.send(Packet.create(0xFECA, 0x00, 0, 0xFF, 0, 0, 0, 0, 0xFF, 0xFF));
+                assertEquals(101, stream.limit(101).count());
+            }
+
+            List<String> recorded;
+            try (Stream<Packet> packets = CaptureReader.read(directory)) {
+                recorded = packets.map(Packet::toString).collect(Collectors.toList());
+            }
+            assertEquals(101, recorded.size());
+            assertEquals("18EA00F9 [3] 00 01 02", recorded.get(0));
+            assertEquals("18FECA00 [8] 00 FF 00 00 00 00 FF FF", recorded.get(100));
+        } finally {
+            for (File f : directory.toFile().listFiles()) {
+                f.delete();
+            }
+            Files.delete(directory);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2021. Equipment & Tool Institute
+ */
+package org.etools.j1939_84.bus.capture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.etools.j1939_84.bus.Packet;
+import org.etools.j1939_84.utils.Clock;
+import org.etools.j1939_84.utils.VirtualClock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link ReplayBus} class
+ */
+public class ReplayBusTest {
+
+    private static final long MS = 1_000_000L;
+
+    private static final long T0 = 1_600_000_000_000_000_000L;
+
+    private static Packet packet(long ms, int id, int source, boolean tx, int... data) {
+        byte[] bytes = new byte[data.length];
+        for (int i = 0; i < data.length; i++) {
+            bytes[i] = (byte) data[i];
+        }
+        return Packet.create(T0 + ms * MS, 6, id, source, tx, bytes);
+    }
+
+    private static List<String> read(Iterator<Packet> packets, int count) {
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            result.add(packets.next().toString());
+        }
+        return result;
+    }
+
+    private VirtualClock clock;
+
+    @Before
+    public void setUp() {
+        clock = new VirtualClock();
+        Clock.set(clock);
+    }
+
+    @After
+    public void tearDown() {
+        Clock.set(null);
+        clock.close();
+    }
+
+    @Test
+    public void testAnswersRecordedRequests() throws Exception {
+        List<Packet> capture = new ArrayList<>();
+        capture.add(packet(0, 0xEA00, 0xF9, true, 0xCA, 0xFE, 0x00));
+        capture.add(packet(10, 0xF004, 0x00, false, 1, 2, 3, 4, 5, 6, 7, 8));
+        capture.add(packet(50, 0xFECA, 0x00, false, 0, 0xFF, 0, 0, 0, 0, 0xFF, 0xFF));
+        capture.add(packet(1000, 0xEA00, 0xF9, true, 0xCA, 0xFE, 0x00));
+        capture.add(packet(1020, 0xFECA, 0x00, false, 0x40, 0xFF, 0x5B, 0, 3, 1, 0xFF, 0xFF));
+
+        try (ReplayBus instance = new ReplayBus(0xF9, capture, ReplayBus.MAX_SPEED)) {
+            Iterator<Packet> stream = instance.read(1, TimeUnit.SECONDS).iterator();
+            instance.start();
+            // only the broadcast is played back on its own
+            assertEquals(List.of("18F00400 [8] 01 02 03 04 05 06 07 08"), read(stream, 1));
+
+            long now = instance.getTime();
+            Packet request = Packet.create(0xEA00, 0xF9, true, 0xCA, 0xFE, 0x00);
+            assertEquals(now, instance.send(request).getTimestampNanos());
+            assertEquals("18EA00F9 [3] CA FE 00 (TX)", stream.next().toString());
+            Packet response = stream.next();
+            assertEquals("18FECA00 [8] 00 FF 00 00 00 00 FF FF", response.toString());
+            assertEquals(now + 50 * MS, response.getTimestampNanos());
+
+            instance.send(request);
+            assertEquals("18FECA00 [8] 40 FF 5B 00 03 01 FF FF", read(stream, 2).get(1));
+            // the last recording repeats
+            instance.send(request);
+            assertEquals("18FECA00 [8] 40 FF 5B 00 03 01 FF FF", read(stream, 2).get(1));
+
+            // not recorded
+            instance.send(Packet.create(0xEA17, 0xF9, true, 0xCA, 0xFE, 0x00));
+            assertEquals("18EA17F9 [3] CA FE 00 (TX)", stream.next().toString());
+            assertFalse(stream.hasNext());
+        }
+    }
+
+    @Test
+    public void testGlobalTransportAnswer() throws Exception {
+        List<Packet> capture = new ArrayList<>();
+        capture.add(packet(0, 0xEAFF, 0xF9, true, 0xD3, 0xFE, 0x00));
+        capture.add(packet(5, 0xECFF, 0x00, false, 0x20, 9, 0, 2, 0xFF, 0xD3, 0xFE, 0x00));
+        capture.add(packet(7, 0xFECA, 0x17, false, 0, 0xFF, 0, 0, 0, 0, 0xFF, 0xFF));
+        capture.add(packet(8, 0xFED3, 0x17, false, 0, 0xFF, 0, 0, 0, 0, 0xFF, 0xFF));
+        capture.add(packet(60, 0xEBFF, 0x00, false, 1, 1, 2, 3, 4, 5, 6, 7));
+        capture.add(packet(110, 0xEBFF, 0x00, false, 2, 8, 9, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF));
+
+        try (ReplayBus instance = new ReplayBus(0xF9, capture, ReplayBus.MAX_SPEED)) {
+            Iterator<Packet> stream = instance.read(1, TimeUnit.SECONDS).iterator();
+            instance.start();
+            assertEquals(List.of("18FECA17 [8] 00 FF 00 00 00 00 FF FF"), read(stream, 1));
+
+            instance.send(Packet.create(0xEAFF, 0xF9, true, 0xD3, 0xFE, 0x00));
+            assertEquals(List.of("18EAFFF9 [3] D3 FE 00 (TX)",
+                                 "18ECFF00 [8] 20 09 00 02 FF D3 FE 00",
+                                 "18FED317 [8] 00 FF 00 00 00 00 FF FF",
+                                 "18EBFF00 [8] 01 01 02 03 04 05 06 07",
+                                 "18EBFF00 [8] 02 08 09 FF FF FF FF FF"),
+                         read(stream, 5));
+        }
+    }
+
+    /**
+     * A later BAM of the module that answered is played on its own, with all of
+     * its DT frames.
+     */
+    @Test
+    public void testLaterTransportSession() throws Exception {
+        List<Packet> capture = new ArrayList<>();
+        capture.add(packet(0, 0xEAFF, 0xF9, true, 0xD3, 0xFE, 0x00));
+        capture.add(packet(5, 0xECFF, 0x00, false, 0x20, 9, 0, 2, 0xFF, 0xD3, 0xFE, 0x00));
+        capture.add(packet(60, 0xEBFF, 0x00, false, 1, 1, 2, 3, 4, 5, 6, 7));
+        capture.add(packet(110, 0xEBFF, 0x00, false, 2, 8, 9, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF));
+        capture.add(packet(300, 0xECFF, 0x00, false, 0x20, 10, 0, 2, 0xFF, 0xCA, 0xFE, 0x00));
+        capture.add(packet(350, 0xEBFF, 0x00, false, 1, 0x43, 0xFF, 0x66, 0x00, 0x04, 0x01, 0x66));
+        capture.add(packet(400, 0xEBFF, 0x00, false, 2, 0x00, 0x04, 0x01, 0xFF, 0xFF, 0xFF, 0xFF));
+
+        try (ReplayBus instance = new ReplayBus(0xF9, capture, ReplayBus.MAX_SPEED)) {
+            Iterator<Packet> stream = instance.read(1, TimeUnit.SECONDS).iterator();
+            instance.start();
+            assertEquals(List.of("18ECFF00 [8] 20 0A 00 02 FF CA FE 00",
+                                 "18EBFF00 [8] 01 43 FF 66 00 04 01 66",
+                                 "18EBFF00 [8] 02 00 04 01 FF FF FF FF"),
+                         read(stream, 3));
+
+            instance.send(Packet.create(0xEAFF, 0xF9, true, 0xD3, 0xFE, 0x00));
+            assertEquals(List.of("18EAFFF9 [3] D3 FE 00 (TX)",
+                                 "18ECFF00 [8] 20 09 00 02 FF D3 FE 00",
+                                 "18EBFF00 [8] 01 01 02 03 04 05 06 07",
+                                 "18EBFF00 [8] 02 08 09 FF FF FF FF FF"),
+                         read(stream, 4));
+            assertFalse(stream.hasNext());
+        }
+    }
+
+    /**
+     * A read over a time window sees what was recorded in it, as the tool
+     * listening for broadcasts does.
+     */
+    @Test
+    public void testMaxSpeedWaits() throws Exception {
+        List<Packet> capture = new ArrayList<>();
+        for (int ms = 0; ms < 10_000; ms += 100) {
+            capture.add(packet(ms, 0xF004, 0x00, false, 1, 2, 3, 4, 5, 6, 7, 8));
+        }
+        long start = System.nanoTime();
+        try (ReplayBus instance = new ReplayBus(0xF9, capture, ReplayBus.MAX_SPEED)) {
+            Stream<Packet> first = instance.read(550, TimeUnit.MILLISECONDS);
+            instance.start();
+            assertEquals(6, first.count());
+            long time = instance.getTime() - T0;
+            assertTrue(time + " ns", time >= 500 * MS && time < 600 * MS);
+
+            Stream<Packet> second = instance.read(1000, TimeUnit.MILLISECONDS);
+            assertEquals(10, second.count());
+            clock.sleep(10_000);
+            assertTrue(instance.getTime() >= T0 + 9900 * MS);
+        }
+        System.err.printf("Replayed 10 s at max speed in %,d ms%n",
+                          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testMaxSpeedNeedsVirtualClock() {
+        Clock.set(null);
+        try (ReplayBus instance = new ReplayBus(0xF9, List.of(), ReplayBus.MAX_SPEED)) {
+            instance.start();
+        }
+    }
+
+    @Test
+    public void testSpeed() throws Exception {
+        // the speed factor is of the real time
+        Clock.set(null);
+        List<Packet> capture = List.of(packet(0, 0xF004, 0x00, false, 1, 2, 3),
+                                       packet(1000, 0xF004, 0x00, false, 4, 5, 6));
+        try (ReplayBus instance = new ReplayBus(0xF9, capture, 10)) {
+            Stream<Packet> stream = instance.read(2, TimeUnit.SECONDS);
+            long start = System.nanoTime();
+            instance.start();
+            assertEquals(2, stream.limit(2).count());
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue("took " + elapsed + " ms", elapsed >= 90 && elapsed < 800);
+            assertTrue(instance.getTime() >= T0 + 900 * MS);
+        }
+    }
+
+    @Test
+    public void testVector() throws Exception {
+        Path asc = Files.createTempFile("replay", ".asc");
+        try {
+            Files.write(asc,
+                        List.of("date Thu Jan 14 10:00:00.000 am 2021",
+                                "base hex  timestamps absolute",
+                                "   0.000000 1  18EA00F9x       Tx   d 3 E5 FE 00",
+                                "   0.012000 1  18FEE500x       Rx   d 8 10 27 00 00 20 4E 00 00",
+                                "   0.020000 1  18F00400x       Rx   d 8 01 02 03 04 05 06 07 08"));
+            try (ReplayBus instance = ReplayBus.fromVector(asc, 0xF9, ReplayBus.MAX_SPEED)) {
+                Stream<Packet> stream = instance.read(1, TimeUnit.SECONDS);
+                instance.start();
+                assertEquals(0xF004, stream.findFirst().get().getPgn());
+
+                stream = instance.read(1, TimeUnit.SECONDS);
+                instance.send(Packet.create(0xEA00, 0xF9, true, 0xE5, 0xFE, 0x00));
+                List<Packet> packets = stream.limit(2).collect(Collectors.toList());
+                assertEquals(0xFEE5, packets.get(1).getPgn());
+                assertEquals(0x00, packets.get(1).getSource());
+                assertEquals(0x2710, packets.get(1).get32(0));
+            }
+        } finally {
+            Files.delete(asc);
+        }
+    }
+}
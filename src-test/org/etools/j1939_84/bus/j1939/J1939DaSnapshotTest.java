@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2021. Equipment & Tool Institute
+ */
+package org.etools.j1939_84.bus.j1939;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+
+import org.etools.j1939_84.bus.Packet;
+import org.etools.j1939_84.bus.j1939.packets.Slot;
+import org.etools.j1939_84.bus.j1939.packets.model.PgnDefinition;
+import org.etools.j1939_84.bus.j1939.packets.model.SpnDefinition;
+import org.etools.j1939_84.bus.j1939.packets.model.SpnExtractor;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class J1939DaSnapshotTest {
+
+    private static void assertSameSlot(Slot expected, Slot actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getType(), actual.getType());
+        assertEquals(expected.getScaling(), actual.getScaling());
+        assertEquals(expected.getOffset(), actual.getOffset());
+        assertEquals(expected.getUnit(), actual.getUnit());
+        assertEquals(expected.getLength(), actual.getLength());
+    }
+
+    private static void assertSameSpn(SpnDefinition expected, SpnDefinition actual) {
+        assertEquals(expected.getSpnId(), actual.getSpnId());
+        assertEquals(expected.getLabel(), actual.getLabel());
+        assertEquals(expected.getStartByte(), actual.getStartByte());
+        assertEquals(expected.getStartBit(), actual.getStartBit());
+        assertEquals(expected.getSlotNumber(), actual.getSlotNumber());
+    }
+
+    /**
+     * @return the raw value of engine speed, decoded with the repository
+     */
+    private static long decodeEngineSpeed(J1939DaRepository repository) {
+        SpnExtractor extractor = repository.findPgnDefinition(61444).getSpnExtractor();
+        Packet packet = Packet.create(61444, 0, 0, 0, 0, 0x20, 0x4E, 0, 0, 0);
+        return extractor.extract(packet, extractor.indexOf(190));
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testCorruptSnapshot() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        long checksum = J1939DaSnapshot.checksum();
+        Path file = J1939DaSnapshot.file(directory, checksum);
+        Files.write(file, new byte[] { 0x4A, 0x31, 0x44, 0x41, 0, 0, 0, 1 });
+
+        // falls back to the CSV and replaces the snapshot
+        assertEquals(0x4E20, decodeEngineSpeed(new J1939DaRepository(directory)));
+        assertTrue(Files.size(file) > 1000);
+    }
+
+    @Test
+    public void testDirectory() {
+        Path tmp = Paths.get(System.getProperty("java.io.tmpdir"));
+        assertFalse(J1939DaSnapshot.directory().startsWith(tmp));
+    }
+
+    @Test
+    public void testOtherChecksum() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        long checksum = J1939DaSnapshot.checksum();
+        new J1939DaRepository(directory).getPgnDefinitions();
+
+        Path file = J1939DaSnapshot.file(directory, checksum);
+        assertTrue(Files.exists(file));
+        assertNull(J1939DaSnapshot.read(file, checksum + 1));
+        assertNull(J1939DaSnapshot.read(J1939DaSnapshot.file(directory, checksum + 1), checksum + 1));
+    }
+
+    @Test
+    public void testSnapshotMatchesCsv() {
+        Path directory = folder.getRoot().toPath();
+        J1939DaRepository csv = new J1939DaRepository(null);
+        // the first load parses the CSV and writes the snapshot
+        new J1939DaRepository(directory).getPgnDefinitions();
+        J1939DaRepository snapshot = new J1939DaRepository(directory);
+
+        assertEquals(csv.getSpnDefinitions().keySet(), snapshot.getSpnDefinitions().keySet());
+        for (SpnDefinition expected : csv.getSpnDefinitions().values()) {
+            SpnDefinition actual = snapshot.findSpnDefinition(expected.getSpnId());
+            assertSameSpn(expected, actual);
+            assertSameSlot(csv.findSLOT(expected.getSlotNumber(), expected.getSpnId()),
+                           snapshot.findSLOT(actual.getSlotNumber(), actual.getSpnId()));
+        }
+
+        assertEquals(csv.getPgnDefinitions().keySet(), snapshot.getPgnDefinitions().keySet());
+        for (PgnDefinition expected : csv.getPgnDefinitions().values()) {
+            PgnDefinition actual = snapshot.findPgnDefinition(expected.getId());
+            assertEquals(expected.getLabel(), actual.getLabel());
+            assertEquals(expected.getAcronym(), actual.getAcronym());
+            assertEquals(expected.isOnRequest(), actual.isOnRequest());
+            assertEquals(expected.isVariableBroadcast(), actual.isVariableBroadcast());
+            assertEquals(expected.getBroadcastPeriod(), actual.getBroadcastPeriod());
+            List<SpnDefinition> expectedSpns = expected.getSpnDefinitions();
+            List<SpnDefinition> actualSpns = actual.getSpnDefinitions();
+            assertEquals(expectedSpns.size(), actualSpns.size());
+            for (int i = 0; i < expectedSpns.size(); i++) {
+                assertSameSpn(expectedSpns.get(i), actualSpns.get(i));
+            }
+            assertEquals(csv.getPgnForSpn(expectedSpns.isEmpty() ? 0 : expectedSpns.get(0).getSpnId()),
+                         snapshot.getPgnForSpn(expectedSpns.isEmpty() ? 0 : expectedSpns.get(0).getSpnId()));
+        }
+    }
+
+    @Test
+    public void testWritableByOthers() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        assumeTrue(directory.getFileSystem().supportedFileAttributeViews().contains("posix"));
+        long checksum = J1939DaSnapshot.checksum();
+        new J1939DaRepository(directory).getPgnDefinitions();
+        Path file = J1939DaSnapshot.file(directory, checksum);
+        assertNotNull(J1939DaSnapshot.read(file, checksum));
+
+        // anyone could have replaced it, so it's ignored
+        Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rw-rw-rw-"));
+        assertNull(J1939DaSnapshot.read(file, checksum));
+
+        // falls back to the CSV and replaces the snapshot with a private one
+        assertEquals(0x4E20, decodeEngineSpeed(new J1939DaRepository(directory)));
+        assertTrue(J1939DaSnapshot.isTrusted(file));
+    }
+
+    /**
+     * Benchmark: time to the first decoded packet when parsing the CSV and
+     * when reading the snapshot.
+     */
+    @Test
+    public void testTimeToFirstDecodedPacket() {
+        Path directory = folder.getRoot().toPath();
+
+        long start = System.nanoTime();
+        assertEquals(0x4E20, decodeEngineSpeed(new J1939DaRepository(directory)));
+        long csvNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        assertEquals(0x4E20, decodeEngineSpeed(new J1939DaRepository(directory)));
+        long snapshotNanos = System.nanoTime() - start;
+
+        System.err.printf("time to first decoded packet: CSV %,d ms snapshot %,d ms%n",
+                          csvNanos / 1_000_000,
+                          snapshotNanos / 1_000_000);
+        assertTrue("snapshot should load faster than the CSV", snapshotNanos < csvNanos);
+    }
+}
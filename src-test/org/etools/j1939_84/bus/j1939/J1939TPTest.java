@@ -79,12 +79,17 @@ public class J1939TPTest {
             +
             "Request is issued a total of three (3) times."))
     public void test3CtsWithoutData() throws BusException {
-        try (EchoBus bus = new EchoBus(0xF9);
-             J1939TP tp = new J1939TP(bus, 0)) {
-            Stream<Packet> s = bus.read(J1939TP.T1 * 5, TimeUnit.MILLISECONDS);
-            bus.send(Packet.parse("18EC00F9 10 09 00 02 FF 00 EA 00"));
-            // verify exactly 3 CTS
-            assertEquals(3, s.filter(p -> p.toString().startsWith("18ECF900 [8] 11")).count());
+        try (EchoBus bus = new EchoBus(0xF9)) {
+            // answers the RTS on the bus
+            J1939TP tp = new J1939TP(bus, 0);
+            try {
+                Stream<Packet> s = bus.read(J1939TP.T1 * 5, TimeUnit.MILLISECONDS);
+                bus.send(Packet.parse("18EC00F9 10 09 00 02 FF 00 EA 00"));
+                // verify exactly 3 CTS
+                assertEquals(3, s.filter(p -> p.toString().startsWith("18ECF900 [8] 11")).count());
+            } finally {
+                tp.close();
+            }
         }
     }
 
@@ -102,15 +107,17 @@ public class J1939TPTest {
             {
                 Stream<Packet> stream = tpIn.read(2 * J1939TP.T1, TimeUnit.MILLISECONDS);
 
+                // open the CTS stream before the RTS, so the CTS can not be missed
+                Stream<Packet> ctsStream = bus.read((long) (1.2 * J1939TP.T1), TimeUnit.MILLISECONDS);
+
                 // send RTS
                 bus.send(Packet.parse("18ECF900 10 15 00 03 FF 00 EA 00"));
 
                 // wait for up to 120% o T1 for CTS
                 assertPacketsEquals(Packet.parse("18EC00F9 11 03 01 FF FF 00 EA 00"),
-                                    bus.read((long) (1.2 * J1939TP.T1), TimeUnit.MILLISECONDS)
-                                       .filter(p -> p.getSource() == 0xF9)
-                                       .findFirst()
-                                       .orElse(null));
+                                    ctsStream.filter(p -> p.getSource() == 0xF9)
+                                             .findFirst()
+                                             .orElse(null));
 
                 // send 3 packets
                 Packet.parseCollection(
@@ -135,15 +142,17 @@ public class J1939TPTest {
             {
                 Stream<Packet> stream = tpIn.read(2 * J1939TP.T1, TimeUnit.MILLISECONDS);
 
+                // open the CTS stream before the RTS, so the CTS can not be missed
+                Stream<Packet> ctsStream = bus.read((long) (1.2 * J1939TP.T1), TimeUnit.MILLISECONDS);
+
                 // send RTS
                 bus.send(Packet.parse("18ECF900 10 15 00 03 FF 00 EA 00"));
 
                 // wait for up to 120% o T1 for CTS
                 assertPacketsEquals(Packet.parse("18EC00F9 11 03 01 FF FF 00 EA 00"),
-                                    bus.read((long) (1.2 * J1939TP.T1), TimeUnit.MILLISECONDS)
-                                       .filter(p -> p.getSource() == 0xF9)
-                                       .findFirst()
-                                       .orElse(null));
+                                    ctsStream.filter(p -> p.getSource() == 0xF9)
+                                             .findFirst()
+                                             .orElse(null));
 
                 // send 2 packets, abort, then 3rd packet
                 Packet.parseCollection("18EBF900 01 01 02 03 04 05 06 07\n"
@@ -324,6 +333,54 @@ public class J1939TPTest {
         }
     }
 
+    /**
+     * Load test: BAMs from 200 sources at once, with the DT frames interleaved,
+     * are all reassembled without a thread per session.
+     */
+    @Test
+    @TestDoc(value = @TestItem(verifies = "J1939-21 5.10.3.5", description = "Verify concurrent BAM sessions from many sources"))
+    public void testConcurrentBams() throws BusException {
+        final int sources = 200;
+        final int length = 100;
+        final int numberOfPackets = (length + 6) / 7;
+        try (EchoBus bus = new EchoBus(0xF9);
+             J1939TP tp = new J1939TP(bus, 0xF9)) {
+            Stream<Packet> tpStream = tp.read(J1939TP.T2, TimeUnit.MILLISECONDS).limit(sources);
+            int threads = Thread.activeCount();
+
+            long start = System.nanoTime();
+            for (int source = 0; source < sources; source++) {
+                bus.send(Packet.create(0xECFF, source, 0x20, length, 0, numberOfPackets, 0xFF, source, 0xFF, 0));
+            }
+            for (int i = 1; i <= numberOfPackets; i++) {
+                for (int source = 0; source < sources; source++) {
+                    int[] dt = new int[8];
+                    dt[0] = i;
+                    for (int j = 1; j < 8; j++) {
+                        int offset = (i - 1) * 7 + j - 1;
+                        dt[j] = offset < length ? (source + offset) & 0xFF : 0xFF;
+                    }
+                    bus.send(Packet.create(0xEBFF, source, dt));
+                }
+            }
+
+            List<Packet> packets = tpStream.filter(VALID_FILTER).collect(Collectors.toList());
+            System.err.printf("%,d concurrent BAMs in %,d ms with %d more threads%n",
+                              packets.size(),
+                              (System.nanoTime() - start) / 1_000_000,
+                              Thread.activeCount() - threads);
+            assertEquals(sources, packets.size());
+            for (Packet packet : packets) {
+                assertEquals(0xFF00 | packet.getSource(), packet.getPgn());
+                assertEquals(length, packet.getLength());
+                for (int i = 0; i < length; i++) {
+                    assertEquals((packet.getSource() + i) & 0xFF, packet.get(i));
+                }
+            }
+            assertTrue("a thread per session", Thread.activeCount() - threads < 5);
+        }
+    }
+
     /** Simple test to verify that the bus streams are collecting packets. */
     @Test
     public void testBus() {
@@ -429,26 +486,25 @@ public class J1939TPTest {
     }
 
     /**
-     * Due to the implementation that creates a new thread for each RTS, this
-     * test verifies that only a single TP packet is reconstructed when two BAM
-     * RTSs are received.
+     * A second BAM from the same source replaces the first session, so only a
+     * single TP packet is reconstructed when two BAM RTSs are received.
      *
      * @throws InterruptedException
      */
     @Test
     @TestDoc(description = "Verifies that only a single TP packet is reconstructed when two BAM RTSs are received.")
     public void testMultipleBamRts() throws BusException, InterruptedException {
+        // tpOut closes the bus, so keep it open until the packet is received
         try (EchoBus bus = new EchoBus(0);
-             Bus tp = new J1939TP(bus, 0xF9)) {
+             Bus tp = new J1939TP(bus, 0xF9);
+             J1939TP tpOut = new J1939TP(bus)) {
             Stream<Packet> tpStream = tp.read(J1939TP.T1 * 3, TimeUnit.MILLISECONDS);
             // send first RTS
             bus.send(Packet.parse("18ECFF00 20 0E 00 03 FF F9 12 00"));
             sleep(50);
             // send full TP
             Packet p = Packet.parse("18FFFF00 00 01 02 03 04 05 06 07 08 09 0A 0B 0C 0D");
-            try (J1939TP tpOut = new J1939TP(bus)) {
-                tpOut.send(p);
-            }
+            tpOut.send(p);
             // verify that exactly one packet is received.
             assertPacketsEquals(Collections.singletonList(p),
                                 tpStream.filter(VALID_FILTER).collect(Collectors.toList()));
@@ -456,26 +512,25 @@ public class J1939TPTest {
     }
 
     /**
-     * Due to the implementation that creates a new thread for each RTS, this
-     * test verifies that only a single TP packet is reconstructed when two RTSs
-     * are received.
+     * A second RTS from the same source replaces the first session, so only a
+     * single TP packet is reconstructed when two RTSs are received.
      *
      * @throws InterruptedException
      */
     @Test
     @TestDoc(description = "Verifies that only a single TP packet is reconstructed when two DA RTSs are received.")
     public void testMultipleCts() throws BusException, InterruptedException {
+        // tpOut closes the bus, so keep it open until the packet is received
         try (EchoBus bus = new EchoBus(0);
-             Bus tp = new J1939TP(bus, 0xF9)) {
+             Bus tp = new J1939TP(bus, 0xF9);
+             J1939TP tpOut = new J1939TP(bus)) {
             Stream<Packet> tpStream = tp.read(J1939TP.T1 * 3, TimeUnit.MILLISECONDS);
             // send first CTS
             bus.send(Packet.parse("18ECF900 10 0E 00 03 FF F9 12 00"));
             sleep(50);
             // send full TP
             Packet p = Packet.parse("1812F900 00 01 02 03 04 05 06 07 08 09 0A 0B 0C 0D");
-            try (J1939TP tpOut = new J1939TP(bus)) {
-                tpOut.send(p);
-            }
+            tpOut.send(p);
             // verify that exactly one packet is received.
             assertPacketsEquals(Collections.singletonList(p),
                                 tpStream.filter(VALID_FILTER).collect(Collectors.toList()));
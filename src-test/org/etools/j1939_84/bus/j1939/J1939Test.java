@@ -29,6 +29,7 @@ import org.etools.j1939_84.bus.BusException;
 import org.etools.j1939_84.bus.EchoBus;
 import org.etools.j1939_84.bus.Either;
 import org.etools.j1939_84.bus.Packet;
+import org.etools.j1939_84.bus.PacketFilter;
 import org.etools.j1939_84.bus.j1939.packets.AcknowledgmentPacket;
 import org.etools.j1939_84.bus.j1939.packets.ComponentIdentificationPacket;
 import org.etools.j1939_84.bus.j1939.packets.DM11ClearActiveDTCsPacket;
@@ -324,8 +325,15 @@ public class J1939Test {
     }
 
     @Before
-    public void setup() {
+    public void setup() throws BusException {
         when(bus.getAddress()).thenReturn(BUS_ADDR);
+        // filtered reads are filtered reads of the mocked bus.read(timeout, unit)
+        when(bus.read(ArgumentMatchers.any(PacketFilter.class),
+                      ArgumentMatchers.anyLong(),
+                      ArgumentMatchers.any(TimeUnit.class)))
+                                                            .thenAnswer(i -> bus.read(i.<Long>getArgument(1),
+                                                                                      i.getArgument(2))
+                                                                                .filter(i.getArgument(0)));
 
         sendPacketCaptor = ArgumentCaptor.forClass(Packet.class);
         instance = new J1939(bus);
@@ -592,6 +600,113 @@ public class J1939Test {
         }
     }
 
+    /**
+     * Busy modules are retried with DS requests in parallel, so three modules
+     * that never answer the DS requests cost two DS timeouts, not six.
+     */
+    @Test
+    public void testBusyRetriedInParallel() throws Exception {
+        final int pgn = DM5DiagnosticReadinessPacket.PGN;
+        try (EchoBus echoBus = new EchoBus(0xF9)) {
+            J1939 j1939 = new J1939(echoBus);
+            // answer every global request BUSY, and never answer a DS request
+            Stream<Packet> requests = echoBus.read(10, TimeUnit.SECONDS).filter(p -> p.getId(0xFFFF) == 0xEAFF);
+            new Thread(() -> requests.forEach(r -> {
+                for (int address : new int[] { 0x00, 0x17, 0x21 }) {
+                    echoBus.send(Packet.create(0xE8FF, address, 3, 0xFF, 0xFF, 0xFF, 0xF9, pgn, pgn >> 8, pgn >> 16));
+                }
+            })).start();
+            Stream<Packet> dsRequests = echoBus.read(5, TimeUnit.SECONDS)
+                                               .filter(p -> p.getPgn() == 0xEA00 && p.getDestination() != 0xFF);
+
+            long start = System.currentTimeMillis();
+            var result = j1939.requestGlobal("DM5", DM5DiagnosticReadinessPacket.class, NOOP);
+            long duration = System.currentTimeMillis() - start;
+
+            // the BUSY NACKs are kept when the DS requests are not answered
+            assertTrue(result.isRetryUsed());
+            assertEquals(3, result.getEither().size());
+            assertTrue(result.getEither().stream().allMatch(e -> e.right.isPresent()));
+            assertEquals(6, dsRequests.limit(6).count());
+            // two global requests and two DS requests, instead of 2 + 2 * 3
+            assertTrue("took " + duration + " ms", duration < 3400);
+
+            ResponseMetrics.Entry entry = j1939.getMetrics().get(pgn, 0x17);
+            assertEquals(2, entry.getBusy());
+            assertEquals(2, entry.getTimeouts());
+        }
+    }
+
+    /**
+     * Answers the first DM5 request on the bus from each of the addresses.
+     */
+    private static void respondToDM5(EchoBus echoBus, int... addresses) {
+        Stream<Packet> requests = echoBus.read(1, TimeUnit.SECONDS)
+                                         .filter(p -> p.getPgn() == 0xEA00 && p.get24(0) == DM5DiagnosticReadinessPacket.PGN);
+        new Thread(() -> {
+            requests.findFirst();
+            for (int address : addresses) {
+                echoBus.send(Packet.create(DM5DiagnosticReadinessPacket.PGN, address, 0, 0, 0x14, 0, 0, 0, 0, 0));
+            }
+        }).start();
+    }
+
+    @Test
+    public void testEarlyCompletion() throws Exception {
+        try (EchoBus echoBus = new EchoBus(0xF9)) {
+            J1939 j1939 = new J1939(echoBus);
+            j1939.setCompletionPolicy(new CompletionPolicy(() -> List.of(0x00, 0x17), 50));
+            respondToDM5(echoBus, 0x00, 0x17);
+
+            TestResultsListener listener = new TestResultsListener();
+            long start = System.currentTimeMillis();
+            var result = j1939.requestGlobal("DM5", DM5DiagnosticReadinessPacket.class, listener);
+            long duration = System.currentTimeMillis() - start;
+
+            assertEquals(2, result.getPackets().size());
+            assertTrue("took " + duration + " ms", duration < 400);
+            assertTrue(listener.getResults(), listener.getResults().contains("Complete - All expected responders answered after "));
+        }
+    }
+
+    @Test
+    public void testResponseMetrics() throws Exception {
+        final int pgn = DM5DiagnosticReadinessPacket.PGN;
+        try (EchoBus echoBus = new EchoBus(0xF9)) {
+            J1939 j1939 = new J1939(echoBus);
+            respondToDM5(echoBus, 0x00, 0x17);
+            j1939.requestGlobal("DM5", DM5DiagnosticReadinessPacket.class, NOOP);
+            j1939.requestDS("DM5", DM5DiagnosticReadinessPacket.class, 0x21, NOOP);
+
+            ResponseMetrics metrics = j1939.getMetrics();
+            assertEquals(1, metrics.get(pgn, 0x00).getLatency().getCount());
+            assertEquals(1, metrics.get(pgn, 0x17).getLatency().getCount());
+            assertTrue(metrics.get(pgn, 0x17).getLatency().getMax() < 1_000_000);
+            assertEquals(1, metrics.get(pgn, 0x21).getTimeouts());
+            assertEquals(0, metrics.get(pgn, 0x21).getLatency().getCount());
+            assertTrue(metrics.getSummary(), metrics.getSummary().contains("Engine #1 (0)"));
+        }
+    }
+
+    @Test
+    public void testEarlyCompletionMissingResponder() throws Exception {
+        try (EchoBus echoBus = new EchoBus(0xF9)) {
+            J1939 j1939 = new J1939(echoBus);
+            j1939.setCompletionPolicy(new CompletionPolicy(() -> List.of(0x00, 0x17, 0x21), 50));
+            respondToDM5(echoBus, 0x00, 0x17);
+
+            TestResultsListener listener = new TestResultsListener();
+            long start = System.currentTimeMillis();
+            var result = j1939.requestGlobal("DM5", DM5DiagnosticReadinessPacket.class, listener);
+            long duration = System.currentTimeMillis() - start;
+
+            // waits for the missing responder until the global timeout
+            assertEquals(2, result.getPackets().size());
+            assertTrue("took " + duration + " ms", duration >= 600);
+            assertFalse(listener.getResults().contains("Complete - All expected responders answered"));
+        }
+    }
+
     @Test
     public void testCreateRequestPacket() {
         Packet actual = instance.createRequestPacket(12345, 0x99);
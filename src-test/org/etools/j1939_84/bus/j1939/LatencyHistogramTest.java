@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2021. Equipment & Tool Institute
+ */
+package org.etools.j1939_84.bus.j1939;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBuckets() {
+        for (long value = 0; value < 100_000; value++) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(value + " above bucket " + bucket, value <= LatencyHistogram.highestValueOf(bucket));
+            if (bucket > 0) {
+                assertTrue(value + " in bucket " + bucket, value > LatencyHistogram.highestValueOf(bucket - 1));
+            }
+            // within 12.5%
+            assertTrue(LatencyHistogram.highestValueOf(bucket) - value <= value / 8);
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        LatencyHistogram instance = new LatencyHistogram();
+        assertEquals(0, instance.getCount());
+        assertEquals(0, instance.getMax());
+        assertEquals(0, instance.getPercentile(50));
+    }
+
+    @Test
+    public void testHugeAndNegative() {
+        LatencyHistogram instance = new LatencyHistogram();
+        instance.record(-5);
+        instance.record(Long.MAX_VALUE);
+        assertEquals(2, instance.getCount());
+        assertEquals(0, instance.getPercentile(50));
+        assertEquals(Long.MAX_VALUE, instance.getPercentile(100));
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram instance = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            instance.record(i * 100);
+        }
+        assertEquals(1000, instance.getCount());
+        assertEquals(100_000, instance.getMax());
+        long p50 = instance.getPercentile(50);
+        assertTrue("p50 " + p50, p50 >= 50_000 && p50 <= 50_000 * 9 / 8);
+        long p99 = instance.getPercentile(99);
+        assertTrue("p99 " + p99, p99 >= 99_000 && p99 <= 100_000);
+        assertEquals(100_000, instance.getPercentile(100));
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2021. Equipment & Tool Institute
+ */
+package org.etools.j1939_84.bus.j1939;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.etools.j1939_84.controllers.ResultsListener;
+import org.etools.j1939_84.controllers.TestSession;
+import org.junit.Test;
+
+public class RequestSchedulerTest {
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private final List<String> results = Collections.synchronizedList(new ArrayList<>());
+
+    private final ResultsListener listener = new ResultsListener() {
+        @Override
+        public void onResult(String result) {
+            results.add(result);
+        }
+    };
+
+    @Test
+    public void testDestinationsInParallel() {
+        RequestScheduler instance = new RequestScheduler(listener);
+        long start = System.currentTimeMillis();
+        for (int address = 0; address < 6; address++) {
+            instance.submit(address, l -> {
+                sleep(300);
+                return null;
+            }, r -> {
+            });
+        }
+        instance.join();
+        long duration = System.currentTimeMillis() - start;
+        assertTrue("took " + duration + " ms", duration < 900);
+    }
+
+    @Test
+    public void testException() {
+        RequestScheduler instance = new RequestScheduler(listener);
+        instance.submit(0, l -> {
+            l.onResult("first");
+            return 1;
+        }, r -> listener.onResult("handled " + r));
+        instance.submit(1, l -> {
+            l.onResult("second");
+            throw new IllegalStateException("failed");
+        }, r -> listener.onResult("handled " + r));
+        try {
+            instance.join();
+            fail("exception expected");
+        } catch (IllegalStateException e) {
+            assertEquals("failed", e.getMessage());
+        }
+        assertEquals(Arrays.asList("first", "handled 1", "second"), results);
+    }
+
+    /**
+     * The pooled threads are started in one session and reused by another; the
+     * requests run in the session they were submitted from.
+     */
+    @Test
+    public void testSession() {
+        TestSession first = new TestSession();
+        TestSession second = new TestSession();
+        List<TestSession> sessions = Collections.synchronizedList(new ArrayList<>());
+        for (TestSession session : List.of(first, second, first, TestSession.getDefault())) {
+            session.run(() -> {
+                RequestScheduler instance = new RequestScheduler(listener);
+                for (int address = 0; address < 4; address++) {
+                    instance.submit(address, l -> sessions.add(TestSession.current()), r -> {
+                    });
+                    instance.submit(address, l -> sessions.add(TestSession.current()), r -> {
+                    });
+                }
+                instance.join();
+                assertEquals(8, sessions.size());
+                sessions.forEach(s -> assertSame(session, s));
+                sessions.clear();
+            });
+        }
+    }
+
+    @Test
+    public void testReportedInSubmissionOrder() {
+        RequestScheduler instance = new RequestScheduler(listener);
+        List<Integer> handled = new ArrayList<>();
+        for (int address = 0; address < 4; address++) {
+            int a = address;
+            instance.submit(address, l -> {
+                // the last one finishes first
+                sleep(200 - 50 * a);
+                l.onResult("request " + a);
+                l.onResult("response " + a);
+                return a;
+            }, r -> {
+                handled.add(r);
+                listener.onResult("handled " + r);
+            });
+        }
+        instance.thenRun(() -> listener.onResult("done"));
+        instance.join();
+
+        assertEquals(Arrays.asList(0, 1, 2, 3), handled);
+        assertEquals(Arrays.asList("request 0",
+                                   "response 0",
+                                   "handled 0",
+                                   "request 1",
+                                   "response 1",
+                                   "handled 1",
+                                   "request 2",
+                                   "response 2",
+                                   "handled 2",
+                                   "request 3",
+                                   "response 3",
+                                   "handled 3",
+                                   "done"),
+                     results);
+    }
+
+    @Test
+    public void testSameDestinationInOrder() {
+        RequestScheduler instance = new RequestScheduler(listener);
+        AtomicInteger outstanding = new AtomicInteger();
+        List<Integer> sent = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < 5; i++) {
+            int request = i;
+            instance.submit(0x17, l -> {
+                assertEquals("requests to the same destination overlap", 1, outstanding.incrementAndGet());
+                sent.add(request);
+                sleep(20);
+                outstanding.decrementAndGet();
+                return request;
+            }, r -> {
+            });
+        }
+        instance.join();
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), sent);
+    }
+}
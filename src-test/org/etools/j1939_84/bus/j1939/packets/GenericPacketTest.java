@@ -4,6 +4,9 @@ import static org.etools.j1939_84.J1939_84.NL;
 import static org.junit.Assert.assertEquals;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.stream.Collectors;
 
 import org.etools.j1939_84.bus.Packet;
 import org.etools.j1939_84.bus.j1939.packets.model.Spn;
@@ -48,4 +51,28 @@ public class GenericPacketTest {
         assertEquals(expected, instance.toString());
     }
 
+    @Test
+    public void testGetSpnValue() {
+        byte[] data = new byte[] { 0x11, 0x22, 0x33, 0x44, 0x55, 0x66, 0x77, (byte) 0x88 };
+        GenericPacket instance = new GenericPacket(Packet.create(0, 0, 0, false, data));
+
+        assertEquals(List.of(1636.25), instance.getSpnValue(898).collect(Collectors.toList()));
+        assertEquals(List.of(-57.0), instance.getSpnValue(518).collect(Collectors.toList()));
+        assertEquals(0, instance.getSpnValue(190).count());
+        assertEquals(OptionalDouble.of(1636.25), instance.findSpnValue(898));
+        assertEquals(OptionalDouble.empty(), instance.findSpnValue(190));
+        assertEquals(898, instance.getSpn(898).orElseThrow().getId());
+        assertEquals(Optional.empty(), instance.getSpn(190));
+    }
+
+    @Test
+    public void testGetSpnValueNotAvailable() {
+        byte[] data = new byte[] { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+                (byte) 0xFF, (byte) 0xFF };
+        GenericPacket instance = new GenericPacket(Packet.create(61444, 0, data));
+
+        assertEquals(0, instance.getSpnValue(190).count());
+        assertEquals(true, instance.getSpn(190).orElseThrow().isNotAvailable());
+    }
+
 }
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2021. Equipment & Tool Institute
+ */
+package org.etools.j1939_84.bus.j1939.packets.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.etools.j1939_84.bus.Packet;
+import org.etools.j1939_84.bus.j1939.J1939DaRepository;
+import org.etools.j1939_84.bus.j1939.packets.GenericPacket;
+import org.etools.j1939_84.bus.j1939.packets.Slot;
+import org.etools.j1939_84.resources.Resources;
+import org.etools.j1939_84.utils.CollectionUtils;
+import org.junit.Test;
+
+public class SpnExtractorTest {
+
+    /**
+     * The extractor must produce the same data as the parser for every SPN of
+     * every PGN.
+     */
+    @Test
+    public void testMatchesParser() {
+        J1939DaRepository repository = J1939DaRepository.getInstance();
+        SpnDataParser parser = new SpnDataParser();
+        Random random = new Random(84);
+        int checked = 0;
+        for (PgnDefinition pgnDefinition : repository.getPgnDefinitions().values()) {
+            SpnExtractor extractor = pgnDefinition.getSpnExtractor();
+            for (int length : new int[] { 3, 8, 64 }) {
+                byte[] data = new byte[length];
+                random.nextBytes(data);
+                Packet packet = Packet.create(pgnDefinition.getId(), 0, data);
+                long[] values = extractor.extractAll(packet, new long[extractor.size()]);
+                for (int i = 0; i < extractor.size(); i++) {
+                    SpnDefinition definition = extractor.getDefinition(i);
+                    Slot slot = extractor.getSlot(i);
+                    byte[] expected = parser.parse(data, definition, slot.getLength());
+                    Spn spn = extractor.createSpn(packet, i);
+                    assertArrayEquals(definition.getSpnId() + " of " + pgnDefinition.getId(),
+                                      CollectionUtils.toIntArray(expected),
+                                      spn.getData());
+                    if (extractor.isNumeric(i)) {
+                        assertEquals(expected.length != 0, extractor.isPresent(packet, i));
+                        if (expected.length != 0) {
+                            assertEquals(slot.asValue(expected), slot.asValue(values[i]));
+                            assertEquals(slot.isNotAvailable(expected), slot.isNotAvailable(values[i]));
+                            assertEquals(slot.isError(expected), slot.isError(values[i]));
+                        }
+                    }
+                    checked++;
+                }
+            }
+        }
+        assertTrue(checked > 10000);
+    }
+
+    @Test
+    public void testIndexOf() {
+        PgnDefinition pgnDefinition = J1939DaRepository.getInstance().findPgnDefinition(61444);
+        SpnExtractor extractor = pgnDefinition.getSpnExtractor();
+        int index = extractor.indexOf(190);
+        assertEquals(190, extractor.getDefinition(index).getSpnId());
+        assertEquals(-1, extractor.indexOf(1));
+
+        Packet packet = Packet.create(61444, 0, 0, 0, 0, 0x20, 0x4E, 0, 0, 0);
+        assertTrue(extractor.isPresent(packet, index));
+        assertEquals(0x4E20, extractor.extract(packet, index));
+
+        Packet shortPacket = Packet.create(61444, 0, 0, 0, 0);
+        assertFalse(extractor.isPresent(shortPacket, index));
+    }
+
+    /**
+     * Benchmark: decode every SPN value of a bus capture of the broadcast
+     * traffic Part 1 Step 26 checks, with the per SPN lookups and copies of the
+     * parser and with the compiled layout.
+     */
+    @Test
+    public void testDecodeCaptureBenchmark() throws Exception {
+        List<Packet> packets = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(Resources.class.getResourceAsStream("j1939_840.log"),
+                                                                              StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // date time level class method packet-time packet
+                String[] fields = line.split(" +", 7);
+                if (fields.length == 7) {
+                    Packet packet = Packet.parse(fields[6]);
+                    if (packet != null) {
+                        packets.add(packet);
+                    }
+                }
+            }
+        }
+        assertTrue(packets.size() > 2000);
+
+        J1939DaRepository repository = J1939DaRepository.getInstance();
+        SpnDataParser parser = new SpnDataParser();
+        double[] sums = new double[2];
+        long[] nanos = new long[2];
+        long values = 0;
+        for (int run = 0; run < 60; run++) {
+            long start = System.nanoTime();
+            for (Packet packet : packets) {
+                PgnDefinition pgnDefinition = repository.findPgnDefinition(packet.getPgn());
+                byte[] bytes = packet.getBytes();
+                for (SpnDefinition definition : pgnDefinition.getSpnDefinitions()) {
+                    Slot slot = repository.findSLOT(definition.getSlotNumber(), definition.getSpnId());
+                    if (slot.getLength() != 0) {
+                        Double value = new Spn(definition.getSpnId(),
+                                               definition.getLabel(),
+                                               slot,
+                                               parser.parse(bytes, definition, slot.getLength())).getValue();
+                        sums[0] += value == null ? 0 : value;
+                    }
+                }
+            }
+            long middle = System.nanoTime();
+            for (Packet packet : packets) {
+                GenericPacket genericPacket = new GenericPacket(packet);
+                for (SpnDefinition definition : genericPacket.getPgnDefinition().getSpnDefinitions()) {
+                    sums[1] += genericPacket.findSpnValue(definition.getSpnId()).orElse(0.0);
+                    values++;
+                }
+            }
+            long end = System.nanoTime();
+            if (run >= 40) {
+                // the first runs warm up
+                nanos[0] += middle - start;
+                nanos[1] += end - middle;
+            }
+        }
+        assertEquals(sums[0], sums[1], Math.abs(sums[0]) * 1e-12);
+        System.err.printf("decoded %,d SPN values: parser %,.0f ns/packet layout %,.0f ns/packet%n",
+                          values / 60,
+                          nanos[0] / 20.0 / packets.size(),
+                          nanos[1] / 20.0 / packets.size());
+    }
+}
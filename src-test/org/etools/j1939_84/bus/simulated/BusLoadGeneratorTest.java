@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2021. Equipment & Tool Institute
+ */
+package org.etools.j1939_84.bus.simulated;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.etools.j1939_84.bus.EchoBus;
+import org.etools.j1939_84.bus.Packet;
+import org.etools.j1939_84.utils.Clock;
+import org.etools.j1939_84.utils.VirtualClock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link BusLoadGenerator} class
+ */
+public class BusLoadGeneratorTest {
+
+    private EchoBus bus;
+
+    private VirtualClock clock;
+
+    /** the part of the bitrate used on the bus for a second */
+    private double measure(int bitrate) throws Exception {
+        long bits = bus.read(1, TimeUnit.SECONDS).mapToLong(BusLoadGenerator::packetBits).sum();
+        return (double) bits / bitrate;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        clock = new VirtualClock();
+        Clock.set(clock);
+        bus = new EchoBus(0xF9);
+    }
+
+    @After
+    public void tearDown() {
+        bus.close();
+        Clock.set(null);
+        clock.close();
+    }
+
+    @Test
+    public void testBits() {
+        assertEquals(160, BusLoadGenerator.frameBits(8));
+        assertEquals(110, BusLoadGenerator.frameBits(3));
+        assertEquals(160, BusLoadGenerator.packetBits(Packet.create(0xF004, 0x00, 1, 2, 3, 4, 5, 6, 7, 8)));
+        // the announcement and 3 data transfers
+        assertEquals(4 * 160, BusLoadGenerator.packetBits(Packet.create(0xFEEC, 0x00, new byte[18])));
+    }
+
+    @Test
+    public void testFullBus() throws Exception {
+        try (BusLoadGenerator instance = new BusLoadGenerator(bus, 500_000, 0xF0)) {
+            instance.setLoad(1);
+            // the first tick
+            clock.sleep(BusLoadGenerator.TICK);
+            double load = measure(500_000);
+            assertEquals(1.0, load, 0.01);
+            assertEquals(1.0, instance.getMeasuredLoad(), 0.02);
+            assertTrue(instance.getFramesSent() > 3000);
+        }
+    }
+
+    @Test
+    public void testFillsTheRest() throws Exception {
+        try (BusLoadGenerator instance = new BusLoadGenerator(bus, 250_000, 0xF0);
+             Sim sim = new Sim(bus)) {
+            // 16% of the bus at 250 kbps
+            sim.schedule(4, TimeUnit.MILLISECONDS, () -> Packet.create(0xF004, 0x00, 1, 2, 3, 4, 5, 6, 7, 8));
+            instance.setLoad(0.6);
+            clock.sleep(100);
+
+            assertEquals(0.6, measure(250_000), 0.02);
+            instance.setLoad(0);
+            clock.sleep(100);
+            assertEquals(0.16, measure(250_000), 0.02);
+        }
+    }
+}
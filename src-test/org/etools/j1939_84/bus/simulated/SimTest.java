@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2021. Equipment & Tool Institute
+ */
+package org.etools.j1939_84.bus.simulated;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.etools.j1939_84.bus.j1939.J1939.GLOBAL_ADDR;
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.etools.j1939_84.bus.EchoBus;
+import org.etools.j1939_84.bus.Packet;
+import org.etools.j1939_84.bus.j1939.packets.DM30ScaledTestResultsPacket;
+import org.etools.j1939_84.bus.j1939.packets.DM7CommandTestsPacket;
+import org.etools.j1939_84.utils.Clock;
+import org.etools.j1939_84.utils.VirtualClock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link Sim} class
+ */
+public class SimTest {
+
+    private static final int TOOL = 0xF9;
+
+    private static Packet nack(int control) {
+        return Packet.create(0xE8FF, 0x17, control, 0xFF, 0xFF, 0xFF, TOOL, 0xCA, 0xFE, 0x00);
+    }
+
+    private static Packet request(int pgn, int destination) {
+        return Packet.create(0xEA00 | destination, TOOL, pgn & 0xFF, (pgn >> 8) & 0xFF, pgn >> 16);
+    }
+
+    private EchoBus bus;
+
+    private VirtualClock clock;
+
+    private Sim instance;
+
+    /** the answers to a packet */
+    private List<Packet> send(Packet packet) {
+        Stream<Packet> stream = bus.read(200, MILLISECONDS);
+        bus.send(packet);
+        return stream.filter(p -> p.getSource() != TOOL).collect(Collectors.toList());
+    }
+
+    /** the sources of the answers to a packet */
+    private List<Integer> sources(Packet packet) {
+        return send(packet).stream().map(Packet::getSource).collect(Collectors.toList());
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        clock = new VirtualClock();
+        Clock.set(clock);
+        bus = new EchoBus(TOOL);
+        instance = new Sim(bus);
+    }
+
+    @After
+    public void tearDown() {
+        instance.close();
+        bus.close();
+        Clock.set(null);
+        clock.close();
+    }
+
+    @Test
+    public void testCommand() {
+        instance.response(0xE300, 0x00, p -> Packet.create(0xE300 | p.getSource(), 0x00, 1, 2, 3));
+
+        assertEquals(List.of(0x00), sources(Packet.create(0xE300, TOOL, 0xF7)));
+        // not a command sent to another module, nor a request for the PGN
+        assertEquals(List.of(), sources(Packet.create(0xE301, TOOL, 0xF7)));
+        assertEquals(List.of(), sources(request(0xE300, 0x00)));
+    }
+
+    /**
+     * The Engine answers a DM7 sent to it and a global one with a DM30.
+     */
+    @Test
+    public void testEngineDM7() throws Exception {
+        Engine engine = new Engine(bus);
+        try {
+            for (int destination : List.of(0x00, GLOBAL_ADDR)) {
+                Packet dm7 = DM7CommandTestsPacket.create(TOOL, destination, 247, 102, 31).getPacket();
+                List<Packet> answers = send(dm7).stream()
+                                                .filter(p -> p.getPgn() == DM30ScaledTestResultsPacket.PGN)
+                                                .collect(Collectors.toList());
+                assertEquals("destination " + destination, 1, answers.size());
+                assertEquals(0x00, answers.get(0).getSource());
+            }
+        } finally {
+            engine.close();
+        }
+    }
+
+    @Test
+    public void testNullResponse() {
+        instance.request(0xD300, 0x00, () -> null);
+        instance.request(0xD300, 0x00, p -> Packet.create(0xD300 | p.getSource(), 0x00, 1, 2, 3));
+        instance.schedule(10, MILLISECONDS, () -> null);
+
+        // the next response is tried
+        assertEquals(List.of(0x00), sources(request(0xD300, 0x00)));
+    }
+
+    @Test
+    public void testOrder() {
+        // a predicate added first is offered the request first
+        instance.response(p -> p.getId(0xFFFF) == (0xEA00 | 0x17), () -> nack(1));
+        instance.request(0xFECA, 0x17, () -> Packet.create(0xFECA, 0x17, 1, 2, 3, 4, 5, 6, 7, 8));
+        instance.request(0xD300, 0x17, p -> Packet.create(0xD300 | p.getSource(), 0x17, 1, 2, 3));
+        instance.response(p -> p.getId(0xFFFF) == (0xEA00 | 0x17), () -> nack(2));
+
+        // the first NACK is destination specific, so nothing else answers
+        List<Packet> answers = send(request(0xFECA, 0x17));
+        assertEquals(1, answers.size());
+        assertEquals(1, answers.get(0).get(0));
+        answers = send(request(0xD300, 0x17));
+        assertEquals(1, answers.size());
+        assertEquals(1, answers.get(0).get(0));
+
+        // a global request is offered to all of them
+        assertEquals(List.of(0x17), sources(request(0xFECA, GLOBAL_ADDR)));
+        assertEquals(List.of(0x17), sources(request(0xD300, GLOBAL_ADDR)));
+    }
+
+    @Test
+    public void testRequest() {
+        instance.request(0xFECA, 0x00, () -> Packet.create(0xFECA, 0x00, 1, 2, 3, 4, 5, 6, 7, 8));
+        instance.request(0xFECA, 0x03, () -> Packet.create(0xFECA, 0x03, 1, 2, 3, 4, 5, 6, 7, 8));
+        instance.request(0xFEEC, GLOBAL_ADDR, () -> Packet.create(0xFEEC, 0x03, 1, 2, 3, 4, 5, 6, 7, 8));
+
+        assertEquals(List.of(0x00), sources(request(0xFECA, 0x00)));
+        assertEquals(List.of(0x00, 0x03), sources(request(0xFECA, GLOBAL_ADDR)));
+        assertEquals(List.of(), sources(request(0xFECA, 0x17)));
+        // only answered globally
+        assertEquals(List.of(0x03), sources(request(0xFEEC, GLOBAL_ADDR)));
+        assertEquals(List.of(), sources(request(0xFEEC, 0x03)));
+        // not a request
+        assertEquals(List.of(), sources(Packet.create(0xEA00, TOOL, 0xCA)));
+    }
+
+    @Test
+    public void testResponseDelay() {
+        instance.setResponseDelay(50, MILLISECONDS);
+        instance.request(0xFECA, 0x00, () -> Packet.create(0xFECA, 0x00, 1, 2, 3, 4, 5, 6, 7, 8));
+
+        Stream<Packet> early = bus.read(40, MILLISECONDS);
+        Stream<Packet> later = bus.read(60, MILLISECONDS);
+        bus.send(request(0xFECA, 0x00));
+        assertEquals(0, early.filter(p -> p.getSource() == 0x00).count());
+        assertEquals(1, later.filter(p -> p.getSource() == 0x00).count());
+    }
+
+    /**
+     * Answers the same requests with the responses found by PGN and with a
+     * predicate for each. Prints the time taken; asserts only the answers.
+     */
+    @Test
+    public void testThroughput() throws Exception {
+        final int pgns = 64;
+        final int requests = 20_000;
+        long indexed = answerAll(pgns, requests, true);
+        long predicates = answerAll(pgns, requests, false);
+        System.err.printf("Sim answered %,d requests for %d PGNs: indexed %,d ms predicates %,d ms%n",
+                          requests,
+                          pgns,
+                          indexed,
+                          predicates);
+    }
+
+    /** @return the real ms taken to answer the requests */
+    private long answerAll(int pgns, int requests, boolean indexed) throws Exception {
+        try (EchoBus bus = new EchoBus(TOOL); Sim sim = new Sim(bus)) {
+            for (int i = 0; i < pgns; i++) {
+                int pgn = 0xFF00 + i;
+                Packet response = Packet.create(pgn, 0x00, 1, 2, 3, 4, 5, 6, 7, 8);
+                if (indexed) {
+                    sim.request(pgn, 0x00, () -> response);
+                } else {
+                    sim.response(p -> p.getId(0xFFFF) == 0xEA00 && p.get24(0) == pgn, () -> response);
+                }
+            }
+
+            Stream<Packet> stream = bus.read(1, SECONDS);
+            long start = System.nanoTime();
+            for (int i = 0; i < requests; i++) {
+                bus.send(request(0xFF00 + i % pgns, 0x00));
+            }
+            long answered = stream.filter(p -> p.getSource() == 0x00).limit(requests).count();
+            long ms = NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertEquals(requests, answered);
+            return ms;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2021. Equipment & Tool Institute
+ */
+package org.etools.j1939_84.bus.simulated;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.etools.j1939_84.bus.j1939.packets.DiagnosticTroubleCode;
+import org.etools.j1939_84.bus.j1939.packets.SupportedSPN;
+import org.etools.j1939_84.bus.simulated.VehicleProfile.Broadcast;
+import org.etools.j1939_84.bus.simulated.VehicleProfile.Ecu;
+import org.etools.j1939_84.resources.Resources;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link VehicleProfile} class
+ */
+public class VehicleProfileTest {
+
+    private static void assertInvalid(String text, String message) {
+        try {
+            VehicleProfile.read(new StringReader(text));
+            fail(text);
+        } catch (IOException e) {
+            assertEquals(message, e.getMessage());
+        }
+    }
+
+    private static List<String> dtcs(List<DiagnosticTroubleCode> dtcs) {
+        return dtcs.stream()
+                   .map(d -> d.getSuspectParameterNumber() + ":" + d.getFailureModeIndicator() + ":"
+                           + d.getOccurrenceCount())
+                   .collect(Collectors.toList());
+    }
+
+    /** the sample profile */
+    static VehicleProfile readSample() throws IOException {
+        try (Reader reader = new InputStreamReader(Resources.class.getResourceAsStream("simulated-vehicle.ini"),
+                                                   StandardCharsets.UTF_8)) {
+            return VehicleProfile.read(reader);
+        }
+    }
+
+    @Test
+    public void testInvalid() {
+        assertInvalid("[Truck]\nVIN = 1", "[Truck]: unknown section");
+        assertInvalid("[Vehicle]\nBusLoad = 120", "[Vehicle] BusLoad: not a percent: 120");
+        assertInvalid("[ECU 00]\nColor = red", "[ECU 00] Color: unknown key: red");
+        assertInvalid("[ECU 00]\nBroadcast = 61444 0 FF", "[ECU 00] Broadcast: the period is not positive: 61444 0 FF");
+        assertInvalid("[ECU 00]\nBroadcast = 61444 50 FFF",
+                      "[ECU 00] Broadcast: odd number of hex digits: 61444 50 FFF");
+        assertInvalid("[ECU 00]\nSupportedSPN = 102 X", "[ECU 00] SupportedSPN: expected <spn> [T][D][F] [<length>]: 102 X");
+        assertInvalid("[ECU 00]\nActive.3 = 102", "[ECU 00] Active.3: expected <spn>:<fmi>[:<oc>]: 102");
+        assertInvalid("[ECU 00]\nCalibration = ABC", "[ECU 00] Calibration: expected <id> <cvn>: ABC");
+    }
+
+    @Test
+    public void testRead() throws Exception {
+        VehicleProfile instance = readSample();
+        assertEquals(250000, instance.getBitrate());
+        assertEquals(0, instance.getBusLoad());
+        assertEquals(0xF0, instance.getLoadSource());
+        assertEquals(10, instance.getResponseDelay());
+
+        List<Ecu> ecus = instance.getEcus();
+        assertEquals(List.of(0x00, 0x03, 0x3D), ecus.stream().map(Ecu::getAddress).collect(Collectors.toList()));
+
+        Ecu engine = ecus.get(0);
+        assertEquals("Engine #1", engine.getName());
+        assertEquals("3HAMKSTN0FL575012", engine.getVin());
+        assertTrue(engine.isObd());
+        byte[] calibration = engine.getCalibrations().get(0).getBytes();
+        assertArrayEquals(new byte[] { (byte) 0x96, (byte) 0xBF, (byte) 0xDC, 0x40 }, Arrays.copyOf(calibration, 4));
+        assertEquals("PBT5MPR3        ", new String(calibration, 4, 16, StandardCharsets.UTF_8));
+        assertEquals(0x40DCBF96L, engine.getCalibrations().get(0).getCvn());
+
+        SupportedSPN spn = engine.getSupportedSpns().get(4);
+        assertEquals(102, spn.getSpn());
+        assertTrue(spn.supportsScaledTestResults());
+        assertTrue(spn.supportsDataStream());
+        assertFalse(spn.supportsExpandedFreezeFrame());
+        assertEquals(2, engine.getSupportedSpns().get(7).getLength());
+
+        Broadcast eec1 = engine.getBroadcasts().get(0);
+        assertEquals(61444, eec1.getPgn());
+        assertEquals(50, eec1.getPeriod());
+        assertArrayEquals(new byte[] { -1, 0, 0, (byte) 0xC0, 0x2B, -1, -1, -1 }, eec1.getData());
+        assertEquals(39, engine.getResponses().get(0).getData().length);
+
+        assertNull(ecus.get(1).getVin());
+        assertEquals(2, ecus.get(2).getCalibrations().size());
+        assertEquals(12, ecus.get(2).getBroadcasts().get(2).getData().length);
+    }
+
+    @Test
+    public void testFaultsByPart() throws Exception {
+        Ecu engine = readSample().getEcus().get(0);
+        assertTrue(engine.getFaults(1).getPending().isEmpty());
+        assertTrue(engine.getFaults(2).getActive().isEmpty());
+
+        assertEquals(List.of("102:18:1"), dtcs(engine.getFaults(3).getPending()));
+        assertTrue(engine.getFaults(3).getActive().isEmpty());
+
+        // part 7 is as part 4
+        assertEquals(List.of("102:18:1"), dtcs(engine.getFaults(7).getActive()));
+        assertEquals(List.of("102:18:1"), dtcs(engine.getFaults(7).getPermanent()));
+        assertTrue(engine.getFaults(7).getPending().isEmpty());
+
+        assertEquals(List.of("102:18:2"), dtcs(engine.getFaults(12).getPrevious()));
+        assertTrue(engine.getFaults(12).getActive().isEmpty());
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2021. Equipment & Tool Institute
+ */
+package org.etools.j1939_84.bus.simulated;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.etools.j1939_84.bus.j1939.J1939.GLOBAL_ADDR;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.etools.j1939_84.bus.Bus;
+import org.etools.j1939_84.bus.BusException;
+import org.etools.j1939_84.bus.EchoBus;
+import org.etools.j1939_84.bus.Packet;
+import org.etools.j1939_84.bus.j1939.J1939TP;
+import org.etools.j1939_84.bus.j1939.packets.AcknowledgmentPacket;
+import org.etools.j1939_84.bus.j1939.packets.DM11ClearActiveDTCsPacket;
+import org.etools.j1939_84.bus.j1939.packets.DM12MILOnEmissionDTCPacket;
+import org.etools.j1939_84.bus.j1939.packets.DM19CalibrationInformationPacket;
+import org.etools.j1939_84.bus.j1939.packets.DM1ActiveDTCsPacket;
+import org.etools.j1939_84.bus.j1939.packets.DM24SPNSupportPacket;
+import org.etools.j1939_84.bus.j1939.packets.DM6PendingEmissionDTCPacket;
+import org.etools.j1939_84.bus.j1939.packets.EngineSpeedPacket;
+import org.etools.j1939_84.bus.j1939.packets.LampStatus;
+import org.etools.j1939_84.bus.j1939.packets.VehicleIdentificationPacket;
+import org.etools.j1939_84.model.KeyState;
+import org.etools.j1939_84.utils.Clock;
+import org.etools.j1939_84.utils.VirtualClock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link VehicleSimulator} class
+ */
+public class VehicleSimulatorTest {
+
+    private static final int TOOL = 0xF9;
+
+    private static Packet request(int pgn, int destination) {
+        return Packet.create(0xEA00 | destination, TOOL, pgn & 0xFF, (pgn >> 8) & 0xFF, pgn >> 16);
+    }
+
+    private EchoBus bus;
+
+    private VirtualClock clock;
+
+    private VehicleSimulator instance;
+
+    /** the answers to a request, on the bus the request is sent to */
+    private List<Packet> request(Bus bus, int pgn, int destination) throws BusException {
+        Stream<Packet> stream = bus.read(500, MILLISECONDS);
+        bus.send(request(pgn, destination));
+        return stream.filter(p -> p.getSource() != TOOL)
+                     .filter(p -> p.getPgn() == pgn || p.getPgn() == 0xE800)
+                     .collect(Collectors.toList());
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        clock = new VirtualClock();
+        Clock.set(clock);
+        bus = new EchoBus(TOOL);
+    }
+
+    @After
+    public void tearDown() {
+        if (instance != null) {
+            instance.close();
+        }
+        bus.close();
+        Clock.set(null);
+        clock.close();
+    }
+
+    @Test
+    public void testBroadcasts() throws Exception {
+        instance = new VehicleSimulator(bus, VehicleProfileTest.readSample());
+        Map<String, Long> counts = bus.read(1500, MILLISECONDS)
+                                      .collect(Collectors.groupingBy(p -> p.getPgn() + "/" + p.getSource(),
+                                                                     Collectors.counting()));
+        assertEquals(30, counts.get(EngineSpeedPacket.PGN + "/0"), 1);
+        assertEquals(150, counts.get("61442/3"), 1);
+        assertEquals(1, counts.get("64775/61").longValue());
+        assertEquals(1, counts.get(DM1ActiveDTCsPacket.PGN + "/61").longValue());
+
+        // the engine is off
+        request(bus, 0x1FFFE, GLOBAL_ADDR);
+        assertEquals(KeyState.KEY_ON_ENGINE_OFF, instance.getKeyState());
+        Packet eec1 = bus.read(100, MILLISECONDS).filter(p -> p.getPgn() == EngineSpeedPacket.PGN).findFirst().get();
+        assertEquals(0, new EngineSpeedPacket(eec1).getEngineSpeed(), 0.0);
+
+        // the bus is quiet with the key off
+        request(bus, 0x1FFFC, GLOBAL_ADDR);
+        assertEquals(0, bus.read(2, SECONDS).filter(p -> p.getSource() != TOOL).count());
+    }
+
+    @Test
+    public void testFaultsByPart() throws Exception {
+        instance = new VehicleSimulator(bus, VehicleProfileTest.readSample());
+        Packet noDm6 = request(bus, DM6PendingEmissionDTCPacket.PGN, 0x00).get(0);
+        assertEquals(0, new DM6PendingEmissionDTCPacket(noDm6).getDtcs().size());
+
+        // fault A is implanted
+        request(bus, 0x1FFFA, GLOBAL_ADDR);
+        assertEquals(VehicleSimulator.FAULT_A_PART, instance.getPart());
+        DM6PendingEmissionDTCPacket dm6 = new DM6PendingEmissionDTCPacket(request(bus,
+                                                                                  DM6PendingEmissionDTCPacket.PGN,
+                                                                                  0x00).get(0));
+        assertEquals(102, dm6.getDtcs().get(0).getSuspectParameterNumber());
+
+        instance.setPart(4);
+        DM12MILOnEmissionDTCPacket dm12 = new DM12MILOnEmissionDTCPacket(request(bus,
+                                                                                 DM12MILOnEmissionDTCPacket.PGN,
+                                                                                 GLOBAL_ADDR).get(0));
+        assertEquals(LampStatus.ON, dm12.getMalfunctionIndicatorLampStatus());
+        assertEquals(1, dm12.getDtcs().size());
+
+        // a global clear is not acknowledged
+        assertEquals(List.of(), request(bus, DM11ClearActiveDTCsPacket.PGN, GLOBAL_ADDR));
+        dm12 = new DM12MILOnEmissionDTCPacket(request(bus, DM12MILOnEmissionDTCPacket.PGN, 0x00).get(0));
+        assertEquals(LampStatus.OFF, dm12.getMalfunctionIndicatorLampStatus());
+        assertEquals(0, dm12.getDtcs().size());
+
+        Packet ack = request(bus, DM11ClearActiveDTCsPacket.PGN, 0x3D).get(0);
+        assertEquals(AcknowledgmentPacket.Response.ACK, new AcknowledgmentPacket(ack).getResponse());
+    }
+
+    @Test
+    public void testRequests() throws Exception {
+        instance = new VehicleSimulator(bus, VehicleProfileTest.readSample());
+
+        List<Packet> vins = request(bus, VehicleIdentificationPacket.PGN, GLOBAL_ADDR);
+        assertEquals(1, vins.size());
+        assertEquals("3HAMKSTN0FL575012", new VehicleIdentificationPacket(vins.get(0)).getVin());
+
+        List<Packet> dm19s = request(bus, DM19CalibrationInformationPacket.PGN, GLOBAL_ADDR);
+        assertEquals(List.of(0x00, 0x03, 0x3D),
+                     dm19s.stream().map(Packet::getSource).sorted().collect(Collectors.toList()));
+        Packet acm = dm19s.stream().filter(p -> p.getSource() == 0x3D).findFirst().get();
+        assertEquals(2, new DM19CalibrationInformationPacket(acm).getCalibrationInformation().size());
+
+        List<Packet> dm24 = request(bus, DM24SPNSupportPacket.PGN, 0x3D);
+        assertEquals(3, new DM24SPNSupportPacket(dm24.get(0)).getSupportedSpns().size());
+
+        // longer than a frame, sent as one on the loop back bus
+        assertEquals(39, request(bus, 65259, 0x00).get(0).getLength());
+
+        // not supported by the transmission
+        Packet nack = request(bus, 65259, 0x03).get(0);
+        assertEquals(AcknowledgmentPacket.Response.NACK, new AcknowledgmentPacket(nack).getResponse());
+        assertEquals(0x03, nack.getSource());
+        assertEquals(List.of(), request(bus, 65259, 0x17));
+    }
+
+    @Test
+    public void testSegmented() throws Exception {
+        instance = new VehicleSimulator(bus, VehicleProfileTest.readSample(), true);
+        try (J1939TP tool = new J1939TP(bus, TOOL)) {
+            Stream<Packet> raw = bus.read(1500, MILLISECONDS);
+            List<Packet> ids = request(tool, 65259, 0x00);
+            assertEquals(1, ids.size());
+            assertEquals("INT*570261221315646M13*570HM2U3545277**",
+                         new String(ids.get(0).getBytes(), StandardCharsets.UTF_8));
+
+            Packet bam = tool.read(1, SECONDS).filter(p -> p.getPgn() == 64775).findFirst().get();
+            assertEquals(12, bam.getLength());
+
+            // every frame on the bus fits in one
+            assertTrue(raw.allMatch(p -> p.getLength() <= 8));
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2021. Equipment & Tool Institute
+ */
+package org.etools.j1939_84.controllers;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import org.etools.j1939_84.modules.DateTimeModule;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link TestSession} class
+ */
+public class TestSessionTest {
+
+    /** does not run anything */
+    private static final Executor EXECUTOR = r -> {
+    };
+
+    @Test
+    public void testEnter() throws Exception {
+        TestSession first = new TestSession();
+        TestSession second = new TestSession();
+        assertSame(TestSession.getDefault(), TestSession.current());
+
+        TestSession.Scope scope = first.enter();
+        try {
+            assertSame(first, TestSession.current());
+            assertSame(first.getDataRepository(), DataRepository.getInstance());
+            assertSame(first.getPartResultRepository(), PartResultRepository.getInstance());
+            assertSame(first.getDateTimeModule(), DateTimeModule.getInstance());
+
+            second.run(() -> assertSame(second.getDataRepository(), DataRepository.getInstance()));
+            assertSame(first, TestSession.current());
+
+            // a thread started in a session is in it
+            CompletableFuture<TestSession> started = new CompletableFuture<>();
+            Thread thread = new Thread(() -> started.complete(TestSession.current()));
+            thread.start();
+            assertSame(first, started.get());
+        } finally {
+            scope.close();
+        }
+        assertSame(TestSession.getDefault(), TestSession.current());
+
+        assertNotSame(first.getDataRepository(), second.getDataRepository());
+        assertNotSame(first.getDataRepository(), DataRepository.getInstance());
+        assertNotSame(first.getDateTimeModule(), second.getDateTimeModule());
+        assertNotSame(first.getPartResultRepository(), second.getPartResultRepository());
+    }
+
+    @Test
+    public void testStopOneSession() throws Exception {
+        TestSession first = new TestSession();
+        TestSession second = new TestSession();
+        OverallController firstController = OverallController.create(first, EXECUTOR);
+        OverallController secondController = OverallController.create(second, EXECUTOR);
+        assertSame(first, firstController.getSession());
+
+        firstController.stop();
+        assertFalse(firstController.isActive());
+        assertTrue(secondController.isActive());
+
+        TestSession.Scope scope = second.enter();
+        try {
+            Controller.checkEnding();
+        } finally {
+            scope.close();
+        }
+        scope = first.enter();
+        try {
+            Controller.checkEnding();
+            fail("first session was stopped");
+        } catch (InterruptedException e) {
+            // expected
+        } finally {
+            scope.close();
+        }
+    }
+}
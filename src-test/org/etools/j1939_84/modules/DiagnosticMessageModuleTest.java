@@ -22,6 +22,7 @@ import java.util.stream.Stream;
 
 import org.etools.j1939_84.bus.BusException;
 import org.etools.j1939_84.bus.Packet;
+import org.etools.j1939_84.bus.PacketFilter;
 import org.etools.j1939_84.bus.j1939.BusResult;
 import org.etools.j1939_84.bus.j1939.J1939;
 import org.etools.j1939_84.bus.j1939.packets.AcknowledgmentPacket;
@@ -238,7 +239,7 @@ public class DiagnosticMessageModuleTest {
                                                                               0xFE,
                                                                               0x00));
 
-        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(anyLong(), any());
+        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         String expected = "" + NL;
         expected += "10:15:30.0000 Global DM11 Request" + NL;
@@ -252,7 +253,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals(expected, listener.getResults());
 
         verify(j1939).createRequestPacket(pgn, GLOBAL_ADDR);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -276,7 +277,7 @@ public class DiagnosticMessageModuleTest {
                                                                               0xFE,
                                                                               0x00));
 
-        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(anyLong(), any());
+        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         String expected = "" + NL;
         expected += "10:15:30.0000 Destination Specific DM11 Request to Engine #1 (0)" + NL;
@@ -290,7 +291,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals(expected, listener.getResults());
 
         verify(j1939).createRequestPacket(pgn, 0);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -312,7 +313,7 @@ public class DiagnosticMessageModuleTest {
                                                                                           0x00,
                                                                                           0x00,
                                                                                           0x00));
-        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(anyLong(), any());
+        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         String expected = "" + NL;
         expected += "10:15:30.0000 Destination Specific DM12 Request to Engine #1 (0)" + NL;
@@ -327,7 +328,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals(expected, listener.getResults());
 
         verify(j1939).createRequestPacket(pgn, 0x00);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -354,7 +355,7 @@ public class DiagnosticMessageModuleTest {
                                                                                           0x10,
                                                                                           0x04,
                                                                                           0x00));
-        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(anyLong(), any());
+        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         String expected = "" + NL;
         expected += "10:15:30.0000 Destination Specific DM12 Request to Engine #1 (0)" + NL;
@@ -373,7 +374,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals(expected, listener.getResults());
 
         verify(j1939).createRequestPacket(pgn, 0x00);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -383,7 +384,7 @@ public class DiagnosticMessageModuleTest {
         Packet requestPacket = Packet.create(REQUEST_PGN | 0x17, BUS_ADDR, true, pgn, pgn >> 8, pgn >> 16);
         doReturn(requestPacket).when(j1939).createRequestPacket(pgn, 0x17);
 
-        doReturn(Stream.empty(), Stream.empty(), Stream.empty()).when(j1939).read(anyLong(), any());
+        doReturn(Stream.empty(), Stream.empty(), Stream.empty()).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         String expected = "" + NL;
         expected += "10:15:30.0000 Destination Specific DM12 Request to Instrument Cluster #1 (23)" + NL;
@@ -396,7 +397,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals(expected, listener.getResults());
 
         verify(j1939).createRequestPacket(pgn, 0x17);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -439,7 +440,8 @@ public class DiagnosticMessageModuleTest {
                                                                                           0x00));
         TestResultsListener listener = new TestResultsListener();
         doReturn(Stream.of(packet1.getPacket(), packet2.getPacket(), packet3.getPacket())).when(j1939)
-                                                                                          .read(anyLong(),
+                                                                                          .read(any(PacketFilter.class),
+                                                                                                anyLong(),
                                                                                                 any());
 
         String expected = "" + NL;
@@ -460,7 +462,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals(expected, listener.getResults());
 
         verify(j1939).createRequestPacket(pgn, GLOBAL_ADDR);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -487,7 +489,7 @@ public class DiagnosticMessageModuleTest {
                                                                                           0x04,
                                                                                           0x00));
         TestResultsListener listener = new TestResultsListener();
-        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(anyLong(), any());
+        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         String expected = "" + NL;
         expected += "10:15:30.0000 Global DM12 Request" + NL;
@@ -507,7 +509,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals(expected, listener.getResults());
 
         verify(j1939).createRequestPacket(pgn, GLOBAL_ADDR);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -515,7 +517,7 @@ public class DiagnosticMessageModuleTest {
         final int pgn = DM12MILOnEmissionDTCPacket.PGN;
 
         TestResultsListener listener = new TestResultsListener();
-        doReturn(Stream.empty(), Stream.empty(), Stream.empty()).when(j1939).read(anyLong(), any());
+        doReturn(Stream.empty(), Stream.empty(), Stream.empty()).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         String expected = "" + NL;
         expected += "10:15:30.0000 Global DM12 Request" + NL;
@@ -526,7 +528,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals(expected, listener.getResults());
 
         verify(j1939).createRequestPacket(pgn, GLOBAL_ADDR);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -535,7 +537,7 @@ public class DiagnosticMessageModuleTest {
         Packet requestPacket = Packet.create(REQUEST_PGN, BUS_ADDR, true, pgn, pgn >> 8, pgn >> 16);
         doReturn(requestPacket).when(j1939).createRequestPacket(pgn, 0x00);
 
-        doReturn(Stream.empty()).when(j1939).read(anyLong(), any());
+        doReturn(Stream.empty()).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         String expected = NL;
         expected += "10:15:30.0000 Destination Specific DM21 Request to Engine #1 (0)" + NL;
@@ -550,7 +552,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals("", listener.getMessages());
 
         verify(j1939).createRequestPacket(pgn, 0x00);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -562,7 +564,7 @@ public class DiagnosticMessageModuleTest {
         Packet packet = Packet.create(pgn | BUS_ADDR, 0, 0x10, 0x27, 0x20, 0x4E, 0x30, 0x75, 0x40, 0x9C);
         DM21DiagnosticReadinessPacket packet1 = new DM21DiagnosticReadinessPacket(packet);
 
-        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(anyLong(), any());
+        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         TestResultsListener listener = new TestResultsListener();
         BusResult<DM21DiagnosticReadinessPacket> result = new BusResult<>(false, packet1);
@@ -582,7 +584,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals("", listener.getMessages());
 
         verify(j1939).createRequestPacket(pgn, 0x00);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -592,7 +594,7 @@ public class DiagnosticMessageModuleTest {
         Packet packet = Packet.create(pgn | BUS_ADDR, 0, 0x10, 0x27, 0x20, 0x4E, 0x30, 0x75, 0x40, 0x9C);
         DM21DiagnosticReadinessPacket packet1 = new DM21DiagnosticReadinessPacket(packet);
 
-        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(anyLong(), any());
+        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         TestResultsListener listener = new TestResultsListener();
         RequestResult<DM21DiagnosticReadinessPacket> result = new RequestResult<>(false,
@@ -614,7 +616,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals("", listener.getMessages());
 
         verify(j1939).createRequestPacket(pgn, GLOBAL_ADDR);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -626,7 +628,7 @@ public class DiagnosticMessageModuleTest {
         Packet packet = Packet.create(pgn | BUS_ADDR, 0, 0x10, 0x27, 0x20, 0x4E, 0x30, 0x75, 0x40, 0x9C);
         DM21DiagnosticReadinessPacket packet1 = new DM21DiagnosticReadinessPacket(packet);
 
-        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(anyLong(), any());
+        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         TestResultsListener listener = new TestResultsListener();
         RequestResult<DM21DiagnosticReadinessPacket> result = new RequestResult<>(false,
@@ -648,7 +650,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals("", listener.getMessages());
 
         verify(j1939).createRequestPacket(pgn, GLOBAL_ADDR);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -669,7 +671,7 @@ public class DiagnosticMessageModuleTest {
                                                                                                               0x00,
                                                                                                               0x00,
                                                                                                               0x00));
-        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(anyLong(), any());
+        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         String expected = "" + NL;
         expected += "10:15:30.0000 Destination Specific DM23 Request to Body Controller (33)" + NL;
@@ -684,7 +686,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals(expected, listener.getResults());
 
         verify(j1939).createRequestPacket(pgn, 0x21);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -710,7 +712,7 @@ public class DiagnosticMessageModuleTest {
                                                                                                               0x10,
                                                                                                               0x04,
                                                                                                               0x00));
-        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(anyLong(), any());
+        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         String expected = "" + NL;
         expected += "10:15:30.0000 Destination Specific DM23 Request to Engine #1 (0)" + NL;
@@ -728,7 +730,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals(expected, listener.getResults());
 
         verify(j1939).createRequestPacket(pgn, 0x00);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -737,7 +739,7 @@ public class DiagnosticMessageModuleTest {
 
         Packet requestPacket = Packet.create(REQUEST_PGN | 0x17, BUS_ADDR, true, pgn, pgn >> 8, pgn >> 16);
         doReturn(requestPacket).when(j1939).createRequestPacket(pgn, 0x17);
-        doReturn(Stream.empty()).when(j1939).read(anyLong(), any());
+        doReturn(Stream.empty()).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         String expected = "" + NL;
         expected += "10:15:30.0000 Destination Specific DM23 Request to Instrument Cluster #1 (23)" + NL;
@@ -750,7 +752,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals(expected, listener.getResults());
 
         verify(j1939).createRequestPacket(pgn, 0x17);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -794,7 +796,8 @@ public class DiagnosticMessageModuleTest {
                                                                                                               0x00,
                                                                                                               0x00));
         doReturn(Stream.of(packet1.getPacket(), packet2.getPacket(), packet3.getPacket())).when(j1939)
-                                                                                          .read(anyLong(),
+                                                                                          .read(any(PacketFilter.class),
+                                                                                                anyLong(),
                                                                                                 any());
 
         String expected = "" + NL;
@@ -817,7 +820,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals(expected, listener.getResults());
 
         verify(j1939).createRequestPacket(pgn, GLOBAL_ADDR);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -840,7 +843,7 @@ public class DiagnosticMessageModuleTest {
                                                                                                               0x10,
                                                                                                               0x04,
                                                                                                               0x00));
-        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(anyLong(), any());
+        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         String expected = "" + NL;
         expected += "10:15:30.0000 Global DM23 Request" + NL;
@@ -860,7 +863,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals(expected, listener.getResults());
 
         verify(j1939).createRequestPacket(pgn, GLOBAL_ADDR);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -870,7 +873,7 @@ public class DiagnosticMessageModuleTest {
         Packet requestPacket = Packet.create(REQUEST_PGN | GLOBAL_ADDR, BUS_ADDR, true, pgn, pgn >> 8, pgn >> 16);
         doReturn(requestPacket).when(j1939).createRequestPacket(pgn, GLOBAL_ADDR);
 
-        doReturn(Stream.empty(), Stream.empty(), Stream.empty()).when(j1939).read(anyLong(), any());
+        doReturn(Stream.empty(), Stream.empty(), Stream.empty()).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         String expected = "" + NL;
         expected += "10:15:30.0000 Global DM23 Request" + NL;
@@ -883,7 +886,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals("", listener.getMessages());
 
         verify(j1939).createRequestPacket(pgn, GLOBAL_ADDR);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -904,7 +907,7 @@ public class DiagnosticMessageModuleTest {
                                                                               0xFD,
                                                                               0x00));
 
-        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(anyLong(), any());
+        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         String expected = NL;
         expected += "10:15:30.0000 Destination Specific DM25 Request to Engine #1 (0)" + NL;
@@ -920,7 +923,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals("", listener.getMessages());
 
         verify(j1939).createRequestPacket(pgn, 0x00);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -929,7 +932,7 @@ public class DiagnosticMessageModuleTest {
         Packet requestPacket = Packet.create(REQUEST_PGN, BUS_ADDR, true, pgn, pgn >> 8, pgn >> 16);
         doReturn(requestPacket).when(j1939).createRequestPacket(pgn, 0x00);
 
-        doReturn(Stream.empty(), Stream.empty(), Stream.empty()).when(j1939).read(anyLong(), any());
+        doReturn(Stream.empty(), Stream.empty(), Stream.empty()).when(j1939).read(any(PacketFilter.class), anyLong(), any());
         String expected = NL;
         expected += "10:15:30.0000 Destination Specific DM25 Request to Engine #1 (0)" + NL;
         expected += "10:15:30.0000 18EA00A5 [3] B7 FD 00 (TX)" + NL;
@@ -942,7 +945,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals("", listener.getMessages());
 
         verify(j1939).createRequestPacket(pgn, 0x00);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -965,7 +968,7 @@ public class DiagnosticMessageModuleTest {
                 0xD0, 0x07, 0x00, 0x7D, 0x04, 0xFF, 0xFA };
 
         DM25ExpandedFreezeFrame packet = new DM25ExpandedFreezeFrame(Packet.create(pgn, 0x00, realData));
-        doReturn(Stream.of(packet.getPacket())).when(j1939).read(anyLong(), any());
+        doReturn(Stream.of(packet.getPacket())).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         String expected = NL;
         expected += "10:15:30.0000 Destination Specific DM25 Request to Engine #1 (0)" + NL;
@@ -990,7 +993,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals("", listener.getMessages());
 
         verify(j1939).createRequestPacket(pgn, 0x00);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -1011,7 +1014,7 @@ public class DiagnosticMessageModuleTest {
                                                                                                         0,
                                                                                                         0,
                                                                                                         0));
-        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(anyLong(), any());
+        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         String expected = "" + NL;
         expected += "10:15:30.0000 Destination Specific DM26 Request to Body Controller (33)" + NL;
@@ -1027,7 +1030,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals(expected, listener.getResults());
 
         verify(j1939).createRequestPacket(pgn, 0x21);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -1054,7 +1057,7 @@ public class DiagnosticMessageModuleTest {
                                                                                                         0x04,
                                                                                                         0x00));
 
-        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(anyLong(), any());
+        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         String expected = "" + NL;
         expected += "10:15:30.0000 Destination Specific DM26 Request to Engine #1 (0)" + NL;
@@ -1072,7 +1075,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals("", listener.getMessages());
 
         verify(j1939).createRequestPacket(pgn, 0x00);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -1082,7 +1085,7 @@ public class DiagnosticMessageModuleTest {
         Packet requestPacket = Packet.create(REQUEST_PGN | 0x17, BUS_ADDR, true, pgn, pgn >> 8, pgn >> 16);
         doReturn(requestPacket).when(j1939).createRequestPacket(pgn, 0x17);
 
-        doReturn(Stream.empty(), Stream.empty(), Stream.empty(), Stream.empty()).when(j1939).read(anyLong(), any());
+        doReturn(Stream.empty(), Stream.empty(), Stream.empty(), Stream.empty()).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         String expected = "" + NL;
         expected += "10:15:30.0000 Destination Specific DM26 Request to Instrument Cluster #1 (23)" + NL;
@@ -1098,7 +1101,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals("", listener.getMessages());
 
         verify(j1939).createRequestPacket(pgn, 0x17);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -1142,7 +1145,8 @@ public class DiagnosticMessageModuleTest {
                                                                                                         0,
                                                                                                         0));
         doReturn(Stream.of(packet1.getPacket(), packet2.getPacket(), packet3.getPacket())).when(j1939)
-                                                                                          .read(anyLong(),
+                                                                                          .read(any(PacketFilter.class),
+                                                                                                anyLong(),
                                                                                                 any());
 
         String expected = "" + NL;
@@ -1167,7 +1171,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals("", listener.getMessages());
 
         verify(j1939).createRequestPacket(pgn, GLOBAL_ADDR);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -1190,7 +1194,8 @@ public class DiagnosticMessageModuleTest {
 
         doReturn(Stream.of(packet1.getPacket()), Stream.of(packet1.getPacket()), Stream.of(packet1.getPacket())).when(
                                                                                                                       j1939)
-                                                                                                                .read(anyLong(),
+                                                                                                                .read(any(PacketFilter.class),
+                                                                                                                      anyLong(),
                                                                                                                       any());
 
         String expected = "" + NL;
@@ -1206,7 +1211,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals("", listener.getMessages());
 
         verify(j1939).createRequestPacket(pgn, GLOBAL_ADDR);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -1215,7 +1220,7 @@ public class DiagnosticMessageModuleTest {
 
         Packet requestPacket = Packet.create(REQUEST_PGN | GLOBAL_ADDR, BUS_ADDR, true, pgn, pgn >> 8, pgn >> 16);
         doReturn(requestPacket).when(j1939).createRequestPacket(pgn, 0xFF);
-        doReturn(Stream.empty(), Stream.empty(), Stream.empty()).when(j1939).read(anyLong(), any());
+        doReturn(Stream.empty(), Stream.empty(), Stream.empty()).when(j1939).read(any(PacketFilter.class), anyLong(), any());
         String expected = "" + NL;
         expected += "10:15:30.0000 Global DM26 Request" + NL;
         expected += "10:15:30.0000 18EAFFA5 [3] B8 FD 00 (TX)" + NL;
@@ -1227,7 +1232,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals("", listener.getMessages());
 
         verify(j1939).createRequestPacket(pgn, 0xFF);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -1248,7 +1253,7 @@ public class DiagnosticMessageModuleTest {
                                                                                       0x00,
                                                                                       0x00,
                                                                                       0x00));
-        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(anyLong(), any());
+        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         String expected = "" + NL;
         expected += "10:15:30.0000 Destination Specific DM27 Request to Engine #1 (0)" + NL;
@@ -1264,7 +1269,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals("", listener.getMessages());
 
         verify(j1939).createRequestPacket(pgn, 0x00);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -1290,7 +1295,7 @@ public class DiagnosticMessageModuleTest {
                                                                                       0x10,
                                                                                       0x04,
                                                                                       0x00));
-        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(anyLong(), any());
+        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         String expected = "" + NL;
         expected += "10:15:30.0000 Destination Specific DM27 Request to Engine #1 (0)" + NL;
@@ -1310,7 +1315,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals("", listener.getMessages());
 
         verify(j1939).createRequestPacket(pgn, 0x00);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -1320,7 +1325,7 @@ public class DiagnosticMessageModuleTest {
         Packet requestPacket = Packet.create(REQUEST_PGN | 0x17, BUS_ADDR, true, pgn, pgn >> 8, pgn >> 16);
         doReturn(requestPacket).when(j1939).createRequestPacket(pgn, 0x17);
 
-        doReturn(Stream.empty()).when(j1939).read(anyLong(), any());
+        doReturn(Stream.empty()).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         String expected = "" + NL;
         expected += "10:15:30.0000 Destination Specific DM27 Request to Instrument Cluster #1 (23)" + NL;
@@ -1334,7 +1339,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals("", listener.getMessages());
 
         verify(j1939).createRequestPacket(pgn, 0x17);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -1375,7 +1380,8 @@ public class DiagnosticMessageModuleTest {
                                                                                       0x00,
                                                                                       0x00));
         doReturn(Stream.of(packet1.getPacket(), packet2.getPacket(), packet3.getPacket())).when(j1939)
-                                                                                          .read(anyLong(),
+                                                                                          .read(any(PacketFilter.class),
+                                                                                                anyLong(),
                                                                                                 any());
 
         String expected = "" + NL;
@@ -1403,7 +1409,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals(expected, listener.getResults());
 
         verify(j1939).createRequestPacket(pgn, GLOBAL_ADDR);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -1429,7 +1435,7 @@ public class DiagnosticMessageModuleTest {
                                                                                       0x10,
                                                                                       0x04,
                                                                                       0x00));
-        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(anyLong(), any());
+        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         String expected = "" + NL;
         expected += "10:15:30.0000 Global DM27 Request" + NL;
@@ -1450,7 +1456,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals(expected, listener.getResults());
 
         verify(j1939).createRequestPacket(pgn, GLOBAL_ADDR);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -1460,7 +1466,7 @@ public class DiagnosticMessageModuleTest {
         Packet requestPacket = Packet.create(REQUEST_PGN | GLOBAL_ADDR, BUS_ADDR, true, pgn, pgn >> 8, pgn >> 16);
         doReturn(requestPacket).when(j1939).createRequestPacket(pgn, GLOBAL_ADDR);
 
-        doReturn(Stream.empty(), Stream.empty(), Stream.empty()).when(j1939).read(anyLong(), any());
+        doReturn(Stream.empty(), Stream.empty(), Stream.empty()).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         String expected = "" + NL;
         expected += "10:15:30.0000 Global DM27 Request" + NL;
@@ -1472,7 +1478,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals(expected, listener.getResults());
 
         verify(j1939).createRequestPacket(pgn, GLOBAL_ADDR);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -1499,7 +1505,7 @@ public class DiagnosticMessageModuleTest {
                                                                                                   0x04,
                                                                                                   0x00));
 
-        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(anyLong(), any());
+        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         String expected = "" + NL;
         expected += "10:15:30.0000 Global DM28 Request" + NL;
@@ -1520,7 +1526,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals("", listener.getMessages());
 
         verify(j1939).createRequestPacket(pgn, GLOBAL_ADDR);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -1535,7 +1541,7 @@ public class DiagnosticMessageModuleTest {
         expected += "10:15:30.0000 Timeout - No Response"
                 + NL;
 
-        doReturn(Stream.empty(), Stream.empty(), Stream.empty()).when(j1939).read(anyLong(), any());
+        doReturn(Stream.empty(), Stream.empty(), Stream.empty()).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         TestResultsListener listener = new TestResultsListener();
         assertEquals(BusResult.empty(), instance.requestDM29(listener, 0x00));
@@ -1543,7 +1549,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals("", listener.getMessages());
 
         verify(j1939).createRequestPacket(pgn, 0x00);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -1574,7 +1580,7 @@ public class DiagnosticMessageModuleTest {
                                                                 0xFF,
                                                                 0xFF,
                                                                 0xFF));
-        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(anyLong(), any());
+        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         TestResultsListener listener = new TestResultsListener();
         BusResult<DM29DtcCounts> expectedResult = new BusResult<>(false, packet1);
@@ -1583,7 +1589,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals("", listener.getMessages());
 
         verify(j1939).createRequestPacket(pgn, 0x00);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -1595,7 +1601,7 @@ public class DiagnosticMessageModuleTest {
         expected += "10:15:30.0000 18EAFFA5 [3] 00 9E 00 (TX)" + NL;
         expected += "10:15:30.0000 Timeout - No Response" + NL;
 
-        doReturn(Stream.empty(), Stream.empty(), Stream.empty()).when(j1939).read(anyLong(), any());
+        doReturn(Stream.empty(), Stream.empty(), Stream.empty()).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         TestResultsListener listener = new TestResultsListener();
         assertEquals(RequestResult.empty(false), instance.requestDM29(listener));
@@ -1603,7 +1609,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals("", listener.getMessages());
 
         verify(j1939).createRequestPacket(pgn, GLOBAL_ADDR);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -1632,7 +1638,7 @@ public class DiagnosticMessageModuleTest {
                                                                 0xFF,
                                                                 0xFF,
                                                                 0xFF));
-        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(anyLong(), any());
+        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         TestResultsListener listener = new TestResultsListener();
         RequestResult<DM29DtcCounts> expectedResult = new RequestResult<>(false,
@@ -1643,7 +1649,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals("", listener.getMessages());
 
         verify(j1939).createRequestPacket(pgn, GLOBAL_ADDR);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -1653,7 +1659,7 @@ public class DiagnosticMessageModuleTest {
         Packet requestPacket = Packet.create(REQUEST_PGN | 0x17, BUS_ADDR, true, pgn, pgn >> 8, pgn >> 16);
         doReturn(requestPacket).when(j1939).createRequestPacket(pgn, 0x17);
 
-        doReturn(Stream.empty(), Stream.empty(), Stream.empty(), Stream.empty()).when(j1939).read(anyLong(), any());
+        doReturn(Stream.empty(), Stream.empty(), Stream.empty(), Stream.empty()).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         String expected = "" + NL;
         expected += "10:15:30.0000 Destination Specific DM2 Request to Instrument Cluster #1 (23)" + NL;
@@ -1666,7 +1672,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals("", listener.getMessages());
 
         verify(j1939).createRequestPacket(pgn, 0x17);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -1687,7 +1693,7 @@ public class DiagnosticMessageModuleTest {
                                                                                   0x66,
                                                                                   0x77,
                                                                                   0x88));
-        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(anyLong(), any());
+        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         String expected = "" + NL;
         expected += "10:15:30.0000 Destination Specific DM2 Request to Engine #2 (1)" + NL;
@@ -1705,7 +1711,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals("", listener.getMessages());
 
         verify(j1939).createRequestPacket(pgn, 0x01);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -1749,7 +1755,8 @@ public class DiagnosticMessageModuleTest {
                                                                                   0x70,
                                                                                   0x80));
         doReturn(Stream.of(packet1.getPacket(), packet2.getPacket(), packet3.getPacket())).when(j1939)
-                                                                                          .read(anyLong(),
+                                                                                          .read(any(PacketFilter.class),
+                                                                                                anyLong(),
                                                                                                 any());
 
         String expected = "" + NL;
@@ -1774,7 +1781,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals(expected, listener.getResults());
 
         verify(j1939).createRequestPacket(pgn, GLOBAL_ADDR);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -1800,7 +1807,7 @@ public class DiagnosticMessageModuleTest {
                                                                                   0x10,
                                                                                   0x04,
                                                                                   0x00));
-        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(anyLong(), any());
+        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         String expected = "" + NL;
         expected += "10:15:30.0000 Global DM2 Request" + NL;
@@ -1822,7 +1829,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals("", listener.getMessages());
 
         verify(j1939).createRequestPacket(pgn, 0xFF);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -1831,7 +1838,7 @@ public class DiagnosticMessageModuleTest {
 
         Packet requestPacket = Packet.create(REQUEST_PGN | GLOBAL_ADDR, BUS_ADDR, true, pgn, pgn >> 8, pgn >> 16);
         doReturn(requestPacket).when(j1939).createRequestPacket(pgn, GLOBAL_ADDR);
-        doReturn(Stream.empty(), Stream.empty(), Stream.empty()).when(j1939).read(anyLong(), any());
+        doReturn(Stream.empty(), Stream.empty(), Stream.empty()).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         String expected = "" + NL;
         expected += "10:15:30.0000 Global DM2 Request" + NL;
@@ -1844,7 +1851,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals("", listener.getMessages());
 
         verify(j1939).createRequestPacket(pgn, GLOBAL_ADDR);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -1858,7 +1865,7 @@ public class DiagnosticMessageModuleTest {
         expected += "10:15:30.0000 18EA00A5 [3] 00 A3 00 (TX)" + NL;
         expected += "10:15:30.0000 Timeout - No Response" + NL;
 
-        doReturn(Stream.empty(), Stream.empty(), Stream.empty()).when(j1939).read(anyLong(), any());
+        doReturn(Stream.empty(), Stream.empty(), Stream.empty()).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         TestResultsListener listener = new TestResultsListener();
         RequestResult<DM31DtcToLampAssociation> expectedResult = new RequestResult<>(false,
@@ -1869,7 +1876,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals("", listener.getMessages());
 
         verify(j1939).createRequestPacket(pgn, 0x00);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -1919,7 +1926,7 @@ public class DiagnosticMessageModuleTest {
                                                                                             // Count
                                                                                       0xAA, // Lamp Status/Support
                                                                                       0x55));// Lamp Status/State
-        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(anyLong(), any());
+        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         TestResultsListener listener = new TestResultsListener();
         RequestResult<DM31DtcToLampAssociation> expectedResult = new RequestResult<>(false,
@@ -1930,7 +1937,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals("", listener.getMessages());
 
         verify(j1939).createRequestPacket(pgn, 0x21);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -1942,7 +1949,7 @@ public class DiagnosticMessageModuleTest {
         expected += "10:15:30.0000 18EAFFA5 [3] 00 A3 00 (TX)" + NL;
         expected += "10:15:30.0000 Timeout - No Response" + NL;
 
-        doReturn(Stream.empty(), Stream.empty(), Stream.empty()).when(j1939).read(anyLong(), any());
+        doReturn(Stream.empty(), Stream.empty(), Stream.empty()).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         TestResultsListener listener = new TestResultsListener();
         assertEquals(RequestResult.empty(false), instance.requestDM31(listener));
@@ -1950,7 +1957,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals("", listener.getMessages());
 
         verify(j1939).createRequestPacket(pgn, GLOBAL_ADDR);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -1995,7 +2002,7 @@ public class DiagnosticMessageModuleTest {
                                                                                       0x00,
                                                                                       0xAA,
                                                                                       0x55));
-        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(anyLong(), any());
+        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         TestResultsListener listener = new TestResultsListener();
         RequestResult<DM31DtcToLampAssociation> expectedResult = new RequestResult<>(false,
@@ -2006,7 +2013,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals("", listener.getMessages());
 
         verify(j1939).createRequestPacket(pgn, GLOBAL_ADDR);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -2024,7 +2031,7 @@ public class DiagnosticMessageModuleTest {
                 (byte) 0xFF };
         var packet1 = new DM33EmissionIncreasingAECDActiveTime(Packet.create(pgn, 0x00, data));
 
-        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(anyLong(), any());
+        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         TestResultsListener listener = new TestResultsListener();
         assertEquals(new RequestResult<>(false, packet1), instance.requestDM33(listener));
@@ -2046,7 +2053,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals("", listener.getMessages());
 
         verify(j1939).createRequestPacket(pgn, GLOBAL_ADDR);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -2056,7 +2063,7 @@ public class DiagnosticMessageModuleTest {
         Packet requestPacket = Packet.create(REQUEST_PGN, BUS_ADDR, true, pgn, pgn >> 8, pgn >> 16);
         doReturn(requestPacket).when(j1939).createRequestPacket(pgn, 0x00);
 
-        doReturn(Stream.empty(), Stream.empty(), Stream.empty()).when(j1939).read(anyLong(), any());
+        doReturn(Stream.empty(), Stream.empty(), Stream.empty()).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         String expected = "" + NL;
         expected += "10:15:30.0000 Destination Specific DM33 Request to Engine #1 (0)" + NL;
@@ -2070,7 +2077,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals("", listener.getMessages());
 
         verify(j1939).createRequestPacket(pgn, 0x00);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -2086,7 +2093,7 @@ public class DiagnosticMessageModuleTest {
                 0x04, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFE, (byte) 0xFE, (byte) 0xFE, (byte) 0xFE,
                 (byte) 0xFF };
         var packet1 = new DM33EmissionIncreasingAECDActiveTime(Packet.create(pgn, 0, data));
-        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(anyLong(), any());
+        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         String expected = "" + NL;
         expected += "10:15:30.0000 Global DM33 Request" + NL;
@@ -2108,14 +2115,14 @@ public class DiagnosticMessageModuleTest {
         assertEquals("", listener.getMessages());
 
         verify(j1939).createRequestPacket(pgn, GLOBAL_ADDR);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
     public void testRequestDM33GlobalNoResponse() throws BusException {
         final int pgn = DM33EmissionIncreasingAECDActiveTime.PGN;
 
-        doReturn(Stream.empty(), Stream.empty(), Stream.empty()).when(j1939).read(anyLong(), any());
+        doReturn(Stream.empty(), Stream.empty(), Stream.empty()).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         String expected = "" + NL;
         expected += "10:15:30.0000 Global DM33 Request" + NL;
@@ -2128,7 +2135,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals("", listener.getMessages());
 
         verify(j1939).createRequestPacket(pgn, GLOBAL_ADDR);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -2149,7 +2156,7 @@ public class DiagnosticMessageModuleTest {
                                                                                             0x00,
                                                                                             0x00,
                                                                                             0x00));
-        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(anyLong(), any());
+        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         String expected = "" + NL;
         expected += "10:15:30.0000 Destination Specific DM6 Request to Engine #1 (0)" + NL;
@@ -2165,7 +2172,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals("", listener.getMessages());
 
         verify(j1939).createRequestPacket(pgn, 0x00);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -2191,7 +2198,7 @@ public class DiagnosticMessageModuleTest {
                                                                                             0x10,
                                                                                             0x04,
                                                                                             0x00));
-        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(anyLong(), any());
+        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         String expected = "" + NL;
         expected += "10:15:30.0000 Destination Specific DM6 Request to Engine #1 (0)" + NL;
@@ -2212,7 +2219,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals("", listener.getMessages());
 
         verify(j1939).createRequestPacket(pgn, 0x00);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -2221,7 +2228,7 @@ public class DiagnosticMessageModuleTest {
         Packet requestPacket = Packet.create(REQUEST_PGN | 0x21, BUS_ADDR, true, pgn, pgn >> 8, pgn >> 16);
         doReturn(requestPacket).when(j1939).createRequestPacket(pgn, 0x21);
 
-        doReturn(Stream.empty()).when(j1939).read(anyLong(), any());
+        doReturn(Stream.empty()).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         String expected = "" + NL;
         expected += "10:15:30.0000 Destination Specific DM6 Request to Body Controller (33)" + NL;
@@ -2237,7 +2244,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals("", listener.getMessages());
 
         verify(j1939).createRequestPacket(pgn, 0x21);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -2273,7 +2280,8 @@ public class DiagnosticMessageModuleTest {
                                                                                             0x00,
                                                                                             0x00));
         doReturn(Stream.of(packet1.getPacket(), packet2.getPacket(), packet3.getPacket())).when(j1939)
-                                                                                          .read(anyLong(),
+                                                                                          .read(any(PacketFilter.class),
+                                                                                                anyLong(),
                                                                                                 any());
 
         String expected = "" + NL;
@@ -2295,7 +2303,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals("", listener.getMessages());
 
         verify(j1939).createRequestPacket(pgn, GLOBAL_ADDR);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -2318,7 +2326,7 @@ public class DiagnosticMessageModuleTest {
                                                                                             0x10,
                                                                                             0x04,
                                                                                             0x00));
-        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(anyLong(), any());
+        doReturn(Stream.of(packet1.getPacket())).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         String expected = "" + NL;
         expected += "10:15:30.0000 Global DM6 Request" + NL;
@@ -2339,14 +2347,14 @@ public class DiagnosticMessageModuleTest {
         assertEquals("", listener.getMessages());
 
         verify(j1939).createRequestPacket(pgn, GLOBAL_ADDR);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
     public void testRequestDM6GlobalWithNoResponses() throws BusException {
         final int pgn = DM6PendingEmissionDTCPacket.PGN;
 
-        doReturn(Stream.empty(), Stream.empty(), Stream.empty()).when(j1939).read(anyLong(), any());
+        doReturn(Stream.empty(), Stream.empty(), Stream.empty()).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         String expected = NL;
         expected += "10:15:30.0000 Global DM6 Request" + NL;
@@ -2359,7 +2367,7 @@ public class DiagnosticMessageModuleTest {
         assertEquals("", listener.getMessages());
 
         verify(j1939).createRequestPacket(pgn, GLOBAL_ADDR);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
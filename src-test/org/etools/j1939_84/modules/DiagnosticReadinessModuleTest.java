@@ -24,6 +24,7 @@ import java.util.stream.Stream;
 
 import org.etools.j1939_84.bus.BusException;
 import org.etools.j1939_84.bus.Packet;
+import org.etools.j1939_84.bus.PacketFilter;
 import org.etools.j1939_84.bus.j1939.J1939;
 import org.etools.j1939_84.bus.j1939.packets.CompositeMonitoredSystem;
 import org.etools.j1939_84.bus.j1939.packets.DM20MonitorPerformanceRatioPacket;
@@ -128,7 +129,7 @@ public class DiagnosticReadinessModuleTest {
         Packet requestPacket = Packet.create(0xEA00 | GLOBAL_ADDR, BUS_ADDR, true, pgn, pgn >> 8, pgn >> 16);
         doReturn(requestPacket).when(j1939).createRequestPacket(pgn, GLOBAL_ADDR);
 
-        doReturn(Stream.empty(), Stream.empty(), Stream.empty()).when(j1939).read(anyLong(), any());
+        doReturn(Stream.empty(), Stream.empty(), Stream.empty()).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         String expected = "" + NL;
         expected += "10:15:30.0000 Global DM20 Request" + NL;
@@ -138,7 +139,7 @@ public class DiagnosticReadinessModuleTest {
         assertEquals(expected, listener.getResults());
 
         verify(j1939).createRequestPacket(pgn, GLOBAL_ADDR);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -182,7 +183,8 @@ public class DiagnosticReadinessModuleTest {
                                                                                                         0x70,
                                                                                                         0x80));
         doReturn(Stream.of(packet1.getPacket(), packet2.getPacket(), packet3.getPacket())).when(j1939)
-                                                                                          .read(anyLong(),
+                                                                                          .read(any(PacketFilter.class),
+                                                                                                anyLong(),
                                                                                                 any());
 
         String expected = "" + NL;
@@ -214,7 +216,7 @@ public class DiagnosticReadinessModuleTest {
         assertEquals(expected, listener.getResults());
 
         verify(j1939).createRequestPacket(pgn, 0xFF);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -258,7 +260,8 @@ public class DiagnosticReadinessModuleTest {
                                                                                                         0x70,
                                                                                                         0x80));
         doReturn(Stream.of(packet1.getPacket(), packet2.getPacket(), packet3.getPacket())).when(j1939)
-                                                                                          .read(anyLong(),
+                                                                                          .read(any(PacketFilter.class),
+                                                                                                anyLong(),
                                                                                                 any());
 
         String expected = "" + NL;
@@ -289,7 +292,7 @@ public class DiagnosticReadinessModuleTest {
         assertEquals(expected, listener.getResults());
 
         verify(j1939).createRequestPacket(pgn, GLOBAL_ADDR);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -299,7 +302,7 @@ public class DiagnosticReadinessModuleTest {
         Packet requestPacket = Packet.create(0xEA00 | 0x17, BUS_ADDR, true, pgn, pgn >> 8, pgn >> 16);
         doReturn(requestPacket).when(j1939).createRequestPacket(pgn, 0x17);
 
-        doReturn(Stream.empty(), Stream.empty(), Stream.empty(), Stream.empty()).when(j1939).read(anyLong(), any());
+        doReturn(Stream.empty(), Stream.empty(), Stream.empty(), Stream.empty()).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         String expected = "" + NL;
         expected += "10:15:30.0000 Destination Specific DM21 Request to Instrument Cluster #1 (23)" + NL;
@@ -310,7 +313,7 @@ public class DiagnosticReadinessModuleTest {
         assertEquals(expected, listener.getResults());
 
         verify(j1939).createRequestPacket(pgn, 0x17);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -331,7 +334,7 @@ public class DiagnosticReadinessModuleTest {
                                                                                                 0x60,
                                                                                                 0x70,
                                                                                                 0x80));
-        doReturn(Stream.of(packet3.getPacket())).when(j1939).read(anyLong(), any());
+        doReturn(Stream.of(packet3.getPacket())).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         String expected = "" + NL;
         expected += "10:15:30.0000 Destination Specific DM21 Request to Body Controller (33)" + NL;
@@ -348,7 +351,7 @@ public class DiagnosticReadinessModuleTest {
         assertEquals(expected, listener.getResults());
 
         verify(j1939).createRequestPacket(pgn, 0x21);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -360,7 +363,7 @@ public class DiagnosticReadinessModuleTest {
 
         doReturn(Stream.empty(), Stream.empty(), Stream.empty(), Stream.empty())
                                                                                 .when(j1939)
-                                                                                .read(anyLong(), any());
+                                                                                .read(any(PacketFilter.class), anyLong(), any());
 
         String expected = "" + NL;
         expected += "10:15:30.0000 Global DM21 Request" + NL;
@@ -370,7 +373,7 @@ public class DiagnosticReadinessModuleTest {
         assertEquals(expected, listener.getResults());
 
         verify(j1939).createRequestPacket(pgn, 0xFF);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -414,7 +417,8 @@ public class DiagnosticReadinessModuleTest {
                                                                                                 0x70,
                                                                                                 0x80));
         doReturn(Stream.of(packet1.getPacket(), packet2.getPacket(), packet3.getPacket())).when(j1939)
-                                                                                          .read(anyLong(),
+                                                                                          .read(any(PacketFilter.class),
+                                                                                                anyLong(),
                                                                                                 any());
 
         String expected = "" + NL;
@@ -446,7 +450,7 @@ public class DiagnosticReadinessModuleTest {
         assertEquals(expected, listener.getResults());
 
         verify(j1939).createRequestPacket(pgn, 0xFF);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -490,7 +494,8 @@ public class DiagnosticReadinessModuleTest {
                                                                                                 0x70,
                                                                                                 0x80));
         doReturn(Stream.of(packet1.getPacket(), packet2.getPacket(), packet3.getPacket())).when(j1939)
-                                                                                          .read(anyLong(),
+                                                                                          .read(any(PacketFilter.class),
+                                                                                                anyLong(),
                                                                                                 any());
 
         String expected = "" + NL;
@@ -522,7 +527,7 @@ public class DiagnosticReadinessModuleTest {
         assertEquals(expected, listener.getResults());
 
         verify(j1939).createRequestPacket(pgn, 0xFF);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -566,7 +571,8 @@ public class DiagnosticReadinessModuleTest {
                                                                                               0x70,
                                                                                               0x80));
         doReturn(Stream.of(packet1.getPacket(), packet2.getPacket(), packet3.getPacket())).when(j1939)
-                                                                                          .read(anyLong(),
+                                                                                          .read(any(PacketFilter.class),
+                                                                                                anyLong(),
                                                                                                 any());
 
         String expected = "" + NL;
@@ -586,7 +592,7 @@ public class DiagnosticReadinessModuleTest {
         assertEquals(expected, listener.getResults());
 
         verify(j1939).createRequestPacket(pgn, GLOBAL_ADDR);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -595,7 +601,7 @@ public class DiagnosticReadinessModuleTest {
 
         Packet requestPacket = Packet.create(0xEA00 | 0xFF, BUS_ADDR, true, pgn, pgn >> 8, pgn >> 16);
         doReturn(requestPacket).when(j1939).createRequestPacket(pgn, GLOBAL_ADDR);
-        doReturn(Stream.empty(), Stream.empty(), Stream.empty()).when(j1939).read(anyLong(), any());
+        doReturn(Stream.empty(), Stream.empty(), Stream.empty()).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         String expected = "" + NL;
         expected += "10:15:30.0000 Global DM5 Request" + NL;
@@ -605,6 +611,6 @@ public class DiagnosticReadinessModuleTest {
         assertEquals(expected, listener.getResults());
 
         verify(j1939).createRequestPacket(pgn, 0xFF);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 }
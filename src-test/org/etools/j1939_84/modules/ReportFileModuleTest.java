@@ -5,6 +5,7 @@ package org.etools.j1939_84.modules;
 
 import static org.etools.j1939_84.J1939_84.NL;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -14,6 +15,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Logger;
 
+import org.etools.j1939_84.bus.j1939.J1939;
+import org.etools.j1939_84.bus.j1939.ResponseMetrics;
 import org.etools.j1939_84.controllers.TestResultsListener;
 import org.junit.After;
 import org.junit.Before;
@@ -66,6 +69,28 @@ public class ReportFileModuleTest {
         // Nothing (bad) happens;
     }
 
+    @Test
+    public void testOnCompleteWritesReport() throws Exception {
+        J1939 j1939 = mock(J1939.class);
+        when(j1939.getMetrics()).thenReturn(new ResponseMetrics());
+        instance.setJ1939(j1939);
+        when(bannerModule.getHeader()).thenReturn("Header");
+        when(summaryModule.generateSummary()).thenReturn("Summary" + NL);
+        instance.setReportFile(file);
+        instance.onResult("Line 1");
+        instance.onResult("Line 2 \u00b5s");
+
+        instance.onComplete(true);
+
+        List<String> lines = Files.readAllLines(file.toPath());
+        assertEquals("Summary of J1939-84 Tool Execution", lines.get(0));
+        int log = lines.indexOf("TEST LOG REPORT");
+        assertTrue(log > 0);
+        assertEquals(List.of("", "Line 1", "Line 2 \u00b5s", "END TEST LOG REPORT"),
+                     lines.subList(log + 1, lines.size()));
+        new File(file + ".latency.csv").delete();
+    }
+
     @Test
     public void testOnProgramExit() throws Exception {
         instance.setReportFile(file);
@@ -101,6 +126,7 @@ public class ReportFileModuleTest {
         results.add("Line 2");
         results.add("Line 3");
         instance.onResult(results);
+        instance.sync();
         List<String> lines = Files.readAllLines(file.toPath());
         assertEquals(3, lines.size());
         assertEquals("Line 1", lines.get(0));
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2021. Equipment & Tool Institute
+ */
+package org.etools.j1939_84.modules;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link ReportWriter} class
+ */
+public class ReportWriterTest {
+
+    /** Counts the flushes, and only shows the text once flushed. */
+    private static class FlushCountingWriter extends StringWriter {
+        private final AtomicInteger flushes = new AtomicInteger();
+        private volatile String flushed = "";
+
+        @Override
+        public void flush() {
+            flushes.incrementAndGet();
+            flushed = toString();
+        }
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        FlushCountingWriter out = new FlushCountingWriter();
+        ReportWriter instance = new ReportWriter(out);
+        instance.write("a");
+        instance.close();
+        assertEquals("a", out.flushed);
+        try {
+            instance.write("b");
+            fail("write after close");
+        } catch (IOException e) {
+            assertEquals("Report closed", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testError() throws Exception {
+        ReportWriter instance = new ReportWriter(new Writer() {
+            @Override
+            public void close() {
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void write(char[] cbuf, int off, int len) throws IOException {
+                throw new IOException("disk full");
+            }
+        });
+        instance.write("a");
+        try {
+            instance.sync();
+            fail("error expected");
+        } catch (IOException e) {
+            assertEquals("disk full", e.getMessage());
+        }
+        instance.close();
+    }
+
+    @Test
+    public void testFlushedByTime() throws Exception {
+        FlushCountingWriter out = new FlushCountingWriter();
+        try (ReportWriter instance = new ReportWriter(out)) {
+            instance.write("a");
+            long start = System.currentTimeMillis();
+            while (out.flushed.isEmpty()) {
+                assertTrue("not flushed", System.currentTimeMillis() - start < 2000);
+                Thread.sleep(10);
+            }
+            assertEquals("a", out.flushed);
+        }
+    }
+
+    @Test
+    public void testGroupCommit() throws Exception {
+        FlushCountingWriter out = new FlushCountingWriter();
+        StringBuilder expected = new StringBuilder();
+        try (ReportWriter instance = new ReportWriter(out)) {
+            for (int i = 0; i < 10_000; i++) {
+                instance.write(i + "\n");
+                expected.append(i).append('\n');
+            }
+            instance.sync();
+            assertEquals(expected.toString(), out.flushed);
+            assertTrue("flushes " + out.flushes, out.flushes.get() < 1000);
+            assertEquals(out.flushes.get(), instance.getFlushLatency().getCount());
+            assertTrue(instance.getMaxQueueDepth() > 0);
+            assertEquals(0, instance.getQueueDepth());
+        }
+    }
+}
@@ -26,6 +26,7 @@ import java.util.stream.Stream;
 import org.etools.j1939_84.bus.Bus;
 import org.etools.j1939_84.bus.BusException;
 import org.etools.j1939_84.bus.Packet;
+import org.etools.j1939_84.bus.PacketFilter;
 import org.etools.j1939_84.bus.j1939.BusResult;
 import org.etools.j1939_84.bus.j1939.J1939;
 import org.etools.j1939_84.bus.j1939.packets.AddressClaimPacket;
@@ -460,7 +461,7 @@ public class VehicleInformationModuleTest {
         Packet requestPacket = Packet.create(0xEA00 | 0xFF, BUS_ADDR, true, pgn, pgn >> 8, pgn >> 16);
         doReturn(requestPacket).when(j1939).createRequestPacket(pgn, 0xFF);
 
-        doReturn(Stream.empty(), Stream.empty(), Stream.empty()).when(j1939).read(anyLong(), any());
+        doReturn(Stream.empty(), Stream.empty(), Stream.empty()).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         String expected = NL + "10:15:30.0000 Global VIN Request" + NL;
         expected += "10:15:30.0000 18EAFFA5 [3] EC FE 00 (TX)" + NL;
@@ -470,7 +471,7 @@ public class VehicleInformationModuleTest {
         assertEquals(0, packets.size());
         assertEquals(expected, listener.getResults());
         verify(j1939).createRequestPacket(pgn, 0xFF);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 
     @Test
@@ -536,7 +537,7 @@ public class VehicleInformationModuleTest {
                            packet11.getPacket(),
                            packet2.getPacket(),
                            packet22.getPacket(),
-                           packet3.getPacket())).when(j1939).read(anyLong(), any());
+                           packet3.getPacket())).when(j1939).read(any(PacketFilter.class), anyLong(), any());
 
         List<Integer> results = instance.getOBDModules(NOOP);
         assertEquals(2, results.size());
@@ -544,6 +545,6 @@ public class VehicleInformationModuleTest {
         assertTrue(results.contains(0x21));
 
         verify(j1939).createRequestPacket(pgn, GLOBAL_ADDR);
-        verify(j1939).read(anyLong(), any());
+        verify(j1939).read(any(PacketFilter.class), anyLong(), any());
     }
 }
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2021. Equipment & Tool Institute
+ */
+package org.etools.j1939_84.ui.widgets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import javax.swing.JTextArea;
+import javax.swing.SwingUtilities;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link ReportLogSink} class
+ */
+public class ReportLogSinkTest {
+
+    private static void onEdt(Runnable runnable) throws Exception {
+        SwingUtilities.invokeAndWait(runnable);
+    }
+
+    private final Executor edt = r -> {
+        try {
+            onEdt(r);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    };
+
+    /** Updates queued for the Swing thread, run by the test. */
+    private final List<Runnable> queued = new ArrayList<>();
+
+    private final JTextArea textArea = new JTextArea();
+
+    @Test
+    public void testCoalesced() throws Exception {
+        ReportLogSink instance = new ReportLogSink(textArea, queued::add, 100, 20000);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            instance.append("line " + i + "\n");
+            expected.append("line ").append(i).append('\n');
+        }
+        assertEquals(1, queued.size());
+        onEdt(queued.get(0));
+        assertEquals(expected.toString(), textArea.getText());
+
+        // one document change for each line, as before
+        JTextArea lineByLine = new JTextArea();
+        long start = System.nanoTime();
+        onEdt(() -> {
+            for (int i = 0; i < 10_000; i++) {
+                lineByLine.append("line " + i + "\n");
+            }
+        });
+        long lineByLineNanos = System.nanoTime() - start;
+        System.out.printf("EDT time per 10k lines: %.1f ms coalesced, %.1f ms line by line%n",
+                          instance.getEdtNanos() / 1e6,
+                          lineByLineNanos / 1e6);
+    }
+
+    @Test
+    public void testRateLimited() throws Exception {
+        ReportLogSink instance = new ReportLogSink(textArea, edt, 200, 20000);
+        // the interval starts with the first flush, which can be slow the first time
+        long start = System.currentTimeMillis();
+        instance.append("a");
+        assertEquals("a", textArea.getText());
+        instance.append("b");
+        instance.append("c");
+        assertEquals("a", textArea.getText());
+        while (!"abc".equals(textArea.getText())) {
+            assertTrue("not flushed", System.currentTimeMillis() - start < 2000);
+            Thread.sleep(10);
+        }
+        System.out.printf("rate limited flush after %d ms, interval 200 ms%n", System.currentTimeMillis() - start);
+    }
+
+    @Test
+    public void testTrimAndLoadOlder() throws Exception {
+        ReportLogSink instance = new ReportLogSink(textArea, queued::add, 100, 100);
+        for (int i = 0; i < 2500; i++) {
+            instance.append("line " + i + "\n");
+        }
+        onEdt(queued.get(0));
+        assertEquals(2000, instance.getSpooledLines());
+        assertEquals(501, textArea.getLineCount());
+        assertTrue(textArea.getText().startsWith("line 2000\n"));
+
+        onEdt(instance::loadOlder);
+        assertEquals(1000, instance.getSpooledLines());
+        assertTrue(textArea.getText().startsWith("line 1000\n"));
+
+        onEdt(instance::loadOlder);
+        onEdt(instance::loadOlder);
+        assertEquals(0, instance.getSpooledLines());
+        assertEquals(2501, textArea.getLineCount());
+        assertTrue(textArea.getText().startsWith("line 0\nline 1\n"));
+    }
+}
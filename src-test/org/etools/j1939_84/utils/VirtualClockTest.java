@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2021. Equipment & Tool Institute
+ */
+package org.etools.j1939_84.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.etools.j1939_84.bus.EchoBus;
+import org.etools.j1939_84.bus.Packet;
+import org.etools.j1939_84.bus.simulated.Engine;
+import org.etools.j1939_84.modules.DateTimeModule;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link VirtualClock} and {@link ClockExecutor} classes
+ */
+public class VirtualClockTest {
+
+    private static final Instant START = Instant.parse("2021-03-01T10:00:00Z");
+
+    private VirtualClock instance;
+
+    @Before
+    public void setUp() {
+        instance = new VirtualClock(START);
+        Clock.set(instance);
+    }
+
+    @After
+    public void tearDown() {
+        Clock.set(null);
+        instance.close();
+    }
+
+    @Test
+    public void testExecutor() throws Exception {
+        ScheduledExecutorService executor = instance.newScheduledExecutor(1, Thread::new);
+        try {
+            AtomicInteger count = new AtomicInteger();
+            ScheduledFuture<?> periodic = executor.scheduleAtFixedRate(count::incrementAndGet,
+                                                                       100,
+                                                                       100,
+                                                                       TimeUnit.MILLISECONDS);
+            ScheduledFuture<Long> delayed = executor.schedule(instance::millis, 2500, TimeUnit.MILLISECONDS);
+
+            assertEquals(START.toEpochMilli() + 2500, delayed.get().longValue());
+            instance.sleep(7_450);
+            periodic.cancel(false);
+            assertEquals(99, count.get());
+            assertEquals(START.toEpochMilli() + 9_950, instance.millis());
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Time does not move on while a thread is working on an answer, even if it
+     * does not use the clock while working.
+     */
+    @Test
+    public void testWaitsForBusyThreads() throws Exception {
+        EchoBus bus = new EchoBus(0xF9);
+        Stream<Packet> requests = bus.read(1, TimeUnit.DAYS);
+        Thread responder = new Thread(() -> requests.forEach(p -> {
+            if (p.getPgn() == 0xEA00) {
+                long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50);
+                while (System.nanoTime() < end) {
+                    // working, without using the clock
+                }
+                bus.send(Packet.create(0xFECA, 0x00, 0, 0xFF, 0, 0, 0, 0, 0xFF, 0xFF));
+            }
+        }));
+        responder.setDaemon(true);
+        responder.start();
+        // the clock only knows the responder once it reads
+        while (responder.getState() != Thread.State.WAITING) {
+            Thread.yield();
+        }
+        try {
+            for (int i = 0; i < 10; i++) {
+                long start = instance.millis();
+                Stream<Packet> stream = bus.read(10, TimeUnit.MILLISECONDS);
+                bus.send(Packet.create(0xEA00, 0xF9, true, 0xCA, 0xFE, 0x00));
+                assertEquals(List.of(0xEA00, 0xFECA), stream.map(Packet::getPgn).collect(Collectors.toList()));
+                assertEquals(start + 10, instance.millis());
+            }
+        } finally {
+            bus.close();
+        }
+    }
+
+    @Test
+    public void testPauseFor() {
+        long start = System.nanoTime();
+        // not the one of another test
+        DateTimeModule.setInstance(null);
+        DateTimeModule dateTimeModule = DateTimeModule.getInstance();
+        long before = dateTimeModule.getTimeAsLong();
+        dateTimeModule.pauseFor(TimeUnit.HOURS.toMillis(1) / 4);
+        assertEquals(TimeUnit.MINUTES.toMillis(15), dateTimeModule.getTimeAsLong() - before);
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * A minute of the simulated engine takes a small part of a minute.
+     */
+    @Test
+    public void testSimulatedEngine() throws Exception {
+        long start = System.nanoTime();
+        EchoBus bus = new EchoBus(0xF9);
+        Engine engine = new Engine(bus);
+        try {
+            long dm1 = bus.read(60, TimeUnit.SECONDS).filter(p -> p.getPgn() == 0xFECA).count();
+            assertTrue("DM1 " + dm1, dm1 >= 59 && dm1 <= 61);
+        } finally {
+            engine.close();
+            bus.close();
+        }
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        System.err.printf("Simulated engine: 60 s in %,d ms with %,d advances%n", millis, instance.getAdvances());
+        assertEquals(START.toEpochMilli() + 60_000, instance.millis());
+        assertTrue(millis < 15_000);
+    }
+
+    @Test
+    public void testSleep() throws Exception {
+        long start = System.nanoTime();
+        instance.sleep(TimeUnit.DAYS.toMillis(1));
+        assertEquals(START.plus(1, ChronoUnit.DAYS), instance.instant());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+    }
+}
@@ -12,6 +12,7 @@ import java.util.logging.Logger;
 
 import javax.swing.UIManager;
 
+import org.etools.j1939_84.batch.BatchRunner;
 import org.etools.j1939_84.ui.UserInterfaceView;
 
 /**
@@ -112,7 +113,8 @@ public class J1939_84 {
     }
 
     /**
-     * Launch the application.
+     * Launch the application, or run the test without it when given
+     * {@link BatchRunner#BATCH_ARG}.
      *
      * @param args
      *                 The arguments used to start the application
@@ -124,6 +126,10 @@ public class J1939_84 {
         getLogger().info("testing = " + isTesting());
         getLogger().info("development = " + isDevEnv());
 
+        if (Arrays.asList(args).contains(BatchRunner.BATCH_ARG)) {
+            System.exit(BatchRunner.run(args, System.out));
+        }
+
         try {
             // Set System L&F
             UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
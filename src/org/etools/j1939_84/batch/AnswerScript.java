@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2021. Equipment & Tool Institute
+ */
+package org.etools.j1939_84.batch;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.etools.j1939_84.controllers.QuestionListener.AnswerType;
+import org.etools.j1939_84.model.FuelType;
+
+/**
+ * The answers of a batch run to what the tool asks the operator, read from a
+ * file. Blank lines and lines starting with # are ignored; the others are
+ *
+ * <pre>
+ * vehicle &lt;field&gt; = &lt;value&gt;
+ * answer &lt;regular expression&gt; = YES | NO | CANCEL
+ * </pre>
+ *
+ * The vehicle fields replace what is read from the vehicle for Step 6.1.1.1.e:
+ * vin, vehicleModelYear, engineModelYear, fuelType (as {@link FuelType#DSL}),
+ * emissionUnits, calIds, certificationIntent and numberOfTripsForFaultBImplant.
+ * With override = true the information is used even if it is not valid.
+ *
+ * A question gets the answer of the first line whose expression is found in
+ * its title or its message, and YES, as the OK button, if there is none.
+ */
+public class AnswerScript {
+
+    private static class Rule {
+        private final AnswerType answer;
+
+        private final Pattern pattern;
+
+        private Rule(Pattern pattern, AnswerType answer) {
+            this.pattern = pattern;
+            this.answer = answer;
+        }
+    }
+
+    /** the vehicle fields that can be given */
+    static final Set<String> VEHICLE_FIELDS = Set.of("vin",
+                                                     "vehicleModelYear",
+                                                     "engineModelYear",
+                                                     "fuelType",
+                                                     "emissionUnits",
+                                                     "calIds",
+                                                     "certificationIntent",
+                                                     "numberOfTripsForFaultBImplant",
+                                                     "override");
+
+    /**
+     * Parses the lines of a script.
+     *
+     * @param  lines
+     *                         the lines of the script
+     * @return             the {@link AnswerScript}
+     * @throws IOException
+     *                         if a line cannot be understood
+     */
+    static AnswerScript parse(List<String> lines) throws IOException {
+        AnswerScript script = new AnswerScript();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int space = line.indexOf(' ');
+            // the expression may hold an =, the answer does not
+            int equals = line.lastIndexOf('=');
+            if (space < 0 || equals < space) {
+                throw new IOException("Line " + (i + 1) + ": expected <kind> <name> = <value>: " + line);
+            }
+            String kind = line.substring(0, space);
+            String name = line.substring(space + 1, equals).trim();
+            String value = line.substring(equals + 1).trim();
+            try {
+                switch (kind) {
+                    case "vehicle":
+                        script.putVehicleValue(name, value);
+                        break;
+                    case "answer":
+                        script.rules.add(new Rule(Pattern.compile(name), AnswerType.valueOf(value.toUpperCase())));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown line kind " + kind);
+                }
+            } catch (IllegalArgumentException e) {
+                // includes PatternSyntaxException and NumberFormatException
+                String reason = e instanceof PatternSyntaxException ? e.getMessage().split("\\R")[0] : e.getMessage();
+                throw new IOException("Line " + (i + 1) + ": " + reason + ": " + line, e);
+            }
+        }
+        return script;
+    }
+
+    /**
+     * Reads the script in the file.
+     *
+     * @param  file
+     *                         the file to read
+     * @return             the {@link AnswerScript}
+     * @throws IOException
+     *                         if the file cannot be read or understood
+     */
+    public static AnswerScript read(Path file) throws IOException {
+        return parse(Files.readAllLines(file, StandardCharsets.UTF_8));
+    }
+
+    private final List<Rule> rules = new ArrayList<>();
+
+    private final Map<String, String> vehicle = new LinkedHashMap<>();
+
+    /**
+     * Creates a script that answers YES to everything and keeps the vehicle
+     * information that is read.
+     */
+    public AnswerScript() {
+    }
+
+    /**
+     * @param  title
+     *                     the title of the question
+     * @param  message
+     *                     the question
+     * @return         the answer to the question
+     */
+    public AnswerType answer(String title, String message) {
+        for (Rule rule : rules) {
+            if ((title != null && rule.pattern.matcher(title).find())
+                    || (message != null && rule.pattern.matcher(message).find())) {
+                return rule.answer;
+            }
+        }
+        return AnswerType.YES;
+    }
+
+    /**
+     * @return the vehicle fields given, by name, in the order of the file
+     */
+    public Map<String, String> getVehicleValues() {
+        return Collections.unmodifiableMap(vehicle);
+    }
+
+    private void putVehicleValue(String field, String value) {
+        if (!VEHICLE_FIELDS.contains(field)) {
+            throw new IllegalArgumentException("unknown vehicle field " + field);
+        }
+        switch (field) {
+            case "vin":
+            case "certificationIntent":
+            case "override":
+                break;
+            case "fuelType":
+                FuelType.valueOf(value);
+                break;
+            default:
+                Integer.parseInt(value);
+        }
+        vehicle.put(field, value);
+    }
+}
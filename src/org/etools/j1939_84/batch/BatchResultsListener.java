@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2021. Equipment & Tool Institute
+ */
+package org.etools.j1939_84.batch;
+
+import static org.etools.j1939_84.J1939_84.NL;
+
+import java.io.PrintStream;
+import java.util.List;
+
+import org.etools.j1939_84.bus.j1939.J1939;
+import org.etools.j1939_84.controllers.QuestionListener;
+import org.etools.j1939_84.controllers.QuestionListener.AnswerType;
+import org.etools.j1939_84.controllers.ResultsListener;
+import org.etools.j1939_84.model.ActionOutcome;
+import org.etools.j1939_84.model.Outcome;
+import org.etools.j1939_84.model.VehicleInformationListener;
+
+/**
+ * The {@link ResultsListener} of a batch run. The results are printed as they
+ * come and the questions are answered by an {@link AnswerScript}, with the
+ * answer printed after the question.
+ */
+public class BatchResultsListener implements ResultsListener {
+
+    private final J1939 j1939;
+
+    private final PrintStream out;
+
+    private final AnswerScript script;
+
+    private volatile Boolean success;
+
+    /**
+     * @param out
+     *                   where the results are printed
+     * @param script
+     *                   answers the questions
+     * @param j1939
+     *                   the vehicle bus, to read the vehicle information
+     */
+    public BatchResultsListener(PrintStream out, AnswerScript script, J1939 j1939) {
+        this.out = out;
+        this.script = script;
+        this.j1939 = j1939;
+    }
+
+    @Override
+    public void addOutcome(int partNumber, int stepNumber, Outcome outcome, String message) {
+        onResult(new ActionOutcome(outcome, message).toString());
+    }
+
+    /**
+     * @return true if the run completed, false if it ended otherwise and null
+     *         while it is running
+     */
+    public Boolean getSuccess() {
+        return success;
+    }
+
+    @Override
+    public void onComplete(boolean success) {
+        this.success = success;
+    }
+
+    @Override
+    public void onMessage(String message, String title, MessageType type) {
+        out.println(type + ": " + title + NL + message);
+    }
+
+    @Override
+    public void onResult(List<String> results) {
+        for (String result : results) {
+            onResult(result);
+        }
+    }
+
+    @Override
+    public void onResult(String result) {
+        out.println(result);
+    }
+
+    @Override
+    public void onUrgentMessage(String message, String title, MessageType type) {
+        onMessage(message, title, type);
+    }
+
+    @Override
+    public void onUrgentMessage(String message, String title, MessageType type, QuestionListener listener) {
+        AnswerType answer = script.answer(title, message);
+        onMessage(message, title, type);
+        out.println("Answered " + answer);
+        listener.answered(answer);
+    }
+
+    @Override
+    public void onVehicleInformationNeeded(VehicleInformationListener listener) {
+        new BatchVehicleInformationView(listener, j1939, script).fillIn();
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2021. Equipment & Tool Institute
+ */
+package org.etools.j1939_84.batch;
+
+import static org.etools.j1939_84.J1939_84.NL;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.logging.Level;
+
+import org.etools.j1939_84.J1939_84;
+import org.etools.j1939_84.bus.Adapter;
+import org.etools.j1939_84.bus.Bus;
+import org.etools.j1939_84.bus.BusException;
+import org.etools.j1939_84.bus.RP1210;
+import org.etools.j1939_84.bus.capture.ReplayBus;
+import org.etools.j1939_84.bus.j1939.CompletionPolicy;
+import org.etools.j1939_84.bus.j1939.J1939;
+import org.etools.j1939_84.bus.j1939.J1939TP;
+import org.etools.j1939_84.controllers.OverallController;
+import org.etools.j1939_84.controllers.TestSession;
+import org.etools.j1939_84.modules.ReportFileModule;
+import org.etools.j1939_84.ui.UserInterfacePresenter;
+import org.etools.j1939_84.utils.Clock;
+import org.etools.j1939_84.utils.VirtualClock;
+
+/**
+ * Runs the test, or some of its steps, without the user interface. The
+ * results are written to the report file and printed, and the questions are
+ * answered by an {@link AnswerScript}. Each runner has its own
+ * {@link TestSession}, so several can run at once. A replay at the maximum
+ * speed runs on a {@link VirtualClock}, which is the clock of the whole JVM
+ * until the replay ends.
+ *
+ * Started by {@link J1939_84#main(String[])} with {@link #BATCH_ARG}; see
+ * {@link #USAGE} for the arguments.
+ */
+public class BatchRunner {
+
+    /** The argument of {@link J1939_84#main(String[])} that starts a batch run */
+    public static final String BATCH_ARG = "--batch";
+
+    /** The exit code of a run that completed */
+    public static final int COMPLETED = 0;
+
+    /** The exit code of a run that was stopped, aborted or failed */
+    public static final int NOT_COMPLETED = 1;
+
+    /** The exit code if the run could not be started */
+    public static final int NOT_STARTED = 2;
+
+    static final String USAGE = "Usage: J1939_84 " + BATCH_ARG + " --report <file> [--answers <file>]" + NL
+            + "         [--from <part>[.<step>]] [--to <part>[.<step>]]" + NL
+            + "         (--adapter <name> [--connection <string>] | --simulator"
+            + " | --replay <capture or .asc file> [--speed <factor> | --speed max])" + NL
+            + "         [TESTING=true] [DEV=true]";
+
+    /** the address of the tool */
+    private static final int TOOL_ADDRESS = 0xF9;
+
+    private static int[] parseStep(String arg, int defaultStep) {
+        String[] parts = arg.split("\\.", 2);
+        return new int[] { Integer.parseInt(parts[0]),
+                parts.length > 1 ? Integer.parseInt(parts[1]) : defaultStep };
+    }
+
+    private String adapterName;
+
+    private Path answers;
+
+    private String connectionString;
+
+    private int[] from = { 1, 1 };
+
+    private Path replay;
+
+    private File report;
+
+    private boolean simulator;
+
+    /** the clock installed for a replay at the maximum speed, if any */
+    private VirtualClock replayClock;
+
+    private final RP1210 rp1210 = new RP1210();
+
+    private final TestSession session = new TestSession();
+
+    private double speed = 1;
+
+    private int[] to = { Integer.MAX_VALUE, Integer.MAX_VALUE };
+
+    /**
+     * @param  args
+     *                                      the arguments, as {@link #USAGE}
+     * @throws IllegalArgumentException
+     *                                      if the arguments are not valid
+     */
+    public BatchRunner(String... args) {
+        int buses = 0;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals(BATCH_ARG)
+                    || arg.startsWith(J1939_84.TESTING_PROPERTY_NAME + "=")
+                    || arg.startsWith(J1939_84.DEV_PROPERTY_NAME + "=")) {
+                // the properties are set by J1939_84
+                continue;
+            }
+            if (arg.equals("--simulator")) {
+                simulator = true;
+                buses++;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value of " + arg);
+            }
+            String value = args[++i];
+            switch (arg) {
+                case "--report":
+                    report = new File(value);
+                    break;
+                case "--answers":
+                    answers = Paths.get(value);
+                    break;
+                case "--from":
+                    from = parseStep(value, 1);
+                    break;
+                case "--to":
+                    to = parseStep(value, Integer.MAX_VALUE);
+                    break;
+                case "--adapter":
+                    adapterName = value;
+                    buses++;
+                    break;
+                case "--connection":
+                    connectionString = value;
+                    break;
+                case "--replay":
+                    replay = Paths.get(value);
+                    buses++;
+                    break;
+                case "--speed":
+                    speed = value.equals("max") ? ReplayBus.MAX_SPEED : Double.parseDouble(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument " + arg);
+            }
+        }
+        if (report == null) {
+            throw new IllegalArgumentException("The report file is required");
+        }
+        if (buses != 1) {
+            throw new IllegalArgumentException("One of --adapter, --simulator or --replay is required");
+        }
+    }
+
+    /**
+     * Runs a batch and returns the exit code.
+     *
+     * @param  args
+     *                  the arguments, as {@link #USAGE}
+     * @param  out
+     *                  where the results are printed
+     * @return      {@link #COMPLETED}, {@link #NOT_COMPLETED} or
+     *              {@link #NOT_STARTED}
+     */
+    public static int run(String[] args, PrintStream out) {
+        BatchRunner runner;
+        try {
+            runner = new BatchRunner(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            return NOT_STARTED;
+        }
+        try {
+            return runner.run(out);
+        } catch (IOException | BusException e) {
+            J1939_84.getLogger().log(Level.SEVERE, "Batch run not started", e);
+            System.err.println(e.getMessage());
+            return NOT_STARTED;
+        }
+    }
+
+    private Bus openBus() throws BusException, IOException {
+        if (replay != null) {
+            if (speed == ReplayBus.MAX_SPEED && !(Clock.get() instanceof VirtualClock)) {
+                // the waits of the test are played back, without waiting
+                replayClock = new VirtualClock();
+                Clock.set(replayClock);
+            }
+            ReplayBus bus = replay.toString().toLowerCase().endsWith(".asc")
+                    ? ReplayBus.fromVector(replay, TOOL_ADDRESS, speed)
+                    : ReplayBus.fromCapture(replay, TOOL_ADDRESS, speed);
+            return new J1939TP(bus.start());
+        }
+        for (Adapter adapter : rp1210.getAdapters()) {
+            boolean selected = simulator ? adapter.getDeviceId() == RP1210.FAKE_DEV_ID
+                    : adapter.getName().equals(adapterName) || adapter.getDLLName().equals(adapterName);
+            if (selected) {
+                String connection = connectionString != null ? connectionString
+                        : adapter.getConnectionStrings().get(0);
+                return rp1210.setAdapter(adapter, connection, TOOL_ADDRESS);
+            }
+        }
+        throw new BusException("Adapter not found: " + (simulator ? "Loop Back Adapter" : adapterName));
+    }
+
+    /**
+     * Runs the batch in the calling thread.
+     *
+     * @param  out
+     *                          where the results are printed
+     * @return              {@link #COMPLETED} or {@link #NOT_COMPLETED}
+     * @throws IOException
+     *                          if the report or answers file cannot be used
+     * @throws BusException
+     *                          if the bus cannot be opened
+     */
+    public int run(PrintStream out) throws IOException, BusException {
+        AnswerScript script = answers == null ? new AnswerScript() : AnswerScript.read(answers);
+        if (!report.createNewFile()) {
+            throw new IOException("File already exists: " + report);
+        }
+        if (simulator) {
+            // the loop back adapter is only offered for testing
+            J1939_84.setTesting(true);
+        }
+
+        // the threads of the bus are in the session too
+        TestSession.Scope scope = session.enter();
+        try {
+            return run(out, script);
+        } finally {
+            scope.close();
+        }
+    }
+
+    private int run(PrintStream out, AnswerScript script) throws IOException, BusException {
+        Clock previous = Clock.get();
+        try {
+            return run(out, script, openBus());
+        } finally {
+            if (replayClock != null) {
+                Clock.set(previous);
+                replayClock.close();
+                replayClock = null;
+            }
+        }
+    }
+
+    private int run(PrintStream out, AnswerScript script, Bus bus) throws IOException, BusException {
+        try {
+            J1939 j1939 = new J1939(bus);
+            if (Boolean.getBoolean(UserInterfacePresenter.EARLY_COMPLETION_PROPERTY)) {
+                j1939.setCompletionPolicy(new CompletionPolicy(session.getDataRepository()::getObdModuleAddresses,
+                                                               Long.getLong("j1939_84.settleTime",
+                                                                            CompletionPolicy.DEFAULT_SETTLE_TIME)));
+            }
+
+            ReportFileModule reportFileModule = new ReportFileModule();
+            reportFileModule.setReportFile(report);
+            reportFileModule.setJ1939(j1939);
+
+            BatchResultsListener listener = new BatchResultsListener(out, script, j1939);
+            OverallController overallController = OverallController.create(session, Runnable::run);
+            overallController.setRange(from[0], from[1], to[0], to[1]);
+            overallController.execute(listener, j1939, reportFileModule);
+            reportFileModule.onProgramExit();
+
+            return Boolean.TRUE.equals(listener.getSuccess()) ? COMPLETED : NOT_COMPLETED;
+        } finally {
+            bus.close();
+            rp1210.stopEngine();
+        }
+    }
+}
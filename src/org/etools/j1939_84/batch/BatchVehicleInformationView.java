@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2021. Equipment & Tool Institute
+ */
+package org.etools.j1939_84.batch;
+
+import java.util.Map;
+
+import org.etools.j1939_84.bus.j1939.J1939;
+import org.etools.j1939_84.model.FuelType;
+import org.etools.j1939_84.model.VehicleInformationListener;
+import org.etools.j1939_84.ui.VehicleInformationContract;
+import org.etools.j1939_84.ui.VehicleInformationPresenter;
+
+/**
+ * The vehicle information form of a batch run. As the dialog, it is filled in
+ * with what is read from the vehicle; the {@link AnswerScript} then takes the
+ * place of the operator.
+ */
+class BatchVehicleInformationView implements VehicleInformationContract.View {
+
+    private boolean okButtonEnabled;
+
+    private final VehicleInformationContract.Presenter presenter;
+
+    private final AnswerScript script;
+
+    BatchVehicleInformationView(VehicleInformationListener listener, J1939 j1939, AnswerScript script) {
+        this.script = script;
+        presenter = new VehicleInformationPresenter(this, listener, j1939);
+    }
+
+    /**
+     * Reads the vehicle, fills in the script and closes the form, so the
+     * listener is given the information; null if it is not valid and not
+     * overridden.
+     */
+    void fillIn() {
+        presenter.readVehicle();
+        for (Map.Entry<String, String> entry : script.getVehicleValues().entrySet()) {
+            String value = entry.getValue();
+            switch (entry.getKey()) {
+                case "vin":
+                    setVin(value);
+                    break;
+                case "vehicleModelYear":
+                    setVehicleModelYear(Integer.parseInt(value));
+                    break;
+                case "engineModelYear":
+                    setEngineModelYear(Integer.parseInt(value));
+                    break;
+                case "fuelType":
+                    setFuelType(FuelType.valueOf(value));
+                    break;
+                case "emissionUnits":
+                    setEmissionUnits(Integer.parseInt(value));
+                    break;
+                case "calIds":
+                    setCalIds(Integer.parseInt(value));
+                    break;
+                case "certificationIntent":
+                    setCertificationIntent(value);
+                    break;
+                case "numberOfTripsForFaultBImplant":
+                    setNumberOfTripsForFaultBImplant(Integer.parseInt(value));
+                    break;
+                case "override":
+                    presenter.onOverrideChanged(Boolean.parseBoolean(value));
+                    break;
+            }
+        }
+        if (okButtonEnabled) {
+            presenter.onOkButtonClicked();
+        } else {
+            presenter.onCancelButtonClicked();
+        }
+    }
+
+    @Override
+    public void setCalIds(int calIds) {
+        presenter.onCalIdsChanged(calIds);
+    }
+
+    @Override
+    public void setCertificationIntent(String certificationIntent) {
+        presenter.onCertificationChanged(certificationIntent);
+    }
+
+    @Override
+    public void setEmissionUnits(int count) {
+        presenter.onEmissionUnitsChanged(count);
+    }
+
+    @Override
+    public void setEngineModelYear(int modelYear) {
+        presenter.onEngineModelYearChanged(modelYear);
+    }
+
+    @Override
+    public void setFuelType(FuelType fuelType) {
+        presenter.onFuelTypeChanged(fuelType);
+    }
+
+    @Override
+    public void setNumberOfTripsForFaultBImplant(int count) {
+        presenter.onNumberOfTripsForFaultBImplantChanged(count);
+    }
+
+    @Override
+    public void setOkButtonEnabled(boolean isEnabled) {
+        okButtonEnabled = isEnabled;
+    }
+
+    @Override
+    public void setOverrideControlVisible(boolean isVisible) {
+    }
+
+    @Override
+    public void setVehicleModelYear(int modelYear) {
+        presenter.onVehicleModelYearChanged(modelYear);
+    }
+
+    @Override
+    public void setVehicleModelYearValid(boolean isValid) {
+    }
+
+    @Override
+    public void setVin(String vin) {
+        presenter.onVinChanged(vin);
+    }
+
+    @Override
+    public void setVinValid(boolean isValid) {
+    }
+
+    @Override
+    public void setVisible(boolean isVisible) {
+        if (!isVisible) {
+            // as closing the dialog
+            presenter.onDialogClosed();
+        }
+    }
+}
@@ -67,6 +67,29 @@ public interface Bus extends AutoCloseable {
      */
     Stream<Packet> read(long timeout, TimeUnit unit) throws BusException;
 
+    /**
+     * Reads only the {@link Packet}s that match the filter from the bus. Buses
+     * that can, match the filter once as each packet is received, so readers
+     * are not woken for packets they would discard.
+     *
+     * @param  filter
+     *                          the packets of interest
+     *
+     * @param  timeout
+     *                          the amount of time to read packets
+     *
+     * @param  unit
+     *                          the {@link TimeUnit} for the amount of time
+     *
+     * @return              a {@link Stream} of the matching {@link Packet}s
+     *
+     * @throws BusException
+     *                          if there is a problem reading packets
+     */
+    default Stream<Packet> read(PacketFilter filter, long timeout, TimeUnit unit) throws BusException {
+        return read(timeout, unit).filter(filter);
+    }
+
     /**
      * Reset stream timeout for stream created with bus.read(). To be used in a
      * stream call like peek, map or forEach.
@@ -25,7 +25,8 @@ public class EchoBus implements Bus {
      *                    the address for this connector on the bus
      */
     public EchoBus(int address) {
-        this(address, new MultiQueue<>());
+        this(address, new MultiQueue<Packet>(MultiQueue.DEFAULT_CAPACITY).retainFor(1, TimeUnit.MINUTES)
+                                                                         .indexBy(Packet::getPgn));
     }
 
     /**
@@ -66,6 +67,11 @@ public class EchoBus implements Bus {
         return queue.stream(timeout, unit);
     }
 
+    @Override
+    public Stream<Packet> read(PacketFilter filter, long timeout, TimeUnit unit) {
+        return queue.stream(filter, filter.getPgns(), timeout, unit);
+    }
+
     /**
      * Reset stream timeout for stream created with bus.read(). To be used in a
      * stream call like peek, map or forEach.
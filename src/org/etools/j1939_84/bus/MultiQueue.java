@@ -3,13 +3,29 @@
  */
 package org.etools.j1939_84.bus;
 
+import java.lang.ref.WeakReference;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Spliterator;
 import java.util.WeakHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import java.util.logging.Logger;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
+import org.etools.j1939_84.utils.Clock;
+
 /**
  * The multiqueue is a linked list that multiple visitors can traverse
  * concurrently. Adding items only adds them to open streams. The MultiQueue is
@@ -20,21 +36,148 @@ import java.util.stream.StreamSupport;
  * value is added, nothing references the first value, except for any open
  * streams.
  *
+ * When constructed with a capacity, the MultiQueue is instead backed by a
+ * bounded ring buffer. Each stream keeps its own cursor into the ring and
+ * parks until an item is added, the stream times out or the stream is closed,
+ * so idle streams do not poll.
+ *
+ * A ring buffer backed MultiQueue retains at most capacity items, and may also
+ * be limited by age (retainFor) and by size (retainBytes). Evicted items are
+ * released even if a stream has not read them yet, so a slow or abandoned
+ * stream can not pin memory. A stream that falls behind the oldest retained
+ * item either skips ahead to it or, with detachSlowReaders, ends. Either way
+ * the missed items are counted by getLost(stream) and getMetrics(). The linked
+ * list mode keeps its original unbounded behavior and has no metrics.
+ *
+ * Timeouts and ages are measured with {@link Clock#get()}.
+ *
+ * A filtered stream only sees the items that match its filter. Each item is
+ * matched once as it is added, and only the streams it matches are woken. When
+ * the queue is indexed by a key (indexBy), items are only matched against the
+ * filtered streams registered for the key of the item. On a ring buffer
+ * backed MultiQueue, the matched items are kept in a ring of the filtered
+ * stream's own. It starts small and grows as needed up to the capacity of the
+ * queue, and has the retention (retainFor, retainBytes, detachSlowReaders) the
+ * queue has when the stream is opened, so a filtered stream keeps its items as
+ * long as an unfiltered stream of the same queue would.
+ *
  * @param <T> type of MultiQueue to be implemented
  */
 public class MultiQueue<T> implements AutoCloseable {
 
-    private final WeakHashMap<Stream<T>, SpliteratorImplementation<T>> spliterators = new WeakHashMap<>();
+    /**
+     * Ring capacity used by the buses. About 16 s of a fully loaded 500 kbps
+     * bus.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private static final Logger logger = Logger.getLogger(MultiQueue.class.getName());
+
+    /**
+     * Initial ring capacity of each filtered stream of a ring buffer backed
+     * queue. Grows up to the capacity of the queue.
+     */
+    private static final int SUBSCRIPTION_CAPACITY = 64;
+
+    private final WeakHashMap<Stream<T>, Cursor<T>> spliterators = new WeakHashMap<>();
     private MultiQueue.Item<T> list = new MultiQueue.Item<>(null);
+    /** null unless this is a ring buffer backed MultiQueue */
+    private final Ring<T> ring;
+    /** The filtered streams, by key. */
+    private final Map<Integer, List<Subscription<T>>> index = new HashMap<>();
+    private ToIntFunction<? super T> keyOf;
+    /** The subscription each filtered stream reads from. */
+    private final WeakHashMap<Cursor<T>, Subscription<T>> subscribers = new WeakHashMap<>();
+    /** The filtered streams without keys. Matched against every item. */
+    private final List<Subscription<T>> unindexed = new ArrayList<>();
+
+    /**
+     * Creates an unbounded linked list backed MultiQueue.
+     */
+    public MultiQueue() {
+        ring = null;
+    }
+
+    /**
+     * Creates a ring buffer backed MultiQueue.
+     *
+     * @param capacity
+     *                     the number of items retained for slow streams. Rounded
+     *                     up to a power of 2.
+     */
+    public MultiQueue(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        ring = new Ring<>(capacity);
+    }
 
     synchronized public void add(T v) {
-        list = list.add(v);
+        if (ring == null) {
+            list = list.add(v);
+        } else {
+            ring.add(v);
+        }
+        match(v);
+    }
+
+    /**
+     * Adds the items in order. Parked streams are woken once for the batch,
+     * instead of once for each item.
+     *
+     * @param values
+     *                   the items to add
+     */
+    synchronized public void addAll(Collection<? extends T> values) {
+        if (ring == null) {
+            for (T v : values) {
+                list = list.add(v);
+            }
+        } else {
+            ring.addAll(values);
+        }
+        for (T v : values) {
+            match(v);
+        }
+    }
+
+    /** Offer the item to the filtered streams. */
+    private void match(T v) {
+        if (!index.isEmpty() || !unindexed.isEmpty()) {
+            if (keyOf != null) {
+                List<Subscription<T>> subscriptions = index.get(keyOf.applyAsInt(v));
+                if (subscriptions != null) {
+                    for (Subscription<T> subscription : subscriptions) {
+                        subscription.offer(v);
+                    }
+                }
+            }
+            for (Subscription<T> subscription : unindexed) {
+                subscription.offer(v);
+            }
+        }
     }
 
     @Override
     public void close() {
         // close all of the spliterators.
-        spliterators.values().forEach(SpliteratorImplementation<T>::close);
+        synchronized (spliterators) {
+            spliterators.values().forEach(Cursor<T>::close);
+        }
+    }
+
+    /**
+     * Streams that fall behind the oldest retained item end instead of
+     * skipping the evicted items.
+     *
+     * @return this
+     */
+    public MultiQueue<T> detachSlowReaders() {
+        Ring<T> r = requireRing();
+        synchronized (r) {
+            r.detachSlowReaders = true;
+        }
+        return this;
     }
 
     /**
@@ -48,16 +191,65 @@ public class MultiQueue<T> implements AutoCloseable {
      *                location the original is right now.
      */
     public Stream<T> duplicate(Stream<T> stream, int time, TimeUnit unit) {
-        SpliteratorImplementation<T> oldSpliterator = spliterators.get(stream);
-        if (oldSpliterator.item == null) {
+        Cursor<T> oldSpliterator = getSpliterator(stream);
+        if (oldSpliterator == null || oldSpliterator.isClosed()) {
             throw new IllegalStateException("stream has already been closed.");
         }
-        SpliteratorImplementation<T> newSpliterator = new SpliteratorImplementation<>(oldSpliterator);
-        Stream<T> newStream = StreamSupport.stream(newSpliterator, false);
-        spliterators.put(newStream, newSpliterator);
+        Cursor<T> newSpliterator = oldSpliterator.copy();
         newSpliterator.setTimeout(time, unit);
-        newStream.onClose(newSpliterator::close);
-        return newStream;
+        synchronized (this) {
+            Subscription<T> subscription = subscribers.get(oldSpliterator);
+            if (subscription != null) {
+                subscription.add(newSpliterator);
+                subscribers.put(newSpliterator, subscription);
+            }
+        }
+        return register(newSpliterator);
+    }
+
+    /**
+     * @param  stream
+     *                    Stream created from stream(timeout, unit) or duplicate()
+     * @return        the number of items added to the queue that the stream has
+     *                not read yet
+     */
+    public long getLag(Stream<T> stream) {
+        return getRingSpliterator(stream).getLag();
+    }
+
+    /**
+     * @param  stream
+     *                    Stream created from stream(timeout, unit) or duplicate()
+     * @return        the number of items evicted before the stream read them
+     */
+    public long getLost(Stream<T> stream) {
+        return getRingSpliterator(stream).getLost();
+    }
+
+    /**
+     * @return a snapshot of the retained items and of the open streams
+     */
+    public Metrics getMetrics() {
+        Ring<T> r = requireRing();
+        RingSpliterator<?>[] open;
+        synchronized (spliterators) {
+            open = spliterators.values().toArray(new RingSpliterator<?>[0]);
+        }
+        long now = Clock.get().millis();
+        long[] lags = Arrays.stream(open)
+                            .filter(c -> c.isOpen(now))
+                            .mapToLong(RingSpliterator::getLag)
+                            .toArray();
+        synchronized (r) {
+            return new Metrics(r.tail - r.head,
+                               r.bytes,
+                               r.head < r.tail ? Optional.of(Instant.ofEpochMilli(r.times[r.slot(r.head)]))
+                                       : Optional.empty(),
+                               lags,
+                               r.lost,
+                               r.detached,
+                               r.wakeups.get());
+        }
     }
 
     /**
@@ -70,7 +262,7 @@ public class MultiQueue<T> implements AutoCloseable {
      * @param unit
      */
     public void resetTimeout(Stream<T> stream, int time, TimeUnit unit) {
-        MultiQueue.SpliteratorImplementation<T> spliterator = spliterators.get(stream);
+        Cursor<T> spliterator = getSpliterator(stream);
         if (spliterator == null) {
             throw new IllegalArgumentException("Invalid stream.");
         }
@@ -78,7 +270,82 @@ public class MultiQueue<T> implements AutoCloseable {
     }
 
     /**
+     * Index filtered streams by key, so each item is only matched against the
+     * filtered streams interested in its key.
+     *
+     * @param  keyOf
+     *                   the key of an item. Called once as each item is added.
+     * @return       this
+     */
+    synchronized public MultiQueue<T> indexBy(ToIntFunction<? super T> keyOf) {
+        this.keyOf = keyOf;
+        return this;
+    }
+
+    /**
+     * Evict items larger than maxBytes in total. The newest item is always
+     * retained.
+     *
+     * @param  maxBytes
+     *                      the maximum size of all retained items
+     * @param  sizeOf
+     *                      the size of an item. Called once as each item is added.
+     * @return          this
+     */
+    public MultiQueue<T> retainBytes(long maxBytes, ToLongFunction<? super T> sizeOf) {
+        requireRing().retainBytes(maxBytes, sizeOf);
+        return this;
+    }
+
+    /**
+     * Evict items older than maxAge.
+     *
+     * @param  maxAge
+     *                    how long items are retained
+     * @param  unit
+     *                    the TimeUnit for maxAge
+     * @return        this
+     */
+    public MultiQueue<T> retainFor(long maxAge, TimeUnit unit) {
+        Ring<T> r = requireRing();
+        synchronized (r) {
+            r.maxAgeMillis = unit.toMillis(maxAge);
+        }
+        return this;
+    }
+
+    /**
+     *
+     * @param  timeout
+     *                     The stream will be valid for a period of timeout. If the
+     *                     stream is not read prior to timeout, then it will be empty.
+     * @param  unit
+     *                     the TimeUnit for the timeout
+     * @return         the stream
+     */
+    public Stream<T> stream(long timeout, TimeUnit unit) {
+        Cursor<T> spliterator;
+        if (ring == null) {
+            synchronized (this) {
+                spliterator = new SpliteratorImplementation<>(list, timeout, unit);
+            }
+        } else {
+            spliterator = new RingSpliterator<>(ring, timeout, unit);
+        }
+        return register(spliterator);
+    }
+
+    /**
+     * Opens a stream of only the items that match the filter. The filter is
+     * evaluated once, when the item is added, by the thread adding it, so it
+     * should be fast and should not block.
      *
+     * @param  filter
+     *                     the items to include in the stream
+     * @param  keys
+     *                     the keys of all the items the filter can match, or null
+     *                     if the filter can match any key. Ignored unless the
+     *                     queue is indexed.
      * @param  timeout
      *                     The stream will be valid for a period of timeout. If the
      *                     stream is not read prior to timeout, then it will be empty.
@@ -86,14 +353,213 @@ public class MultiQueue<T> implements AutoCloseable {
      *                     the TimeUnit for the timeout
      * @return         the stream
      */
-    synchronized public Stream<T> stream(long timeout, TimeUnit unit) {
-        SpliteratorImplementation<T> spliterator = new SpliteratorImplementation<>(list, timeout, unit);
+    public Stream<T> stream(Predicate<? super T> filter, int[] keys, long timeout, TimeUnit unit) {
+        Cursor<T> spliterator;
+        synchronized (this) {
+            removeInactiveSubscriptions();
+            Subscription<T> subscription = new Subscription<>(filter, ring);
+            if (keys == null || keyOf == null) {
+                unindexed.add(subscription);
+            } else {
+                for (int key : keys) {
+                    index.computeIfAbsent(key, k -> new ArrayList<>()).add(subscription);
+                }
+            }
+            spliterator = subscription.open(timeout, unit);
+            subscribers.put(spliterator, subscription);
+        }
+        return register(spliterator);
+    }
+
+    /**
+     * Filtered streams that have been closed, timed out or garbage collected no
+     * longer need to be matched.
+     */
+    private void removeInactiveSubscriptions() {
+        long now = Clock.get().millis();
+        unindexed.removeIf(s -> !s.isActive(now));
+        index.values().forEach(subscriptions -> subscriptions.removeIf(s -> !s.isActive(now)));
+        index.values().removeIf(List::isEmpty);
+    }
+
+    private Cursor<T> getSpliterator(Stream<T> stream) {
+        synchronized (spliterators) {
+            return spliterators.get(stream);
+        }
+    }
+
+    private RingSpliterator<T> getRingSpliterator(Stream<T> stream) {
+        requireRing();
+        Cursor<T> spliterator = getSpliterator(stream);
+        if (spliterator == null) {
+            throw new IllegalArgumentException("Invalid stream.");
+        }
+        return (RingSpliterator<T>) spliterator;
+    }
+
+    private Stream<T> register(Cursor<T> spliterator) {
         Stream<T> stream = StreamSupport.stream(spliterator, false);
-        spliterators.put(stream, spliterator);
+        synchronized (spliterators) {
+            spliterators.put(stream, spliterator);
+        }
         stream.onClose(spliterator::close);
         return stream;
     }
 
+    private Ring<T> requireRing() {
+        if (ring == null) {
+            throw new IllegalStateException("Only available on a ring buffer backed MultiQueue.");
+        }
+        return ring;
+    }
+
+    /**
+     * A snapshot of the state of a ring buffer backed MultiQueue.
+     */
+    public static class Metrics {
+        private final long bytes;
+        private final long depth;
+        private final long detached;
+        private final long[] lags;
+        private final long lost;
+        private final Optional<Instant> oldest;
+        private final long wakeups;
+
+        private Metrics(long depth,
+                        long bytes,
+                        Optional<Instant> oldest,
+                        long[] lags,
+                        long lost,
+                        long detached,
+                        long wakeups) {
+            this.depth = depth;
+            this.bytes = bytes;
+            this.oldest = oldest;
+            this.lags = lags;
+            this.lost = lost;
+            this.detached = detached;
+            this.wakeups = wakeups;
+        }
+
+        /**
+         * @return the retained size, if retainBytes() is used
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * @return the number of retained items
+         */
+        public long getDepth() {
+            return depth;
+        }
+
+        /**
+         * @return the number of streams detached for falling behind
+         */
+        public long getDetached() {
+            return detached;
+        }
+
+        /**
+         * @return the number of unread items of each open stream
+         */
+        public long[] getLags() {
+            return lags.clone();
+        }
+
+        /**
+         * @return the number of items evicted before a stream read them
+         */
+        public long getLost() {
+            return lost;
+        }
+
+        public long getMaxLag() {
+            return Arrays.stream(lags).max().orElse(0);
+        }
+
+        /**
+         * @return when the oldest retained item was added
+         */
+        public Optional<Instant> getOldestTimestamp() {
+            return oldest;
+        }
+
+        /**
+         * @return the number of times a parked stream, filtered or not, was woken
+         */
+        public long getWakeups() {
+            return wakeups;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("depth: %,d bytes: %,d oldest: %s max lag: %,d lost: %,d detached: %,d wakeups: %,d",
+                                 depth,
+                                 bytes,
+                                 oldest.map(Instant::toString).orElse("none"),
+                                 getMaxLag(),
+                                 lost,
+                                 detached,
+                                 wakeups);
+        }
+    }
+
+    /**
+     * The items matching the filter of one or more filtered streams, the
+     * original and its duplicates. Each has its own ring or linked list, so
+     * parked streams are only woken by matching items.
+     */
+    static private class Subscription<T> {
+        /** weak, so that abandoned streams can be garbage collected */
+        private final List<WeakReference<Cursor<T>>> cursors = new ArrayList<>();
+        private final Predicate<? super T> filter;
+        /** null for a linked list backed queue */
+        private final Ring<T> ring;
+        private Item<T> tail;
+
+        Subscription(Predicate<? super T> filter, Ring<T> parent) {
+            this.filter = filter;
+            if (parent == null) {
+                ring = null;
+                tail = new Item<>(null);
+            } else {
+                ring = new Ring<>(parent);
+            }
+        }
+
+        void add(Cursor<T> cursor) {
+            cursors.add(new WeakReference<>(cursor));
+        }
+
+        boolean isActive(long now) {
+            cursors.removeIf(r -> {
+                Cursor<T> c = r.get();
+                return c == null || !c.isOpen(now);
+            });
+            return !cursors.isEmpty();
+        }
+
+        void offer(T v) {
+            if (filter.test(v)) {
+                if (ring == null) {
+                    tail = tail.add(v);
+                } else {
+                    ring.add(v);
+                }
+            }
+        }
+
+        Cursor<T> open(long timeout, TimeUnit unit) {
+            Cursor<T> cursor = ring == null ? new SpliteratorImplementation<>(tail, timeout, unit)
+                    : new RingSpliterator<>(ring, timeout, unit);
+            add(cursor);
+            return cursor;
+        }
+    }
+
     static private class Item<T> {
         final T value;
         MultiQueue.Item<T> next;
@@ -104,14 +570,15 @@ public class MultiQueue<T> implements AutoCloseable {
 
         synchronized MultiQueue.Item<T> add(T v) {
             next = new MultiQueue.Item<>(v);
-            notifyAll();
+            Clock.get().notifyAll(this);
             return next;
         }
 
         synchronized MultiQueue.Item<T> next(long delay) {
             if (next == null) {
                 try {
-                    wait(delay);
+                    Clock clock = Clock.get();
+                    clock.waitUntil(this, clock.millis() + delay);
                 } catch (InterruptedException e) {
                     // no problem
                 }
@@ -120,7 +587,36 @@ public class MultiQueue<T> implements AutoCloseable {
         }
     }
 
-    private final static class SpliteratorImplementation<T> implements Spliterator<T> {
+    /**
+     * A stream position. Each stream has its own cursor, so streams can be
+     * consumed independently of each other.
+     */
+    private interface Cursor<T> extends Spliterator<T> {
+        void close();
+
+        /** @return a new cursor at the same position with the same timeout */
+        Cursor<T> copy();
+
+        boolean isClosed();
+
+        /** @return true if the stream is neither closed nor timed out */
+        boolean isOpen(long now);
+
+        void setTimeout(long timeout, TimeUnit unit);
+
+        @Override
+        default int characteristics() {
+            return IMMUTABLE | ORDERED;
+        }
+
+        @Override
+        default Spliterator<T> trySplit() {
+            // Do not split.
+            return null;
+        }
+    }
+
+    private final static class SpliteratorImplementation<T> implements Cursor<T> {
         // how often to check for new items
         private static final int POLLING_PERIOD = 2;
         // end time of stream
@@ -133,18 +629,35 @@ public class MultiQueue<T> implements AutoCloseable {
             setTimeout(timeout, unit);
         }
 
+        public SpliteratorImplementation(MultiQueue.SpliteratorImplementation<T> that) {
+            item = that.item;
+            end = that.end;
+        }
+
+        @Override
         public void close() {
             end = 0;
             item = null;
         }
 
-        public SpliteratorImplementation(MultiQueue.SpliteratorImplementation<T> that) {
-            item = that.item;
-            end = that.end;
+        @Override
+        public Cursor<T> copy() {
+            return new SpliteratorImplementation<>(this);
         }
 
+        @Override
+        public boolean isClosed() {
+            return item == null;
+        }
+
+        @Override
+        public boolean isOpen(long now) {
+            return item != null && end > now;
+        }
+
+        @Override
         public void setTimeout(long timeout, TimeUnit unit) {
-            end = System.currentTimeMillis() + unit.toMillis(timeout);
+            end = Clock.get().millis() + unit.toMillis(timeout);
         }
 
         @Override
@@ -153,7 +666,7 @@ public class MultiQueue<T> implements AutoCloseable {
              * While not timed out, wait up to POLLING_PERIOD ms for next packet, then loop.
              * This allows us to check for timeout and next packet in same thread.
              */
-            while (System.currentTimeMillis() < end) {
+            while (Clock.get().millis() < end) {
                 Item<T> n = item.next(POLLING_PERIOD);
                 if (n != null) {
                     item = n;
@@ -166,12 +679,6 @@ public class MultiQueue<T> implements AutoCloseable {
             return false;
         }
 
-        @Override
-        public Spliterator<T> trySplit() {
-            // Do not split.
-            return null;
-        }
-
         @Override
         public long estimateSize() {
             int count = 0;
@@ -182,10 +689,322 @@ public class MultiQueue<T> implements AutoCloseable {
             }
             return count;
         }
+    }
+
+    /**
+     * Fixed size buffer of the most recent items. Items are numbered by a
+     * sequence that starts at 0, and the item with sequence s is stored at s &
+     * mask. Items from head to tail are retained. Items are evicted when the
+     * ring is full or when they exceed the age or size limits.
+     */
+    static private class Ring<T> {
+        /** retained bytes as reported by sizeOf */
+        private long bytes;
+        /** number of streams detached for falling behind */
+        private long detached;
+        private boolean detachSlowReaders;
+        /** the number of items retained at most, a power of 2 */
+        private final int capacity;
+        /** sequence of the oldest retained item */
+        private long head;
+        /** number of items dropped by streams that fell behind */
+        private long lost;
+        private int mask;
+        /** 0 for no age limit */
+        private long maxAgeMillis;
+        private long maxBytes;
+        private ToLongFunction<? super T> sizeOf;
+        private long[] sizes;
+        /** sequence of the next item to be added */
+        private long tail;
+        /** when each item was added */
+        private long[] times;
+        private Object[] values;
+        /** number of cursors waiting on this ring */
+        private int waiting;
+        /** number of times a waiting cursor was woken. Shared with filtered rings. */
+        private final AtomicLong wakeups;
+
+        Ring(int capacity) {
+            int size = Integer.highestOneBit(capacity);
+            if (size < capacity) {
+                size <<= 1;
+            }
+            this.capacity = size;
+            wakeups = new AtomicLong();
+            values = new Object[size];
+            times = new long[size];
+            mask = size - 1;
+        }
+
+        /**
+         * A ring for the items of a filtered stream, with the capacity and the
+         * retention of the parent. Starts at {@link MultiQueue#SUBSCRIPTION_CAPACITY} and
+         * grows as needed.
+         */
+        Ring(Ring<T> parent) {
+            synchronized (parent) {
+                capacity = parent.capacity;
+                wakeups = parent.wakeups;
+                maxAgeMillis = parent.maxAgeMillis;
+                detachSlowReaders = parent.detachSlowReaders;
+                int size = Math.min(SUBSCRIPTION_CAPACITY, capacity);
+                values = new Object[size];
+                times = new long[size];
+                mask = size - 1;
+                if (parent.sizes != null) {
+                    maxBytes = parent.maxBytes;
+                    sizeOf = parent.sizeOf;
+                    sizes = new long[size];
+                }
+            }
+        }
+
+        synchronized void add(T v) {
+            append(v);
+            if (waiting > 0) {
+                Clock.get().notifyAll(this);
+            }
+        }
+
+        synchronized void addAll(Collection<? extends T> vs) {
+            for (T v : vs) {
+                append(v);
+            }
+            if (waiting > 0) {
+                Clock.get().notifyAll(this);
+            }
+        }
+
+        private void append(T v) {
+            long now = Clock.get().millis();
+            if (maxAgeMillis > 0) {
+                while (head < tail && times[slot(head)] < now - maxAgeMillis) {
+                    evict();
+                }
+            }
+            if (tail - head == values.length) {
+                if (values.length < capacity) {
+                    grow();
+                } else {
+                    evict();
+                }
+            }
+            int slot = slot(tail);
+            values[slot] = v;
+            times[slot] = now;
+            if (sizes != null) {
+                sizes[slot] = sizeOf.applyAsLong(v);
+                bytes += sizes[slot];
+            }
+            tail++;
+            if (sizes != null) {
+                // always keep the newest item
+                while (bytes > maxBytes && head < tail - 1) {
+                    evict();
+                }
+            }
+        }
+
+        /** Drop the oldest item, so it can be garbage collected. */
+        private void evict() {
+            int slot = slot(head);
+            values[slot] = null;
+            if (sizes != null) {
+                bytes -= sizes[slot];
+            }
+            head++;
+        }
+
+        /** Double the size of the arrays, keeping each item at its sequence. */
+        private void grow() {
+            int size = values.length * 2;
+            Object[] newValues = new Object[size];
+            long[] newTimes = new long[size];
+            long[] newSizes = sizes == null ? null : new long[size];
+            for (long s = head; s < tail; s++) {
+                int from = slot(s);
+                int to = (int) (s & (size - 1));
+                newValues[to] = values[from];
+                newTimes[to] = times[from];
+                if (newSizes != null) {
+                    newSizes[to] = sizes[from];
+                }
+            }
+            values = newValues;
+            times = newTimes;
+            sizes = newSizes;
+            mask = size - 1;
+        }
+
+        @SuppressWarnings("unchecked")
+        T get(long sequence) {
+            return (T) values[slot(sequence)];
+        }
+
+        synchronized void retainBytes(long maxBytes, ToLongFunction<? super T> sizeOf) {
+            this.maxBytes = maxBytes;
+            this.sizeOf = sizeOf;
+            sizes = new long[values.length];
+            bytes = 0;
+            for (long s = head; s < tail; s++) {
+                sizes[slot(s)] = sizeOf.applyAsLong(get(s));
+                bytes += sizes[slot(s)];
+            }
+        }
+
+        private int slot(long sequence) {
+            return (int) (sequence & mask);
+        }
+
+        /** Wake all waiting cursors, so they can recheck their deadline. */
+        synchronized void wake() {
+            Clock.get().notifyAll(this);
+        }
+
+        synchronized long tail() {
+            return tail;
+        }
+    }
+
+    private final static class RingSpliterator<T> implements Cursor<T> {
+        private boolean closed;
+        // sequence of the next item to read
+        private long cursor;
+        // end time of stream
+        private long end;
+        // number of items evicted before this stream read them
+        private long lost;
+        private final Ring<T> ring;
+
+        private RingSpliterator(Ring<T> ring, long timeout, TimeUnit unit) {
+            this.ring = ring;
+            cursor = ring.tail();
+            setTimeout(timeout, unit);
+        }
+
+        private RingSpliterator(RingSpliterator<T> that) {
+            synchronized (that.ring) {
+                ring = that.ring;
+                cursor = that.cursor;
+                end = that.end;
+            }
+        }
 
         @Override
-        public int characteristics() {
-            return IMMUTABLE | ORDERED;
+        public void close() {
+            synchronized (ring) {
+                closed = true;
+                end = 0;
+                ring.wake();
+            }
+        }
+
+        @Override
+        public Cursor<T> copy() {
+            return new RingSpliterator<>(this);
+        }
+
+        @Override
+        public boolean isClosed() {
+            synchronized (ring) {
+                return closed;
+            }
+        }
+
+        @Override
+        public boolean isOpen(long now) {
+            synchronized (ring) {
+                return !closed && end > now;
+            }
+        }
+
+        @Override
+        public void setTimeout(long timeout, TimeUnit unit) {
+            synchronized (ring) {
+                end = Clock.get().millis() + unit.toMillis(timeout);
+                // a shorter timeout has to be noticed by a parked reader
+                ring.wake();
+            }
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            T value;
+            synchronized (ring) {
+                while (true) {
+                    if (closed) {
+                        return false;
+                    }
+                    if (cursor < ring.head) {
+                        fellBehind();
+                        if (closed) {
+                            return false;
+                        }
+                    }
+                    if (cursor < ring.tail) {
+                        value = ring.get(cursor++);
+                        break;
+                    }
+                    Clock clock = Clock.get();
+                    if (end <= clock.millis()) {
+                        closed = true;
+                        return false;
+                    }
+                    ring.waiting++;
+                    try {
+                        clock.waitUntil(ring, end);
+                    } catch (InterruptedException e) {
+                        // no problem
+                    } finally {
+                        ring.waiting--;
+                    }
+                    ring.wakeups.incrementAndGet();
+                }
+            }
+            action.accept(value);
+            return true;
+        }
+
+        @Override
+        public long estimateSize() {
+            synchronized (ring) {
+                return ring.tail - Math.max(cursor, ring.head);
+            }
+        }
+
+        /**
+         * The items between cursor and head have been evicted. Either skip to the
+         * oldest retained item or detach the stream. Called with the ring lock
+         * held.
+         */
+        private void fellBehind() {
+            long missed = ring.head - cursor;
+            if (lost == 0) {
+                logger.warning(String.format("Stream %s by %,d items.",
+                                             ring.detachSlowReaders ? "detached for falling behind" : "fell behind",
+                                             missed));
+            }
+            lost += missed;
+            ring.lost += missed;
+            cursor = ring.head;
+            if (ring.detachSlowReaders) {
+                ring.detached++;
+                closed = true;
+            }
+        }
+
+        /** @return the number of items added, but not yet read by this stream */
+        long getLag() {
+            synchronized (ring) {
+                return closed ? 0 : ring.tail - cursor;
+            }
+        }
+
+        long getLost() {
+            synchronized (ring) {
+                return lost;
+            }
         }
     }
 }
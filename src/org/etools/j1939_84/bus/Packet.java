@@ -3,7 +3,10 @@
  */
 package org.etools.j1939_84.bus;
 
+import java.nio.ByteBuffer;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
 import java.util.Collection;
@@ -17,12 +20,17 @@ import java.util.stream.Stream;
 import org.etools.j1939_84.J1939_84;
 import org.etools.j1939_84.bus.j1939.J1939;
 import org.etools.j1939_84.modules.DateTimeModule;
+import org.etools.j1939_84.utils.Clock;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 /**
  * Sends a Packet containing an id with data from a source onto the bus
  *
+ * The data is held as the raw bytes and the timestamp as ns since the epoch.
+ * The LocalDateTime timestamp and the fragment list are only created when
+ * asked for. Once the data is complete, reads do not lock.
+ *
  * @author Joe Batt (joe@soliddesign.net)
  */
 public class Packet {
@@ -32,13 +40,24 @@ public class Packet {
      * The indication that a packet was transmitted
      */
     public static final String TX = " (TX)";
+    /** data of a failed packet */
+    private static final byte[] FAILED = new byte[0];
+    private static final long GIGA = 1_000_000_000L;
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    /** reused by toTimeString, the longest TP packet fits */
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(6000));
     private final int id;
     private final int priority;
     private final int source;
     private final boolean transmitted;
-    private int[] data;
-    private List<Packet> fragments = Collections.singletonList(this);
-    private LocalDateTime timestamp;
+    /** null until complete, FAILED if failed */
+    private volatile byte[] data;
+    /** null for just this packet */
+    private List<Packet> fragments;
+    /** ns since the epoch */
+    private volatile long timestampNanos;
+    /** created from timestampNanos when needed */
+    private volatile LocalDateTime timestamp;
 
     /**
      * Creates a Packet
@@ -55,21 +74,41 @@ public class Packet {
      *                        the data of the packet
      */
     private Packet(LocalDateTime timestamp, int priority, int id, int source, boolean transmitted, int... data) {
+        this(toNanos(timestamp), priority, id, source, transmitted, toBytes(data));
         this.timestamp = timestamp;
+    }
+
+    /**
+     * @param data
+     *                 the data bytes, which are not copied
+     */
+    private Packet(long timestampNanos, int priority, int id, int source, boolean transmitted, byte[] data) {
+        this.timestampNanos = timestampNanos;
         this.priority = priority;
         this.id = id;
         this.source = source;
         this.transmitted = transmitted;
         this.data = data;
-        if (data != null) {
-            for (int i = 0; i < data.length; i++) {
-                data[i] &= 0xFF;
-            }
+    }
+
+    private static byte[] toBytes(int[] data) {
+        if (data == null) {
+            return null;
         }
+        byte[] bytes = new byte[data.length];
+        for (int i = 0; i < data.length; i++) {
+            bytes[i] = (byte) data[i];
+        }
+        return bytes;
+    }
+
+    private static long toNanos(LocalDateTime time) {
+        Instant instant = time.atZone(ZoneId.systemDefault()).toInstant();
+        return instant.getEpochSecond() * GIGA + instant.getNano();
     }
 
     public static Packet create(int id, int source, boolean transmitted, int... data) {
-        return new Packet(LocalDateTime.now(), 6, id, source, transmitted, data);
+        return new Packet(LocalDateTime.now(Clock.get()), 6, id, source, transmitted, data);
     }
 
     /**
@@ -118,7 +157,7 @@ public class Packet {
      * @return             Packet
      */
     public static Packet create(int priority, int id, int source, boolean transmitted, byte... bytes) {
-        return create(LocalDateTime.now(), priority, id, source, transmitted, bytes);
+        return create(LocalDateTime.now(Clock.get()), priority, id, source, transmitted, bytes);
     }
 
     public static Packet create(LocalDateTime time,
@@ -127,15 +166,42 @@ public class Packet {
                                 int source,
                                 boolean transmitted,
                                 byte... bytes) {
+        Packet packet = create(toNanos(time), priority, id, source, transmitted, bytes.clone());
+        packet.timestamp = time;
+        return packet;
+    }
+
+    /**
+     * Creates an instance of Packet without copying the data. Used by the buses
+     * to create packets with as few allocations as possible.
+     *
+     * @param  timestampNanos
+     *                            when the packet was received, in ns since the
+     *                            epoch
+     * @param  priority
+     *                            the priority of the packet
+     * @param  id
+     *                            the ID of the packet
+     * @param  source
+     *                            the source address of the packet
+     * @param  transmitted
+     *                            indicates the packet was sent by the application
+     * @param  bytes
+     *                            the data bytes of the packet. Owned by the packet
+     *                            from now on.
+     * @return                Packet
+     */
+    public static Packet create(long timestampNanos,
+                                int priority,
+                                int id,
+                                int source,
+                                boolean transmitted,
+                                byte[] bytes) {
         if (bytes.length < 3) {
             // a body of 0 length indicates that the packet was a failure.
             throw new IllegalArgumentException("Packets must have a body of at least 3 bytes.");
         }
-        int[] data = new int[bytes.length];
-        for (int i = 0; i < bytes.length; i++) {
-            data[i] = 0xFF & bytes[i];
-        }
-        return new Packet(time, priority, id, source, transmitted, data);
+        return new Packet(timestampNanos, priority, id, source, transmitted, bytes);
     }
 
     public static Packet create(LocalDateTime time,
@@ -200,14 +266,14 @@ public class Packet {
 
     public static Packet parseVector(LocalDateTime start, String line) {
         String[] a = line.trim().split("\\s+");
-        if (a.length > 5 && a[1].equals("1") && a[3].equals("Rx")) {
+        if (a.length > 5 && a[1].equals("1") && (a[3].equals("Rx") || a[3].equals("Tx"))) {
             int id = Integer.parseInt(a[2].substring(0, a[2].length() - 1), 16);
 
             return new Packet(start.plusNanos((long) (Double.parseDouble(a[0]) * 1000000000)),
                               6,
                               0xFFFFFF & (id >> 8),
                               0xFF & id,
-                              false,
+                              a[3].equals("Tx"),
                               Stream.of(Arrays.copyOfRange(a, 6, 6 + Integer.parseInt(a[5]), String[].class))
                                     .mapToInt(s -> Integer.parseInt(s, 16))
                                     .toArray());
@@ -216,7 +282,7 @@ public class Packet {
     }
 
     synchronized public void fail() {
-        data = new int[0];
+        data = FAILED;
         notifyAll();
     }
 
@@ -228,7 +294,7 @@ public class Packet {
      * @return   int
      */
     public int get(int i) {
-        return getData()[i];
+        return getData()[i] & 0xFF;
     }
 
     /**
@@ -239,7 +305,8 @@ public class Packet {
      * @return   int
      */
     public int get16(int i) {
-        return (getData()[i + 1] << 8) | getData()[i];
+        byte[] d = getData();
+        return ((d[i + 1] & 0xFF) << 8) | (d[i] & 0xFF);
     }
 
     /**
@@ -251,7 +318,8 @@ public class Packet {
      * @return   int
      */
     public int get16Big(int i) {
-        return (getData()[i] << 8) | getData()[i + 1];
+        byte[] d = getData();
+        return ((d[i] & 0xFF) << 8) | (d[i + 1] & 0xFF);
     }
 
     /**
@@ -263,7 +331,8 @@ public class Packet {
      * @return   int
      */
     public int get24(int i) {
-        return (getData()[i + 2] << 16) | (getData()[i + 1] << 8) | getData()[i];
+        byte[] d = getData();
+        return ((d[i + 2] & 0xFF) << 16) | ((d[i + 1] & 0xFF) << 8) | (d[i] & 0xFF);
     }
 
     /**
@@ -275,7 +344,8 @@ public class Packet {
      * @return   int
      */
     public int get24Big(int i) {
-        return (getData()[i] << 16) | (getData()[i + 1] << 8) | getData()[i + 2];
+        byte[] d = getData();
+        return ((d[i] & 0xFF) << 16) | ((d[i + 1] & 0xFF) << 8) | (d[i + 2] & 0xFF);
     }
 
     /**
@@ -287,8 +357,9 @@ public class Packet {
      * @return   int
      */
     public long get32(int i) {
-        return ((long) (getData()[i + 3] & 0xFF) << 24) | ((getData()[i + 2] & 0xFF) << 16)
-                | ((getData()[i + 1] & 0xFF) << 8) | (getData()[i] & 0xFF);
+        byte[] d = getData();
+        return ((long) (d[i + 3] & 0xFF) << 24) | ((d[i + 2] & 0xFF) << 16) | ((d[i + 1] & 0xFF) << 8)
+                | (d[i] & 0xFF);
     }
 
     /**
@@ -300,28 +371,55 @@ public class Packet {
      * @return   int
      */
     public long get32Big(int i) {
-        return ((long) getData()[i] << 24) | ((long) getData()[i + 1] << 16) | ((long) getData()[i + 2] << 8)
-                | getData()[i + 3];
+        byte[] d = getData();
+        return ((long) (d[i] & 0xFF) << 24) | ((d[i + 1] & 0xFF) << 16) | ((d[i + 2] & 0xFF) << 8)
+                | (d[i + 3] & 0xFF);
     }
 
     public long get64() {
         return ((get32(0)) << 32) | get32(4);
     }
 
+    /**
+     * Puts the data bytes into the buffer, without copying them to an array
+     * first.
+     *
+     * @param buffer
+     *                   the {@link ByteBuffer} to put the data into
+     */
+    public void putData(ByteBuffer buffer) {
+        buffer.put(getData());
+    }
+
     /**
      * Returns the data as an array of bytes
      *
      * @return byte[]
      */
     public byte[] getBytes() {
-        byte[] bytes = new byte[getData().length];
-        for (int i = 0; i < bytes.length; i++) {
-            bytes[i] = (byte) getData()[i];
+        return getData().clone();
+    }
+
+    /**
+     * @return the data, once complete. Only locks while waiting for the data.
+     */
+    private byte[] getData() {
+        byte[] d = data;
+        if (d == null) {
+            d = awaitData();
         }
-        return bytes;
+        if (d.length == 0) {
+            throw new PacketException(String.format("Failed Packet: %s %06X%02X [?] ...",
+                                                    DateTimeModule.getInstance()
+                                                                  .getTimeFormatter()
+                                                                  .format(getTimestamp()),
+                                                    priority << 18 | id,
+                                                    source));
+        }
+        return d;
     }
 
-    synchronized private int[] getData() {
+    synchronized private byte[] awaitData() {
         while (data == null) {
             try {
                 wait();
@@ -329,23 +427,21 @@ public class Packet {
                 // No worries
             }
         }
-        if (data.length == 0) {
-            throw new PacketException(String.format("Failed Packet: %s %06X%02X [?] ...",
-                                                    DateTimeModule.getInstance().getTimeFormatter().format(timestamp),
-                                                    priority << 18 | id,
-                                                    source));
-        }
         return data;
     }
 
     synchronized public void setData(byte... data) {
+        setData(data, data.length);
+    }
+
+    /**
+     * Completes the packet with the first length bytes of data.
+     */
+    synchronized public void setData(byte[] data, int length) {
         if (isComplete()) {
             throw new PacketException("Packet already initialized.");
         }
-        this.data = new int[data.length];
-        for (int i = 0; i < data.length; i++) {
-            this.data[i] = (0xFF & data[i]);
-        }
+        this.data = Arrays.copyOf(data, length);
         notifyAll();
     }
 
@@ -360,7 +456,12 @@ public class Packet {
      */
     @SuppressFBWarnings(value = "UG_SYNC_SET_UNSYNC_GET", justification = "This method is not a reciprocal of the setData method")
     public int[] getData(int beginIndex, int endIndex) {
-        return Arrays.copyOfRange(getData(), beginIndex, endIndex);
+        byte[] d = getData();
+        int[] result = new int[endIndex - beginIndex];
+        for (int i = 0; i < result.length && beginIndex + i < d.length; i++) {
+            result[i] = d[beginIndex + i] & 0xFF;
+        }
+        return result;
     }
 
     public int getPgn() {
@@ -381,7 +482,8 @@ public class Packet {
     }
 
     public List<Packet> getFragments() {
-        return fragments;
+        List<Packet> f = fragments;
+        return f == null ? Collections.singletonList(this) : f;
     }
 
     public void setFragments(List<Packet> fragments) {
@@ -432,11 +534,25 @@ public class Packet {
      * @return {@link LocalDateTime}
      */
     public LocalDateTime getTimestamp() {
-        return timestamp;
+        LocalDateTime t = timestamp;
+        if (t == null) {
+            long nanos = timestampNanos;
+            t = LocalDateTime.ofInstant(Instant.ofEpochSecond(nanos / GIGA, nanos % GIGA), ZoneId.systemDefault());
+            timestamp = t;
+        }
+        return t;
+    }
+
+    /**
+     * @return when the packet was received, in ns since the epoch
+     */
+    public long getTimestampNanos() {
+        return timestampNanos;
     }
 
     public void setTimestamp(LocalDateTime timestamp2) {
         timestamp = timestamp2;
+        timestampNanos = toNanos(timestamp2);
     }
 
     @Override
@@ -455,19 +571,42 @@ public class Packet {
 
         Packet that = (Packet) obj;
         return id == that.id && priority == that.priority && source == that.source && transmitted == that.transmitted
-                && Objects.deepEquals(getData(), that.getData());
+                && Arrays.equals(getData(), that.getData());
     }
 
     @Override
     public String toString() {
-        return String.format("%06X%02X [%s] %s",
-                             priority << 18 | id,
-                             source,
-                             getLength(),
-                             Arrays.stream(getData())
-                                   .mapToObj(x -> String.format("%02X", x))
-                                   .collect(Collectors.joining(" "))
-                                     + (transmitted ? TX : RX));
+        byte[] d = getData();
+        return appendTo(new StringBuilder(20 + d.length * 3), d).toString();
+    }
+
+    /**
+     * Appends the value in hex, with at least the given digits, like "%0nX".
+     */
+    private static StringBuilder appendHex(StringBuilder sb, int value, int digits) {
+        if (value >>> (digits * 4) != 0) {
+            return sb.append(Integer.toHexString(value).toUpperCase());
+        }
+        for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4) {
+            sb.append(HEX[(value >>> shift) & 0xF]);
+        }
+        return sb;
+    }
+
+    /**
+     * Appends the same as {@link #toString()} returns.
+     */
+    private StringBuilder appendTo(StringBuilder sb, byte[] d) {
+        appendHex(sb, priority << 18 | id, 6);
+        appendHex(sb, source, 2);
+        sb.append(" [").append(d.length).append("] ");
+        for (int i = 0; i < d.length; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(HEX[(d[i] >> 4) & 0xF]).append(HEX[d[i] & 0xF]);
+        }
+        return sb.append(transmitted ? TX : RX);
     }
 
     public boolean isComplete() {
@@ -495,8 +634,11 @@ public class Packet {
          * Collect data first, because timestamp is dynamic until the data is collected. This will block on the data. We
          * want to report the timestamp of final packet.
          */
-        String dataString = toString();
-        return DateTimeModule.getInstance().getTimeFormatter().format(timestamp) + " " + dataString;
+        byte[] d = getData();
+        StringBuilder sb = BUFFER.get();
+        sb.setLength(0);
+        DateTimeModule.getInstance().appendTime(sb, getTimestamp()).append(' ');
+        return appendTo(sb, d).toString();
     }
 
     static public class PacketException extends RuntimeException {
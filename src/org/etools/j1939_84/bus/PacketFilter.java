@@ -0,0 +1,107 @@
+/*
+ * Copyright 2021 Equipment & Tool Institute
+ */
+package org.etools.j1939_84.bus;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/**
+ * A simple PGN, source, destination and id/mask specification of the
+ * {@link Packet}s a reader is interested in. Buses match the filter once, as
+ * each packet is received, and only wake the readers it matches.
+ *
+ * A filter without PGNs matches every PGN.
+ */
+public class PacketFilter implements Predicate<Packet> {
+
+    /**
+     * Matches any PGN, source and destination.
+     */
+    public static PacketFilter all() {
+        return new PacketFilter(null, -1, null, 0, 0);
+    }
+
+    /**
+     * Matches the given PGNs from any source to any destination.
+     */
+    public static PacketFilter pgns(int... pgns) {
+        return new PacketFilter(pgns.clone(), -1, null, 0, 0);
+    }
+
+    private final int[] destinations;
+    private final int id;
+    private final int mask;
+    private final int[] pgns;
+    private final int source;
+
+    private PacketFilter(int[] pgns, int source, int[] destinations, int id, int mask) {
+        this.pgns = pgns;
+        this.source = source;
+        this.destinations = destinations;
+        this.id = id;
+        this.mask = mask;
+    }
+
+    /**
+     * @return a copy of this filter that only matches the given source
+     */
+    public PacketFilter from(int source) {
+        return new PacketFilter(pgns, source, destinations, id, mask);
+    }
+
+    /**
+     * @return the PGNs matched, or null if all PGNs are matched
+     */
+    public int[] getPgns() {
+        return pgns == null ? null : pgns.clone();
+    }
+
+    /**
+     * @return a copy of this filter that only matches packets whose id, masked
+     *         by mask, is id
+     */
+    public PacketFilter id(int id, int mask) {
+        return new PacketFilter(pgns, source, destinations, id & mask, mask);
+    }
+
+    @Override
+    public boolean test(Packet p) {
+        if (pgns != null && !contains(pgns, p.getPgn())) {
+            return false;
+        }
+        if (source >= 0 && p.getSource() != source) {
+            return false;
+        }
+        if (destinations != null && !contains(destinations, p.getDestination())) {
+            return false;
+        }
+        return p.getId(mask) == id;
+    }
+
+    /**
+     * @return a copy of this filter that only matches the given destinations
+     */
+    public PacketFilter to(int... destinations) {
+        return new PacketFilter(pgns, source, destinations.clone(), id, mask);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PacketFilter pgns: %s source: %s destinations: %s id: %X/%X",
+                             pgns == null ? "any" : Arrays.toString(pgns),
+                             source < 0 ? "any" : source,
+                             destinations == null ? "any" : Arrays.toString(destinations),
+                             id,
+                             mask);
+    }
+
+    private static boolean contains(int[] values, int value) {
+        for (int v : values) {
+            if (v == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
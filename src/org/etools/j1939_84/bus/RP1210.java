@@ -5,6 +5,7 @@ package org.etools.j1939_84.bus;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -15,8 +16,14 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.etools.j1939_84.J1939_84;
+import org.etools.j1939_84.bus.capture.CaptureWriter;
+import org.etools.j1939_84.bus.capture.RecordingBus;
 import org.etools.j1939_84.bus.j1939.J1939TP;
 import org.etools.j1939_84.bus.simulated.Engine;
+import org.etools.j1939_84.bus.simulated.VehicleProfile;
+import org.etools.j1939_84.bus.simulated.VehicleSimulator;
+import org.etools.j1939_84.utils.Clock;
+import org.etools.j1939_84.utils.VirtualClock;
 import org.ini4j.Ini;
 import org.ini4j.Profile.Section;
 
@@ -33,6 +40,15 @@ public class RP1210 {
      */
     public static final short FAKE_DEV_ID = (short) -1;
 
+    /** the directory to record the bus to, if set */
+    static final String CAPTURE_DIR_PROPERTY = "j1939_84.captureDir";
+
+    /** the {@link VehicleProfile} the loop back adapter simulates, if set */
+    static final String SIMULATOR_PROFILE_PROPERTY = "j1939_84.simulatorProfile";
+
+    /** runs the loop back adapter on a {@link VirtualClock}, if true */
+    static final String VIRTUAL_TIME_PROPERTY = "j1939_84.virtualTime";
+
     static final String WINDOWS_PATH = System.getenv("WINDIR");
 
     /**
@@ -46,6 +62,9 @@ public class RP1210 {
 
     private AutoCloseable engine;
 
+    /** the clock installed for the loop back adapter, closed with the engine */
+    private VirtualClock virtualClock;
+
     /**
      * Default Constructor
      */
@@ -155,21 +174,38 @@ public class RP1210 {
      *                          if there is a problem setting the adapter
      */
     public Bus setAdapter(Adapter adapter, String connectionString, int address) throws BusException {
-        if (engine != null) {
-            try {
-                engine.close();
-            } catch (Exception e) {
-                throw new IllegalStateException("Unexpected error closing simulated engine.", e);
-            }
-            engine = null;
-        }
+        stopEngine();
 
         if (adapter.getDeviceId() == FAKE_DEV_ID) {
+            if (Boolean.getBoolean(VIRTUAL_TIME_PROPERTY) && !(Clock.get() instanceof VirtualClock)) {
+                virtualClock = new VirtualClock();
+                Clock.set(virtualClock);
+            }
             EchoBus bus = new EchoBus(address);
-            engine = new Engine(bus);
+            String profile = System.getProperty(SIMULATOR_PROFILE_PROPERTY);
+            if (profile == null) {
+                engine = new Engine(bus);
+            } else {
+                try {
+                    engine = new VehicleSimulator(bus, VehicleProfile.read(Paths.get(profile)));
+                } catch (IOException e) {
+                    throw new BusException("Unable to read the vehicle profile " + profile, e);
+                }
+            }
             return bus;
         } else {
-            return new J1939TP(new RP1210Bus(adapter, connectionString, address, true));
+            Bus bus = new RP1210Bus(adapter, connectionString, address, true);
+            String captureDir = System.getProperty(CAPTURE_DIR_PROPERTY);
+            if (captureDir != null) {
+                try {
+                    bus = new RecordingBus(bus,
+                                           new CaptureWriter(Paths.get(captureDir),
+                                                             CaptureWriter.DEFAULT_SEGMENT_SIZE));
+                } catch (IOException e) {
+                    throw new BusException("Unable to capture to " + captureDir, e);
+                }
+            }
+            return new J1939TP(bus);
         }
     }
 
@@ -221,4 +257,27 @@ public class RP1210 {
         String deviceName = driver.get("DeviceInformation" + devId).getOrDefault("DeviceDescription", "UNKNOWN");
         return new Adapter(vendorName + " - " + deviceName, id, deviceId, timestampWeight, connectionStrings);
     }
+
+    /**
+     * Stops the simulated engine or vehicle of the loop back adapter, if it is
+     * running, and closes the {@link VirtualClock} it ran on, so an adapter
+     * chosen later runs on the system clock.
+     */
+    public void stopEngine() {
+        if (engine != null) {
+            try {
+                engine.close();
+            } catch (Exception e) {
+                throw new IllegalStateException("Unexpected error closing simulated engine.", e);
+            }
+            engine = null;
+        }
+        if (virtualClock != null) {
+            if (Clock.get() == virtualClock) {
+                Clock.set(null);
+            }
+            virtualClock.close();
+            virtualClock = null;
+        }
+    }
 }
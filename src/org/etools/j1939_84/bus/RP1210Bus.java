@@ -12,14 +12,19 @@ import static org.etools.j1939_84.bus.RP1210Library.CMD_SET_ALL_FILTERS_STATES_T
 import static org.etools.j1939_84.bus.RP1210Library.ECHO_ON;
 
 import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Stream;
@@ -37,6 +42,21 @@ public class RP1210Bus implements Bus {
 
     private static final long GIGA = 1000000000;
 
+    /**
+     * The most frames read before they are handed to the decoder
+     */
+    private static final int MAX_BATCH = 64;
+
+    /**
+     * The number of idle batches kept for reuse
+     */
+    private static final int POOLED_BATCHES = 4;
+
+    /**
+     * The size of the receive buffer for one frame
+     */
+    private static final int RX_BUFFER_SIZE = 32;
+
     /**
      * The source address for this tool
      */
@@ -80,13 +100,39 @@ public class RP1210Bus implements Bus {
     // from the .INI file.
     final private long timestampWeight;
 
-    private boolean imposterDetected;
+    private volatile boolean imposterDetected;
+
+    /**
+     * Idle receive batches, so that the buffers are reused instead of being
+     * allocated for every frame.
+     */
+    private final ArrayBlockingQueue<Batch> batchPool = new ArrayBlockingQueue<>(POOLED_BATCHES);
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong frames = new AtomicLong();
+    private final AtomicInteger maxBatchSize = new AtomicInteger();
+    private final AtomicLong queueFull = new AtomicLong();
+    /** when polling started */
+    private final long startNanoTime = System.nanoTime();
+
+    /**
+     * Decoded batches waiting for an earlier batch to be queued, by sequence
+     */
+    private final Map<Long, List<Packet>> decoded = new HashMap<>();
+
+    /** The sequence of the next batch to be decoded. Only used by poll(). */
+    private long nextDecode;
+
+    /** The sequence of the next batch to be queued. Guarded by decoded. */
+    private long nextCommit;
 
     public RP1210Bus(Adapter adapter, String connectionString, int address, boolean appPacketize) throws BusException {
         this(RP1210Library.load(adapter),
              Executors.newFixedThreadPool(2),
              Executors.newSingleThreadExecutor(),
-             new MultiQueue<>(),
+             new MultiQueue<Packet>(MultiQueue.DEFAULT_CAPACITY).retainFor(1, TimeUnit.MINUTES)
+                                                               .retainBytes(16 << 20, Packet::getLength)
+                                                               .indexBy(Packet::getPgn),
              adapter,
              connectionString,
              address,
@@ -151,6 +197,17 @@ public class RP1210Bus implements Bus {
         return address;
     }
 
+    /**
+     * @return a snapshot of the receive counters
+     */
+    public Metrics getMetrics() {
+        return new Metrics(frames.get(),
+                           batches.get(),
+                           maxBatchSize.get(),
+                           queueFull.get(),
+                           System.nanoTime() - startNanoTime);
+    }
+
     @Override
     public int getConnectionSpeed() throws BusException {
         try {
@@ -173,6 +230,11 @@ public class RP1210Bus implements Bus {
         return queue.stream(timeout, unit);
     }
 
+    @Override
+    public Stream<Packet> read(PacketFilter filter, long timeout, TimeUnit unit) {
+        return queue.stream(filter, filter.getPgns(), timeout, unit);
+    }
+
     /**
      * Reset stream timeout for stream created with bus.read(). To be used in a
      * stream call like peek, map or forEach.
@@ -216,28 +278,20 @@ public class RP1210Bus implements Bus {
     }
 
     /**
-     * Decodes the given byte array into a {@link Packet}
+     * Converts the adapter timestamp of the given message to system time,
+     * recalibrating the adapter clock offset when the adapter clock rolls
+     * over. Only called by the polling thread, in the order the messages were
+     * read.
      *
      * @param  data
-     *                    the byte array to decode
-     * @param  length
-     *                    the total length of the payload data
-     * @return        {@link Packet}
+     *                  the message read from the adapter
+     * @return      the time of the message in ns since the epoch
      */
-    private Packet decode(byte[] data, int length) {
+    private long toNanoTime(byte[] data) {
         // only 32 bits used, but to get a u32, use a s64.
         long timestamp = (0xFF000000L & data[0] << 24) | (0xFF0000L & data[1] << 16) | (0xFF00L & data[2] << 8)
                 | (0xFFL & data[3]);
         timestamp *= timestampWeight;
-        // data[4] is echo
-        int echoed = data[4];
-        int pgn = ((data[7] & 0xFF) << 16) | ((data[6] & 0xFF) << 8) | (data[5] & 0xFF);
-        int priority = data[8] & 0x07;
-        int source = data[9] & 0xFF;
-        if (pgn < 0xF000) {
-            int destination = data[10];
-            pgn = pgn | (destination & 0xFF);
-        }
 
         // only recalibrate clocks when adapter rolls over
         if (timestamp < lastTimestamp) {
@@ -248,14 +302,34 @@ public class RP1210Bus implements Bus {
         }
         lastTimestamp = timestamp;
 
-        // update application clock offset
-        long nanoseconds = timestamp + timestampStartNanoseconds;
-        DateTimeModule.getInstance().setNanoTime(nanoseconds);
+        return timestamp + timestampStartNanoseconds;
+    }
+
+    /**
+     * Decodes the given byte array into a {@link Packet}. Does not modify any
+     * state, so messages can be decoded concurrently.
+     *
+     * @param  data
+     *                         the byte array to decode
+     * @param  length
+     *                         the total length of the payload data
+     * @param  nanoseconds
+     *                         the time of the message from toNanoTime()
+     * @return             {@link Packet}
+     */
+    private Packet decode(byte[] data, int length, long nanoseconds) {
+        // data[4] is echo
+        int echoed = data[4];
+        int pgn = ((data[7] & 0xFF) << 16) | ((data[6] & 0xFF) << 8) | (data[5] & 0xFF);
+        int priority = data[8] & 0x07;
+        int source = data[9] & 0xFF;
+        if (pgn < 0xF000) {
+            int destination = data[10];
+            pgn = pgn | (destination & 0xFF);
+        }
 
-        // convert to LocalTime for Packet
-        Instant time = Instant.ofEpochSecond( /* seconds */ nanoseconds / GIGA,
-                                             /* nanoseconds */(nanoseconds % GIGA));
-        return Packet.create(LocalDateTime.ofInstant(time, ZoneId.systemDefault()),
+        // the Packet only converts to LocalDateTime when asked
+        return Packet.create(nanoseconds,
                              priority,
                              pgn,
                              source,
@@ -287,24 +361,40 @@ public class RP1210Bus implements Bus {
     }
 
     /**
-     * Checks the {@link RP1210Library} for any incoming messages. Any incoming
-     * messages are decoded and added to the queue
+     * Checks the {@link RP1210Library} for any incoming messages. All the
+     * available messages are read into a batch, which is decoded and added to
+     * the queue as a whole.
      */
     private void poll() {
         try {
+            Batch batch = takeBatch();
+            short rtn;
             while (true) {
-                byte[] data = new byte[32];
-                short rtn = rp1210Library.RP1210_ReadMessage(clientId, data, (short) data.length, BLOCKING_NONE);
+                rtn = rp1210Library.RP1210_ReadMessage(clientId,
+                                                       batch.buffers[batch.size],
+                                                       (short) RX_BUFFER_SIZE,
+                                                       BLOCKING_NONE);
                 if (rtn > 0) {
-                    decodeDataAndQueuePacket(data, rtn);
+                    batch.nanoTimes[batch.size] = toNanoTime(batch.buffers[batch.size]);
+                    batch.lengths[batch.size++] = rtn;
+                    if (batch.size == MAX_BATCH) {
+                        decodeAndQueue(batch);
+                        batch = takeBatch();
+                    }
                 } else if (rtn == -RP1210Library.ERR_RX_QUEUE_FULL) {
                     // RX queue full, remedy is to reread.
+                    queueFull.incrementAndGet();
                     logger.log(Level.SEVERE, getErrorMessage(rtn));
                 } else {
-                    checkReturnCode(rtn);
                     break;
                 }
             }
+            if (batch.size > 0) {
+                decodeAndQueue(batch);
+            } else {
+                batchPool.offer(batch);
+            }
+            checkReturnCode(rtn);
             // this allows the other calls to have a chance
             Thread.yield();
             rp1210Executor.submit(this::poll);
@@ -313,18 +403,71 @@ public class RP1210Bus implements Bus {
         }
     }
 
-    private void decodeDataAndQueuePacket(byte[] data, short rtn) {
+    private Batch takeBatch() {
+        Batch batch = batchPool.poll();
+        return batch == null ? new Batch() : batch;
+    }
+
+    /**
+     * Decode the batch on the decoding executor, which may decode several
+     * batches at once. The decoded packets are queued in the order the batches
+     * were read.
+     */
+    private void decodeAndQueue(Batch batch) {
+        frames.addAndGet(batch.size);
+        batches.incrementAndGet();
+        maxBatchSize.accumulateAndGet(batch.size, Math::max);
+        // update application clock offset
+        DateTimeModule.getInstance().setNanoTime(batch.nanoTimes[batch.size - 1]);
+        long sequence = nextDecode++;
         decodingExecutor.submit(() -> {
-            Packet packet = decode(data, rtn);
-            logger.log(Level.FINE, packet.toTimeString());
-            if (packet.getSource() == getAddress() && !packet.isTransmitted()) {
-                logger.log(Level.WARNING, "Another ECU is using this address: " + packet);
-                imposterDetected = true;
+            List<Packet> packets = new ArrayList<>(batch.size);
+            try {
+                for (int i = 0; i < batch.size; i++) {
+                    try {
+                        Packet packet = decode(batch.buffers[i], batch.lengths[i], batch.nanoTimes[i]);
+                        if (logger.isLoggable(Level.FINE)) {
+                            logger.log(Level.FINE, packet.toTimeString());
+                        }
+                        if (packet.getSource() == getAddress() && !packet.isTransmitted()) {
+                            logger.log(Level.WARNING, "Another ECU is using this address: " + packet);
+                            imposterDetected = true;
+                        }
+                        packets.add(packet);
+                    } catch (RuntimeException e) {
+                        // drop the frame, not the batch
+                        logger.log(Level.SEVERE, "Failed to decode frame of " + batch.lengths[i] + " bytes", e);
+                    }
+                }
+            } catch (Throwable t) {
+                logger.log(Level.SEVERE, "Failed to decode batch", t);
+                packets = List.of();
+            } finally {
+                batch.size = 0;
+                batchPool.offer(batch);
+                // later batches wait for this one, so it is always committed
+                commit(sequence, packets);
             }
-            queue.add(packet);
         });
     }
 
+    /**
+     * Queue the decoded batches in sequence. Batches decoded ahead of an
+     * earlier batch wait here until the earlier batch has been queued, so
+     * packets are always queued in the order they were read, one batch at a
+     * time.
+     */
+    private void commit(long sequence, List<Packet> packets) {
+        synchronized (decoded) {
+            decoded.put(sequence, packets);
+            List<Packet> next;
+            while ((next = decoded.remove(nextCommit)) != null) {
+                queue.addAll(next);
+                nextCommit++;
+            }
+        }
+    }
+
     /**
      * Helper method to send a command to the library
      *
@@ -383,4 +526,82 @@ public class RP1210Bus implements Bus {
     public boolean imposterDetected() {
         return imposterDetected;
     }
+
+    /**
+     * Receive buffers for up to MAX_BATCH frames. Reused once the frames have
+     * been decoded.
+     */
+    private static class Batch {
+        private final byte[][] buffers = new byte[MAX_BATCH][RX_BUFFER_SIZE];
+        private final short[] lengths = new short[MAX_BATCH];
+        private final long[] nanoTimes = new long[MAX_BATCH];
+        private int size;
+    }
+
+    /**
+     * A snapshot of the receive counters of an {@link RP1210Bus}.
+     */
+    public static class Metrics {
+        private final long batches;
+        private final long elapsedNanos;
+        private final long frames;
+        private final int maxBatchSize;
+        private final long queueFull;
+
+        private Metrics(long frames, long batches, int maxBatchSize, long queueFull, long elapsedNanos) {
+            this.frames = frames;
+            this.batches = batches;
+            this.maxBatchSize = maxBatchSize;
+            this.queueFull = queueFull;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public double getAverageBatchSize() {
+            return batches == 0 ? 0 : (double) frames / batches;
+        }
+
+        /**
+         * @return the number of batches handed to the decoder
+         */
+        public long getBatches() {
+            return batches;
+        }
+
+        /**
+         * @return the number of frames received
+         */
+        public long getFrames() {
+            return frames;
+        }
+
+        /**
+         * @return the average number of frames received per second since the
+         *         bus was opened
+         */
+        public double getFramesPerSecond() {
+            return elapsedNanos <= 0 ? 0 : frames * (double) GIGA / elapsedNanos;
+        }
+
+        public int getMaxBatchSize() {
+            return maxBatchSize;
+        }
+
+        /**
+         * @return the number of times the adapter reported ERR_RX_QUEUE_FULL
+         */
+        public long getQueueFull() {
+            return queueFull;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("frames: %,d (%,.1f/s) batches: %,d (avg %.1f max %d) queue full: %,d",
+                                 frames,
+                                 getFramesPerSecond(),
+                                 batches,
+                                 getAverageBatchSize(),
+                                 maxBatchSize,
+                                 queueFull);
+        }
+    }
 }
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2021. Equipment & Tool Institute
+ */
+package org.etools.j1939_84.bus.capture;
+
+import static org.etools.j1939_84.bus.capture.CaptureWriter.EXTENSION;
+import static org.etools.j1939_84.bus.capture.CaptureWriter.FLAG_TRANSMITTED;
+import static org.etools.j1939_84.bus.capture.CaptureWriter.HEADER_SIZE;
+import static org.etools.j1939_84.bus.capture.CaptureWriter.MAGIC;
+import static org.etools.j1939_84.bus.capture.CaptureWriter.RECORD_HEADER_SIZE;
+import static org.etools.j1939_84.bus.capture.CaptureWriter.VERSION;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.etools.j1939_84.bus.Packet;
+
+/**
+ * Reads back the {@link Packet}s of a capture written by {@link CaptureWriter},
+ * segment by segment. A record cut short at the end of a segment, as left by
+ * a tool that did not exit cleanly, ends that segment.
+ */
+public class CaptureReader implements Closeable, Iterator<Packet> {
+
+    /**
+     * Streams the packets of the capture. Closing the stream closes the
+     * segment files.
+     *
+     * @param  capture
+     *                         the capture directory, or a single segment file
+     * @throws IOException
+     *                         if the capture cannot be listed
+     */
+    public static Stream<Packet> read(Path capture) throws IOException {
+        CaptureReader reader = new CaptureReader(capture);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(reader, Spliterator.ORDERED), false)
+                            .onClose(() -> {
+                                try {
+                                    reader.close();
+                                } catch (IOException e) {
+                                    throw new UncheckedIOException(e);
+                                }
+                            });
+    }
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+
+    private FileChannel channel;
+
+    private Packet next;
+
+    private final Iterator<Path> segments;
+
+    /**
+     * @param  capture
+     *                         the capture directory, or a single segment file
+     * @throws IOException
+     *                         if the capture cannot be listed
+     */
+    public CaptureReader(Path capture) throws IOException {
+        List<Path> files;
+        if (Files.isDirectory(capture)) {
+            try (Stream<Path> list = Files.list(capture)) {
+                files = list.filter(f -> f.getFileName().toString().endsWith(EXTENSION))
+                            .sorted()
+                            .collect(Collectors.toList());
+            }
+        } else {
+            files = List.of(capture);
+        }
+        segments = files.iterator();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Reads until the buffer holds at least the given bytes.
+     *
+     * @return false at the end of the segment
+     */
+    private boolean fill(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return true;
+        }
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                buffer.flip();
+                return false;
+            }
+        }
+        buffer.flip();
+        return true;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            try {
+                next = readNext();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public Packet next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Packet packet = next;
+        next = null;
+        return packet;
+    }
+
+    /** @return false when there are no more segments */
+    private boolean openSegment() throws IOException {
+        close();
+        if (!segments.hasNext()) {
+            return false;
+        }
+        Path file = segments.next();
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        buffer.clear().flip();
+        if (!fill(HEADER_SIZE) || buffer.getInt() != MAGIC) {
+            throw new IOException(file + " is not a capture");
+        }
+        short version = buffer.getShort();
+        if (version != VERSION) {
+            throw new IOException(file + " is capture version " + version);
+        }
+        buffer.getShort();
+        return true;
+    }
+
+    private Packet readNext() throws IOException {
+        while (true) {
+            if (channel == null && !openSegment()) {
+                return null;
+            }
+            if (fill(RECORD_HEADER_SIZE)) {
+                long timestamp = buffer.getLong();
+                int id = buffer.getInt();
+                int source = buffer.get() & 0xFF;
+                int flags = buffer.get();
+                int length = buffer.getShort() & 0xFFFF;
+                if (fill(length)) {
+                    byte[] data = new byte[length];
+                    buffer.get(data);
+                    return Packet.create(timestamp,
+                                         id >>> 24,
+                                         id & 0xFFFFFF,
+                                         source,
+                                         (flags & FLAG_TRANSMITTED) != 0,
+                                         data);
+                }
+            }
+            // the end of the segment
+            close();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2021. Equipment & Tool Institute
+ */
+package org.etools.j1939_84.bus.capture;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+
+import org.etools.j1939_84.bus.Packet;
+
+/**
+ * Appends {@link Packet}s to a capture of the bus: a directory of segment files
+ * named capture-NNNNN.j84c, a new segment being started when the current one
+ * reaches the segment size.
+ *
+ * Each segment starts with the magic "J84C" and a 16 bit version, padded to 8
+ * bytes. Each record, little endian, is:
+ *
+ * <pre>
+ * long  timestamp, ns since the epoch
+ * int   priority &lt;&lt; 24 | id
+ * byte  source
+ * byte  flags, 1 if transmitted
+ * short length
+ * byte[length] data
+ * </pre>
+ *
+ * Records are collected in a direct buffer and written with a
+ * {@link FileChannel} when it is full, so writing a record does not allocate.
+ */
+public class CaptureWriter implements Closeable {
+
+    public static final long DEFAULT_SEGMENT_SIZE = 64L << 20;
+
+    static final String EXTENSION = ".j84c";
+
+    static final int FLAG_TRANSMITTED = 1;
+
+    static final int HEADER_SIZE = 8;
+
+    /** "J84C" */
+    static final int MAGIC = 0x4A383443;
+
+    static final int RECORD_HEADER_SIZE = 16;
+
+    static final short VERSION = 1;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    static String segmentName(int segment) {
+        return String.format("capture-%05d%s", segment, EXTENSION);
+    }
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    private FileChannel channel;
+
+    private final Path directory;
+
+    private long records;
+
+    private int segment;
+
+    /** bytes in the segment file, not counting the buffer */
+    private long segmentBytes;
+
+    private final long segmentSize;
+
+    /**
+     * @param  directory
+     *                         the directory of the capture, created if needed.
+     *                         An existing capture is continued in a new
+     *                         segment.
+     * @param  segmentSize
+     *                         the size in bytes at which a new segment is
+     *                         started
+     * @throws IOException
+     *                         if the first segment cannot be created
+     */
+    public CaptureWriter(Path directory, long segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = (int) files.filter(f -> f.getFileName().toString().endsWith(EXTENSION)).count();
+        }
+        openSegment();
+    }
+
+    /**
+     * Writes the buffered records and closes the segment.
+     */
+    @Override
+    synchronized public void close() throws IOException {
+        if (channel != null) {
+            try {
+                drain();
+            } finally {
+                channel.close();
+                channel = null;
+            }
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            segmentBytes += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Writes the buffered records to the segment file.
+     */
+    synchronized public void flush() throws IOException {
+        drain();
+    }
+
+    /** @return the records written */
+    synchronized public long getRecords() {
+        return records;
+    }
+
+    /** @return the segments started */
+    synchronized public int getSegments() {
+        return segment + 1;
+    }
+
+    private void openSegment() throws IOException {
+        channel = FileChannel.open(directory.resolve(segmentName(segment)),
+                                   StandardOpenOption.CREATE_NEW,
+                                   StandardOpenOption.WRITE);
+        segmentBytes = 0;
+        buffer.putInt(MAGIC).putShort(VERSION).putShort((short) 0);
+    }
+
+    /**
+     * Appends the packet.
+     *
+     * @throws IOException
+     *                         if the capture cannot be written
+     */
+    synchronized public void write(Packet packet) throws IOException {
+        if (channel == null) {
+            throw new IOException("Capture closed");
+        }
+        int size = RECORD_HEADER_SIZE + packet.getLength();
+        long length = segmentBytes + buffer.position();
+        if (length + size > segmentSize && length > HEADER_SIZE) {
+            close();
+            segment++;
+            openSegment();
+        } else if (buffer.remaining() < size) {
+            drain();
+        }
+        buffer.putLong(packet.getTimestampNanos())
+              .putInt(packet.getPriority() << 24 | packet.getId(0xFFFFFF))
+              .put((byte) packet.getSource())
+              .put((byte) (packet.isTransmitted() ? FLAG_TRANSMITTED : 0))
+              .putShort((short) packet.getLength());
+        packet.putData(buffer);
+        records++;
+    }
+}
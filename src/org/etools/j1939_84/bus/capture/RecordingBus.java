@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2021. Equipment & Tool Institute
+ */
+package org.etools.j1939_84.bus.capture;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.stream.Stream;
+
+import org.etools.j1939_84.J1939_84;
+import org.etools.j1939_84.bus.Bus;
+import org.etools.j1939_84.bus.BusException;
+import org.etools.j1939_84.bus.Packet;
+import org.etools.j1939_84.bus.PacketFilter;
+
+/**
+ * A {@link Bus} that records every packet seen on another bus, including the
+ * ones sent, with a {@link CaptureWriter}. Everything else is passed to the
+ * other bus.
+ *
+ * <pre>
+ * Bus bus = new J1939TP(new RecordingBus(new RP1210Bus(...), new CaptureWriter(dir, DEFAULT_SEGMENT_SIZE)));
+ * </pre>
+ */
+public class RecordingBus implements Bus {
+
+    /** time for the recorder to catch up on close */
+    private static final int CATCH_UP_TIME = 200; // milliseconds
+
+    private final Bus bus;
+
+    private final Thread recorder;
+
+    private final Stream<Packet> stream;
+
+    private final CaptureWriter writer;
+
+    /**
+     * @param  bus
+     *                          the {@link Bus} to record
+     * @param  writer
+     *                          the {@link CaptureWriter} to record to, closed
+     *                          with the bus
+     * @throws BusException
+     *                          if the bus cannot be read
+     */
+    public RecordingBus(Bus bus, CaptureWriter writer) throws BusException {
+        this.bus = bus;
+        this.writer = writer;
+        // opened here, so nothing sent after the constructor is missed
+        stream = bus.read(999, TimeUnit.DAYS);
+        recorder = new Thread(this::record, "Bus Capture");
+        recorder.setDaemon(true);
+        recorder.start();
+    }
+
+    /**
+     * Lets the recorder catch up and closes the capture, then closes the bus.
+     * Closing the bus first would drop the packets not recorded yet.
+     */
+    @Override
+    public void close() {
+        bus.resetTimeout(stream, CATCH_UP_TIME, TimeUnit.MILLISECONDS);
+        try {
+            recorder.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        bus.close();
+    }
+
+    @Override
+    public Stream<Packet> duplicate(Stream<Packet> stream, int time, TimeUnit unit) {
+        return bus.duplicate(stream, time, unit);
+    }
+
+    @Override
+    public int getAddress() {
+        return bus.getAddress();
+    }
+
+    @Override
+    public int getConnectionSpeed() throws BusException {
+        return bus.getConnectionSpeed();
+    }
+
+    /** @return the {@link CaptureWriter} recording the bus */
+    public CaptureWriter getWriter() {
+        return writer;
+    }
+
+    @Override
+    public boolean imposterDetected() {
+        return bus.imposterDetected();
+    }
+
+    @Override
+    public Stream<Packet> read(long timeout, TimeUnit unit) throws BusException {
+        return bus.read(timeout, unit);
+    }
+
+    @Override
+    public Stream<Packet> read(PacketFilter filter, long timeout, TimeUnit unit) throws BusException {
+        return bus.read(filter, timeout, unit);
+    }
+
+    private void record() {
+        try (writer) {
+            for (Packet packet : (Iterable<Packet>) stream::iterator) {
+                writer.write(packet);
+            }
+        } catch (IOException e) {
+            J1939_84.getLogger().log(Level.SEVERE, "Bus capture stopped", e);
+            stream.close();
+        }
+    }
+
+    @Override
+    public void resetTimeout(Stream<Packet> stream, int time, TimeUnit unit) {
+        bus.resetTimeout(stream, time, unit);
+    }
+
+    @Override
+    public Packet send(Packet packet) throws BusException {
+        return bus.send(packet);
+    }
+}
@@ -0,0 +1,426 @@
+/*
+ * Copyright (c) 2021. Equipment & Tool Institute
+ */
+package org.etools.j1939_84.bus.capture;
+
+import static org.etools.j1939_84.bus.j1939.J1939.GLOBAL_ADDR;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.etools.j1939_84.bus.Bus;
+import org.etools.j1939_84.bus.BusException;
+import org.etools.j1939_84.bus.MultiQueue;
+import org.etools.j1939_84.bus.Packet;
+import org.etools.j1939_84.bus.PacketFilter;
+import org.etools.j1939_84.utils.Clock;
+import org.etools.j1939_84.utils.VirtualClock;
+
+/**
+ * A {@link Bus} that plays back a recorded capture, either our own (see
+ * {@link CaptureWriter}) or a Vector ASC log.
+ *
+ * The packets the tool sent in the capture are not played back. Each request
+ * the tool sent is paired with the packets that answered it: the requested
+ * PGN, an acknowledgment or a transport session for it, from the addressed
+ * module or from any module if the request was global. Those answers are only
+ * played back when the same request is sent to this bus, delayed as recorded.
+ * When the same request was recorded more than once, the recordings are
+ * answered in order, the last one repeating. Everything else in the capture is
+ * played back on its own timeline.
+ *
+ * Time on the bus is the virtual time of the capture. It runs at the speed
+ * factor times the {@link Clock}. With {@link #MAX_SPEED} it runs at the speed
+ * of a {@link VirtualClock}, so the capture is played back as recorded, with the
+ * reads of the tool over a time window seeing what was recorded in it, but
+ * without waiting for anything but the tool.
+ */
+public class ReplayBus implements Bus {
+
+    /** an event on the timeline of the bus */
+    private static class Event implements Comparable<Event> {
+        private final Packet packet;
+
+        private final long sequence;
+
+        private final long time;
+
+        private Event(long time, long sequence, Packet packet) {
+            this.time = time;
+            this.sequence = sequence;
+            this.packet = packet;
+        }
+
+        @Override
+        public int compareTo(Event that) {
+            int c = Long.compare(time, that.time);
+            return c != 0 ? c : Long.compare(sequence, that.sequence);
+        }
+    }
+
+    /** a packet recorded in answer to a request, delayed from the request */
+    private static class Response {
+        private final long delay;
+
+        private final Packet packet;
+
+        private Response(long delay, Packet packet) {
+            this.delay = delay;
+            this.packet = packet;
+        }
+    }
+
+    /** as recorded, on a {@link VirtualClock} */
+    public static final double MAX_SPEED = Double.POSITIVE_INFINITY;
+
+    private static final int ACK_PGN = 0xE800;
+
+    private static final int REQUEST_PGN = 0xEA00;
+
+    /** the time a module has to start answering a request */
+    private static final long RESPONSE_TIME = TimeUnit.MILLISECONDS.toNanos(600);
+
+    private static final int TP_CM_BAM = 0x20;
+
+    private static final int TP_CM_PGN = 0xEC00;
+
+    private static final int TP_CM_RTS = 0x10;
+
+    private static final int TP_DT_PGN = 0xEB00;
+
+    /**
+     * Reads a capture written by {@link CaptureWriter}.
+     *
+     * @param  capture
+     *                         the capture directory, or a single segment file
+     * @param  address
+     *                         the address of the tool on the bus
+     * @param  speed
+     *                         the speed factor, or {@link #MAX_SPEED}
+     * @throws IOException
+     *                         if the capture cannot be read
+     */
+    public static ReplayBus fromCapture(Path capture, int address, double speed) throws IOException {
+        try (Stream<Packet> packets = CaptureReader.read(capture)) {
+            return new ReplayBus(address, packets.collect(Collectors.toList()), speed);
+        }
+    }
+
+    /**
+     * Reads a Vector ASC log. The frames of channel 1 are replayed; the Tx
+     * frames are those sent by the tool.
+     *
+     * @param  asc
+     *                         the ASC file
+     * @param  address
+     *                         the address of the tool on the bus
+     * @param  speed
+     *                         the speed factor, or {@link #MAX_SPEED}
+     * @throws IOException
+     *                         if the log cannot be read
+     */
+    public static ReplayBus fromVector(Path asc, int address, double speed) throws IOException {
+        LocalDateTime start = LocalDateTime.now(Clock.get());
+        try (Stream<String> lines = Files.lines(asc, StandardCharsets.ISO_8859_1)) {
+            return new ReplayBus(address,
+                                 lines.map(line -> Packet.parseVector(start, line))
+                                      .filter(Objects::nonNull)
+                                      .collect(Collectors.toList()),
+                                 speed);
+        }
+    }
+
+    private static int key(int pgn, int destination) {
+        return pgn << 8 | destination;
+    }
+
+    private static Packet restamp(long time, Packet packet, boolean transmitted) {
+        return Packet.create(time,
+                             packet.getPriority(),
+                             packet.getId(0xFFFFFF),
+                             packet.getSource(),
+                             transmitted,
+                             packet.getBytes());
+    }
+
+    private final int address;
+
+    /** the capture time at which playback started */
+    private final long captureStart;
+
+    private boolean closed;
+
+    /** the time of the last packet played back */
+    private long lastTime;
+
+    /** the capture time per ns of the {@link Clock} */
+    private final double pace;
+
+    /** runs the playback, once started */
+    private ScheduledExecutorService player;
+
+    private final PriorityQueue<Event> pending = new PriorityQueue<>();
+
+    private final MultiQueue<Packet> queue;
+
+    /** the recorded answers to each request, by requested PGN and destination */
+    private final Map<Integer, List<List<Response>>> responses = new HashMap<>();
+
+    /** the recorded answers already played back, by request */
+    private final Map<Integer, Integer> responsesUsed = new HashMap<>();
+
+    private long sequence;
+
+    private final double speed;
+
+    private long wallStart;
+
+    /**
+     * @param address
+     *                    the address of the tool on the bus
+     * @param capture
+     *                    the recorded packets, in order
+     * @param speed
+     *                    the speed factor, or {@link #MAX_SPEED}
+     */
+    public ReplayBus(int address, List<Packet> capture, double speed) {
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("Invalid speed " + speed);
+        }
+        this.address = address;
+        this.speed = speed;
+        pace = speed == MAX_SPEED ? 1 : speed;
+        queue = new MultiQueue<Packet>(MultiQueue.DEFAULT_CAPACITY).retainFor(1, TimeUnit.MINUTES)
+                                                                   .indexBy(Packet::getPgn);
+        Set<Packet> answers = Collections.newSetFromMap(new IdentityHashMap<>());
+        pairResponses(capture, answers);
+        for (Packet p : capture) {
+            if (!p.isTransmitted() && !answers.contains(p)) {
+                pending.add(new Event(p.getTimestampNanos(), sequence++, p));
+            }
+        }
+        captureStart = capture.isEmpty() ? 0 : capture.get(0).getTimestampNanos();
+        lastTime = captureStart;
+    }
+
+    /**
+     * Stops playback and ends all streams.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            Clock.get().notifyAll(this);
+            if (player != null) {
+                player.shutdown();
+            }
+        }
+        queue.close();
+    }
+
+    @Override
+    public Stream<Packet> duplicate(Stream<Packet> stream, int time, TimeUnit unit) {
+        return queue.duplicate(stream, time, unit);
+    }
+
+    @Override
+    public int getAddress() {
+        return address;
+    }
+
+    @Override
+    public int getConnectionSpeed() throws BusException {
+        throw new BusException("Could not be determined");
+    }
+
+    /**
+     * @return the current time on the bus, ns since the epoch in the time of
+     *         the capture
+     */
+    synchronized public long getTime() {
+        if (wallStart == 0) {
+            return lastTime;
+        }
+        return Math.max(lastTime, captureStart + (long) ((Clock.get().nanoTime() - wallStart) * pace));
+    }
+
+    @Override
+    public boolean imposterDetected() {
+        return false;
+    }
+
+    /**
+     * Collects the answers to each request sent by the tool in the capture.
+     *
+     * @param answers
+     *                    collects the packets paired with a request
+     */
+    private void pairResponses(List<Packet> capture, Set<Packet> answers) {
+        for (int i = 0; i < capture.size(); i++) {
+            Packet request = capture.get(i);
+            if (!request.isTransmitted() || request.getPgn() != REQUEST_PGN || request.getLength() < 3) {
+                continue;
+            }
+            int pgn = request.get24(0);
+            int destination = request.getDestination();
+            List<Response> answer = new ArrayList<>();
+            // the DT frames still expected, by TP session (source << 8 | destination)
+            Map<Integer, Integer> sessions = new HashMap<>();
+            for (int j = i + 1; j < capture.size(); j++) {
+                Packet p = capture.get(j);
+                if (p.isTransmitted()) {
+                    if (p.getPgn() == REQUEST_PGN) {
+                        break;
+                    }
+                    continue;
+                }
+                if (destination != GLOBAL_ADDR && p.getSource() != destination) {
+                    continue;
+                }
+                long delay = p.getTimestampNanos() - request.getTimestampNanos();
+                int session = p.getSource() << 8 | p.getDestination();
+                boolean matches;
+                switch (p.getPgn()) {
+                    case ACK_PGN:
+                        matches = delay <= RESPONSE_TIME && p.getLength() >= 8 && p.get24(5) == pgn;
+                        break;
+                    case TP_CM_PGN:
+                        matches = delay <= RESPONSE_TIME && p.getLength() >= 8 && p.get24(5) == pgn;
+                        if (matches && (p.get(0) == TP_CM_RTS || p.get(0) == TP_CM_BAM)) {
+                            sessions.put(session, p.get(3));
+                        } else {
+                            // another session between the same modules
+                            sessions.remove(session);
+                        }
+                        break;
+                    case TP_DT_PGN:
+                        // only the frames of the answer, not those of a later session
+                        matches = sessions.containsKey(session);
+                        sessions.computeIfPresent(session, (k, left) -> left > 1 ? left - 1 : null);
+                        break;
+                    default:
+                        matches = delay <= RESPONSE_TIME && p.getPgn() == pgn;
+                }
+                if (matches && answers.add(p)) {
+                    answer.add(new Response(delay, p));
+                }
+            }
+            responses.computeIfAbsent(key(pgn, destination), k -> new ArrayList<>()).add(answer);
+        }
+    }
+
+    private void play() {
+        while (true) {
+            Event event;
+            synchronized (this) {
+                event = pending.peek();
+                try {
+                    if (closed) {
+                        return;
+                    } else if (event == null) {
+                        Clock.get().waitUntil(this, Long.MAX_VALUE);
+                        continue;
+                    }
+                    Clock clock = Clock.get();
+                    long delay = wallStart + (long) ((event.time - captureStart) / pace) - clock.nanoTime();
+                    if (delay > 0) {
+                        clock.waitUntil(this, clock.millis() + TimeUnit.NANOSECONDS.toMillis(delay + 999_999));
+                        continue;
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                pending.poll();
+                lastTime = Math.max(lastTime, event.time);
+            }
+            queue.add(event.packet);
+        }
+    }
+
+    @Override
+    public Stream<Packet> read(long timeout, TimeUnit unit) {
+        return queue.stream(timeout, unit);
+    }
+
+    @Override
+    public Stream<Packet> read(PacketFilter filter, long timeout, TimeUnit unit) {
+        return queue.stream(filter, filter.getPgns(), timeout, unit);
+    }
+
+    @Override
+    public void resetTimeout(Stream<Packet> stream, int time, TimeUnit unit) {
+        queue.resetTimeout(stream, time, unit);
+    }
+
+    /**
+     * Echoes the packet at the current time and, if it is a request that was
+     * recorded, schedules the recorded answer.
+     */
+    @Override
+    public Packet send(Packet packet) throws BusException {
+        Packet echo;
+        synchronized (this) {
+            if (closed) {
+                throw new BusException("Bus closed");
+            }
+            long now = getTime();
+            echo = restamp(now, packet, true);
+            // before the answer can be played back
+            queue.add(echo);
+            if (packet.getPgn() == REQUEST_PGN && packet.getLength() >= 3) {
+                int key = key(packet.get24(0), packet.getDestination());
+                List<List<Response>> recorded = responses.get(key);
+                if (recorded != null) {
+                    int n = responsesUsed.merge(key, 1, Integer::sum) - 1;
+                    for (Response r : recorded.get(Math.min(n, recorded.size() - 1))) {
+                        pending.add(new Event(now + r.delay, sequence++, restamp(now + r.delay, r.packet, false)));
+                    }
+                    Clock.get().notifyAll(this);
+                }
+            }
+        }
+        return echo;
+    }
+
+    /**
+     * Starts playing back the capture. Streams read before this see the
+     * capture from the start.
+     *
+     * @return                       this
+     * @throws IllegalStateException
+     *                                   if the speed is {@link #MAX_SPEED}
+     *                                   and the {@link Clock} is not a
+     *                                   {@link VirtualClock}
+     */
+    synchronized public ReplayBus start() {
+        Clock clock = Clock.get();
+        if (speed == MAX_SPEED && !(clock instanceof VirtualClock)) {
+            throw new IllegalStateException("The maximum speed needs a VirtualClock");
+        }
+        wallStart = clock.nanoTime();
+        // from the clock, so a VirtualClock waits for the player from the start
+        player = clock.newScheduledExecutor(1, r -> {
+            Thread thread = new Thread(r, "Bus Replay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        player.execute(this::play);
+        return this;
+    }
+}
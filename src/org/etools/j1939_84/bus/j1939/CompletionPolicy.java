@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2021. Equipment & Tool Institute
+ */
+package org.etools.j1939_84.bus.j1939;
+
+import java.util.Collection;
+import java.util.function.Supplier;
+
+/**
+ * Lets a global request end before the global timeout, once each of the
+ * expected responders has answered with the PGN or an acknowledgment. The
+ * request then only waits for the settle time, for any other module that may
+ * still answer. A TP response that was announced is still read to the end.
+ *
+ * With no expected responders, the request waits the full global timeout.
+ */
+public class CompletionPolicy {
+
+    /** time to wait for other responses after the last expected responder */
+    public static final long DEFAULT_SETTLE_TIME = 50; // milliseconds
+
+    private final Supplier<Collection<Integer>> expectedResponders;
+
+    private final long settleTime;
+
+    /**
+     * @param expectedResponders
+     *                               the addresses that should answer every
+     *                               global request, read at each request
+     * @param settleTime
+     *                               the time in ms to wait for other
+     *                               responses after the last expected one
+     */
+    public CompletionPolicy(Supplier<Collection<Integer>> expectedResponders, long settleTime) {
+        this.expectedResponders = expectedResponders;
+        this.settleTime = settleTime;
+    }
+
+    public Collection<Integer> getExpectedResponders() {
+        return expectedResponders.get();
+    }
+
+    public long getSettleTime() {
+        return settleTime;
+    }
+}
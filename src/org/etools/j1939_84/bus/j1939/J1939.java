@@ -14,11 +14,14 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
@@ -30,6 +33,7 @@ import org.etools.j1939_84.bus.EchoBus;
 import org.etools.j1939_84.bus.Either;
 import org.etools.j1939_84.bus.Packet;
 import org.etools.j1939_84.bus.Packet.PacketException;
+import org.etools.j1939_84.bus.PacketFilter;
 import org.etools.j1939_84.bus.j1939.packets.AcknowledgmentPacket;
 import org.etools.j1939_84.bus.j1939.packets.AcknowledgmentPacket.Response;
 import org.etools.j1939_84.bus.j1939.packets.AddressClaimPacket;
@@ -68,6 +72,7 @@ import org.etools.j1939_84.bus.j1939.packets.VehicleIdentificationPacket;
 import org.etools.j1939_84.controllers.ResultsListener;
 import org.etools.j1939_84.model.RequestResult;
 import org.etools.j1939_84.modules.DateTimeModule;
+import org.etools.j1939_84.utils.Clock;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
@@ -109,9 +114,17 @@ public class J1939 {
 
     private static final String TIMEOUT_MESSAGE = "Timeout - No Response";
 
+    private static final String EARLY_COMPLETION_MESSAGE = "Complete - All expected responders answered after ";
+
     private final Bus bus;
 
-    private int warnings;
+    /** null to always wait for the global timeout */
+    private CompletionPolicy completionPolicy;
+
+    private final ResponseMetrics metrics = new ResponseMetrics();
+
+    /** DS requests to different destinations may run in parallel */
+    private final AtomicInteger warnings = new AtomicInteger();
 
     public J1939() {
         this(new EchoBus(0xA5));
@@ -161,6 +174,14 @@ public class J1939 {
         return response -> response.getPgn() == pgn;
     }
 
+    /**
+     * The PGNs a response to a request for pgn may have. Used to avoid waking
+     * readers for unrelated packets. globalFilter() and dsFilter() do the rest.
+     */
+    static private PacketFilter responseFilter(int pgn) {
+        return PacketFilter.pgns(pgn, AcknowledgmentPacket.PGN);
+    }
+
     private static void severe(String message, Throwable t) {
         getLogger().log(SEVERE, message, t);
     }
@@ -238,9 +259,29 @@ public class J1939 {
         return DateTimeModule.getInstance();
     }
 
+    public CompletionPolicy getCompletionPolicy() {
+        return completionPolicy;
+    }
+
+    /**
+     * Sets when a global request may end before the global timeout.
+     *
+     * @param completionPolicy
+     *                             the {@link CompletionPolicy}, or null to
+     *                             always wait the full global timeout
+     */
+    public void setCompletionPolicy(CompletionPolicy completionPolicy) {
+        this.completionPolicy = completionPolicy;
+    }
+
+    /** @return the response latency and counts of the requests made */
+    public ResponseMetrics getMetrics() {
+        return metrics;
+    }
+
     /** Count of warnings detected in J1939 and J1939TP. */
     public int getWarnings() {
-        return warnings;
+        return warnings.get();
     }
 
     private Predicate<Packet> globalFilter(int pgn) {
@@ -388,6 +429,24 @@ public class J1939 {
         return Stream.empty();
     }
 
+    /**
+     * Reads the packets matching the filter until the predicate fails. The
+     * predicate is only tested on matching packets.
+     */
+    public Stream<GenericPacket> readGenericPacket(PacketFilter filter,
+                                                   Predicate<Either<GenericPacket, AcknowledgmentPacket>> predicate) {
+        try {
+            return read(filter, 365, TimeUnit.DAYS)
+                                                   .map(this::<GenericPacket>process)
+                                                   .takeWhile(predicate)
+                                                   .filter(e -> e.left.isPresent())
+                                                   .flatMap(e -> e.left.stream());
+        } catch (BusException e) {
+            getLogger().log(Level.SEVERE, "Error while reading bus", e);
+        }
+        return Stream.empty();
+    }
+
     /**
      * Reads the bus indefinitely
      *
@@ -472,6 +531,10 @@ public class J1939 {
         return bus.read(timeout, unit);
     }
 
+    public Stream<Packet> read(PacketFilter filter, long timeout, TimeUnit unit) throws BusException {
+        return bus.read(filter, timeout, unit);
+    }
+
     public <T extends GenericPacket> BusResult<T> requestDS(String title,
                                                             Class<T> clas,
                                                             int address,
@@ -523,7 +586,9 @@ public class J1939 {
         }
 
         try {
-            Stream<Either<T, AcknowledgmentPacket>> stream = read(DS_TIMEOUT, MILLISECONDS)
+            Stream<Either<T, AcknowledgmentPacket>> stream = read(responseFilter(pgn).from(request.getDestination()),
+                                                                  DS_TIMEOUT,
+                                                                  MILLISECONDS)
                                                                                            .filter(dsFilter(pgn,
                                                                                                             request.getDestination(),
                                                                                                             getBusAddress()))
@@ -538,6 +603,7 @@ public class J1939 {
                 lateTime = null;
             }
             Optional<Either<T, AcknowledgmentPacket>> result = stream.findFirst();
+            recordResponse(pgn, request.getDestination(), sent, result);
             result.ifPresentOrElse(p -> {
                 ParsedPacket pp = p.resolve();
                 listener.onResult(pp.getPacket().toTimeString());
@@ -615,34 +681,22 @@ public class J1939 {
             results = map.values();
         }
 
-        // replace any BUSY NACKS with DS results
-        results = results.stream()
-                         .map(e -> {
-                             if (isBusy(e)) {
-                                 Packet dsRequest = createRequestPacket(pgn,
-                                                                        ((ParsedPacket) e.resolve()).getSourceAddress());
-                                 Optional<Either<T, AcknowledgmentPacket>> response = requestDSOnce(pgn,
-                                                                                                    dsRequest,
-                                                                                                    listener);
-
-                                 if (response.map(J1939::isBusy).orElse(true)) {
-                                     // still busy, try one last time
-                                     logInfo(
-                                             "first DS request after global busy NACK: " + dsRequest + " -> "
-                                                     + response);
-                                     response = requestDSOnce(pgn, dsRequest, listener);
-                                     if (response.map(J1939::isBusy).orElse(true)) {
-                                         logInfo(
-                                                 "second DS request after global busy NACK: " + dsRequest + " -> "
-                                                         + response);
-                                     }
-                                 }
-                                 return response.orElse(e);
-                             } else {
-                                 return e;
-                             }
-                         })
-                         .collect(Collectors.toList());
+        // replace any BUSY NACKS with DS results. The busy modules are retried in
+        // parallel, each with up to two DS requests.
+        List<Either<T, AcknowledgmentPacket>> merged = new ArrayList<>();
+        RequestScheduler scheduler = new RequestScheduler(listener);
+        for (Either<T, AcknowledgmentPacket> e : results) {
+            if (isBusy(e)) {
+                int address = ((ParsedPacket) e.resolve()).getSourceAddress();
+                scheduler.submit(address,
+                                 l -> this.<T>requestDSAfterBusy(pgn, address, l).orElse(e),
+                                 merged::add);
+            } else {
+                scheduler.thenRun(() -> merged.add(e));
+            }
+        }
+        scheduler.join();
+        results = merged;
 
         return new RequestResult<>(retry,
                                    results.stream()
@@ -651,6 +705,27 @@ public class J1939 {
 
     }
 
+    /**
+     * DS request to a module that answered a global request with a BUSY NACK,
+     * tried one more time if the module is still busy or does not answer.
+     */
+    private <T extends GenericPacket> Optional<Either<T, AcknowledgmentPacket>> requestDSAfterBusy(int pgn,
+                                                                                                   int address,
+                                                                                                   ResultsListener listener) {
+        Packet dsRequest = createRequestPacket(pgn, address);
+        Optional<Either<T, AcknowledgmentPacket>> response = requestDSOnce(pgn, dsRequest, listener);
+
+        if (response.map(J1939::isBusy).orElse(true)) {
+            // still busy, try one last time
+            logInfo("first DS request after global busy NACK: " + dsRequest + " -> " + response);
+            response = requestDSOnce(pgn, dsRequest, listener);
+            if (response.map(J1939::isBusy).orElse(true)) {
+                logInfo("second DS request after global busy NACK: " + dsRequest + " -> " + response);
+            }
+        }
+        return response;
+    }
+
     /**
      * Request from global only once.
      */
@@ -663,7 +738,11 @@ public class J1939 {
 
         List<Either<T, AcknowledgmentPacket>> result;
         try {
-            Stream<Packet> stream = read(GLOBAL_TIMEOUT, MILLISECONDS);
+            CompletionPolicy policy = completionPolicy;
+            Set<Integer> expected = policy == null ? Collections.emptySet()
+                    : new HashSet<>(policy.getExpectedResponders());
+            Stream<Packet> stream = read(responseFilter(pgn), GLOBAL_TIMEOUT, MILLISECONDS);
+            long start = Clock.get().nanoTime();
             Packet sent = bus.send(request);
             LocalDateTime lateTime;
             if (sent != null) {
@@ -674,8 +753,22 @@ public class J1939 {
                 lateTime = null;
             }
             List<Packet> lateBam = new ArrayList<>();
+            long[] completedAt = { -1 };
             result = stream
                            .filter(globalFilter(pgn))
+                           .peek(p -> {
+                               /*
+                                * Once the last expected responder answered, only
+                                * wait the settle time for the others.
+                                */
+                               if (expected.remove(p.getSource()) && expected.isEmpty()) {
+                                   long elapsed = (Clock.get().nanoTime() - start) / 1_000_000;
+                                   if (elapsed + policy.getSettleTime() < GLOBAL_TIMEOUT) {
+                                       completedAt[0] = elapsed;
+                                       bus.resetTimeout(stream, (int) policy.getSettleTime(), MILLISECONDS);
+                                   }
+                               }
+                           })
                            .peek(p -> {
                                /*
                                 * If the first fragment arrived after lateBam, then it
@@ -694,6 +787,7 @@ public class J1939 {
                                try {
                                    listener.onResult(rawPacket.toTimeString());
                                    Either<T, AcknowledgmentPacket> pp = process(rawPacket);
+                                   recordResponse(pgn, rawPacket.getSource(), sent, Optional.of(pp));
                                    listener.onResult(pp.resolve().toString());
                                    return pp;
                                } catch (PacketException e) {
@@ -710,7 +804,11 @@ public class J1939 {
             });
 
             if (result.isEmpty()) {
+                recordResponse(pgn, GLOBAL_ADDR, sent, Optional.empty());
                 listener.onResult(getDateTimeModule().getTime() + " " + TIMEOUT_MESSAGE);
+            } else if (completedAt[0] >= 0) {
+                listener.onResult(getDateTimeModule().getTime() + " " + EARLY_COMPLETION_MESSAGE + completedAt[0]
+                        + " ms");
             }
         } catch (BusException e) {
             severe("Error requesting packet", e);
@@ -719,6 +817,27 @@ public class J1939 {
         return result;
     }
 
+    /**
+     * Adds the response to the {@link ResponseMetrics}. The latency is from the
+     * echo of the request to the first fragment of the response.
+     */
+    private void recordResponse(int pgn,
+                                int address,
+                                Packet sent,
+                                Optional<? extends Either<?, AcknowledgmentPacket>> response) {
+        ResponseMetrics.Entry entry = metrics.get(pgn, address);
+        if (response.isEmpty()) {
+            entry.recordTimeout();
+            return;
+        }
+        Either<?, AcknowledgmentPacket> either = response.get();
+        either.right.ifPresent(ack -> entry.recordAcknowledgment(ack.getResponse()));
+        if (sent != null) {
+            Packet first = ((ParsedPacket) either.resolve()).getPacket().getFragments().get(0);
+            entry.recordLatency((first.getTimestampNanos() - sent.getTimestampNanos()) / 1000);
+        }
+    }
+
     public BusResult<DM30ScaledTestResultsPacket> requestTestResults(int tid,
                                                                      int spn,
                                                                      int fmi,
@@ -750,6 +869,7 @@ public class J1939 {
                     logWarning(listener, FAILED_TO_SEND + request);
                 }
                 Optional<Either<DM30ScaledTestResultsPacket, AcknowledgmentPacket>> first = stream.findFirst();
+                recordResponse(DM30ScaledTestResultsPacket.PGN, address, sent, first);
                 result = new BusResult<>(i > 0, first);
                 result.getPacket().ifPresentOrElse(p -> {
                     GenericPacket response = p.resolve();
@@ -777,7 +897,7 @@ public class J1939 {
     }
 
     private void logTiming(ResultsListener listener, String message) {
-        warnings++;
+        warnings.incrementAndGet();
         listener.onResult(message);
         getLogger().warning(message);
     }
@@ -2,10 +2,12 @@ package org.etools.j1939_84.bus.j1939;
 
 import static org.etools.j1939_84.J1939_84.getLogger;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.SequenceInputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -48,10 +50,7 @@ public class J1939DaRepository {
     private Map<Integer, PgnDefinition> pgnLut;
 
     public Slot findSLOT(int id, int spn) {
-        if (slots == null) {
-            slots = loadSlots();
-        }
-
+        loadLookUpTables();
         Slot slot = slots.get(id);
         if (slot == null) {
             slot = slots.get(-spn);
@@ -69,7 +68,21 @@ public class J1939DaRepository {
 
     private Map<Integer, Set<Integer>> spnToPgnMap = null;
 
+    /** where the binary snapshot of the CSV files is kept, null for none */
+    private final Path snapshotDirectory;
+
     private J1939DaRepository() {
+        this(J1939DaSnapshot.directory());
+    }
+
+    /**
+     * @param snapshotDirectory
+     *                              where to keep the binary snapshot of the
+     *                              J1939DA tables, or null to always parse the
+     *                              CSV files
+     */
+    J1939DaRepository(Path snapshotDirectory) {
+        this.snapshotDirectory = snapshotDirectory;
     }
 
     public static J1939DaRepository getInstance() {
@@ -80,134 +93,200 @@ public class J1939DaRepository {
         return getInstance().findSLOT(slotId, spn);
     }
 
+    private synchronized void loadLookUpTables() {
+        if (pgnLut != null) {
+            return;
+        }
+        long start = System.nanoTime();
+        long checksum = snapshotChecksum();
+        J1939DaSnapshot snapshot = readSnapshot(checksum);
+        if (snapshot != null) {
+            slots = snapshot.slots;
+            spnLut = snapshot.spnLut;
+            pgnLut = snapshot.pgnLut;
+        } else {
+            slots = loadSlots();
+            parseLookUpTables();
+            writeSnapshot(checksum);
+        }
+
+        spnToPgnMap = new HashMap<>();
+        for (PgnDefinition pgnDefinition : pgnLut.values()) {
+            for (SpnDefinition spnDefinition : pgnDefinition.getSpnDefinitions()) {
+                Set<Integer> pgns = spnToPgnMap.getOrDefault(spnDefinition.getSpnId(), new HashSet<>());
+                pgns.add(pgnDefinition.getId());
+                spnToPgnMap.put(spnDefinition.getSpnId(), pgns);
+            }
+        }
+
+        // compile the SPN layout of every PGN now, so decoding packets
+        // never has to resolve SPN positions or SLOTs
+        for (PgnDefinition pgnDefinition : pgnLut.values()) {
+            pgnDefinition.compileSpnExtractor(this);
+        }
+        getLogger().log(Level.INFO,
+                        String.format("Loaded J1939DA from %s in %,d ms",
+                                      snapshot == null ? "CSV" : "snapshot",
+                                      (System.nanoTime() - start) / 1_000_000));
+    }
+
+    /**
+     * @return the checksum of the CSV files, or -1 if the snapshot isn't used
+     */
+    private long snapshotChecksum() {
+        if (snapshotDirectory == null) {
+            return -1;
+        }
+        try {
+            return J1939DaSnapshot.checksum();
+        } catch (IOException e) {
+            getLogger().log(Level.INFO, "Unable to checksum J1939DA", e);
+            return -1;
+        }
+    }
+
+    private J1939DaSnapshot readSnapshot(long checksum) {
+        if (checksum < 0) {
+            return null;
+        }
+        try {
+            return J1939DaSnapshot.read(J1939DaSnapshot.file(snapshotDirectory, checksum), checksum);
+        } catch (IOException | RuntimeException e) {
+            // fall back to the CSV files
+            getLogger().log(Level.INFO, "Unable to read J1939DA snapshot", e);
+            return null;
+        }
+    }
+
+    private void writeSnapshot(long checksum) {
+        if (checksum < 0) {
+            return;
+        }
+        try {
+            new J1939DaSnapshot(slots, spnLut, pgnLut).write(J1939DaSnapshot.file(snapshotDirectory, checksum),
+                                                              checksum);
+        } catch (IOException | RuntimeException e) {
+            getLogger().log(Level.INFO, "Unable to write J1939DA snapshot", e);
+        }
+    }
+
     @SuppressFBWarnings(value = {
             "RCN_REDUNDANT_NULLCHECK_WOULD_HAVE_BEEN_A_NPE",
             "REC_CATCH_EXCEPTION" }, justification = "Several places in the calls down the stack can return null")
-    private synchronized void loadLookUpTables() {
-        if (pgnLut == null) {
-            // parse the selected columns from J1939DA. The source data is
-            // unaltered, so some processing is required to convert byte.bit
-            // specifications into ints.
-            InputStream is = new SequenceInputStream(Resources.class.getResourceAsStream("j1939da-extract.csv"),
-                                                     Resources.class.getResourceAsStream("j1939da-addendum.csv"));
-            InputStreamReader isReader = new InputStreamReader(is, StandardCharsets.ISO_8859_1);
-            try (CSVReader reader = new CSVReaderBuilder(isReader).withSkipLines(2).build()) {
-                // collect spns under the pgn
-                Collection<Object[]> table = StreamSupport.stream(reader.spliterator(), false)
-                                                          // allow for blank lines
-                                                          .filter(line -> line.length > 1)
-                                                          // map line to [pgn,spn] where pgn may be null
-                                                          .map(line -> {
-                                                              try {
-                                                                  String position = line[4];
-                                                                  int startByte;
-                                                                  int startBit;
-                                                                  position = position.toLowerCase();
-                                                                  if (position.isBlank()) {
-                                                                      // must be a non-pgn spn
-                                                                      startByte = -1;
-                                                                      startBit = -1;
-                                                                  } else if (position.matches("[a-z]")) {
-                                                                      startByte = position.charAt(0) - 'a' + 1;
-                                                                      startBit = 1;
-                                                                  } else if (position.matches("\\d+((,|-| to ).*)?")) {
-                                                                      startByte = Integer.parseInt(position.split("[^\\d]")[0]);
-                                                                      startBit = 1;
-                                                                  } else if (position.matches("\\d+\\.\\d+((,|-| to ).*)?")) {
-                                                                      String[] a = position.split("[^\\d]");
-                                                                      startByte = Integer.parseInt(a[0]);
-                                                                      startBit = Integer.parseInt(a[1]);
-                                                                  } else if ("a (starts at byte 10)".equals(position)) {
-                                                                      startByte = 10;
-                                                                      startBit = 1;
-                                                                  } else {
-                                                                      throw new ParseError("Unable to parse position: "
-                                                                              + position);
-                                                                  }
-
-                                                                  SpnDefinition spnDef = null;
-                                                                  String spnIdStr = line[5];
-                                                                  if (!spnIdStr.isBlank()) {
-                                                                      String label = shortenLabel(line[6]);
-                                                                      int spnId = Integer.parseInt(spnIdStr);
-                                                                      spnDef = new SpnDefinition(spnId,
-                                                                                                 label,
-                                                                                                 startByte,
-                                                                                                 startBit,
-                                                                                                 line[7].isBlank()
-                                                                                                         ? -1
-                                                                                                         : Integer.parseInt(line[7]));
-                                                                  }
-                                                                  String pgnIdStr = line[0];
-                                                                  PgnDefinition pgnDef = null;
-                                                                  // we don't care about the PGN that have no
-                                                                  // SPNs.
-                                                                  if (spnDef != null && !pgnIdStr.isBlank()) {
-                                                                      int transmissionRate = parseTransmissionRate(line[3]);
-                                                                      String label = shortenLabel(line[1]);
-                                                                      pgnDef = new PgnDefinition(Integer.parseInt(pgnIdStr),
-                                                                                                 label,
-                                                                                                 line[2],
-                                                                                                 transmissionRate == 0,
-                                                                                                 transmissionRate < 0,
-                                                                                                 Math.abs(transmissionRate),
-                                                                                                 Collections.singletonList(spnDef));
-                                                                  }
-                                                                  return new Object[] { pgnDef, spnDef };
-                                                              } catch (ParseError e) {
-                                                                  System.err.format("%d %s %n\t%s%n",
-                                                                                    reader.getLinesRead(),
-                                                                                    e.getMessage(),
-                                                                                    Arrays.asList(line));
-                                                                  return null;
+    private void parseLookUpTables() {
+        // parse the selected columns from J1939DA. The source data is
+        // unaltered, so some processing is required to convert byte.bit
+        // specifications into ints.
+        InputStream is = new SequenceInputStream(Resources.class.getResourceAsStream("j1939da-extract.csv"),
+                                                 Resources.class.getResourceAsStream("j1939da-addendum.csv"));
+        InputStreamReader isReader = new InputStreamReader(is, StandardCharsets.ISO_8859_1);
+        try (CSVReader reader = new CSVReaderBuilder(isReader).withSkipLines(2).build()) {
+            // collect spns under the pgn
+            Collection<Object[]> table = StreamSupport.stream(reader.spliterator(), false)
+                                                      // allow for blank lines
+                                                      .filter(line -> line.length > 1)
+                                                      // map line to [pgn,spn] where pgn may be null
+                                                      .map(line -> {
+                                                          try {
+                                                              String position = line[4];
+                                                              int startByte;
+                                                              int startBit;
+                                                              position = position.toLowerCase();
+                                                              if (position.isBlank()) {
+                                                                  // must be a non-pgn spn
+                                                                  startByte = -1;
+                                                                  startBit = -1;
+                                                              } else if (position.matches("[a-z]")) {
+                                                                  startByte = position.charAt(0) - 'a' + 1;
+                                                                  startBit = 1;
+                                                              } else if (position.matches("\\d+((,|-| to ).*)?")) {
+                                                                  startByte = Integer.parseInt(position.split("[^\\d]")[0]);
+                                                                  startBit = 1;
+                                                              } else if (position.matches("\\d+\\.\\d+((,|-| to ).*)?")) {
+                                                                  String[] a = position.split("[^\\d]");
+                                                                  startByte = Integer.parseInt(a[0]);
+                                                                  startBit = Integer.parseInt(a[1]);
+                                                              } else if ("a (starts at byte 10)".equals(position)) {
+                                                                  startByte = 10;
+                                                                  startBit = 1;
+                                                              } else {
+                                                                  throw new ParseError("Unable to parse position: "
+                                                                          + position);
                                                               }
-                                                          })
-                                                          .filter(Objects::nonNull)
-                                                          .collect(Collectors.toList());
-                spnLut = table.stream()
-                              .map(row -> ((SpnDefinition) row[1]))
-                              .filter(Objects::nonNull)
-                              // prefer the spn with a star byte over the one without
-                              .sorted(Comparator.comparing(SpnDefinition::getStartByte))
-                              .collect(Collectors.toMap(SpnDefinition::getSpnId, s -> s, (a, b) -> b));
-
-                pgnLut = table.stream()
-                              .flatMap(row -> row[0] == null ? Stream.empty() : Stream.of((PgnDefinition) row[0]))
-                              .collect(Collectors.toMap(PgnDefinition::getId,
-                                                        pgnDef -> pgnDef,
-                                                        (a, b) -> new PgnDefinition(a.getId(),
-                                                                                    shortenLabel(a.getLabel()),
-                                                                                    a.getAcronym(),
-                                                                                    a.isOnRequest(),
-                                                                                    a.isVariableBroadcast(),
-                                                                                    a.getBroadcastPeriod(),
-                                                                                    Stream.concat(a.getSpnDefinitions()
-                                                                                                   .stream(),
-                                                                                                  b
-                                                                                                   .getSpnDefinitions()
-                                                                                                   .stream())
-                                                                                          .map(SpnDefinition::getSpnId)
-                                                                                          .distinct()
-                                                                                          .map(id -> spnLut.get(id))
-                                                                                          .sorted(Comparator
-                                                                                                            .comparing(s -> s.getStartByte()
-                                                                                                                    * 8
-                                                                                                                    + s
-                                                                                                                       .getStartBit()))
-                                                                                          .collect(Collectors.toList()))));
-
-                spnToPgnMap = new HashMap<>();
-                for (PgnDefinition pgnDefinition : pgnLut.values()) {
-                    for (SpnDefinition spnDefinition : pgnDefinition.getSpnDefinitions()) {
-                        Set<Integer> pgns = spnToPgnMap.getOrDefault(spnDefinition.getSpnId(), new HashSet<>());
-                        pgns.add(pgnDefinition.getId());
-                        spnToPgnMap.put(spnDefinition.getSpnId(), pgns);
-                    }
-                }
-            } catch (Exception e) {
-                logError("Error loading J1939DA data.", e);
-                throw new RuntimeException("Unable to load J1939DA", e);
-            }
+
+                                                              SpnDefinition spnDef = null;
+                                                              String spnIdStr = line[5];
+                                                              if (!spnIdStr.isBlank()) {
+                                                                  String label = shortenLabel(line[6]);
+                                                                  int spnId = Integer.parseInt(spnIdStr);
+                                                                  spnDef = new SpnDefinition(spnId,
+                                                                                             label,
+                                                                                             startByte,
+                                                                                             startBit,
+                                                                                             line[7].isBlank()
+                                                                                                     ? -1
+                                                                                                     : Integer.parseInt(line[7]));
+                                                              }
+                                                              String pgnIdStr = line[0];
+                                                              PgnDefinition pgnDef = null;
+                                                              // we don't care about the PGN that have no
+                                                              // SPNs.
+                                                              if (spnDef != null && !pgnIdStr.isBlank()) {
+                                                                  int transmissionRate = parseTransmissionRate(line[3]);
+                                                                  String label = shortenLabel(line[1]);
+                                                                  pgnDef = new PgnDefinition(Integer.parseInt(pgnIdStr),
+                                                                                             label,
+                                                                                             line[2],
+                                                                                             transmissionRate == 0,
+                                                                                             transmissionRate < 0,
+                                                                                             Math.abs(transmissionRate),
+                                                                                             Collections.singletonList(spnDef));
+                                                              }
+                                                              return new Object[] { pgnDef, spnDef };
+                                                          } catch (ParseError e) {
+                                                              System.err.format("%d %s %n\t%s%n",
+                                                                                reader.getLinesRead(),
+                                                                                e.getMessage(),
+                                                                                Arrays.asList(line));
+                                                              return null;
+                                                          }
+                                                      })
+                                                      .filter(Objects::nonNull)
+                                                      .collect(Collectors.toList());
+            spnLut = table.stream()
+                          .map(row -> ((SpnDefinition) row[1]))
+                          .filter(Objects::nonNull)
+                          // prefer the spn with a star byte over the one without
+                          .sorted(Comparator.comparing(SpnDefinition::getStartByte))
+                          .collect(Collectors.toMap(SpnDefinition::getSpnId, s -> s, (a, b) -> b));
+
+            pgnLut = table.stream()
+                          .flatMap(row -> row[0] == null ? Stream.empty() : Stream.of((PgnDefinition) row[0]))
+                          .collect(Collectors.toMap(PgnDefinition::getId,
+                                                    pgnDef -> pgnDef,
+                                                    (a, b) -> new PgnDefinition(a.getId(),
+                                                                                shortenLabel(a.getLabel()),
+                                                                                a.getAcronym(),
+                                                                                a.isOnRequest(),
+                                                                                a.isVariableBroadcast(),
+                                                                                a.getBroadcastPeriod(),
+                                                                                Stream.concat(a.getSpnDefinitions()
+                                                                                               .stream(),
+                                                                                              b
+                                                                                               .getSpnDefinitions()
+                                                                                               .stream())
+                                                                                      .map(SpnDefinition::getSpnId)
+                                                                                      .distinct()
+                                                                                      .map(id -> spnLut.get(id))
+                                                                                      .sorted(Comparator
+                                                                                                        .comparing(s -> s.getStartByte()
+                                                                                                                * 8
+                                                                                                                + s
+                                                                                                                   .getStartBit()))
+                                                                                      .collect(Collectors.toList()))));
+        } catch (Exception e) {
+            logError("Error loading J1939DA data.", e);
+            throw new RuntimeException("Unable to load J1939DA", e);
         }
     }
 
@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2021. Equipment & Tool Institute
+ */
+package org.etools.j1939_84.bus.j1939;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import org.etools.j1939_84.bus.j1939.packets.Slot;
+import org.etools.j1939_84.bus.j1939.packets.model.PgnDefinition;
+import org.etools.j1939_84.bus.j1939.packets.model.SpnDefinition;
+import org.etools.j1939_84.resources.Resources;
+
+/**
+ * A binary copy of the tables {@link J1939DaRepository} parses from the J1939DA
+ * CSV files. The file is named after the checksum of the CSV files, so a
+ * changed CSV is parsed again instead of using a stale snapshot. The snapshot
+ * is kept in a directory of the user's own and is only read if that user owns
+ * it, so another user can't plant the tables the packets are decoded with.
+ */
+class J1939DaSnapshot {
+
+    /** the CSV files the tables are parsed from */
+    static final String[] RESOURCES = { "j1939da-extract.csv", "j1939da-addendum.csv", "j1939da-slots.csv",
+            "j1939da-slots-addendum.csv" };
+
+    /** the directory to keep the snapshot in, if set */
+    static final String SNAPSHOT_DIR_PROPERTY = "j1939_84.snapshotDir";
+
+    /** change when the format changes */
+    private static final int VERSION = 1;
+
+    private static final int MAGIC = 0x4A314441; // J1DA
+
+    /**
+     * @return the CRC32 of the CSV files
+     */
+    static long checksum() throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[64 * 1024];
+        for (String resource : RESOURCES) {
+            try (InputStream in = Resources.class.getResourceAsStream(resource)) {
+                if (in == null) {
+                    throw new IOException("Missing " + resource);
+                }
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    crc.update(buffer, 0, n);
+                }
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * @return the file for the snapshot of the CSV files with the given checksum
+     */
+    static Path file(Path directory, long checksum) {
+        return directory.resolve(String.format("j1939da-%d-%08X.bin", VERSION, checksum));
+    }
+
+    /**
+     * @return the directory to keep the snapshot in, ~/.j1939_84 unless
+     *         {@value #SNAPSHOT_DIR_PROPERTY} is set
+     */
+    static Path directory() {
+        String directory = System.getProperty(SNAPSHOT_DIR_PROPERTY);
+        return directory != null ? Paths.get(directory) : Paths.get(System.getProperty("user.home"), ".j1939_84");
+    }
+
+    private static boolean isPosix(Path path) {
+        return path.getFileSystem().supportedFileAttributeViews().contains("posix");
+    }
+
+    /**
+     * @return true if the file is owned by the user running the tool and, where
+     *         the file system has POSIX permissions, nobody else can write it
+     */
+    static boolean isTrusted(Path file) throws IOException {
+        UserPrincipal user = file.getFileSystem()
+                                 .getUserPrincipalLookupService()
+                                 .lookupPrincipalByName(System.getProperty("user.name"));
+        if (!user.equals(Files.getOwner(file, LinkOption.NOFOLLOW_LINKS))) {
+            return false;
+        }
+        if (isPosix(file)) {
+            Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(file, LinkOption.NOFOLLOW_LINKS);
+            return !permissions.contains(PosixFilePermission.GROUP_WRITE)
+                    && !permissions.contains(PosixFilePermission.OTHERS_WRITE);
+        }
+        return true;
+    }
+
+    private static Slot readSlot(DataInputStream in) throws IOException {
+        return new Slot(in.readInt(),
+                        in.readUTF(),
+                        in.readUTF(),
+                        in.readBoolean() ? in.readDouble() : null,
+                        in.readBoolean() ? in.readDouble() : null,
+                        in.readBoolean() ? in.readUTF() : null,
+                        in.readInt());
+    }
+
+    private static SpnDefinition readSpnDefinition(DataInputStream in) throws IOException {
+        return new SpnDefinition(in.readInt(), in.readUTF(), in.readInt(), in.readInt(), in.readInt());
+    }
+
+    private static void writeSlot(DataOutputStream out, Slot slot) throws IOException {
+        out.writeInt(slot.getId());
+        out.writeUTF(slot.getName());
+        out.writeUTF(slot.getType());
+        writeNullable(out, slot.getScaling());
+        writeNullable(out, slot.getOffset());
+        out.writeBoolean(slot.getUnit() != null);
+        if (slot.getUnit() != null) {
+            out.writeUTF(slot.getUnit());
+        }
+        out.writeInt(slot.getLength());
+    }
+
+    private static void writeNullable(DataOutputStream out, Double value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeDouble(value);
+        }
+    }
+
+    private static void writeSpnDefinition(DataOutputStream out, SpnDefinition spn) throws IOException {
+        out.writeInt(spn.getSpnId());
+        out.writeUTF(spn.getLabel());
+        out.writeInt(spn.getStartByte());
+        out.writeInt(spn.getStartBit());
+        out.writeInt(spn.getSlotNumber());
+    }
+
+    final Map<Integer, PgnDefinition> pgnLut;
+
+    final Map<Integer, Slot> slots;
+
+    final Map<Integer, SpnDefinition> spnLut;
+
+    J1939DaSnapshot(Map<Integer, Slot> slots,
+                    Map<Integer, SpnDefinition> spnLut,
+                    Map<Integer, PgnDefinition> pgnLut) {
+        this.slots = slots;
+        this.spnLut = spnLut;
+        this.pgnLut = pgnLut;
+    }
+
+    /**
+     * Reads the snapshot in one go.
+     *
+     * @return the snapshot, or null if there is no snapshot for the checksum or
+     *         it isn't {@link #isTrusted(Path) trusted}
+     */
+    static J1939DaSnapshot read(Path file, long checksum) throws IOException {
+        if (!Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS) || !isTrusted(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != checksum) {
+                return null;
+            }
+
+            int count = in.readInt();
+            Map<Integer, Slot> slots = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                Slot slot = readSlot(in);
+                slots.put(slot.getId(), slot);
+            }
+
+            count = in.readInt();
+            Map<Integer, SpnDefinition> spnLut = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                SpnDefinition spn = readSpnDefinition(in);
+                spnLut.put(spn.getSpnId(), spn);
+            }
+
+            count = in.readInt();
+            Map<Integer, PgnDefinition> pgnLut = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                int id = in.readInt();
+                String label = in.readUTF();
+                String acronym = in.readUTF();
+                boolean isOnRequest = in.readBoolean();
+                boolean isVariableBroadcast = in.readBoolean();
+                int broadcastPeriod = in.readInt();
+                int spnCount = in.readInt();
+                List<SpnDefinition> spns = new ArrayList<>(spnCount);
+                for (int j = 0; j < spnCount; j++) {
+                    // share the SpnDefinition with the spnLut when it is the same one
+                    spns.add(in.readBoolean() ? spnLut.get(in.readInt()) : readSpnDefinition(in));
+                }
+                pgnLut.put(id,
+                           new PgnDefinition(id,
+                                             label,
+                                             acronym,
+                                             isOnRequest,
+                                             isVariableBroadcast,
+                                             broadcastPeriod,
+                                             spns));
+            }
+            return new J1939DaSnapshot(slots, spnLut, pgnLut);
+        }
+    }
+
+    /**
+     * Writes the snapshot to a temporary file first and then moves it in
+     * place, so a partial snapshot is never read.
+     */
+    void write(Path file, long checksum) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 20);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(checksum);
+
+            out.writeInt(slots.size());
+            for (Slot slot : slots.values()) {
+                writeSlot(out, slot);
+            }
+
+            out.writeInt(spnLut.size());
+            for (SpnDefinition spn : spnLut.values()) {
+                writeSpnDefinition(out, spn);
+            }
+
+            out.writeInt(pgnLut.size());
+            for (PgnDefinition pgn : pgnLut.values()) {
+                out.writeInt(pgn.getId());
+                out.writeUTF(pgn.getLabel());
+                out.writeUTF(pgn.getAcronym());
+                out.writeBoolean(pgn.isOnRequest());
+                out.writeBoolean(pgn.isVariableBroadcast());
+                out.writeInt(pgn.getBroadcastPeriod());
+                out.writeInt(pgn.getSpnDefinitions().size());
+                for (SpnDefinition spn : pgn.getSpnDefinitions()) {
+                    boolean shared = spnLut.get(spn.getSpnId()) == spn;
+                    out.writeBoolean(shared);
+                    if (shared) {
+                        out.writeInt(spn.getSpnId());
+                    } else {
+                        writeSpnDefinition(out, spn);
+                    }
+                }
+            }
+        }
+
+        if (isPosix(file)) {
+            Files.createDirectories(file.getParent(),
+                                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        } else {
+            Files.createDirectories(file.getParent());
+        }
+        Path temp = Files.createTempFile(file.getParent(), "j1939da", ".tmp");
+        try {
+            Files.write(temp, bytes.toByteArray());
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -1,15 +1,19 @@
 package org.etools.j1939_84.bus.j1939;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
 import java.util.logging.Level;
@@ -20,10 +24,52 @@ import org.etools.j1939_84.bus.Bus;
 import org.etools.j1939_84.bus.BusException;
 import org.etools.j1939_84.bus.EchoBus;
 import org.etools.j1939_84.bus.Packet;
-import org.etools.j1939_84.bus.Packet.PacketException;
-
+import org.etools.j1939_84.bus.PacketFilter;
+import org.etools.j1939_84.utils.Clock;
+
+/**
+ * J1939-21 transport protocol. One thread reads the bus and reassembles every
+ * BAM and RTS/CTS session addressed to this, in a session table keyed by the
+ * source and destination of the session. The T1/T2 timeouts of the sessions
+ * are kept in a timer wheel ticked by one timer thread, on the time of the
+ * {@link Clock}.
+ */
 public class J1939TP implements Bus {
 
+    /** A BAM or RTS/CTS session being received. */
+    static private class Session {
+        /** the BAM or RTS */
+        final Packet announcement;
+        final boolean bam;
+        /** reassembly buffer, at least size long */
+        final byte[] buffer;
+        /** when the session times out, in ms */
+        long deadline;
+        final int numberOfPackets;
+        /** the packet passed to the application, completed with the data */
+        final Packet packet;
+        final BitSet received;
+        final int size;
+        /** the timer wheel slot, -1 when not in the wheel */
+        int slot = -1;
+        /** CTS sent without receiving data since */
+        int ctsWithoutData;
+        /** number of packets received at the last CTS */
+        int lastCardinality = -1;
+        /** DT still expected for the last CTS */
+        int window;
+
+        Session(Packet announcement, boolean bam, byte[] buffer, Packet packet) {
+            this.announcement = announcement;
+            this.bam = bam;
+            this.buffer = buffer;
+            this.packet = packet;
+            size = announcement.get16(1);
+            numberOfPackets = announcement.get(3);
+            received = new BitSet(numberOfPackets + 1);
+        }
+    }
+
     /** Constants from J1939-21 */
     final static public int CM = 0xEC00;
     final static public int CM_BAM = 0x20;
@@ -41,6 +87,16 @@ public class J1939TP implements Bus {
     final static public int Tr = 200;
     final static public int TrPlus = 220;
     static private final Logger logger = Logger.getLogger(J1939TP.class.getName());
+    /** The largest message, J1939-21 */
+    static private final int MAX_SIZE = 1785;
+    /** CTS sent without receiving data before giving up, J1939-21 5.4.2 */
+    static private final int MAX_CTS_WITHOUT_DATA = 3;
+    /** reassembly buffers kept for reuse */
+    static private final int POOLED_BUFFERS = 16;
+    /** resolution of the session timeouts in ms */
+    static private final int TICK = 10;
+    /** slots in the timer wheel; one turn is longer than any timeout */
+    static private final int WHEEL_SIZE = 256;
 
     static {
         Map<Integer, String> err = new HashMap<>();
@@ -60,21 +116,31 @@ public class J1939TP implements Bus {
 
     /** bus representing CAN bus */
     private final Bus bus;
-    /**
-     * Support up to 255 concurrent TP sessions plus main kickoff thread, but we
-     * only expect there to normally be 5, so shut down idle threads after 1 s.
-     */
-    private final ExecutorService exec = new ThreadPoolExecutor(5 + 1,
-                                                                255 + 1,
-                                                                1L,
-                                                                TimeUnit.SECONDS,
-                                                                new LinkedBlockingQueue<>());
+    /** reassembly buffers of MAX_SIZE for reuse. Guarded by sessions. */
+    private final Deque<byte[]> buffers = new ArrayDeque<>();
     /** Application side bus. */
     private final EchoBus inbound;
     /**
-     * The inbound stream that RTS and BAM announcements will be detected on.
+     * reads the bus and runs the sessions. From the clock, so a VirtualClock
+     * knows the thread before it first reads.
+     */
+    private final ExecutorService receiver = Clock.get().newScheduledExecutor(1, Executors.defaultThreadFactory());
+    /**
+     * The sessions being received by source << 8 | destination. Also guards
+     * all session state and the timer wheel.
+     */
+    private final Map<Integer, Session> sessions = new HashMap<>();
+    /**
+     * The inbound stream that all TP traffic is received on.
      */
     private final Stream<Packet> stream;
+    /** ticks the wheel while there are sessions */
+    private ScheduledFuture<?> ticker;
+    private final ScheduledExecutorService timer = Clock.get().newScheduledExecutor(1, Executors.defaultThreadFactory());
+    /** sessions by deadline / TICK, rounded up, % WHEEL_SIZE */
+    private final List<List<Session>> wheel = new ArrayList<>(WHEEL_SIZE);
+    /** the next tick of the wheel to process */
+    private long wheelTick;
 
     public J1939TP(Bus bus) throws BusException {
         this(bus, bus.getAddress());
@@ -84,8 +150,11 @@ public class J1939TP implements Bus {
         this.bus = bus;
         stream = bus.read(9999, TimeUnit.DAYS);
         inbound = new EchoBus(address);
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel.add(new ArrayList<>());
+        }
         // start processing
-        exec.execute(() -> stream.forEach(p -> receive(p)));
+        receiver.execute(() -> stream.forEach(p -> receive(p)));
     }
 
     static private String getAbortError(int code) {
@@ -95,15 +164,31 @@ public class J1939TP implements Bus {
     /** We do not care about interruptions. */
     static private void sleep(int duration) {
         try {
-            Thread.sleep(duration);
+            Clock.get().sleep(duration);
         } catch (InterruptedException e) {
         }
     }
 
+    static private long now() {
+        return Clock.get().nanoTime() / 1_000_000;
+    }
+
+    /** @return the session key of a CM or DT packet */
+    static private int sessionKey(Packet packet) {
+        return packet.getSource() << 8 | packet.getDestination();
+    }
+
     @Override
     public void close() {
-        exec.shutdownNow();
+        receiver.shutdownNow();
+        timer.shutdownNow();
         stream.close();
+        synchronized (sessions) {
+            for (Session session : new ArrayList<>(sessions.values())) {
+                end(session);
+                session.packet.fail();
+            }
+        }
         bus.close();
     }
 
@@ -131,9 +216,15 @@ public class J1939TP implements Bus {
         return inbound.read(timeout, unit);
     }
 
+    @Override
+    public Stream<Packet> read(PacketFilter filter, long timeout, TimeUnit unit) throws BusException {
+        return inbound.read(filter, timeout, unit);
+    }
+
     @Override
     public void resetTimeout(Stream<Packet> stream, int time, TimeUnit unit) {
-        bus.resetTimeout(stream, time, unit);
+        // the streams of this are read from inbound
+        inbound.resetTimeout(stream, time, unit);
     }
 
     @Override
@@ -159,6 +250,63 @@ public class J1939TP implements Bus {
         }
     }
 
+    /**
+     * Starts or restarts the timeout of the session.
+     */
+    private void arm(Session session, int timeout) {
+        disarm(session);
+        session.deadline = now() + timeout;
+        // rounded up, so a slot is only processed once all of its deadlines passed
+        session.slot = (int) (((session.deadline + TICK - 1) / TICK) % WHEEL_SIZE);
+        wheel.get(session.slot).add(session);
+        if (ticker == null) {
+            wheelTick = now() / TICK;
+            ticker = timer.scheduleAtFixedRate(this::tick, TICK, TICK, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Finishes the BAM or RTS/CTS session.
+     */
+    private void complete(Session session) throws BusException {
+        end(session);
+        if (!session.bam) {
+            Packet rts = session.announcement;
+            Packet eom = Packet.create(CM | rts.getSource(),
+                                       getAddress(),
+                                       CM_EndOfMessageACK,
+                                       rts.get(1),
+                                       rts.get(2),
+                                       rts.get(3),
+                                       0xFF,
+                                       rts.get(5),
+                                       rts.get(6),
+                                       rts.get(7));
+            fine("tx EOM", eom);
+            bus.send(eom);
+        }
+        // signal done collecting packet data
+        session.packet.setData(session.buffer, session.size);
+        if (session.buffer.length == MAX_SIZE && buffers.size() < POOLED_BUFFERS) {
+            buffers.push(session.buffer);
+        }
+    }
+
+    private void disarm(Session session) {
+        if (session.slot >= 0) {
+            wheel.get(session.slot).remove(session);
+            session.slot = -1;
+        }
+    }
+
+    /**
+     * Removes the session from the table and the timer wheel.
+     */
+    private void end(Session session) {
+        disarm(session);
+        sessions.remove(sessionKey(session.announcement), session);
+    }
+
     private void receive(Packet packet) {
         // ignore the packet if it is from this
         try {
@@ -168,42 +316,32 @@ public class J1939TP implements Bus {
                         switch (packet.get(0)) {
                             case CM_RTS: { // Request to send
                                 if (packet.getDestination() == getAddress()) {
-                                    exec.execute(() -> {
-                                        try {
-                                            receiveDestinationSpecific(packet);
-                                        } catch (BusException e) {
-                                            error("Failed to receive destination specific TP:" + packet, e);
-                                        }
-                                    });
+                                    synchronized (sessions) {
+                                        startSession(packet, false);
+                                    }
                                 }
                                 return;
                             }
                             case CM_BAM: {
-                                /*
-                                 * Duplicate the current stream. Opening a new stream starts
-                                 * from "now" and may miss packets already queued up in
-                                 * stream. This is not needed for DA, because DA has a CTS.
-                                 * Timeout is reset inside receiveBam to account for time
-                                 * spent starting this thread.
-                                 */
-                                Stream<Packet> bamStream = bus.duplicate(stream, T2, TimeUnit.MILLISECONDS);
-                                exec.execute(() -> {
-                                    try {
-                                        receiveBam(packet, bamStream);
-                                    } catch (Throwable t) {
-                                        error("Failed to process packet:" + packet, t);
-                                    } finally {
-                                        bamStream.close();
-                                    }
-                                });
+                                synchronized (sessions) {
+                                    startSession(packet, true);
+                                }
                                 return;
                             }
                             case CM_ConnAbort:
-                                // handled in receive calls
+                                synchronized (sessions) {
+                                    receiveControl(packet);
+                                }
                                 return;
                         }
+                        synchronized (sessions) {
+                            receiveControl(packet);
+                        }
                         break;
                     case DT: // data
+                        synchronized (sessions) {
+                            receiveData(packet);
+                        }
                         return;
                 }
                 // everything else, pass through
@@ -214,155 +352,173 @@ public class J1939TP implements Bus {
         }
     }
 
-    private void receiveBam(Packet bam, Stream<Packet> stream) {
-        fine("rx BAM", bam);
+    /**
+     * A control message other than a BAM or RTS cancels the session receiving
+     * from the sender.
+     */
+    private void receiveControl(Packet control) {
+        Session session = sessions.get(sessionKey(control));
+        if (session != null) {
+            if (session.bam) {
+                warn("BAM canceled or aborted: " + session.announcement + " -> " + control);
+            } else {
+                if (control.get(0) == CM_ConnAbort) {
+                    warn(getAbortError(control.get(1)), control);
+                }
+                warn("TP canceled", control);
+            }
+            end(session);
+            session.packet.fail();
+        }
+    }
 
-        int numberOfPackets = bam.get(3);
+    private void receiveData(Packet dt) throws BusException {
+        Session session = sessions.get(sessionKey(dt));
+        if (session == null) {
+            return;
+        }
+        fine("rx DT", dt);
+        int sequence = dt.get(0);
+        int offset = (sequence - 1) * 7;
+        if (sequence < 1 || sequence > session.numberOfPackets) {
+            warn("Unexpected DT %s for %s", dt, session.announcement);
+        } else {
+            session.packet.getFragments().add(dt);
+            session.received.set(sequence);
+            // the last DT may be only padding
+            int length = Math.min(Math.min(7, session.size - offset), dt.getLength() - 1);
+            for (int i = 0; i < length; i++) {
+                session.buffer[offset + i] = (byte) dt.get(i + 1);
+            }
+            session.packet.setTimestamp(dt.getTimestamp());
+        }
 
-        byte[] data = new byte[bam.get16(1)];
-        BitSet received = new BitSet(numberOfPackets + 1);
-        int dataId = DT | bam.getDestination();
-        int controlId = CM | bam.getId(0xFF);
+        if (session.received.cardinality() == session.numberOfPackets) {
+            complete(session);
+        } else if (!session.bam && --session.window <= 0) {
+            sendCts(session);
+        } else {
+            // After every TP.DT, reset timeout to T1 from now.
+            arm(session, T1);
+        }
+    }
 
-        int pgn = bam.get24(5);
-        int source = bam.getSource();
-        int packetId = pgn < 0xF000 ? pgn | bam.getDestination() : pgn;
-        Packet packet = Packet.create(packetId, source, (int[]) null);
-        packet.setFragments(new ArrayList<>());
-        packet.getFragments().add(bam);
-        packet.setTimestamp(bam.getTimestamp());
-        synchronized (packet) {
-            inbound.send(packet);
-
-            bus.resetTimeout(stream, T2, TimeUnit.MILLISECONDS);
-            if (stream
-                      .filter(p -> {
-                          int id = p.getId(0xFFFF);
-                          return p.getSource() == source && (id == dataId || id == controlId);
-                      })
-                      .peek(p -> bus.resetTimeout(stream, T1, TimeUnit.MILLISECONDS))
-                      .map(p -> {
-                          if (p.getId(0xFFFF) == controlId) {
-                              packet.fail();
-                              warn("BAM canceled or aborted: " + bam + " -> " + p);
-                              return true;
-                          }
-                          fine("rx DT", p);
-                          packet.getFragments().add(p);
-                          received.set(p.get(0));
-                          int offset = (p.get(0) - 1) * 7;
-                          System.arraycopy(p.getBytes(), 1, data, offset, Math.min(offset + 7, data.length) - offset);
-                          packet.setTimestamp(p.getTimestamp());
-                          return received.cardinality() == numberOfPackets;
-                      })
-                      .filter(b -> b)
-                      .findFirst()
-                      .orElse(false)
-                    && received.cardinality() == numberOfPackets) {
-                packet.setData(data);
-            } else {
-                warn("BAM missing DT %d != %d", received.cardinality(), numberOfPackets);
-                packet.fail();
+    /**
+     * Requests the next missing packets of the RTS/CTS session, or gives up
+     * when the last CTS were not answered.
+     */
+    private void sendCts(Session session) throws BusException {
+        Packet rts = session.announcement;
+        int cardinality = session.received.cardinality();
+        if (cardinality == session.lastCardinality) {
+            if (++session.ctsWithoutData >= MAX_CTS_WITHOUT_DATA) {
+                warn("Failed to receive DT %s", rts);
+                end(session);
+                session.packet.fail();
+                return;
             }
+        } else {
+            session.lastCardinality = cardinality;
+            session.ctsWithoutData = 0;
         }
-    }
 
-    public void receiveDestinationSpecific(Packet rts) throws BusException {
-        fine("rx RTS", rts);
-        int numberOfPackets = rts.get(3);
+        int nextPacket = session.received.nextClearBit(1);
+        int packetCount = session.received.nextSetBit(nextPacket) - nextPacket;
+        if (packetCount < 0) {
+            packetCount = session.numberOfPackets - nextPacket + 1;
+        }
         int maxResponsePackets = rts.get(4);
+        if (packetCount > maxResponsePackets) {
+            packetCount = maxResponsePackets;
+        }
+        session.window = packetCount;
+        Packet cts = Packet.create(CM | rts.getSource(),
+                                   getAddress(),
+                                   CM_CTS,
+                                   packetCount,
+                                   nextPacket,
+                                   0xFF,
+                                   0xFF,
+                                   rts.get(5),
+                                   rts.get(6),
+                                   rts.get(7));
+        fine("tx CTS", cts);
+        arm(session, T2);
+        bus.send(cts);
+    }
 
-        byte[] data = new byte[rts.get16(1)];
-        BitSet received = new BitSet(numberOfPackets + 1);
-        int receivedNone = 0;
-        int lastCardinality = -1;
-        int cardinality;
+    /**
+     * Starts receiving a BAM or RTS/CTS session, replacing any session from the
+     * same source to the same destination.
+     */
+    private void startSession(Packet announcement, boolean bam) throws BusException {
+        fine(bam ? "rx BAM" : "rx RTS", announcement);
+        receiveControl(announcement);
 
-        int pgn = rts.get24(5);
-        int source = rts.getSource();
-        int id = pgn < 0xF000 ? pgn | rts.getDestination() : pgn;
-        Packet packet = Packet.create(id, source, (int[]) null);
+        int pgn = announcement.get24(5);
+        int id = pgn < 0xF000 ? pgn | announcement.getDestination() : pgn;
+        Packet packet = Packet.create(id, announcement.getSource(), (int[]) null);
         packet.setFragments(new ArrayList<>());
-        packet.getFragments().add(rts);
-        synchronized (packet) {
-            inbound.send(packet);
-            while ((cardinality = received.cardinality()) < numberOfPackets) {
-                if (cardinality == lastCardinality) {
-                    if (receivedNone++ > 3) {
-                        throw new BusException("Failed to receive DT");
+        packet.getFragments().add(announcement);
+        if (bam) {
+            packet.setTimestamp(announcement.getTimestamp());
+        }
+
+        int size = announcement.get16(1);
+        byte[] buffer = size <= MAX_SIZE && !buffers.isEmpty() ? buffers.pop()
+                : new byte[Math.max(size, MAX_SIZE)];
+        Session session = new Session(announcement, bam, buffer, packet);
+        sessions.put(sessionKey(announcement), session);
+        inbound.send(packet);
+
+        if (bam) {
+            arm(session, T2);
+        } else {
+            sendCts(session);
+        }
+    }
+
+    /**
+     * Times out the sessions whose deadline has passed.
+     */
+    private void tick() {
+        synchronized (sessions) {
+            long now = now();
+            long lastTick = now / TICK;
+            // after a long pause, each slot only needs to be looked at once
+            wheelTick = Math.max(wheelTick, lastTick - WHEEL_SIZE + 1);
+            List<Session> expired = new ArrayList<>();
+            for (; wheelTick <= lastTick; wheelTick++) {
+                for (Session session : wheel.get((int) (wheelTick % WHEEL_SIZE))) {
+                    if (session.deadline <= now) {
+                        expired.add(session);
                     }
-                } else {
-                    lastCardinality = cardinality;
-                    receivedNone = 0;
-                }
-                int nextPacket = received.nextClearBit(1);
-                int packetCount = received.nextSetBit(nextPacket) - nextPacket;
-                if (packetCount < 0) {
-                    packetCount = numberOfPackets - nextPacket + 1;
-                }
-                if (packetCount > maxResponsePackets) {
-                    packetCount = maxResponsePackets;
                 }
-                Stream<Packet> dataStream = bus.read(T2, TimeUnit.MILLISECONDS);
-                Stream<Packet> stream = dataStream
-                                                  .filter(p -> p.getSource() == source)
-                                                  .peek(p -> {
-                                                      if (p.getId(0xFFFF) == (CM | rts.getId(0xFF))) {
-                                                          if (p.get(0) == CM_ConnAbort) {
-                                                              warn(getAbortError(p.get(1)), p);
-                                                          }
-                                                          warn("TP canceled", p);
-                                                          packet.fail();
-                                                          throw new PacketException("TP canceled");
-                                                      }
-                                                  })
-                                                  // only consider DT packet that are part of this
-                                                  // connection
-                                                  .filter(p -> p.getId(0xFFFF) == (DT | rts.getId(0xFF)))
-                                                  // After every TP.DT, reset timeout to T1 from now.
-                                                  .peek(p -> bus.resetTimeout(dataStream, T1, TimeUnit.MILLISECONDS))
-                                                  .limit(packetCount);
-                Packet cts = Packet.create(CM | source,
-                                           getAddress(),
-                                           CM_CTS,
-                                           packetCount,
-                                           nextPacket,
-                                           0xFF,
-                                           0xFF,
-                                           rts.get(5),
-                                           rts.get(6),
-                                           rts.get(7));
-                fine("tx CTS", cts);
-
-                bus.send(cts);
+            }
+            for (Session session : expired) {
+                disarm(session);
                 try {
-                    stream.forEach(p -> {
-                        packet.getFragments().add(p);
-                        fine("rx DT", rts);
-                        received.set(p.get(0));
-                        packet.setTimestamp(p.getTimestamp());
-                        int offset = (p.get(0) - 1) * 7;
-                        System.arraycopy(p.getBytes(), 1, data, offset, Math.min(offset + 7, data.length) - offset);
-                    });
-                } catch (PacketException e) {
-                    // TP failed.
-                    return;
+                    timeout(session);
+                } catch (Throwable t) {
+                    error("Failed to time out TP session:" + session.announcement, t);
+                    end(session);
+                    session.packet.fail();
                 }
             }
-            Packet eom = Packet.create(CM | source,
-                                       getAddress(),
-                                       CM_EndOfMessageACK,
-                                       rts.get(1),
-                                       rts.get(2),
-                                       rts.get(3),
-                                       0xFF,
-                                       rts.get(5),
-                                       rts.get(6),
-                                       rts.get(7));
-            fine("tx EOM", eom);
-            bus.send(eom);
-            // signal done collecting packet data
-            packet.setData(data);
+            if (sessions.isEmpty() && ticker != null) {
+                ticker.cancel(false);
+                ticker = null;
+            }
+        }
+    }
+
+    private void timeout(Session session) throws BusException {
+        if (session.bam) {
+            warn("BAM missing DT %d != %d", session.received.cardinality(), session.numberOfPackets);
+            end(session);
+            session.packet.fail();
+        } else {
+            sendCts(session);
         }
     }
 
@@ -452,6 +608,8 @@ public class J1939TP implements Bus {
                 if (cts.get24(5) != pgn) {
                     warn("TP.CM_CTS bytes 6-8 should be the PGN: %04X  %s", cts.get24(5), cts.toString());
                 }
+                // read the answer from before the data is sent, so it can not be missed
+                Stream<Packet> nextStream = bus.read(T3, TimeUnit.MILLISECONDS).filter(controlMessageFilter);
                 // send data
                 for (int i = 0; i < packetsToSend; i++) {
                     byte[] buf = new byte[8];
@@ -467,7 +625,7 @@ public class J1939TP implements Bus {
                     response = bus.send(dp);
                 }
                 // wait for CTS or EOM
-                ctsOptional = bus.read(T3, TimeUnit.MILLISECONDS).filter(controlMessageFilter).findFirst();
+                ctsOptional = nextStream.findFirst();
             }
         }
         ctsOptional.ifPresent(eom -> fine("rx EOM", eom));
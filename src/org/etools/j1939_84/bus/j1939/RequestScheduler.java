@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2021. Equipment & Tool Institute
+ */
+package org.etools.j1939_84.bus.j1939;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.etools.j1939_84.controllers.ResultsListener;
+import org.etools.j1939_84.controllers.TestSession;
+import org.etools.j1939_84.model.Outcome;
+
+/**
+ * Runs destination specific requests to different destinations in parallel,
+ * while requests to the same destination are sent one at a time, in the order
+ * they were submitted, as J1939 requires.
+ *
+ * Each request reports to its own listener. {@link #join()} replays those
+ * reports to the real listener in submission order, and calls the handler of
+ * each request on the calling thread right after its report, so the log reads
+ * the same as if the requests had been sent one after the other. The requests
+ * run in the {@link TestSession} of the thread that submitted them.
+ *
+ * <pre>
+ * RequestScheduler scheduler = new RequestScheduler(listener);
+ * for (int address : addresses) {
+ *     scheduler.submit(address, l -> module.requestDM5(l, address), result -> verify(result));
+ * }
+ * scheduler.join();
+ * </pre>
+ */
+public class RequestScheduler {
+
+    /** Records the reports of a request, to be replayed in order. */
+    private static class RecordingListener implements ResultsListener {
+        private final List<Consumer<ResultsListener>> events = new ArrayList<>();
+
+        @Override
+        synchronized public void addOutcome(int partNumber, int stepNumber, Outcome outcome, String message) {
+            events.add(l -> l.addOutcome(partNumber, stepNumber, outcome, message));
+        }
+
+        @Override
+        synchronized public void onProgress(int currentStep, int totalSteps, String message) {
+            events.add(l -> l.onProgress(currentStep, totalSteps, message));
+        }
+
+        @Override
+        synchronized public void onProgress(String message) {
+            events.add(l -> l.onProgress(message));
+        }
+
+        @Override
+        synchronized public void onResult(List<String> results) {
+            events.add(l -> l.onResult(results));
+        }
+
+        @Override
+        synchronized public void onResult(String result) {
+            events.add(l -> l.onResult(result));
+        }
+
+        synchronized void replay(ResultsListener listener) {
+            events.forEach(e -> e.accept(listener));
+            events.clear();
+        }
+    }
+
+    /** A submitted request, or an action to run in order. */
+    private static class Step {
+        final Runnable action;
+        final CompletableFuture<?> future;
+        final RecordingListener recorder;
+
+        Step(CompletableFuture<?> future, RecordingListener recorder, Runnable action) {
+            this.future = future;
+            this.recorder = recorder;
+            this.action = action;
+        }
+    }
+
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "J1939 Request");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ResultsListener listener;
+
+    private final List<Step> steps = new ArrayList<>();
+
+    /** the last request to each destination */
+    private final Map<Integer, CompletableFuture<?>> tails = new HashMap<>();
+
+    public RequestScheduler(ResultsListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Waits for all the submitted requests and replays their reports and
+     * handlers in the order they were submitted. A request that threw has its
+     * exception rethrown here, after the reports of the requests before it.
+     */
+    public void join() {
+        try {
+            for (Step step : steps) {
+                if (step.future == null) {
+                    step.action.run();
+                    continue;
+                }
+                try {
+                    step.future.join();
+                } finally {
+                    step.recorder.replay(listener);
+                }
+                step.action.run();
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        } finally {
+            steps.clear();
+            tails.clear();
+        }
+    }
+
+    /**
+     * Starts the request once the requests already submitted to the same
+     * destination are done.
+     *
+     * @param destination
+     *                        the address the request is sent to
+     * @param request
+     *                        sends the request, reporting to the given
+     *                        listener
+     * @param handler
+     *                        called with the result by {@link #join()}, on the
+     *                        calling thread
+     */
+    public <T> void submit(int destination, Function<ResultsListener, T> request, Consumer<? super T> handler) {
+        RecordingListener recorder = new RecordingListener();
+        // the pooled threads keep the session of whoever started them
+        TestSession session = TestSession.current();
+        CompletableFuture<?> previous = tails.get(destination);
+        CompletableFuture<T> future = previous == null
+                ? CompletableFuture.supplyAsync(() -> session.call(() -> request.apply(recorder)), EXECUTOR)
+                : previous.handleAsync((r, t) -> session.call(() -> request.apply(recorder)), EXECUTOR);
+        tails.put(destination, future);
+        steps.add(new Step(future, recorder, () -> handler.accept(future.join())));
+    }
+
+    /**
+     * Runs the action on the calling thread by {@link #join()}, after the
+     * handlers of the requests submitted before it.
+     */
+    public void thenRun(Runnable action) {
+        steps.add(new Step(null, null, action));
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2021. Equipment & Tool Institute
+ */
+package org.etools.j1939_84.bus.j1939;
+
+import static org.etools.j1939_84.J1939_84.NL;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.etools.j1939_84.bus.j1939.packets.AcknowledgmentPacket.Response;
+
+/**
+ * The response latency and the NACK, BUSY and timeout counts of the requests
+ * made by {@link J1939}, for each PGN and responding address. The latency is
+ * from the echo of the request to the first fragment of the response.
+ */
+public class ResponseMetrics {
+
+    /** The metrics of one PGN from one address. */
+    public static class Entry {
+        private final int address;
+        private final AtomicLong busy = new AtomicLong();
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final AtomicLong nacks = new AtomicLong();
+        private final int pgn;
+        private final AtomicLong timeouts = new AtomicLong();
+
+        Entry(int pgn, int address) {
+            this.pgn = pgn;
+            this.address = address;
+        }
+
+        public int getAddress() {
+            return address;
+        }
+
+        public long getBusy() {
+            return busy.get();
+        }
+
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        public long getNacks() {
+            return nacks.get();
+        }
+
+        public int getPgn() {
+            return pgn;
+        }
+
+        public long getTimeouts() {
+            return timeouts.get();
+        }
+
+        /**
+         * Counts a BUSY as busy, and any other negative acknowledgment as a
+         * NACK.
+         */
+        public void recordAcknowledgment(Response response) {
+            if (response == Response.BUSY) {
+                busy.incrementAndGet();
+            } else if (response != Response.ACK) {
+                nacks.incrementAndGet();
+            }
+        }
+
+        public void recordLatency(long micros) {
+            latency.record(micros);
+        }
+
+        public void recordTimeout() {
+            timeouts.incrementAndGet();
+        }
+    }
+
+    private static final String CSV_HEADER = "PGN,Address,Count,P50 us,P90 us,P99 us,Max us,NACK,Busy,Timeout";
+
+    private static String millis(long micros) {
+        return String.format("%8.1f", micros / 1000.0);
+    }
+
+    private final ConcurrentMap<Integer, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * @return the metrics of the PGN from the address, created on first use
+     */
+    public Entry get(int pgn, int address) {
+        return entries.computeIfAbsent(pgn << 8 | address, k -> new Entry(pgn, address));
+    }
+
+    /** @return the metrics, by PGN and address */
+    public List<Entry> getEntries() {
+        return entries.values()
+                      .stream()
+                      .sorted(Comparator.comparingInt(Entry::getPgn).thenComparingInt(Entry::getAddress))
+                      .collect(Collectors.toList());
+    }
+
+    /**
+     * @return a table of the latency percentiles in ms and the counts, for the
+     *         summary report
+     */
+    public String getSummary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("   PGN  Count    P50 ms    P90 ms    P99 ms    Max ms   NACK   Busy  Timeout  Module").append(NL);
+        for (Entry entry : getEntries()) {
+            LatencyHistogram latency = entry.getLatency();
+            sb.append(String.format("%6d %6d", entry.getPgn(), latency.getCount()))
+              .append("  ").append(millis(latency.getPercentile(50)))
+              .append("  ").append(millis(latency.getPercentile(90)))
+              .append("  ").append(millis(latency.getPercentile(99)))
+              .append("  ").append(millis(latency.getMax()))
+              .append(String.format(" %6d %6d %8d  ", entry.getNacks(), entry.getBusy(), entry.getTimeouts()))
+              .append(Lookup.getAddressName(entry.getAddress()))
+              .append(NL);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes the metrics as CSV, with the latencies in µs.
+     */
+    public void writeCsv(Appendable out) throws IOException {
+        out.append(CSV_HEADER).append(NL);
+        for (Entry entry : getEntries()) {
+            LatencyHistogram latency = entry.getLatency();
+            out.append(entry.getPgn() + "," + entry.getAddress() + "," + latency.getCount() + ","
+                    + latency.getPercentile(50) + "," + latency.getPercentile(90) + ","
+                    + latency.getPercentile(99) + "," + latency.getMax() + "," + entry.getNacks() + ","
+                    + entry.getBusy() + "," + entry.getTimeouts())
+               .append(NL);
+        }
+    }
+}
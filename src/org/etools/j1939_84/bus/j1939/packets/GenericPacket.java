@@ -9,6 +9,7 @@ import static org.etools.j1939_84.J1939_84.getLogger;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalDouble;
 import java.util.logging.Level;
 import java.util.stream.Stream;
 
@@ -16,19 +17,22 @@ import org.etools.j1939_84.bus.Packet;
 import org.etools.j1939_84.bus.j1939.J1939DaRepository;
 import org.etools.j1939_84.bus.j1939.packets.model.PgnDefinition;
 import org.etools.j1939_84.bus.j1939.packets.model.Spn;
-import org.etools.j1939_84.bus.j1939.packets.model.SpnDataParser;
-import org.etools.j1939_84.bus.j1939.packets.model.SpnDefinition;
+import org.etools.j1939_84.bus.j1939.packets.model.SpnExtractor;
 
 public class GenericPacket extends ParsedPacket {
 
-    private final SpnDataParser parser;
     private final PgnDefinition pgnDefinition;
+    private final SpnExtractor extractor;
+    /** SPNs by extractor index, created when asked for */
+    private Spn[] spnCache;
     private List<Spn> spns;
+    /** raw values by extractor index */
+    private long[] values;
 
     public GenericPacket(Packet packet) {
         super(packet);
         pgnDefinition = getJ1939DaRepository().findPgnDefinition(packet.getPgn());
-        parser = new SpnDataParser();
+        extractor = pgnDefinition.getSpnExtractor();
     }
 
     private static J1939DaRepository getJ1939DaRepository() {
@@ -73,33 +77,66 @@ public class GenericPacket extends ParsedPacket {
     }
 
     public Optional<Spn> getSpn(int spn) {
-        return getSpns().stream().filter(s -> s.getId() == spn).findAny();
+        int index = extractor.indexOf(spn);
+        return index < 0 ? Optional.empty() : Optional.of(getSpnAt(index));
     }
 
     public Stream<Double> getSpnValue(int spn) {
-        return getSpns().stream()
-                        .filter(s -> s.getId() == spn)
-                        .filter(Spn::hasValue)
-                        .map(Spn::getValue)
-                        .findAny()
-                        .stream();
+        OptionalDouble value = findSpnValue(spn);
+        return value.isPresent() ? Stream.of(value.getAsDouble()) : Stream.empty();
+    }
+
+    /**
+     * Returns the scaled value of the SPN without creating any {@link Spn}s.
+     *
+     * @param  spn
+     *                 the id of the SPN
+     * @return     the value, or empty if the SPN isn't part of the packet or has
+     *             no value
+     */
+    public OptionalDouble findSpnValue(int spn) {
+        int index = extractor.indexOf(spn);
+        if (index < 0) {
+            return OptionalDouble.empty();
+        }
+        Double value;
+        if (!extractor.isNumeric(index)) {
+            value = getSpnAt(index).getValue();
+        } else if (extractor.isPresent(getPacket(), index)) {
+            value = extractor.getSlot(index).asValue(getValues()[index]);
+        } else {
+            value = null;
+        }
+        return value == null ? OptionalDouble.empty() : OptionalDouble.of(value);
     }
 
     public List<Spn> getSpns() {
         if (spns == null) {
-            spns = new ArrayList<>();
-
-            List<SpnDefinition> spnDefinitions = getPgnDefinition().getSpnDefinitions();
-            byte[] bytes = getPacket().getBytes();
-            for (SpnDefinition definition : spnDefinitions) {
-                Slot slot = getJ1939DaRepository().findSLOT(definition.getSlotNumber(), definition.getSpnId());
-                if (slot.getLength() != 0) {
-                    byte[] data = parser.parse(bytes, definition, slot.getLength());
-                    spns.add(new Spn(definition.getSpnId(), definition.getLabel(), slot, data));
-                }
+            spns = new ArrayList<>(extractor.size());
+            for (int i = 0; i < extractor.size(); i++) {
+                spns.add(getSpnAt(i));
             }
         }
         return spns;
     }
 
+    private Spn getSpnAt(int index) {
+        if (spnCache == null) {
+            spnCache = new Spn[extractor.size()];
+        }
+        Spn spn = spnCache[index];
+        if (spn == null) {
+            spn = extractor.createSpn(getPacket(), index);
+            spnCache[index] = spn;
+        }
+        return spn;
+    }
+
+    private long[] getValues() {
+        if (values == null) {
+            values = extractor.extractAll(getPacket(), new long[extractor.size()]);
+        }
+        return values;
+    }
+
 }
@@ -13,8 +13,14 @@ import java.util.Locale;
  */
 public class Slot {
 
+    /** the type, parsed once */
+    private final boolean ascii;
+    private final boolean bitField;
+    /** the high byte of the value, for the NA, error and FB checks */
+    private final long highByteMask;
     private final int id;
     private final int length; // bits
+    private final long mask;
     private final String name;
     private final Double offset;
     private final Double scaling;
@@ -29,6 +35,11 @@ public class Slot {
         this.offset = offset;
         this.unit = unit;
         this.length = length;
+        String upperType = type.toUpperCase(Locale.ROOT);
+        ascii = upperType.contains("ASCII");
+        bitField = upperType.startsWith("BIT");
+        mask = ~0L >>> (64 - length);
+        highByteMask = ((long) 0xFF) << (length - 8);
     }
 
     /**
@@ -95,13 +106,27 @@ public class Slot {
             return null;
         }
 
-        long value = toValue(data);
+        return asValue(toValue(data));
+    }
+
+    /**
+     * Returns the raw value in a scaled value. If the type is ASCII or the value
+     * is NOT_AVAILABLE or ERROR, null is returned
+     *
+     * @param  value
+     *                   the raw value, masked to the length of the SLOT
+     * @return       the scaled value or null
+     */
+    public Double asValue(long value) {
+        if (isAscii()) {
+            return null;
+        }
 
         if (isBitField()) {
             return Long.valueOf(value).doubleValue();
         }
 
-        if (isNotAvailable(data) || isError(data) || isFB(data)) {
+        if (isNotAvailable(value) || isError(value) || isFB(value)) {
             return null;
         }
 
@@ -161,41 +186,57 @@ public class Slot {
     }
 
     private boolean isAscii() {
-        return type.toUpperCase(Locale.ROOT).contains("ASCII");
+        return ascii;
     }
 
     private boolean isBitField() {
-        return type.toUpperCase(Locale.ROOT).startsWith("BIT");
+        return bitField;
     }
 
     public boolean isError(byte[] data) {
-        if (length == 1 || isAscii() || data.length == 0) {
+        if (data.length == 0) {
+            return false;
+        }
+        return isError(toValue(data));
+    }
+
+    /**
+     * @param  value
+     *                   the raw value, masked to the length of the SLOT
+     * @return       true if the value is ERROR
+     */
+    public boolean isError(long value) {
+        if (length == 1 || isAscii()) {
             return false;
         }
 
-        long value = toValue(data);
         if (isBitField()) {
-            long mask = mask();
             return (value & mask) == (mask - 1);
         }
 
-        long mask = ((long) 0xFF) << (length - 8);
         long error = ((long) 0xFE) << (length - 8);
-        long maskedValue = value & mask;
-        return maskedValue == error;
+        return (value & highByteMask) == error;
     }
 
     public boolean isFB(byte[] data) {
-        if (length == 1 || isAscii() || data.length == 0) {
+        if (data.length == 0) {
             return false;
         }
+        return isFB(toValue(data));
+    }
 
-        long value = toValue(data);
+    /**
+     * @param  value
+     *                   the raw value, masked to the length of the SLOT
+     * @return       true if the value is in the 0xFB range
+     */
+    public boolean isFB(long value) {
+        if (length == 1 || isAscii()) {
+            return false;
+        }
 
-        long mask = ((long) 0xFF) << (length - 8);
         long fb = ((long) 0xFB) << (length - 8);
-        long maskedValue = value & mask;
-        return maskedValue == fb;
+        return (value & highByteMask) == fb;
     }
 
     public boolean isNotAvailable(byte[] data) {
@@ -207,20 +248,24 @@ public class Slot {
             return true;
         }
 
-        long value = toValue(data);
-        if (isBitField()) {
-            long mask = mask();
-            long maskedValue = value & mask;
-            return maskedValue == mask;
+        return isNotAvailable(toValue(data));
+    }
+
+    /**
+     * @param  value
+     *                   the raw value, masked to the length of the SLOT
+     * @return       true if the value is NOT_AVAILABLE
+     */
+    public boolean isNotAvailable(long value) {
+        if (length == 1 || isAscii()) {
+            return false;
         }
 
-        long mask = ((long) 0xFF) << (length - 8);
-        long maskedValue = value & mask;
-        return maskedValue == mask;
-    }
+        if (isBitField()) {
+            return (value & mask) == mask;
+        }
 
-    private long mask() {
-        return ~0L >>> (64 - length);
+        return (value & highByteMask) == highByteMask;
     }
 
     /**
@@ -255,9 +300,9 @@ public class Slot {
 
     private long toValue(byte[] data) {
         if (length <= 8) {
-            return data[0] & 0xFF & mask();
+            return data[0] & 0xFF & mask;
         }
-        return flipBytes(data) & mask();
+        return flipBytes(data) & mask;
     }
 
     public int getByteLength() {
@@ -271,9 +316,9 @@ public class Slot {
     private byte[] toBytes(double value) {
         long data = Double.valueOf(value).longValue();
         if (length <= 8) {
-            return new byte[] { (byte) (data & mask()) };
+            return new byte[] { (byte) (data & mask) };
         }
-        return flipBytes(data & mask());
+        return flipBytes(data & mask);
     }
 
 }
@@ -6,6 +6,8 @@ package org.etools.j1939_84.bus.j1939.packets.model;
 import java.util.Collections;
 import java.util.List;
 
+import org.etools.j1939_84.bus.j1939.J1939DaRepository;
+
 public class PgnDefinition {
 
     private final String acronym;
@@ -15,6 +17,7 @@ public class PgnDefinition {
     private final boolean isVariableBroadcast;
     private final String label;
     private final List<SpnDefinition> spnDefinitions;
+    private volatile SpnExtractor spnExtractor;
 
     public PgnDefinition(int id,
                          String label,
@@ -72,4 +75,26 @@ public class PgnDefinition {
     public List<SpnDefinition> getSpnDefinitions() {
         return spnDefinitions;
     }
+
+    /**
+     * Builds the {@link SpnExtractor} for the SPNs of this PGN with the SLOTs of
+     * the given repository.
+     */
+    public SpnExtractor compileSpnExtractor(J1939DaRepository repository) {
+        SpnExtractor result = new SpnExtractor(this, repository);
+        spnExtractor = result;
+        return result;
+    }
+
+    /**
+     * @return the {@link SpnExtractor} for the SPNs of this PGN. The
+     *         {@link J1939DaRepository} builds them as the J1939DA is loaded.
+     */
+    public SpnExtractor getSpnExtractor() {
+        SpnExtractor result = spnExtractor;
+        if (result == null) {
+            result = compileSpnExtractor(J1939DaRepository.getInstance());
+        }
+        return result;
+    }
 }
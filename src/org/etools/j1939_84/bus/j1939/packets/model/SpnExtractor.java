@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2021. Equipment & Tool Institute
+ */
+package org.etools.j1939_84.bus.j1939.packets.model;
+
+import java.util.List;
+
+import org.etools.j1939_84.bus.Packet;
+import org.etools.j1939_84.bus.j1939.J1939DaRepository;
+import org.etools.j1939_84.bus.j1939.packets.Slot;
+
+/**
+ * Reads the raw values of the SPNs of a PGN straight from the {@link Packet}.
+ * The position and width of each SPN are resolved once, when the extractor is
+ * built for the {@link PgnDefinition}, so reading a value is a few shifts and
+ * masks without copying the data.
+ *
+ * The SPNs are indexed in the order of the definition, skipping SPNs with a
+ * SLOT of 0 bits. The raw values are the same as the ones the
+ * {@link SpnDataParser} produces; values wider than 64 bits (ASCII) are left to
+ * the parser.
+ */
+public class SpnExtractor {
+
+    private final int[] bitLengths;
+    private final int[] byteLengths;
+    private final SpnDefinition[] definitions;
+    /** open addressed SPN id to index + 1 table, so lookups don't box */
+    private final int[] indexes;
+    private final int[] indexKeys;
+    private final Slot[] slots;
+    private final int[] startBits;
+    /** 0 based, -1 if the SPN has no position */
+    private final int[] startBytes;
+
+    public SpnExtractor(PgnDefinition pgnDefinition, J1939DaRepository repository) {
+        List<SpnDefinition> list = pgnDefinition.getSpnDefinitions();
+        int count = 0;
+        Slot[] allSlots = new Slot[list.size()];
+        for (int i = 0; i < allSlots.length; i++) {
+            SpnDefinition definition = list.get(i);
+            allSlots[i] = repository.findSLOT(definition.getSlotNumber(), definition.getSpnId());
+            if (allSlots[i].getLength() != 0) {
+                count++;
+            }
+        }
+
+        definitions = new SpnDefinition[count];
+        slots = new Slot[count];
+        startBytes = new int[count];
+        startBits = new int[count];
+        bitLengths = new int[count];
+        byteLengths = new int[count];
+        int tableSize = Integer.highestOneBit(Math.max(1, count) * 2) * 2;
+        indexKeys = new int[tableSize];
+        indexes = new int[tableSize];
+        int index = 0;
+        for (int i = 0; i < allSlots.length; i++) {
+            Slot slot = allSlots[i];
+            if (slot.getLength() == 0) {
+                continue;
+            }
+            SpnDefinition definition = list.get(i);
+            definitions[index] = definition;
+            slots[index] = slot;
+            startBits[index] = definition.getStartBit();
+            startBytes[index] = definition.getStartBit() < 0 ? -1 : definition.getStartByte() - 1;
+            bitLengths[index] = slot.getLength();
+            // -1 is variable length; the rest of the packet
+            byteLengths[index] = slot.getLength() < 0 ? -1 : (slot.getLength() + 7) / 8;
+            int slotIndex = hash(definition.getSpnId());
+            while (indexes[slotIndex] != 0 && indexKeys[slotIndex] != definition.getSpnId()) {
+                slotIndex = (slotIndex + 1) & (indexes.length - 1);
+            }
+            if (indexes[slotIndex] == 0) {
+                indexKeys[slotIndex] = definition.getSpnId();
+                indexes[slotIndex] = index + 1;
+            }
+            index++;
+        }
+    }
+
+    /**
+     * Creates the {@link Spn} at the given index, with the data as the
+     * {@link SpnDataParser} would produce it.
+     */
+    public Spn createSpn(Packet packet, int index) {
+        SpnDefinition definition = definitions[index];
+        return new Spn(definition.getSpnId(), definition.getLabel(), slots[index], toBytes(packet, index));
+    }
+
+    /**
+     * Reads the raw value of the SPN at the given index. The SPN must be
+     * present and numeric.
+     *
+     * @see #isPresent(Packet, int)
+     * @see #isNumeric(int)
+     */
+    public long extract(Packet packet, int index) {
+        int start = startBytes[index];
+        int shift = startBits[index] - 1;
+        long value = 0;
+        for (int i = 0; i < byteLengths[index]; i++) {
+            // the same per byte shift as the parser
+            int b = shift == 0 ? packet.get(start + i) : (((byte) packet.get(start + i)) >> shift) & 0xFF;
+            value |= ((long) b) << (i * 8);
+        }
+        return value & (~0L >>> (64 - bitLengths[index]));
+    }
+
+    /**
+     * Reads the raw values of all the present, numeric SPNs into values. The
+     * rest are left 0.
+     */
+    public long[] extractAll(Packet packet, long[] values) {
+        for (int i = 0; i < definitions.length; i++) {
+            values[i] = isNumeric(i) && isPresent(packet, i) ? extract(packet, i) : 0;
+        }
+        return values;
+    }
+
+    public SpnDefinition getDefinition(int index) {
+        return definitions[index];
+    }
+
+    public Slot getSlot(int index) {
+        return slots[index];
+    }
+
+    /**
+     * @return the index of the SPN, or -1 if it is not part of the PGN
+     */
+    public int indexOf(int spnId) {
+        int slotIndex = hash(spnId);
+        while (indexes[slotIndex] != 0) {
+            if (indexKeys[slotIndex] == spnId) {
+                return indexes[slotIndex] - 1;
+            }
+            slotIndex = (slotIndex + 1) & (indexes.length - 1);
+        }
+        return -1;
+    }
+
+    /**
+     * @return true if the raw value of the SPN fits in a long
+     */
+    public boolean isNumeric(int index) {
+        return bitLengths[index] > 0 && bitLengths[index] <= 64;
+    }
+
+    /**
+     * @return true if the SPN is in the packet
+     */
+    public boolean isPresent(Packet packet, int index) {
+        int start = startBytes[index];
+        if (start < 0) {
+            return false;
+        }
+        int length = byteLengths[index] < 0 ? packet.getLength() : byteLengths[index];
+        return start + length <= packet.getLength();
+    }
+
+    /**
+     * @return the number of SPNs
+     */
+    public int size() {
+        return definitions.length;
+    }
+
+    private int hash(int spnId) {
+        return (spnId * 0x9E3779B9 >>> 16) & (indexes.length - 1);
+    }
+
+    private byte[] toBytes(Packet packet, int index) {
+        if (!isPresent(packet, index)) {
+            return new byte[0];
+        }
+        if (!isNumeric(index)) {
+            return new SpnDataParser().parse(packet.getBytes(), definitions[index], bitLengths[index]);
+        }
+        long value = extract(packet, index);
+        byte[] bytes = new byte[byteLengths[index]];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (value >> (i * 8));
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2021. Equipment & Tool Institute
+ */
+package org.etools.j1939_84.bus.simulated;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.stream.Stream;
+
+import org.etools.j1939_84.J1939_84;
+import org.etools.j1939_84.bus.Bus;
+import org.etools.j1939_84.bus.BusException;
+import org.etools.j1939_84.bus.Packet;
+import org.etools.j1939_84.utils.Clock;
+
+/**
+ * Fills a bus with proprietary broadcasts up to a part of its bitrate. The
+ * other traffic on the bus counts toward the load, so the broadcasts only fill
+ * what is left of it.
+ *
+ * The load is counted in CAN frames with 29 bit identifiers and as many stuff
+ * bits as they can have, so a full bus is never more than the bitrate allows.
+ * A packet longer than 8 bytes counts as the frames of its transport session.
+ */
+public class BusLoadGenerator implements AutoCloseable {
+
+    /** the PGN of the filler broadcasts, proprietary B */
+    public static final int PGN = 0xFF00;
+
+    /** how often the broadcasts are sent, in ms */
+    static final int TICK = 10;
+
+    /**
+     * @param  dataLength
+     *                        the number of data bytes of a frame
+     * @return            the bits of the frame on the bus
+     */
+    public static int frameBits(int dataLength) {
+        // SOF to the end of the CRC can be stuffed; then the delimiters, ACK,
+        // EOF and the interframe space
+        int stuffed = 54 + 8 * dataLength;
+        return stuffed + (stuffed - 1) / 4 + 13;
+    }
+
+    /**
+     * @param  packet
+     *                    the packet
+     * @return        the bits of the packet on the bus, with the transport
+     *                protocol if it is longer than 8 bytes
+     */
+    public static long packetBits(Packet packet) {
+        int length = packet.getLength();
+        if (length <= 8) {
+            return frameBits(length);
+        }
+        // the announcement and the data transfers
+        return (1 + (length + 6) / 7) * (long) frameBits(8);
+    }
+
+    /** bits that may be sent. Only used by the timer. */
+    private double allowance;
+
+    /** the bits of the filler broadcasts */
+    private final AtomicLong bitsSent = new AtomicLong();
+
+    private final int bitrate;
+
+    private final Bus bus;
+
+    private final ScheduledExecutorService exec = Clock.get().newScheduledExecutor(2, r -> new Thread(() -> {
+        try {
+            r.run();
+        } catch (Throwable t) {
+            t.printStackTrace();
+        }
+    }, "Bus Load Thread"));
+
+    private long framesSent;
+
+    /** time of the last tick. Only used by the timer. */
+    private long lastTick;
+
+    private volatile double load;
+
+    /** the bits of the other traffic */
+    private final AtomicLong otherBits = new AtomicLong();
+
+    /** the other bits already accounted for. Only used by the timer. */
+    private long otherBitsCounted;
+
+    private final int source;
+
+    private final long start;
+
+    private final Stream<Packet> stream;
+
+    /**
+     * @param  bus
+     *                          the bus to fill
+     * @param  bitrate
+     *                          the speed of the bus in bits per second
+     * @param  source
+     *                          the source address of the broadcasts
+     * @throws BusException
+     *                          if the bus cannot be read
+     */
+    public BusLoadGenerator(Bus bus, int bitrate, int source) throws BusException {
+        this.bus = bus;
+        this.bitrate = bitrate;
+        this.source = source;
+        // read in the current thread to count all packets from now
+        stream = bus.read(365, TimeUnit.DAYS);
+        start = lastTick = Clock.get().nanoTime();
+        exec.execute(() -> stream.forEach(p -> {
+            if (p.getSource() != source || p.getPgn() != PGN) {
+                otherBits.addAndGet(packetBits(p));
+            }
+        }));
+        exec.scheduleAtFixedRate(this::tick, TICK, TICK, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        exec.shutdownNow();
+        stream.close();
+    }
+
+    /**
+     * @return the number of broadcasts sent
+     */
+    synchronized public long getFramesSent() {
+        return framesSent;
+    }
+
+    /**
+     * @return the part of the bitrate used by all traffic since the start
+     */
+    public double getMeasuredLoad() {
+        long nanos = Clock.get().nanoTime() - start;
+        if (nanos <= 0) {
+            return 0;
+        }
+        return (bitsSent.get() + otherBits.get()) * 1e9 / nanos / bitrate;
+    }
+
+    /**
+     * @param load
+     *                 the part of the bitrate to fill, from 0 to 1
+     */
+    public void setLoad(double load) {
+        if (load < 0 || load > 1) {
+            throw new IllegalArgumentException("load " + load + " is not between 0 and 1");
+        }
+        this.load = load;
+    }
+
+    synchronized private void tick() {
+        long now = Clock.get().nanoTime();
+        long other = otherBits.get();
+        allowance += bitrate * load * (now - lastTick) / 1e9 - (other - otherBitsCounted);
+        lastTick = now;
+        otherBitsCounted = other;
+        // a late tick or a burst of other traffic does not carry over
+        double perTick = bitrate * load * TICK / 1000;
+        allowance = Math.max(-perTick, Math.min(allowance, 2 * perTick));
+
+        int bits = frameBits(8);
+        while (allowance >= bits) {
+            long count = framesSent++;
+            Packet packet = Packet.create(PGN,
+                                          source,
+                                          (int) count & 0xFF,
+                                          (int) (count >> 8) & 0xFF,
+                                          (int) (count >> 16) & 0xFF,
+                                          (int) (count >> 24) & 0xFF,
+                                          0xFF,
+                                          0xFF,
+                                          0xFF,
+                                          0xFF);
+            try {
+                bus.send(packet);
+            } catch (BusException e) {
+                J1939_84.getLogger().log(Level.SEVERE, "Error sending", e);
+                return;
+            }
+            bitsSent.addAndGet(bits);
+            allowance -= bits;
+        }
+    }
+}
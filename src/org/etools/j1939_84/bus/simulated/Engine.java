@@ -5,6 +5,7 @@ package org.etools.j1939_84.bus.simulated;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.etools.j1939_84.bus.j1939.J1939.GLOBAL_ADDR;
 import static org.etools.j1939_84.bus.j1939.packets.AcknowledgmentPacket.Response.NACK;
 import static org.etools.j1939_84.bus.j1939.packets.CompositeSystem.AC_SYSTEM_REFRIGERANT;
 import static org.etools.j1939_84.bus.j1939.packets.CompositeSystem.BOOST_PRESSURE_CONTROL_SYS;
@@ -45,6 +46,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 import org.etools.j1939_84.bus.Bus;
 import org.etools.j1939_84.bus.BusException;
@@ -172,28 +174,28 @@ public class Engine implements AutoCloseable {
         });
 
         // Listeners for key state change
-        sim.response(p -> isRequestFor(0x1FFFF, p), p -> {
+        sim.request(0x1FFFF, ADDR, p -> {
             setKeyState(KEY_ON_ENGINE_RUNNING);
             return Packet.create(0x1FFFF, ADDR, getKeyStateAsBytes());
         });
 
-        sim.response(p -> isRequestFor(0x1FFFE, p), () -> {
+        sim.request(0x1FFFE, ADDR, () -> {
             setKeyState(KeyState.KEY_ON_ENGINE_OFF);
             return Packet.create(0x1FFFE, ADDR, getKeyStateAsBytes());
         });
 
-        sim.response(p -> isRequestFor(0x1FFFC, p), () -> {
+        sim.request(0x1FFFC, ADDR, () -> {
             setKeyState(KEY_OFF);
             return Packet.create(0x1FFFC, ADDR, getKeyStateAsBytes());
         });
 
         // Listeners to implant faults
-        sim.response(p -> isRequestFor(0x1FFFA, p), () -> {
+        sim.request(0x1FFFA, ADDR, () -> {
             nextFault = DiagnosticTroubleCode.create(0xFA, 0x0A, 0, 1);
             return Packet.create(0x1FFFA, ADDR, NA8);
         });
 
-        sim.response(p -> isRequestFor(0x1FFFB, p), () -> {
+        sim.request(0x1FFFB, ADDR, () -> {
             nextFault = DiagnosticTroubleCode.create(0xFB, 0x0B, 0, 1);
             return Packet.create(0x1FFFB, ADDR, NA8);
         });
@@ -226,17 +228,20 @@ public class Engine implements AutoCloseable {
 
         sim.schedule(100, MILLISECONDS, () -> Packet.create(65248, ADDR, combine(NA4, DISTANCE)));
 
-        sim.response(p -> isRequestFor(65259, p), () -> Packet.create(65259, ADDR, COMPONENT_ID));
+        sim.request(65259, ADDR, () -> Packet.create(65259, ADDR, COMPONENT_ID));
 
-        sim.response(p -> isRequestFor(EngineHoursPacket.PGN, p),
-                     EngineHoursPacket.create(ADDR, secondsRunning)::getPacket);
+        sim.request(EngineHoursPacket.PGN,
+                    ADDR,
+                    EngineHoursPacket.create(ADDR, secondsRunning)::getPacket);
 
         // Address Claim
-        sim.response(p -> isRequestFor(0xEE00, p),
-                     p -> Packet.create(0xEEFF, ADDR, 0x00, 0x00, 0x40, 0x05, 0x00, 0x00, 0x65, 0x14));
+        sim.request(0xEE00,
+                    ADDR,
+                    p -> Packet.create(0xEEFF, ADDR, 0x00, 0x00, 0x40, 0x05, 0x00, 0x00, 0x65, 0x14));
 
-        sim.response(p -> isRequestFor(VehicleIdentificationPacket.PGN, p),
-                     p -> Packet.create(VehicleIdentificationPacket.PGN, ADDR, VIN));
+        sim.request(VehicleIdentificationPacket.PGN,
+                    ADDR,
+                    p -> Packet.create(VehicleIdentificationPacket.PGN, ADDR, VIN));
 
         // DM1
         sim.schedule(1,
@@ -250,55 +255,60 @@ public class Engine implements AutoCloseable {
                                               .getPacket());
 
         // DM2
-        sim.response(p -> isRequestFor(DM2PreviouslyActiveDTC.PGN, p),
-                     p -> DM2PreviouslyActiveDTC.create(ADDR,
-                                                        getMilStatus(),
-                                                        OFF,
-                                                        OFF,
-                                                        OFF,
-                                                        previousDTCs.toArray(new DiagnosticTroubleCode[0]))
-                                                .getPacket());
+        sim.request(DM2PreviouslyActiveDTC.PGN,
+                    ADDR,
+                    p -> DM2PreviouslyActiveDTC.create(ADDR,
+                                                       getMilStatus(),
+                                                       OFF,
+                                                       OFF,
+                                                       OFF,
+                                                       previousDTCs.toArray(new DiagnosticTroubleCode[0]))
+                                               .getPacket());
 
         // DM3
-        sim.response(p -> isRequestFor(DM3DiagnosticDataClearPacket.PGN, p),
-                     p -> AcknowledgmentPacket.create(ADDR,
-                                                      NACK,
-                                                      0,
-                                                      p.getSource(),
-                                                      DM3DiagnosticDataClearPacket.PGN)
-                                              .getPacket());
+        sim.request(DM3DiagnosticDataClearPacket.PGN,
+                    ADDR,
+                    p -> AcknowledgmentPacket.create(ADDR,
+                                                     NACK,
+                                                     0,
+                                                     p.getSource(),
+                                                     DM3DiagnosticDataClearPacket.PGN)
+                                             .getPacket());
 
         // DM5
-        sim.response(p -> isRequestFor(DM5DiagnosticReadinessPacket.PGN, p),
-                     p -> DM5DiagnosticReadinessPacket.create(ADDR,
-                                                              activeDTCs.size(),
-                                                              previousDTCs.size(),
-                                                              0x14,
-                                                              getEnabledSystems(),
-                                                              completedDM5Systems)
-                                                      .getPacket());
+        sim.request(DM5DiagnosticReadinessPacket.PGN,
+                    ADDR,
+                    p -> DM5DiagnosticReadinessPacket.create(ADDR,
+                                                             activeDTCs.size(),
+                                                             previousDTCs.size(),
+                                                             0x14,
+                                                             getEnabledSystems(),
+                                                             completedDM5Systems)
+                                                     .getPacket());
 
         // DM6
-        sim.response(p -> isRequestFor(DM6PendingEmissionDTCPacket.PGN, p),
-                     p -> DM6PendingEmissionDTCPacket.create(ADDR,
-                                                             getMilStatus(),
-                                                             OFF,
-                                                             OFF,
-                                                             OFF,
-                                                             pendingDTCs.toArray(new DiagnosticTroubleCode[0]))
-                                                     .getPacket());
+        sim.request(DM6PendingEmissionDTCPacket.PGN,
+                    ADDR,
+                    p -> DM6PendingEmissionDTCPacket.create(ADDR,
+                                                            getMilStatus(),
+                                                            OFF,
+                                                            OFF,
+                                                            OFF,
+                                                            pendingDTCs.toArray(new DiagnosticTroubleCode[0]))
+                                                    .getPacket());
 
         // DM11 Global Request
-        sim.response(p -> (p.getId(0xFFFF) == 0xEAFF) && p.get24(0) == DM11ClearActiveDTCsPacket.PGN,
-                     p -> {
-                         activeDTCs.clear(); // DM1 & DM12
-                         previousDTCs.clear(); // DM2 & DM23
-                         secondsWithMIL = 0;
-                         secondsSCC = 0;
-                         warmUpsSCC = 0;
-
-                         return Packet.create(0, ADDR, NA8); // Don't return anything
-                     });
+        sim.request(DM11ClearActiveDTCsPacket.PGN,
+                    GLOBAL_ADDR,
+                    p -> {
+                        activeDTCs.clear(); // DM1 & DM12
+                        previousDTCs.clear(); // DM2 & DM23
+                        secondsWithMIL = 0;
+                        secondsSCC = 0;
+                        warmUpsSCC = 0;
+
+                        return null; // Don't return anything
+                    });
 
         // DM11 DS Request
         sim.response(p -> p.getId(0xFFFF) == (0xEA00 | Engine.ADDR) && p.get24(0) == DM11ClearActiveDTCsPacket.PGN,
@@ -306,69 +316,74 @@ public class Engine implements AutoCloseable {
                                               .getPacket());
 
         // DM12
-        sim.response(p -> isRequestFor(DM12MILOnEmissionDTCPacket.PGN, p),
-                     p -> DM12MILOnEmissionDTCPacket.create(ADDR,
-                                                            getMilStatus(),
-                                                            OFF,
-                                                            OFF,
-                                                            OFF,
-                                                            activeDTCs.toArray(new DiagnosticTroubleCode[0]))
-                                                    .getPacket());
+        sim.request(DM12MILOnEmissionDTCPacket.PGN,
+                    ADDR,
+                    p -> DM12MILOnEmissionDTCPacket.create(ADDR,
+                                                           getMilStatus(),
+                                                           OFF,
+                                                           OFF,
+                                                           OFF,
+                                                           activeDTCs.toArray(new DiagnosticTroubleCode[0]))
+                                                   .getPacket());
 
         // DM19
-        sim.response(p -> isRequestFor(DM19CalibrationInformationPacket.PGN, p),
-                     p -> Packet.create(DM19CalibrationInformationPacket.PGN | p.getSource(),
-                                        ADDR,
-                                        combine(ENGINE_CVN1, ENGINE_CAL_ID1)));
+        sim.request(DM19CalibrationInformationPacket.PGN,
+                    ADDR,
+                    p -> Packet.create(DM19CalibrationInformationPacket.PGN | p.getSource(),
+                                       ADDR,
+                                       combine(ENGINE_CVN1, ENGINE_CAL_ID1)));
 
         // DM 20
-        sim.response(p -> isRequestFor(DM20MonitorPerformanceRatioPacket.PGN, p),
-                     p -> DM20MonitorPerformanceRatioPacket.create(ADDR,
-                                                                   p.getSource(),
-                                                                   ignitionCycles,
-                                                                   obdConditions,
-                                                                   new PerformanceRatio(5322,
-                                                                                        1,
-                                                                                        obdConditions,
-                                                                                        0),
-                                                                   new PerformanceRatio(5318,
-                                                                                        1,
-                                                                                        obdConditions,
-                                                                                        0),
-                                                                   new PerformanceRatio(3058,
-                                                                                        1,
-                                                                                        obdConditions,
-                                                                                        0),
-                                                                   new PerformanceRatio(3064,
-                                                                                        1,
-                                                                                        obdConditions,
-                                                                                        0),
-                                                                   new PerformanceRatio(5321,
-                                                                                        1,
-                                                                                        obdConditions,
-                                                                                        0),
-                                                                   new PerformanceRatio(3055,
-                                                                                        1,
-                                                                                        obdConditions,
-                                                                                        0),
-                                                                   new PerformanceRatio(4792,
-                                                                                        1,
-                                                                                        obdConditions,
-                                                                                        0))
-                                                           .getPacket());
+        sim.request(DM20MonitorPerformanceRatioPacket.PGN,
+                    ADDR,
+                    p -> DM20MonitorPerformanceRatioPacket.create(ADDR,
+                                                                  p.getSource(),
+                                                                  ignitionCycles,
+                                                                  obdConditions,
+                                                                  new PerformanceRatio(5322,
+                                                                                       1,
+                                                                                       obdConditions,
+                                                                                       0),
+                                                                  new PerformanceRatio(5318,
+                                                                                       1,
+                                                                                       obdConditions,
+                                                                                       0),
+                                                                  new PerformanceRatio(3058,
+                                                                                       1,
+                                                                                       obdConditions,
+                                                                                       0),
+                                                                  new PerformanceRatio(3064,
+                                                                                       1,
+                                                                                       obdConditions,
+                                                                                       0),
+                                                                  new PerformanceRatio(5321,
+                                                                                       1,
+                                                                                       obdConditions,
+                                                                                       0),
+                                                                  new PerformanceRatio(3055,
+                                                                                       1,
+                                                                                       obdConditions,
+                                                                                       0),
+                                                                  new PerformanceRatio(4792,
+                                                                                       1,
+                                                                                       obdConditions,
+                                                                                       0))
+                                                          .getPacket());
 
         // DM21
-        sim.response(p -> isRequestFor(DM21DiagnosticReadinessPacket.PGN, p),
-                     p -> DM21DiagnosticReadinessPacket.create(ADDR,
-                                                               p.getSource(),
-                                                               0,
-                                                               0,
-                                                               (int) getMinutesWithMil(),
-                                                               (int) getMinutesSCC())
-                                                       .getPacket());
+        sim.request(DM21DiagnosticReadinessPacket.PGN,
+                    ADDR,
+                    p -> DM21DiagnosticReadinessPacket.create(ADDR,
+                                                              p.getSource(),
+                                                              0,
+                                                              0,
+                                                              (int) getMinutesWithMil(),
+                                                              (int) getMinutesSCC())
+                                                      .getPacket());
 
         // DM22
-        sim.response(p -> p.getPgn() == DM22IndividualClearPacket.PGN && p.getDestination() == ADDR,
+        sim.response(DM22IndividualClearPacket.PGN,
+                     ADDR,
                      p -> {
                          DM22IndividualClearPacket dm22 = new DM22IndividualClearPacket(p);
                          DM22IndividualClearPacket.ControlByte controlByte = CLR_ACT_ACK;
@@ -386,144 +401,151 @@ public class Engine implements AutoCloseable {
                                                          .getPacket();
                      });
         // DM23
-        sim.response(p -> isRequestFor(DM23PreviouslyMILOnEmissionDTCPacket.PGN, p),
-                     p -> DM23PreviouslyMILOnEmissionDTCPacket.create(ADDR,
-                                                                      getMilStatus(),
-                                                                      OFF,
-                                                                      OFF,
-                                                                      OFF,
-                                                                      previousDTCs.toArray(new DiagnosticTroubleCode[0]))
-                                                              .getPacket());
+        sim.request(DM23PreviouslyMILOnEmissionDTCPacket.PGN,
+                    ADDR,
+                    p -> DM23PreviouslyMILOnEmissionDTCPacket.create(ADDR,
+                                                                     getMilStatus(),
+                                                                     OFF,
+                                                                     OFF,
+                                                                     OFF,
+                                                                     previousDTCs.toArray(new DiagnosticTroubleCode[0]))
+                                                             .getPacket());
 
         // DM24 supported SPNs
-        sim.response(p -> isRequestFor(DM24SPNSupportPacket.PGN, p),
-                     p -> DM24SPNSupportPacket.create(ADDR,
-                                                      SupportedSPN.create(27, false, true, false, 1),
-                                                      SupportedSPN.create(84, false, true, false, 1),
-                                                      SupportedSPN.create(91, false, true, false, 1),
-                                                      SupportedSPN.create(92, false, true, true, 1),
-                                                      SupportedSPN.create(94, false, true, false, 1),
-                                                      SupportedSPN.create(102, true, true, false, 1),
-                                                      SupportedSPN.create(108, false, true, false, 1),
-                                                      SupportedSPN.create(110, false, true, true, 1),
-                                                      SupportedSPN.create(157, true, false, false, 1),
-                                                      SupportedSPN.create(158, false, true, false, 1),
-                                                      SupportedSPN.create(183, false, true, false, 1),
-                                                      SupportedSPN.create(190, false, true, true, 2),
-                                                      SupportedSPN.create(235, false, true, false, 1),
-                                                      SupportedSPN.create(247, false, true, false, 1),
-                                                      SupportedSPN.create(248, false, true, false, 1),
-                                                      SupportedSPN.create(512, false, true, true, 1),
-                                                      SupportedSPN.create(513, false, true, true, 1),
-                                                      SupportedSPN.create(514, false, true, false, 1),
-                                                      SupportedSPN.create(539, false, true, false, 1),
-                                                      SupportedSPN.create(540, false, true, false, 1),
-                                                      SupportedSPN.create(541, false, true, false, 1),
-                                                      SupportedSPN.create(542, false, true, false, 1),
-                                                      SupportedSPN.create(543, false, true, false, 1),
-                                                      SupportedSPN.create(544, false, true, false, 1),
-                                                      SupportedSPN.create(651, true, false, false, 1),
-                                                      SupportedSPN.create(1323, true, false, false, 1),
-                                                      SupportedSPN.create(1324, true, false, false, 1),
-                                                      SupportedSPN.create(1325, true, false, false, 1),
-                                                      SupportedSPN.create(1326, true, false, false, 1),
-                                                      SupportedSPN.create(1413, false, true, false, 1),
-                                                      SupportedSPN.create(1634, false, true, false, 15),
-                                                      SupportedSPN.create(1635, false, true, false, 4),
-                                                      SupportedSPN.create(2630, true, false, false, 1),
-                                                      SupportedSPN.create(2791, false, true, false, 1),
-                                                      SupportedSPN.create(2978, false, true, false, 1),
-                                                      SupportedSPN.create(3031, false, true, false, 1),
-                                                      SupportedSPN.create(3058, true, false, false, 1),
-                                                      SupportedSPN.create(3226, true, true, false, 1),
-                                                      SupportedSPN.create(3251, true, false, false, 1),
-                                                      SupportedSPN.create(3301, false, false, true, 2),
-                                                      SupportedSPN.create(3361, true, false, false, 1),
-                                                      SupportedSPN.create(3516, false, true, false, 1),
-                                                      SupportedSPN.create(3609, false, true, false, 1),
-                                                      SupportedSPN.create(3700, false, true, false, 1),
-                                                      SupportedSPN.create(3713, true, false, false, 1),
-                                                      SupportedSPN.create(4364, true, false, false, 1),
-                                                      SupportedSPN.create(4752, true, false, false, 1),
-                                                      SupportedSPN.create(5018, true, false, false, 1),
-                                                      SupportedSPN.create(5466, false, true, false, 1),
-                                                      SupportedSPN.create(5827, false, true, false, 1),
-                                                      SupportedSPN.create(5829, false, true, false, 1),
-                                                      SupportedSPN.create(5837, false, true, false, 1),
-                                                      SupportedSPN.create(6895, false, true, false, 1),
-                                                      SupportedSPN.create(7333, false, true, false, 1))
-                                              .getPacket());
+        sim.request(DM24SPNSupportPacket.PGN,
+                    ADDR,
+                    p -> DM24SPNSupportPacket.create(ADDR,
+                                                     SupportedSPN.create(27, false, true, false, 1),
+                                                     SupportedSPN.create(84, false, true, false, 1),
+                                                     SupportedSPN.create(91, false, true, false, 1),
+                                                     SupportedSPN.create(92, false, true, true, 1),
+                                                     SupportedSPN.create(94, false, true, false, 1),
+                                                     SupportedSPN.create(102, true, true, false, 1),
+                                                     SupportedSPN.create(108, false, true, false, 1),
+                                                     SupportedSPN.create(110, false, true, true, 1),
+                                                     SupportedSPN.create(157, true, false, false, 1),
+                                                     SupportedSPN.create(158, false, true, false, 1),
+                                                     SupportedSPN.create(183, false, true, false, 1),
+                                                     SupportedSPN.create(190, false, true, true, 2),
+                                                     SupportedSPN.create(235, false, true, false, 1),
+                                                     SupportedSPN.create(247, false, true, false, 1),
+                                                     SupportedSPN.create(248, false, true, false, 1),
+                                                     SupportedSPN.create(512, false, true, true, 1),
+                                                     SupportedSPN.create(513, false, true, true, 1),
+                                                     SupportedSPN.create(514, false, true, false, 1),
+                                                     SupportedSPN.create(539, false, true, false, 1),
+                                                     SupportedSPN.create(540, false, true, false, 1),
+                                                     SupportedSPN.create(541, false, true, false, 1),
+                                                     SupportedSPN.create(542, false, true, false, 1),
+                                                     SupportedSPN.create(543, false, true, false, 1),
+                                                     SupportedSPN.create(544, false, true, false, 1),
+                                                     SupportedSPN.create(651, true, false, false, 1),
+                                                     SupportedSPN.create(1323, true, false, false, 1),
+                                                     SupportedSPN.create(1324, true, false, false, 1),
+                                                     SupportedSPN.create(1325, true, false, false, 1),
+                                                     SupportedSPN.create(1326, true, false, false, 1),
+                                                     SupportedSPN.create(1413, false, true, false, 1),
+                                                     SupportedSPN.create(1634, false, true, false, 15),
+                                                     SupportedSPN.create(1635, false, true, false, 4),
+                                                     SupportedSPN.create(2630, true, false, false, 1),
+                                                     SupportedSPN.create(2791, false, true, false, 1),
+                                                     SupportedSPN.create(2978, false, true, false, 1),
+                                                     SupportedSPN.create(3031, false, true, false, 1),
+                                                     SupportedSPN.create(3058, true, false, false, 1),
+                                                     SupportedSPN.create(3226, true, true, false, 1),
+                                                     SupportedSPN.create(3251, true, false, false, 1),
+                                                     SupportedSPN.create(3301, false, false, true, 2),
+                                                     SupportedSPN.create(3361, true, false, false, 1),
+                                                     SupportedSPN.create(3516, false, true, false, 1),
+                                                     SupportedSPN.create(3609, false, true, false, 1),
+                                                     SupportedSPN.create(3700, false, true, false, 1),
+                                                     SupportedSPN.create(3713, true, false, false, 1),
+                                                     SupportedSPN.create(4364, true, false, false, 1),
+                                                     SupportedSPN.create(4752, true, false, false, 1),
+                                                     SupportedSPN.create(5018, true, false, false, 1),
+                                                     SupportedSPN.create(5466, false, true, false, 1),
+                                                     SupportedSPN.create(5827, false, true, false, 1),
+                                                     SupportedSPN.create(5829, false, true, false, 1),
+                                                     SupportedSPN.create(5837, false, true, false, 1),
+                                                     SupportedSPN.create(6895, false, true, false, 1),
+                                                     SupportedSPN.create(7333, false, true, false, 1))
+                                             .getPacket());
 
         // DM25
-        sim.response(p -> isRequestFor(DM25ExpandedFreezeFrame.PGN, p),
-                     p -> {
-                         var dtcs = new HashSet<DiagnosticTroubleCode>();
-
-                         if (!pendingDTCs.isEmpty()) {
-                             dtcs.add(pendingDTCs.get(0));
-                         }
-
-                         if (!activeDTCs.isEmpty()) {
-                             dtcs.add(activeDTCs.get(0));
-                         }
-
-                         if (!previousDTCs.isEmpty()) {
-                             dtcs.add(previousDTCs.get(0));
-                         }
-
-                         var freezeFrames = dtcs.stream()
-                                                .map(dtc -> {
-                                                    int[] data = { 0x80, 0x7F, 0x11, 0x22, 0x80, 0x80, 0x80, 0x80 };
-                                                    return new FreezeFrame(dtc, data);
-                                                })
-                                                .toArray(FreezeFrame[]::new);
-
-                         var dm25 = DM25ExpandedFreezeFrame.create(ADDR, freezeFrames);
-                         return dm25.getPacket();
-                     });
+        sim.request(DM25ExpandedFreezeFrame.PGN,
+                    ADDR,
+                    p -> {
+                        var dtcs = new HashSet<DiagnosticTroubleCode>();
+
+                        if (!pendingDTCs.isEmpty()) {
+                            dtcs.add(pendingDTCs.get(0));
+                        }
+
+                        if (!activeDTCs.isEmpty()) {
+                            dtcs.add(activeDTCs.get(0));
+                        }
+
+                        if (!previousDTCs.isEmpty()) {
+                            dtcs.add(previousDTCs.get(0));
+                        }
+
+                        var freezeFrames = dtcs.stream()
+                                               .map(dtc -> {
+                                                   int[] data = { 0x80, 0x7F, 0x11, 0x22, 0x80, 0x80, 0x80, 0x80 };
+                                                   return new FreezeFrame(dtc, data);
+                                               })
+                                               .toArray(FreezeFrame[]::new);
+
+                        var dm25 = DM25ExpandedFreezeFrame.create(ADDR, freezeFrames);
+                        return dm25.getPacket();
+                    });
 
         // DM26
-        sim.response(p -> isRequestFor(DM26TripDiagnosticReadinessPacket.PGN, p),
-                     p -> DM26TripDiagnosticReadinessPacket.create(ADDR,
-                                                                   secondsSCC,
-                                                                   warmUpsSCC,
-                                                                   getEnabledSystems(),
-                                                                   getCompleteDM26Systems())
-                                                           .getPacket());
+        sim.request(DM26TripDiagnosticReadinessPacket.PGN,
+                    ADDR,
+                    p -> DM26TripDiagnosticReadinessPacket.create(ADDR,
+                                                                  secondsSCC,
+                                                                  warmUpsSCC,
+                                                                  getEnabledSystems(),
+                                                                  getCompleteDM26Systems())
+                                                          .getPacket());
 
         // DM27
-        sim.response(p -> isRequestFor(DM27AllPendingDTCsPacket.PGN, p),
-                     p -> DM27AllPendingDTCsPacket.create(ADDR,
-                                                          getMilStatus(),
-                                                          OFF,
-                                                          OFF,
-                                                          OFF,
-                                                          pendingDTCs.toArray(new DiagnosticTroubleCode[0]))
-                                                  .getPacket());
+        sim.request(DM27AllPendingDTCsPacket.PGN,
+                    ADDR,
+                    p -> DM27AllPendingDTCsPacket.create(ADDR,
+                                                         getMilStatus(),
+                                                         OFF,
+                                                         OFF,
+                                                         OFF,
+                                                         pendingDTCs.toArray(new DiagnosticTroubleCode[0]))
+                                                 .getPacket());
 
         // DM28
-        sim.response(p -> isRequestFor(DM28PermanentEmissionDTCPacket.PGN, p),
-                     p -> DM28PermanentEmissionDTCPacket.create(ADDR,
-                                                                getMilStatus(),
-                                                                OFF,
-                                                                OFF,
-                                                                OFF,
-                                                                permanentDTCs.toArray(new DiagnosticTroubleCode[0]))
-                                                        .getPacket());
+        sim.request(DM28PermanentEmissionDTCPacket.PGN,
+                    ADDR,
+                    p -> DM28PermanentEmissionDTCPacket.create(ADDR,
+                                                               getMilStatus(),
+                                                               OFF,
+                                                               OFF,
+                                                               OFF,
+                                                               permanentDTCs.toArray(new DiagnosticTroubleCode[0]))
+                                                       .getPacket());
 
         // DM29
-        sim.response(p -> isRequestFor(DM29DtcCounts.PGN, p),
-                     p -> DM29DtcCounts.create(ADDR,
-                                               p.getSource(),
-                                               pendingDTCs.size(),
-                                               pendingDTCs.size(),
-                                               activeDTCs.size(),
-                                               previousDTCs.size(),
-                                               permanentDTCs.size())
-                                       .getPacket());
+        sim.request(DM29DtcCounts.PGN,
+                    ADDR,
+                    p -> DM29DtcCounts.create(ADDR,
+                                              p.getSource(),
+                                              pendingDTCs.size(),
+                                              pendingDTCs.size(),
+                                              activeDTCs.size(),
+                                              previousDTCs.size(),
+                                              permanentDTCs.size())
+                                      .getPacket());
 
         // DM30 response for DM7 Request
-        sim.response(Engine::isRequestForDM30, p -> {
+        Function<Packet, Packet> dm30 = p -> {
             var results = new ArrayList<ScaledTestResult>();
 
             var dm7 = new DM7CommandTestsPacket(p);
@@ -579,125 +601,141 @@ public class Engine implements AutoCloseable {
 
             return DM30ScaledTestResultsPacket.create(ADDR, p.getSource(), results.toArray(new ScaledTestResult[0]))
                                               .getPacket();
-        });
+        };
+        // to the Engine and global
+        sim.response(DM7CommandTestsPacket.PGN, ADDR, dm30);
+        sim.response(DM7CommandTestsPacket.PGN, GLOBAL_ADDR, dm30);
 
         // DM31
-        sim.response(p -> isRequestFor(DM31DtcToLampAssociation.PGN, p),
-                     p -> {
-                         List<DTCLampStatus> lampStatuses = new ArrayList<>();
+        sim.request(DM31DtcToLampAssociation.PGN,
+                    ADDR,
+                    p -> {
+                        List<DTCLampStatus> lampStatuses = new ArrayList<>();
 
-                         if (!activeDTCs.isEmpty()) {
-                             lampStatuses.add(DTCLampStatus.create(activeDTCs.get(0), OFF, getMilStatus(), OFF, OFF));
-                         }
+                        if (!activeDTCs.isEmpty()) {
+                            lampStatuses.add(DTCLampStatus.create(activeDTCs.get(0), OFF, getMilStatus(), OFF, OFF));
+                        }
 
-                         if (!previousDTCs.isEmpty() && getMilStatus() == ON) {
-                             lampStatuses.add(DTCLampStatus.create(previousDTCs.get(0), OFF, OFF, OFF, OFF));
-                         }
+                        if (!previousDTCs.isEmpty() && getMilStatus() == ON) {
+                            lampStatuses.add(DTCLampStatus.create(previousDTCs.get(0), OFF, OFF, OFF, OFF));
+                        }
 
-                         return DM31DtcToLampAssociation.create(ADDR,
-                                                                p.getSource(),
-                                                                lampStatuses.toArray(new DTCLampStatus[0]))
-                                                        .getPacket();
-                     });
+                        return DM31DtcToLampAssociation.create(ADDR,
+                                                               p.getSource(),
+                                                               lampStatuses.toArray(new DTCLampStatus[0]))
+                                                       .getPacket();
+                    });
 
         // @formatter:off
         // DM33
-        sim.response(p -> isRequestFor(DM33EmissionIncreasingAECDActiveTime.PGN, p),
-                     p -> Packet.create(DM33EmissionIncreasingAECDActiveTime.PGN | p.getSource(),
-                                     ADDR,
-                                     0x01, //Number
-                                     0x00, 0x00, 0x00, 0x00, //Timer1
-                                     0xFF, 0xFF, 0xFF, 0xFF, //Timer2
-
-                                     0x04, //Number
-                                     0x00, 0x00, 0x00, 0x00, //Timer1
-                                     0xFF, 0xFF, 0xFF, 0xFF, //Timer2
-
-                                     0x06, //Number
-                                     0x00, 0x00, 0x00, 0x00, //Timer1
-                                     0xFF, 0xFF, 0xFF, 0xFF, //Timer2
-
-                                     0x0B, //Number
-                                     0x00, 0x00, 0x00, 0x00, //Timer1
-                                     0xFF, 0xFF, 0xFF, 0xFF, //Timer2
-
-                                     0x0C, //Number
-                                     0x00, 0x00, 0x00, 0x00, //Timer1
-                                     0xFF, 0xFF, 0xFF, 0xFF, //Timer2
-
-                                     0x0D, //Number
-                                     0x00, 0x00, 0x00, 0x00, //Timer1
-                                     0xFF, 0xFF, 0xFF, 0xFF, //Timer2
-
-                                     0x31, //Number
-                                     0x01, 0x00, 0x00, 0x00, //Timer1
-                                     0xFF, 0xFF, 0xFF, 0xFF, //Timer2
-
-                                     0x38,  //Number
-                                     0x0D, 0x00, 0x00, 0x00, //Timer1
-                                     0xFF, 0xFF, 0xFF, 0xFF //Timer2
-                             ));
+        sim.request(DM33EmissionIncreasingAECDActiveTime.PGN,
+                    ADDR,
+                    p -> Packet.create(DM33EmissionIncreasingAECDActiveTime.PGN | p.getSource(),
+                                    ADDR,
+                                    0x01, //Number
+                                    0x00, 0x00, 0x00, 0x00, //Timer1
+                                    0xFF, 0xFF, 0xFF, 0xFF, //Timer2
+
+                                    0x04, //Number
+                                    0x00, 0x00, 0x00, 0x00, //Timer1
+                                    0xFF, 0xFF, 0xFF, 0xFF, //Timer2
+
+                                    0x06, //Number
+                                    0x00, 0x00, 0x00, 0x00, //Timer1
+                                    0xFF, 0xFF, 0xFF, 0xFF, //Timer2
+
+                                    0x0B, //Number
+                                    0x00, 0x00, 0x00, 0x00, //Timer1
+                                    0xFF, 0xFF, 0xFF, 0xFF, //Timer2
+
+                                    0x0C, //Number
+                                    0x00, 0x00, 0x00, 0x00, //Timer1
+                                    0xFF, 0xFF, 0xFF, 0xFF, //Timer2
+
+                                    0x0D, //Number
+                                    0x00, 0x00, 0x00, 0x00, //Timer1
+                                    0xFF, 0xFF, 0xFF, 0xFF, //Timer2
+
+                                    0x31, //Number
+                                    0x01, 0x00, 0x00, 0x00, //Timer1
+                                    0xFF, 0xFF, 0xFF, 0xFF, //Timer2
+
+                                    0x38,  //Number
+                                    0x0D, 0x00, 0x00, 0x00, //Timer1
+                                    0xFF, 0xFF, 0xFF, 0xFF //Timer2
+                            ));
         // @formatter:on
 
-        sim.response(p -> isRequestFor(DM34NTEStatus.PGN, p),
-                     p -> DM34NTEStatus.create(ADDR,
-                                               p.getSource(),
-                                               OUTSIDE,
-                                               OUTSIDE,
-                                               OUTSIDE,
-                                               OUTSIDE,
-                                               OUTSIDE,
-                                               OUTSIDE)
-                                       .getPacket());
+        sim.request(DM34NTEStatus.PGN,
+                    ADDR,
+                    p -> DM34NTEStatus.create(ADDR,
+                                              p.getSource(),
+                                              OUTSIDE,
+                                              OUTSIDE,
+                                              OUTSIDE,
+                                              OUTSIDE,
+                                              OUTSIDE,
+                                              OUTSIDE)
+                                      .getPacket());
 
         // DM56 Engine Model Year
-        sim.response(p -> isRequestFor(DM56EngineFamilyPacket.PGN, p),
-                     DM56EngineFamilyPacket.create(ADDR, 2015, true, "US HD OBD    ")::getPacket);
+        sim.request(DM56EngineFamilyPacket.PGN,
+                    ADDR,
+                    DM56EngineFamilyPacket.create(ADDR, 2015, true, "US HD OBD    ")::getPacket);
 
         // Req PGN 64587 from Engine #1 (0) with SPNs 6895, 7333
-        sim.response(p -> isRequestFor(64587, p),
-                     () -> Packet.create(64587,
-                                         ADDR,
-                                         0,
-                                         0,
-                                         0,
-                                         0,
-                                         (isEngineOn() ? 0xA5 : 0),
-                                         (isEngineOn() ? 0xA5 : 0),
-                                         0,
-                                         0));
+        sim.request(64587,
+                    ADDR,
+                    () -> Packet.create(64587,
+                                        ADDR,
+                                        0,
+                                        0,
+                                        0,
+                                        0,
+                                        (isEngineOn() ? 0xA5 : 0),
+                                        (isEngineOn() ? 0xA5 : 0),
+                                        0,
+                                        0));
 
         // Req PGN 64891 from Engine #1 (0) with SPNs 5466
-        sim.response(p -> isRequestFor(64891, p),
-                     () -> Packet.create(64891, ADDR, 0, 0, 0, 0, 0, 0, 0, 0));
+        sim.request(64891,
+                    ADDR,
+                    () -> Packet.create(64891, ADDR, 0, 0, 0, 0, 0, 0, 0, 0));
 
         // Req PGN 64920 from Engine #1 (0) with SPNs 5827
-        sim.response(p -> isRequestFor(64920, p),
-                     () -> Packet.create(64920, ADDR, new int[40]));
+        sim.request(64920,
+                    ADDR,
+                    () -> Packet.create(64920, ADDR, new int[40]));
 
         // Req PGN 64962 from Engine #1 (0) with SPNs 5829, 5837
-        sim.response(p -> isRequestFor(64962, p),
-                     () -> Packet.create(64962, ADDR, 0, 0, 0, 0, 0, 0, 0x04, 0));
+        sim.request(64962,
+                    ADDR,
+                    () -> Packet.create(64962, ADDR, 0, 0, 0, 0, 0, 0, 0x04, 0));
 
         // Req PGN 64981 from Engine #1 (0) with SPNs 2791
-        sim.response(p -> isRequestFor(64981, p),
-                     () -> Packet.create(64981, ADDR, 0, 0, 0, 0, 0, 0, 0, 0));
+        sim.request(64981,
+                    ADDR,
+                    () -> Packet.create(64981, ADDR, 0, 0, 0, 0, 0, 0, 0, 0));
 
         // Req PGN 65154 from Engine #1 (0) with SPNs 1413
-        sim.response(p -> isRequestFor(65154, p),
-                     () -> Packet.create(65154, ADDR, 0, 0, 0, 0, 0, 0, 0, 0));
+        sim.request(65154,
+                    ADDR,
+                    () -> Packet.create(65154, ADDR, 0, 0, 0, 0, 0, 0, 0, 0));
 
         // Req PGN 65244 from Engine #1 (0) with SPNs 235
-        sim.response(p -> isRequestFor(65244, p),
-                     () -> Packet.create(65244, ADDR, 0, 0, 0, 0, 0, 0, 0, 0));
+        sim.request(65244,
+                    ADDR,
+                    () -> Packet.create(65244, ADDR, 0, 0, 0, 0, 0, 0, 0, 0));
 
         // Req PGN 65253 from Engine #1 (0) with SPNs 247
-        sim.response(p -> isRequestFor(65253, p),
-                     () -> Packet.create(65253, ADDR, 0, 0, 0, 0, 0, 0, 0, 0));
+        sim.request(65253,
+                    ADDR,
+                    () -> Packet.create(65253, ADDR, 0, 0, 0, 0, 0, 0, 0, 0));
 
         // Req PGN 65255 from Engine #1 (0) with SPNs 248
-        sim.response(p -> isRequestFor(65255, p),
-                     () -> Packet.create(65255, ADDR, 0, 0, 0, 0, 0, 0, 0, 0));
+        sim.request(65255,
+                    ADDR,
+                    () -> Packet.create(65255, ADDR, 0, 0, 0, 0, 0, 0, 0, 0));
 
         // BCT PGN 61443 from Engine #1 (0) with SPNs 91, 92
         sim.schedule(50,
@@ -822,15 +860,6 @@ public class Engine implements AutoCloseable {
         return bb.array();
     }
 
-    private static boolean isRequestForDM30(Packet packet) {
-        return packet.getPgn() == 0xE300;
-    }
-
-    private static boolean isRequestFor(int pgn, Packet packet) {
-        return (packet.getId(0xFFFF) == (0xEA00 | Engine.ADDR) || packet.getId(0xFFFF) == 0xEAFF)
-                && packet.get24(0) == pgn;
-    }
-
     @Override
     public void close() {
         sim.close();
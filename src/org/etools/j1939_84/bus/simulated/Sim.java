@@ -3,10 +3,13 @@
  */
 package org.etools.j1939_84.bus.simulated;
 
-import java.util.ArrayList;
-import java.util.Collection;
+import static org.etools.j1939_84.bus.j1939.J1939.GLOBAL_ADDR;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -18,20 +21,45 @@ import org.etools.j1939_84.J1939_84;
 import org.etools.j1939_84.bus.Bus;
 import org.etools.j1939_84.bus.BusException;
 import org.etools.j1939_84.bus.Packet;
+import org.etools.j1939_84.utils.Clock;
 
 /**
  * Used to simulate responses from vehicle modules
  *
+ * The responses are found by the PGN and destination of the packet, or for a
+ * request by the PGN requested and the destination, so a packet is only
+ * offered to the responses for it. The responses with a predicate are offered
+ * every packet. Packets are answered one at a time in the order they are read,
+ * by the responses in the order they were added, until one of them is the only
+ * answer; see {@link #response(Predicate, Function)}.
+ *
  * @author Joe Batt (joe@soliddesign.net)
  *
  */
 public class Sim implements AutoCloseable {
 
+    /** a response and its place in the order of all of them */
+    private static class Response {
+        private final Function<Packet, Boolean> answer;
+
+        private final int order;
+
+        private Response(int order, Function<Packet, Boolean> answer) {
+            this.order = order;
+            this.answer = answer;
+        }
+    }
+
+    /** the PGN of a request */
+    private static final int REQUEST_PGN = 0xEA00;
+
     /**
-     * The collection of responses. If the response returns true, then don't try
-     * other responses.
+     * @return the key of the responses to a packet of the PGN, or to a request
+     *         for it
      */
-    public final Collection<Function<Packet, Boolean>> responses = new ArrayList<>();
+    private static long key(boolean request, int pgn, int destination) {
+        return (request ? 1L << 32 : 0) | (long) pgn << 8 | destination;
+    }
 
     /**
      * The communications bus
@@ -39,9 +67,10 @@ public class Sim implements AutoCloseable {
     private final Bus bus;
 
     /**
-     * The executor
+     * The executor, on the time of the {@link Clock}. One thread answers the
+     * packets, the other sends the broadcasts and the delayed responses.
      */
-    private final ScheduledExecutorService exec = new ScheduledThreadPoolExecutor(2, r -> new Thread(() -> {
+    private final ScheduledExecutorService exec = Clock.get().newScheduledExecutor(2, r -> new Thread(() -> {
         try {
             r.run();
         } catch (Throwable t) {
@@ -49,6 +78,18 @@ public class Sim implements AutoCloseable {
         }
     }, "Sim Thread"));
 
+    /** the responses found by key; see {@link #key(boolean, int, int)} */
+    private final Map<Long, List<Response>> index = new ConcurrentHashMap<>();
+
+    /** the responses offered every packet */
+    private final List<Response> predicates = new CopyOnWriteArrayList<>();
+
+    /** the number of responses added */
+    private int responseCount;
+
+    /** ns from a request to its response */
+    private volatile long responseDelay;
+
     public Sim(Bus bus) throws BusException {
         this(bus, false);
     }
@@ -63,13 +104,33 @@ public class Sim implements AutoCloseable {
                                            J1939_84.getLogger().log(Level.FINE, p.toTimeString());
                                        }
                                    });
-        exec.submit(() -> stream.parallel().forEach(packet -> {
-            for (var r : responses) {
-                if (r.apply(packet)) {
-                    return;
+        exec.submit(() -> stream.forEach(this::dispatch));
+    }
+
+    /**
+     * Wraps the supplier of a response.
+     *
+     * @return a function that sends the response to a packet the predicate
+     *         accepts, and is true if no other response should be sent
+     */
+    private Function<Packet, Boolean> answer(Predicate<Packet> predicate, Function<Packet, Packet> supplier) {
+        return request -> {
+            try {
+                if (predicate.test(request)) {
+                    Packet response = supplier.apply(request);
+                    if (response == null) {
+                        return false;
+                    }
+                    respond(response);
+                    // if request is not to broadcast, only accept first
+                    // response
+                    return response.getPgn() < 0xF000 && request.getDestination() != 0xFF;
                 }
+            } catch (Throwable t) {
+                J1939_84.getLogger().log(Level.SEVERE, "Error in Response", t);
             }
-        }));
+            return false;
+        };
     }
 
     @Override
@@ -78,7 +139,103 @@ public class Sim implements AutoCloseable {
     }
 
     /**
-     * Sends a response every time
+     * Offers the packet to the responses for it and those with a predicate, in
+     * the order they were added.
+     */
+    private void dispatch(Packet packet) {
+        int pgn = packet.getPgn();
+        boolean request = pgn == REQUEST_PGN && packet.getLength() >= 3;
+        List<Response> found = index.getOrDefault(key(request, request ? packet.get24(0) : pgn,
+                                                      packet.getDestination()),
+                                                  List.of());
+        // responses are only ever appended, in order
+        int i = 0;
+        int j = 0;
+        while (i < found.size() || j < predicates.size()) {
+            Response next;
+            if (j >= predicates.size() || (i < found.size() && found.get(i).order < predicates.get(j).order)) {
+                next = found.get(i++);
+            } else {
+                next = predicates.get(j++);
+            }
+            if (next.answer.apply(packet)) {
+                return;
+            }
+        }
+    }
+
+    synchronized private void index(Function<Packet, Boolean> answer, long... keys) {
+        Response response = new Response(responseCount++, answer);
+        for (long key : keys) {
+            index.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>()).add(response);
+        }
+    }
+
+    /**
+     * Sends the response after the response delay.
+     */
+    private void respond(Packet response) {
+        long delay = responseDelay;
+        if (delay == 0) {
+            send(response);
+        } else {
+            exec.schedule(() -> send(response), delay, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Answers requests for a PGN, sent to the address or to all.
+     *
+     * @param  pgn
+     *                      the PGN requested
+     * @param  address
+     *                      the address of the module
+     * @param  supplier
+     *                      the {@link Function} of the request giving the
+     *                      response, or null for none
+     * @return          this
+     */
+    public Sim request(int pgn, int address, Function<Packet, Packet> supplier) {
+        Function<Packet, Boolean> answer = answer(p -> true, supplier);
+        if (address == GLOBAL_ADDR) {
+            index(answer, key(true, pgn, GLOBAL_ADDR));
+        } else {
+            index(answer, key(true, pgn, address), key(true, pgn, GLOBAL_ADDR));
+        }
+        return this;
+    }
+
+    /**
+     * Same as request(int, int, Function), but ignore the request when
+     * constructing the response.
+     */
+    public Sim request(int pgn, int address, Supplier<Packet> supplier) {
+        return request(pgn, address, p -> supplier.get());
+    }
+
+    /**
+     * Answers the packets of a PGN sent to the destination, as commands.
+     *
+     * @param  pgn
+     *                         the PGN of the packets
+     * @param  destination
+     *                         the destination of the packets
+     * @param  supplier
+     *                         the {@link Function} of the packet giving the
+     *                         response, or null for none
+     * @return             this
+     */
+    public Sim response(int pgn, int destination, Function<Packet, Packet> supplier) {
+        index(answer(p -> true, supplier), key(false, pgn, destination));
+        return this;
+    }
+
+    /**
+     * Sends a response every time, unless the supplier returns null. If the
+     * response is destination specific and so was the packet, no other
+     * response is tried. The predicate is tested for every packet, so the
+     * responses to requests are better added with
+     * {@link #request(int, int, Function)}.
      *
      * @param  predicate
      *                       the {@link Predicate} used to determine if the {@link Packet}
@@ -87,21 +244,8 @@ public class Sim implements AutoCloseable {
      *                       the {@link Supplier} of the {@link Packet}
      * @return           this
      */
-    public Sim response(Predicate<Packet> predicate, Function<Packet, Packet> supplier) {
-        responses.add(request -> {
-            try {
-                if (predicate.test(request)) {
-                    Packet response = supplier.apply(request);
-                    send(response);
-                    // if request is not to broadcast, only accept first
-                    // response
-                    return response.getPgn() < 0xF000 && request.getDestination() != 0xFF;
-                }
-            } catch (Throwable t) {
-                J1939_84.getLogger().log(Level.SEVERE, "Error in Response", t);
-            }
-            return false;
-        });
+    synchronized public Sim response(Predicate<Packet> predicate, Function<Packet, Packet> supplier) {
+        predicates.add(new Response(responseCount++, answer(predicate, supplier)));
         return this;
     }
 
@@ -130,7 +274,8 @@ public class Sim implements AutoCloseable {
     }
 
     /**
-     * Schedules a {@link Packet} to be sent periodically
+     * Schedules a {@link Packet} to be sent periodically. When the supplier
+     * returns null, nothing is sent that time.
      *
      * @param  period
      *                      how often the {@link Packet} should be sent
@@ -144,11 +289,28 @@ public class Sim implements AutoCloseable {
         return schedule(period, unit, () -> send(supplier.get()));
     }
 
+    /**
+     * Delays the responses, as a module takes some time to answer.
+     *
+     * @param  delay
+     *                   the time from a packet to its responses
+     * @param  unit
+     *                   the {@link TimeUnit} of the delay
+     * @return       this
+     */
+    public Sim setResponseDelay(long delay, TimeUnit unit) {
+        responseDelay = unit.toNanos(delay);
+        return this;
+    }
+
     /**
      * Sends a {@link Packet} from the given {@link Supplier} catching any
      * exceptions. Should only be called from the exec.
      */
     private void send(Packet p) {
+        if (p == null) {
+            return;
+        }
         try {
             bus.send(p);
         } catch (Throwable e) {
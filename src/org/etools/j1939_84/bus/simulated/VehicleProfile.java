@@ -0,0 +1,466 @@
+/*
+ * Copyright (c) 2021. Equipment & Tool Institute
+ */
+package org.etools.j1939_84.bus.simulated;
+
+import static org.etools.j1939_84.bus.j1939.packets.ParsedPacket.to4Bytes;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.etools.j1939_84.bus.j1939.packets.DiagnosticTroubleCode;
+import org.etools.j1939_84.bus.j1939.packets.SupportedSPN;
+import org.ini4j.Ini;
+import org.ini4j.Profile.Section;
+
+/**
+ * A simulated vehicle, read from an INI file. The [Vehicle] section holds
+ *
+ * <pre>
+ * Bitrate = 250000            the speed of the bus, 250000 by default
+ * BusLoad = 60                the percent of the bus the broadcasts fill, 0 by default
+ * LoadSource = F0             the address of the filler broadcasts, in hex
+ * ResponseDelay = 10          the ms the ECUs take to answer, 0 by default
+ * </pre>
+ *
+ * and each [ECU xx] section, with xx the address of the ECU in hex
+ *
+ * <pre>
+ * Name = Engine #1
+ * OBD = true                  answers DM5 as an HD-OBD module, true by default
+ * VIN = 3HAMKSTN0FL575012     answered by this ECU
+ * Calibration = &lt;id&gt; &lt;cvn in hex&gt;
+ * SupportedSPN = &lt;spn&gt; [T][D][F] [&lt;length&gt;]
+ * Broadcast = &lt;pgn&gt; &lt;period in ms&gt; &lt;data in hex&gt;
+ * Response = &lt;pgn&gt; &lt;data in hex&gt;
+ * Active.&lt;part&gt; = &lt;spn&gt;:&lt;fmi&gt;[:&lt;oc&gt;], ...
+ * Pending.&lt;part&gt;, Previous.&lt;part&gt;, Permanent.&lt;part&gt;
+ * </pre>
+ *
+ * Calibration, SupportedSPN, Broadcast and Response can be repeated. The flags
+ * of a supported SPN are T for scaled test results, D for data stream and F for
+ * freeze frame. Data longer than 8 bytes is sent with the transport protocol.
+ *
+ * The DTCs of a part are those of the last part at or before it that lists
+ * any; the others are empty.
+ */
+public class VehicleProfile {
+
+    /** a PGN sent periodically */
+    public static class Broadcast {
+        private final byte[] data;
+
+        private final int period;
+
+        private final int pgn;
+
+        private Broadcast(int pgn, int period, byte[] data) {
+            this.pgn = pgn;
+            this.period = period;
+            this.data = data;
+        }
+
+        public byte[] getData() {
+            return Arrays.copyOf(data, data.length);
+        }
+
+        /**
+         * @return the period in ms
+         */
+        public int getPeriod() {
+            return period;
+        }
+
+        public int getPgn() {
+            return pgn;
+        }
+    }
+
+    /** a calibration of an ECU, as in its DM19 */
+    public static class Calibration {
+        private final long cvn;
+
+        private final String id;
+
+        private Calibration(String id, long cvn) {
+            this.id = id;
+            this.cvn = cvn;
+        }
+
+        /**
+         * @return the CVN then the ID padded to 16 bytes
+         */
+        public byte[] getBytes() {
+            byte[] bytes = new byte[20];
+            System.arraycopy(to4Bytes(cvn), 0, bytes, 0, 4);
+            Arrays.fill(bytes, 4, 20, (byte) ' ');
+            byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+            System.arraycopy(idBytes, 0, bytes, 4, Math.min(idBytes.length, 16));
+            return bytes;
+        }
+
+        public long getCvn() {
+            return cvn;
+        }
+
+        public String getId() {
+            return id;
+        }
+    }
+
+    /** an ECU of the vehicle */
+    public static class Ecu {
+        private final int address;
+
+        private final List<Broadcast> broadcasts = new ArrayList<>();
+
+        private final List<Calibration> calibrations = new ArrayList<>();
+
+        private String name;
+
+        private boolean obd = true;
+
+        private final List<Response> responses = new ArrayList<>();
+
+        /** by part */
+        private final TreeMap<Integer, Faults> faults = new TreeMap<>();
+
+        private final List<SupportedSPN> supportedSpns = new ArrayList<>();
+
+        private String vin;
+
+        private Ecu(int address) {
+            this.address = address;
+            name = String.format("ECU %02X", address);
+        }
+
+        public int getAddress() {
+            return address;
+        }
+
+        public List<Broadcast> getBroadcasts() {
+            return Collections.unmodifiableList(broadcasts);
+        }
+
+        public List<Calibration> getCalibrations() {
+            return Collections.unmodifiableList(calibrations);
+        }
+
+        /**
+         * @return the DTCs of the part
+         */
+        public Faults getFaults(int part) {
+            Entry<Integer, Faults> entry = faults.floorEntry(part);
+            return entry == null ? new Faults() : entry.getValue();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public List<Response> getResponses() {
+            return Collections.unmodifiableList(responses);
+        }
+
+        public List<SupportedSPN> getSupportedSpns() {
+            return Collections.unmodifiableList(supportedSpns);
+        }
+
+        /**
+         * @return the VIN, or null if this ECU does not answer it
+         */
+        public String getVin() {
+            return vin;
+        }
+
+        public boolean isObd() {
+            return obd;
+        }
+    }
+
+    /** the DTCs of an ECU in a part */
+    public static class Faults {
+        private final List<DiagnosticTroubleCode> active = new ArrayList<>();
+
+        private final List<DiagnosticTroubleCode> pending = new ArrayList<>();
+
+        private final List<DiagnosticTroubleCode> permanent = new ArrayList<>();
+
+        private final List<DiagnosticTroubleCode> previous = new ArrayList<>();
+
+        public List<DiagnosticTroubleCode> getActive() {
+            return Collections.unmodifiableList(active);
+        }
+
+        public List<DiagnosticTroubleCode> getPending() {
+            return Collections.unmodifiableList(pending);
+        }
+
+        public List<DiagnosticTroubleCode> getPermanent() {
+            return Collections.unmodifiableList(permanent);
+        }
+
+        public List<DiagnosticTroubleCode> getPrevious() {
+            return Collections.unmodifiableList(previous);
+        }
+
+        private List<DiagnosticTroubleCode> list(String kind) {
+            switch (kind) {
+                case "Active":
+                    return active;
+                case "Pending":
+                    return pending;
+                case "Previous":
+                    return previous;
+                default:
+                    return permanent;
+            }
+        }
+    }
+
+    /** a PGN answered on request */
+    public static class Response {
+        private final byte[] data;
+
+        private final int pgn;
+
+        private Response(int pgn, byte[] data) {
+            this.pgn = pgn;
+            this.data = data;
+        }
+
+        public byte[] getData() {
+            return Arrays.copyOf(data, data.length);
+        }
+
+        public int getPgn() {
+            return pgn;
+        }
+    }
+
+    private static final Set<String> FAULT_KINDS = Set.of("Active", "Pending", "Previous", "Permanent");
+
+    private static final String VEHICLE = "Vehicle";
+
+    private static byte[] parseHex(String hex) {
+        String digits = hex.replaceAll("\\s", "");
+        if (digits.length() % 2 != 0) {
+            throw new IllegalArgumentException("odd number of hex digits");
+        }
+        byte[] bytes = new byte[digits.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(digits.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+
+    private static DiagnosticTroubleCode parseDtc(String value) {
+        String[] parts = value.trim().split(":");
+        if (parts.length < 2 || parts.length > 3) {
+            throw new IllegalArgumentException("expected <spn>:<fmi>[:<oc>]");
+        }
+        int oc = parts.length == 3 ? Integer.parseInt(parts[2]) : 1;
+        return DiagnosticTroubleCode.create(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), 0, oc);
+    }
+
+    private static SupportedSPN parseSupportedSpn(String value) {
+        String[] parts = value.split("\\s+");
+        String flags = parts.length > 1 ? parts[1] : "";
+        if (parts.length > 3 || !flags.matches("T?D?F?")) {
+            throw new IllegalArgumentException("expected <spn> [T][D][F] [<length>]");
+        }
+        return SupportedSPN.create(Integer.parseInt(parts[0]),
+                                   flags.contains("T"),
+                                   flags.contains("D"),
+                                   flags.contains("F"),
+                                   parts.length == 3 ? Integer.parseInt(parts[2]) : 1);
+    }
+
+    /**
+     * Reads a profile.
+     *
+     * @param  path
+     *                         the file
+     * @return             the {@link VehicleProfile}
+     * @throws IOException
+     *                         if the file cannot be read or understood
+     */
+    public static VehicleProfile read(Path path) throws IOException {
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return read(reader);
+        }
+    }
+
+    /**
+     * Reads a profile.
+     *
+     * @param  reader
+     *                         the text of the profile
+     * @return             the {@link VehicleProfile}
+     * @throws IOException
+     *                         if the text cannot be read or understood
+     */
+    public static VehicleProfile read(Reader reader) throws IOException {
+        VehicleProfile profile = new VehicleProfile();
+        Ini ini = new Ini(reader);
+        for (String name : ini.keySet()) {
+            Section section = ini.get(name);
+            if (name.equals(VEHICLE)) {
+                for (String key : section.keySet()) {
+                    profile.parseVehicle(name, key, section.get(key));
+                }
+            } else if (name.matches("ECU [0-9A-Fa-f]{1,2}")) {
+                Ecu ecu = new Ecu(Integer.parseInt(name.substring(4), 16));
+                for (String key : section.keySet()) {
+                    for (String value : section.getAll(key)) {
+                        parseEcu(ecu, name, key, value);
+                    }
+                }
+                profile.ecus.add(ecu);
+            } else {
+                throw new IOException("[" + name + "]: unknown section");
+            }
+        }
+        return profile;
+    }
+
+    private static void parseEcu(Ecu ecu, String section, String key, String value) throws IOException {
+        try {
+            String[] fields = value.trim().split("\\s+", 3);
+            int dot = key.indexOf('.');
+            if (dot > 0 && FAULT_KINDS.contains(key.substring(0, dot))) {
+                int part = Integer.parseInt(key.substring(dot + 1));
+                List<DiagnosticTroubleCode> dtcs = ecu.faults.computeIfAbsent(part, p -> new Faults())
+                                                             .list(key.substring(0, dot));
+                for (String dtc : value.split(",")) {
+                    if (!dtc.isBlank()) {
+                        dtcs.add(parseDtc(dtc));
+                    }
+                }
+                return;
+            }
+            switch (key) {
+                case "Name":
+                    ecu.name = value.trim();
+                    break;
+                case "OBD":
+                    ecu.obd = Boolean.parseBoolean(value.trim());
+                    break;
+                case "VIN":
+                    ecu.vin = value.trim();
+                    break;
+                case "Calibration":
+                    if (fields.length != 2) {
+                        throw new IllegalArgumentException("expected <id> <cvn>");
+                    }
+                    ecu.calibrations.add(new Calibration(fields[0], Long.parseLong(fields[1], 16)));
+                    break;
+                case "SupportedSPN":
+                    ecu.supportedSpns.add(parseSupportedSpn(value.trim()));
+                    break;
+                case "Broadcast":
+                    if (fields.length != 3) {
+                        throw new IllegalArgumentException("expected <pgn> <period> <data>");
+                    }
+                    int period = Integer.parseInt(fields[1]);
+                    if (period <= 0) {
+                        throw new IllegalArgumentException("the period is not positive");
+                    }
+                    ecu.broadcasts.add(new Broadcast(Integer.parseInt(fields[0]), period, parseHex(fields[2])));
+                    break;
+                case "Response":
+                    String[] response = value.trim().split("\\s+", 2);
+                    if (response.length != 2) {
+                        throw new IllegalArgumentException("expected <pgn> <data>");
+                    }
+                    ecu.responses.add(new Response(Integer.parseInt(response[0]), parseHex(response[1])));
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown key");
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IOException("[" + section + "] " + key + ": " + e.getMessage() + ": " + value, e);
+        }
+    }
+
+    private int bitrate = 250000;
+
+    private int busLoad;
+
+    private final List<Ecu> ecus = new ArrayList<>();
+
+    private int loadSource = 0xF0;
+
+    private int responseDelay;
+
+    /**
+     * @return the speed of the bus in bits per second
+     */
+    public int getBitrate() {
+        return bitrate;
+    }
+
+    /**
+     * @return the percent of the bus filled by broadcasts
+     */
+    public int getBusLoad() {
+        return busLoad;
+    }
+
+    public List<Ecu> getEcus() {
+        return Collections.unmodifiableList(ecus);
+    }
+
+    /**
+     * @return the source address of the filler broadcasts
+     */
+    public int getLoadSource() {
+        return loadSource;
+    }
+
+    /**
+     * @return the time the ECUs take to answer, in ms
+     */
+    public int getResponseDelay() {
+        return responseDelay;
+    }
+
+    private void parseVehicle(String section, String key, String value) throws IOException {
+        try {
+            switch (key) {
+                case "Bitrate":
+                    bitrate = Integer.parseInt(value.trim());
+                    break;
+                case "BusLoad":
+                    busLoad = Integer.parseInt(value.trim());
+                    if (busLoad < 0 || busLoad > 100) {
+                        throw new IllegalArgumentException("not a percent");
+                    }
+                    break;
+                case "LoadSource":
+                    loadSource = Integer.parseInt(value.trim(), 16);
+                    break;
+                case "ResponseDelay":
+                    responseDelay = Integer.parseInt(value.trim());
+                    if (responseDelay < 0) {
+                        throw new IllegalArgumentException("the delay is negative");
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown key");
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IOException("[" + section + "] " + key + ": " + e.getMessage() + ": " + value, e);
+        }
+    }
+}
@@ -0,0 +1,436 @@
+/*
+ * Copyright (c) 2021. Equipment & Tool Institute
+ */
+package org.etools.j1939_84.bus.simulated;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.etools.j1939_84.bus.j1939.J1939.GLOBAL_ADDR;
+import static org.etools.j1939_84.bus.j1939.packets.AcknowledgmentPacket.Response.ACK;
+import static org.etools.j1939_84.bus.j1939.packets.AcknowledgmentPacket.Response.NACK;
+import static org.etools.j1939_84.bus.j1939.packets.LampStatus.OFF;
+import static org.etools.j1939_84.bus.j1939.packets.LampStatus.ON;
+import static org.etools.j1939_84.bus.j1939.packets.ParsedPacket.to4Bytes;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.etools.j1939_84.bus.Bus;
+import org.etools.j1939_84.bus.BusException;
+import org.etools.j1939_84.bus.Packet;
+import org.etools.j1939_84.bus.PacketFilter;
+import org.etools.j1939_84.bus.j1939.J1939TP;
+import org.etools.j1939_84.bus.j1939.packets.AcknowledgmentPacket;
+import org.etools.j1939_84.bus.j1939.packets.DM11ClearActiveDTCsPacket;
+import org.etools.j1939_84.bus.j1939.packets.DM12MILOnEmissionDTCPacket;
+import org.etools.j1939_84.bus.j1939.packets.DM19CalibrationInformationPacket;
+import org.etools.j1939_84.bus.j1939.packets.DM1ActiveDTCsPacket;
+import org.etools.j1939_84.bus.j1939.packets.DM23PreviouslyMILOnEmissionDTCPacket;
+import org.etools.j1939_84.bus.j1939.packets.DM24SPNSupportPacket;
+import org.etools.j1939_84.bus.j1939.packets.DM27AllPendingDTCsPacket;
+import org.etools.j1939_84.bus.j1939.packets.DM28PermanentEmissionDTCPacket;
+import org.etools.j1939_84.bus.j1939.packets.DM2PreviouslyActiveDTC;
+import org.etools.j1939_84.bus.j1939.packets.DM5DiagnosticReadinessPacket;
+import org.etools.j1939_84.bus.j1939.packets.DM6PendingEmissionDTCPacket;
+import org.etools.j1939_84.bus.j1939.packets.DiagnosticTroubleCode;
+import org.etools.j1939_84.bus.j1939.packets.EngineSpeedPacket;
+import org.etools.j1939_84.bus.j1939.packets.LampStatus;
+import org.etools.j1939_84.bus.j1939.packets.SupportedSPN;
+import org.etools.j1939_84.bus.j1939.packets.VehicleIdentificationPacket;
+import org.etools.j1939_84.bus.simulated.VehicleProfile.Broadcast;
+import org.etools.j1939_84.bus.simulated.VehicleProfile.Calibration;
+import org.etools.j1939_84.bus.simulated.VehicleProfile.Ecu;
+import org.etools.j1939_84.bus.simulated.VehicleProfile.Faults;
+import org.etools.j1939_84.bus.simulated.VehicleProfile.Response;
+import org.etools.j1939_84.model.KeyState;
+
+/**
+ * Simulates the ECUs of a {@link VehicleProfile} on a bus, for system and load
+ * testing.
+ *
+ * Each ECU broadcasts the PGNs of its profile and DM1 while the key is on, and
+ * answers requests for its responses, address claim, VIN, DM5, DM19 and DM24
+ * and, if it is an OBD module, the DTCs of DM2, DM6, DM12, DM23, DM27 and DM28.
+ * It acknowledges DM11 and NACKs other requests sent to it. The engine speed in
+ * a broadcast of PGN 61444 is zero while the engine is off.
+ *
+ * The DTCs are those of the part the vehicle is in; see
+ * {@link #setPart(int)}. The tool implanting fault A moves the vehicle to
+ * {@link #FAULT_A_PART} and fault B to {@link #FAULT_B_PART}. The key state is
+ * changed by the tool as for the {@link Engine}.
+ *
+ * With a bus load in the profile, a {@link BusLoadGenerator} fills the bus.
+ */
+public class VehicleSimulator implements AutoCloseable {
+
+    /** the ECUs of the bus share it; each closes what it opened on it */
+    private static class SharedBus implements Bus {
+        private final Bus bus;
+
+        private SharedBus(Bus bus) {
+            this.bus = bus;
+        }
+
+        @Override
+        public void close() {
+            // the bus is closed by its owner
+        }
+
+        @Override
+        public Stream<Packet> duplicate(Stream<Packet> stream, int time, TimeUnit unit) {
+            return bus.duplicate(stream, time, unit);
+        }
+
+        @Override
+        public int getAddress() {
+            return bus.getAddress();
+        }
+
+        @Override
+        public int getConnectionSpeed() throws BusException {
+            return bus.getConnectionSpeed();
+        }
+
+        @Override
+        public boolean imposterDetected() {
+            return bus.imposterDetected();
+        }
+
+        @Override
+        public Stream<Packet> read(long timeout, TimeUnit unit) throws BusException {
+            return bus.read(timeout, unit);
+        }
+
+        @Override
+        public Stream<Packet> read(PacketFilter filter, long timeout, TimeUnit unit) throws BusException {
+            return bus.read(filter, timeout, unit);
+        }
+
+        @Override
+        public void resetTimeout(Stream<Packet> stream, int time, TimeUnit unit) {
+            bus.resetTimeout(stream, time, unit);
+        }
+
+        @Override
+        public Packet send(Packet packet) throws BusException {
+            return bus.send(packet);
+        }
+    }
+
+    /** an ECU of the profile on the bus */
+    private class SimulatedEcu {
+        private final List<DiagnosticTroubleCode> active = new ArrayList<>();
+
+        private final int address;
+
+        /** the PGNs answered on request */
+        private final Set<Integer> pgns = new HashSet<>();
+
+        private final List<DiagnosticTroubleCode> pending = new ArrayList<>();
+
+        private final List<DiagnosticTroubleCode> permanent = new ArrayList<>();
+
+        private final List<DiagnosticTroubleCode> previous = new ArrayList<>();
+
+        private final Ecu profile;
+
+        private final Sim sim;
+
+        private SimulatedEcu(Ecu profile, Sim sim) {
+            this.profile = profile;
+            this.sim = sim;
+            address = profile.getAddress();
+            setFaults(profile.getFaults(part));
+        }
+
+        /** answers requests for the PGN, unless it already is */
+        private void answer(int pgn, Function<Packet, Packet> response) {
+            if (pgns.add(pgn)) {
+                sim.request(pgn, address, response);
+            }
+        }
+
+        synchronized private void clearFaults() {
+            active.clear();
+            pending.clear();
+            previous.clear();
+        }
+
+        private DiagnosticTroubleCode[] dtcs(List<DiagnosticTroubleCode> list) {
+            synchronized (this) {
+                return list.toArray(new DiagnosticTroubleCode[0]);
+            }
+        }
+
+        synchronized private LampStatus getMil() {
+            return profile.isObd() && !active.isEmpty() ? ON : OFF;
+        }
+
+        /** registers the responses and broadcasts; the NACKs last */
+        private void register() {
+            for (Response response : profile.getResponses()) {
+                byte[] data = response.getData();
+                int pgn = response.getPgn();
+                answer(pgn, p -> Packet.create(pgn < 0xF000 ? pgn | p.getSource() : pgn, address, data));
+            }
+
+            // Address Claim, with the address as the identity number
+            answer(0xEE00, p -> Packet.create(0xEEFF, address, address, 0x00, 0x40, 0x05, 0x00, 0x00, 0x65, 0x14));
+
+            if (profile.getVin() != null) {
+                byte[] vin = (profile.getVin() + "*").getBytes(StandardCharsets.UTF_8);
+                answer(VehicleIdentificationPacket.PGN,
+                       p -> Packet.create(VehicleIdentificationPacket.PGN, address, vin));
+            }
+
+            answer(DM5DiagnosticReadinessPacket.PGN, p -> {
+                synchronized (this) {
+                    return DM5DiagnosticReadinessPacket.create(address,
+                                                               active.size(),
+                                                               previous.size(),
+                                                               profile.isObd() ? 0x14 : 0x05)
+                                                       .getPacket();
+                }
+            });
+
+            if (!profile.getCalibrations().isEmpty()) {
+                byte[] data = new byte[0];
+                for (Calibration calibration : profile.getCalibrations()) {
+                    data = combine(data, calibration.getBytes());
+                }
+                byte[] calibrations = data;
+                answer(DM19CalibrationInformationPacket.PGN,
+                       p -> Packet.create(DM19CalibrationInformationPacket.PGN | p.getSource(),
+                                          address,
+                                          calibrations));
+            }
+
+            if (!profile.getSupportedSpns().isEmpty()) {
+                SupportedSPN[] spns = profile.getSupportedSpns().toArray(new SupportedSPN[0]);
+                answer(DM24SPNSupportPacket.PGN, p -> DM24SPNSupportPacket.create(address, spns).getPacket());
+            }
+
+            answer(DM11ClearActiveDTCsPacket.PGN, p -> {
+                clearFaults();
+                // a global clear is not acknowledged
+                return p.getDestination() == address
+                        ? AcknowledgmentPacket.create(address, ACK, 0, p.getSource(), DM11ClearActiveDTCsPacket.PGN)
+                                              .getPacket()
+                        : null;
+            });
+
+            if (profile.isObd()) {
+                answer(DM2PreviouslyActiveDTC.PGN,
+                       p -> DM2PreviouslyActiveDTC.create(address, getMil(), OFF, OFF, OFF, dtcs(previous))
+                                                  .getPacket());
+                answer(DM6PendingEmissionDTCPacket.PGN,
+                       p -> DM6PendingEmissionDTCPacket.create(address, getMil(), OFF, OFF, OFF, dtcs(pending))
+                                                       .getPacket());
+                answer(DM12MILOnEmissionDTCPacket.PGN,
+                       p -> DM12MILOnEmissionDTCPacket.create(address, getMil(), OFF, OFF, OFF, dtcs(active))
+                                                      .getPacket());
+                answer(DM23PreviouslyMILOnEmissionDTCPacket.PGN,
+                       p -> DM23PreviouslyMILOnEmissionDTCPacket.create(address,
+                                                                        getMil(),
+                                                                        OFF,
+                                                                        OFF,
+                                                                        OFF,
+                                                                        dtcs(previous))
+                                                                .getPacket());
+                answer(DM27AllPendingDTCsPacket.PGN,
+                       p -> DM27AllPendingDTCsPacket.create(address, getMil(), OFF, OFF, OFF, dtcs(pending))
+                                                    .getPacket());
+                answer(DM28PermanentEmissionDTCPacket.PGN,
+                       p -> DM28PermanentEmissionDTCPacket.create(address, getMil(), OFF, OFF, OFF, dtcs(permanent))
+                                                          .getPacket());
+            }
+
+            for (Broadcast broadcast : profile.getBroadcasts()) {
+                int pgn = broadcast.getPgn();
+                byte[] data = broadcast.getData();
+                byte[] stopped = broadcast.getData();
+                if (pgn == EngineSpeedPacket.PGN && stopped.length >= 5) {
+                    stopped[3] = 0;
+                    stopped[4] = 0;
+                }
+                sim.schedule(broadcast.getPeriod(), MILLISECONDS, () -> {
+                    KeyState state = keyState;
+                    if (!state.isKeyOn) {
+                        return null;
+                    }
+                    return Packet.create(pgn, address, state.isEngineOn ? data : stopped);
+                });
+            }
+
+            sim.schedule(1, SECONDS, () -> keyState.isKeyOn
+                    ? DM1ActiveDTCsPacket.create(address, getMil(), OFF, OFF, OFF, dtcs(active)).getPacket()
+                    : null);
+        }
+
+        /** NACKs the requests to this ECU that are not answered */
+        private void registerNack() {
+            sim.response(p -> p.getId(0xFFFF) == (0xEA00 | address) && !pgns.contains(p.get24(0)),
+                         p -> AcknowledgmentPacket.create(address, NACK, 0, p.getSource(), p.get24(0))
+                                                  .getPacket());
+        }
+
+        synchronized private void setFaults(Faults faults) {
+            active.clear();
+            active.addAll(faults.getActive());
+            pending.clear();
+            pending.addAll(faults.getPending());
+            previous.clear();
+            previous.addAll(faults.getPrevious());
+            permanent.clear();
+            permanent.addAll(faults.getPermanent());
+        }
+    }
+
+    /** the part the vehicle is in once fault A is implanted */
+    public static final int FAULT_A_PART = 3;
+
+    /** the part the vehicle is in once fault B is implanted */
+    public static final int FAULT_B_PART = 8;
+
+    private static byte[] combine(byte[] a, byte[] b) {
+        byte[] bytes = new byte[a.length + b.length];
+        System.arraycopy(a, 0, bytes, 0, a.length);
+        System.arraycopy(b, 0, bytes, a.length, b.length);
+        return bytes;
+    }
+
+    /** the buses of the segmenting ECUs */
+    private final List<Bus> buses = new ArrayList<>();
+
+    private final List<SimulatedEcu> ecus = new ArrayList<>();
+
+    private volatile KeyState keyState = KeyState.KEY_ON_ENGINE_OFF;
+
+    private final BusLoadGenerator loadGenerator;
+
+    private int part = 1;
+
+    private final List<Sim> sims = new ArrayList<>();
+
+    /**
+     * Simulates the vehicle with packets longer than 8 bytes sent as one, as
+     * the loop back adapter does.
+     *
+     * @param  bus
+     *                          the bus of the vehicle
+     * @param  profile
+     *                          the vehicle
+     * @throws BusException
+     *                          if the bus cannot be read
+     */
+    public VehicleSimulator(Bus bus, VehicleProfile profile) throws BusException {
+        this(bus, profile, false);
+    }
+
+    /**
+     * @param  bus
+     *                          the bus of the vehicle
+     * @param  profile
+     *                          the vehicle
+     * @param  segmented
+     *                          true to send packets longer than 8 bytes with
+     *                          the transport protocol of each ECU
+     * @throws BusException
+     *                          if the bus cannot be read
+     */
+    public VehicleSimulator(Bus bus, VehicleProfile profile, boolean segmented) throws BusException {
+        Sim shared = segmented ? null : new Sim(bus);
+        if (shared != null) {
+            shared.setResponseDelay(profile.getResponseDelay(), MILLISECONDS);
+            sims.add(shared);
+        }
+        for (Ecu ecu : profile.getEcus()) {
+            Sim sim = shared;
+            if (sim == null) {
+                Bus tp = new J1939TP(new SharedBus(bus), ecu.getAddress());
+                buses.add(tp);
+                sim = new Sim(tp).setResponseDelay(profile.getResponseDelay(), MILLISECONDS);
+                sims.add(sim);
+            }
+            ecus.add(new SimulatedEcu(ecu, sim));
+        }
+
+        if (!ecus.isEmpty()) {
+            SimulatedEcu first = ecus.get(0);
+            // Listeners for key state change and to implant faults
+            first.answer(0x1FFFF, p -> changeKeyState(p, first.address, KeyState.KEY_ON_ENGINE_RUNNING));
+            first.answer(0x1FFFE, p -> changeKeyState(p, first.address, KeyState.KEY_ON_ENGINE_OFF));
+            first.answer(0x1FFFC, p -> changeKeyState(p, first.address, KeyState.KEY_OFF));
+            first.answer(0x1FFFA, p -> implantFault(p, first.address, FAULT_A_PART));
+            first.answer(0x1FFFB, p -> implantFault(p, first.address, FAULT_B_PART));
+        }
+        for (SimulatedEcu ecu : ecus) {
+            ecu.register();
+        }
+        for (SimulatedEcu ecu : ecus) {
+            ecu.registerNack();
+        }
+
+        if (profile.getBusLoad() > 0) {
+            loadGenerator = new BusLoadGenerator(bus, profile.getBitrate(), profile.getLoadSource());
+            loadGenerator.setLoad(profile.getBusLoad() / 100.0);
+        } else {
+            loadGenerator = null;
+        }
+    }
+
+    private Packet changeKeyState(Packet request, int address, KeyState keyState) {
+        this.keyState = keyState;
+        return Packet.create(request.get24(0),
+                             address,
+                             combine(to4Bytes(keyState.isKeyOn ? 1 : 0), to4Bytes(keyState.isEngineOn ? 1 : 0)));
+    }
+
+    @Override
+    public void close() {
+        if (loadGenerator != null) {
+            loadGenerator.close();
+        }
+        sims.forEach(Sim::close);
+        buses.forEach(Bus::close);
+    }
+
+    public KeyState getKeyState() {
+        return keyState;
+    }
+
+    /**
+     * @return the generator of the bus load, or null if the profile has none
+     */
+    public BusLoadGenerator getLoadGenerator() {
+        return loadGenerator;
+    }
+
+    synchronized public int getPart() {
+        return part;
+    }
+
+    private Packet implantFault(Packet request, int address, int part) {
+        setPart(part);
+        return Packet.create(request.get24(0), address, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF);
+    }
+
+    /**
+     * Sets the DTCs of the ECUs to those of the part.
+     *
+     * @param part
+     *                 the part of the test
+     */
+    synchronized public void setPart(int part) {
+        this.part = part;
+        for (SimulatedEcu ecu : ecus) {
+            ecu.setFaults(ecu.profile.getFaults(part));
+        }
+    }
+}
@@ -25,8 +25,6 @@ import org.etools.j1939_84.modules.EngineSpeedModule;
 import org.etools.j1939_84.modules.ReportFileModule;
 import org.etools.j1939_84.modules.VehicleInformationModule;
 
-import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
-
 /**
  * The super class for the controllers that collect information from the vehicle
  * and generates the report
@@ -39,9 +37,6 @@ public abstract class Controller {
                                                                       Ending.ABORTED,
                                                                       Ending.FAILED,
                                                                       Ending.COMPLETED);
-    private static int currentStep;
-    private static Ending ending;
-    private static int maxSteps;
     private final BannerModule bannerModule;
     private final EngineSpeedModule engineSpeedModule;
     private final Executor executor;
@@ -50,6 +45,7 @@ public abstract class Controller {
     private final DateTimeModule dateTimeModule;
     private final DiagnosticMessageModule diagnosticMessageModule;
     private final DataRepository dataRepository;
+    private final TestSession session;
     private CompositeResultsListener compositeListener;
     private J1939 j1939;
 
@@ -86,26 +82,29 @@ public abstract class Controller {
         this.diagnosticMessageModule = diagnosticMessageModule;
         this.partResultRepository = partResultRepository;
         this.dataRepository = dataRepository;
+        session = TestSession.current();
     }
 
     /**
-     * Checks the Ending value and will throw an {@link InterruptedException} if
-     * the value has been set to Stopped or Aborted
+     * Checks the Ending value of the {@link TestSession} of the calling thread
+     * and will throw an {@link InterruptedException} if the value has been set
+     * to Stopped or Aborted
      *
      * @throws InterruptedException
      *                                  if the ending has been set
      */
     public static void checkEnding() throws InterruptedException {
-        if (getEnding() != null && INTERUPPTABLE_ENDINGS.contains(getEnding())) {
-            throw new InterruptedException(getEnding().toString());
+        Ending ending = TestSession.current().getEnding();
+        if (ending != null && INTERUPPTABLE_ENDINGS.contains(ending)) {
+            throw new InterruptedException(ending.toString());
         }
     }
 
     /**
      * @return the ending
      */
-    protected static Ending getEnding() {
-        return ending;
+    protected Ending getEnding() {
+        return session.getEnding();
     }
 
     /**
@@ -114,9 +113,8 @@ public abstract class Controller {
      * @throws InterruptedException
      *                                  if the ending was set to ABORTED or STOPPED
      */
-    @SuppressFBWarnings(value = "ST_WRITE_TO_STATIC_FROM_INSTANCE_METHOD", justification = "Artifact of bad design")
     protected void setEnding(Ending ending) throws InterruptedException {
-        Controller.ending = ending;
+        session.setEnding(ending);
         checkEnding();
     }
 
@@ -151,11 +149,11 @@ public abstract class Controller {
     protected void finished() {
         addBlankLineToReport();
 
-        if (ending == null) {
-            ending = Ending.ABORTED;
+        if (getEnding() == null) {
+            session.setEnding(Ending.ABORTED);
         }
 
-        switch (ending) {
+        switch (getEnding()) {
             case ABORTED:
                 getBannerModule().reportAborted(getListener());
                 break;
@@ -173,6 +171,7 @@ public abstract class Controller {
         addBlankLineToReport();
 
         String message = getEnding().toString();
+        int maxSteps = session.getMaxSteps();
         getListener().onProgress(maxSteps, maxSteps, message);
 
         getListener().onComplete(getEnding() == Ending.COMPLETED);
@@ -236,6 +235,15 @@ public abstract class Controller {
         getDiagnosticMessageModule().setJ1939(this.j1939);
     }
 
+    /**
+     * Returns the {@link TestSession} the controller was created in and runs in
+     *
+     * @return {@link TestSession}
+     */
+    public TestSession getSession() {
+        return session;
+    }
+
     /**
      * Returns the {@link ResultsListener}
      *
@@ -264,7 +272,7 @@ public abstract class Controller {
      * @return {@link Runnable}
      */
     private Runnable getRunnable() {
-        return () -> {
+        return () -> session.run(() -> {
             try {
                 run();
             } catch (Throwable e) {
@@ -287,7 +295,7 @@ public abstract class Controller {
                 }
                 getListener().onMessage(message, "Error", MessageType.ERROR);
             }
-        };
+        });
     }
 
     private Outcome getOutcome(int partNumber, int stepNumber) {
@@ -325,7 +333,7 @@ public abstract class Controller {
      */
     protected void incrementProgress(String message) throws InterruptedException {
         checkEnding();
-        getListener().onProgress(++currentStep, maxSteps, message);
+        getListener().onProgress(session.nextStep(), session.getMaxSteps(), message);
     }
 
     /**
@@ -334,7 +342,7 @@ public abstract class Controller {
      * @return boolean
      */
     public boolean isActive() {
-        return ending == null;
+        return getEnding() == null;
     }
 
     /**
@@ -358,11 +366,9 @@ public abstract class Controller {
      * @param maxSteps
      *                     the maximum number of steps in the operation
      */
-    @SuppressFBWarnings(value = "ST_WRITE_TO_STATIC_FROM_INSTANCE_METHOD", justification = "Artifact of bad design")
     protected void setupProgress(int maxSteps) {
-        Controller.currentStep = 0;
-        Controller.maxSteps = maxSteps;
-        getListener().onProgress(currentStep, maxSteps, "");
+        session.setupProgress(maxSteps);
+        getListener().onProgress(0, maxSteps, "");
     }
 
     private void setupRun(ResultsListener listener, J1939 j1939, ReportFileModule reportFileModule) {
@@ -372,15 +378,14 @@ public abstract class Controller {
         } else {
             compositeListener = new CompositeResultsListener(listener, reportFileModule, partResultRepository);
         }
-        ending = null;
+        session.setEnding(null);
     }
 
     /**
      * Interrupts and ends the execution of the controller
      */
-    @SuppressFBWarnings(value = "ST_WRITE_TO_STATIC_FROM_INSTANCE_METHOD", justification = "Artifact of bad design")
     public void stop() {
-        ending = Ending.STOPPED;
+        session.setEnding(Ending.STOPPED);
     }
 
     /**
@@ -394,7 +399,7 @@ public abstract class Controller {
      */
     protected void updateProgress(String message) throws InterruptedException {
         checkEnding();
-        getListener().onProgress(currentStep, maxSteps, message);
+        getListener().onProgress(session.getCurrentStep(), session.getMaxSteps(), message);
     }
 
     public enum Ending {
@@ -17,7 +17,6 @@ import org.etools.j1939_84.model.VehicleInformation;
 
 public class DataRepository {
 
-    private static DataRepository instance = new DataRepository();
     /**
      * Map of OBD Module Source Address to {@link OBDModuleInformation}
      */
@@ -26,18 +25,18 @@ public class DataRepository {
     private VehicleInformation vehicleInformation;
     private long part11StartTime;
 
-    private DataRepository() {
+    DataRepository() {
     }
 
     public static void clearInstance() {
-        instance = null;
+        TestSession.current().setDataRepository(null);
     }
 
+    /**
+     * @return the repository of the {@link TestSession} of the calling thread
+     */
     public static DataRepository getInstance() {
-        if (instance == null) {
-            instance = new DataRepository();
-        }
-        return instance;
+        return TestSession.current().getDataRepository();
     }
 
     /** Used by tests to get a clean repository. */
@@ -10,6 +10,8 @@ import static org.etools.j1939_84.utils.CollectionUtils.toByteArray;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
 
@@ -22,8 +24,43 @@ import org.etools.j1939_84.bus.j1939.packets.model.SpnDefinition;
 
 public class FreezeFrameDataTranslator {
 
+    /**
+     * The position, label and SLOT of each Freeze Frame SPN of a DM24, resolved
+     * once for all the Freeze Frames of the module.
+     */
+    private static class Layout {
+        private final int[] ends;
+        private final String[] labels;
+        private final Slot[] slots;
+        private final int[] spnIds;
+
+        private Layout(List<SupportedSPN> supportedSPNs, J1939DaRepository j1939DaRepository) {
+            int size = supportedSPNs.size();
+            ends = new int[size];
+            labels = new String[size];
+            slots = new Slot[size];
+            spnIds = new int[size];
+            int index = 0;
+            for (int i = 0; i < size; i++) {
+                SupportedSPN supportedSPN = supportedSPNs.get(i);
+                index += supportedSPN.getLength();
+                ends[i] = index;
+                spnIds[i] = supportedSPN.getSpn();
+                SpnDefinition spnDefinition = j1939DaRepository.findSpnDefinition(spnIds[i]);
+                labels[i] = spnDefinition.getLabel();
+                slots[i] = j1939DaRepository.findSLOT(spnDefinition.getSlotNumber(), spnIds[i]);
+            }
+        }
+
+        private int getLength() {
+            return ends.length == 0 ? 0 : ends[ends.length - 1];
+        }
+    }
+
     private final J1939DaRepository j1939DaRepository;
 
+    private final Map<List<SupportedSPN>, Layout> layouts = new ConcurrentHashMap<>();
+
     public FreezeFrameDataTranslator() {
         this(J1939DaRepository.getInstance());
     }
@@ -40,10 +77,11 @@ public class FreezeFrameDataTranslator {
         List<SupportedSPN> supportedFreezeFrameSPNs = supportedSPNs.stream()
                                                                    .filter(SupportedSPN::supportsExpandedFreezeFrame)
                                                                    .collect(Collectors.toList());
+        Layout layout = layouts.computeIfAbsent(supportedFreezeFrameSPNs, l -> new Layout(l, j1939DaRepository));
 
         byte[] spnData = toByteArray(freezeFrame.getSpnData());
 
-        int expectedLength = supportedFreezeFrameSPNs.stream().mapToInt(SupportedSPN::getLength).sum();
+        int expectedLength = layout.getLength();
         int actualLength = spnData.length;
         if (actualLength != expectedLength) {
             getLogger().log(Level.SEVERE,
@@ -52,29 +90,14 @@ public class FreezeFrameDataTranslator {
             return List.of();
         }
 
-        List<Spn> spns = new ArrayList<>();
+        List<Spn> spns = new ArrayList<>(layout.ends.length);
         int index = 0;
-        for (SupportedSPN supportedSPN : supportedFreezeFrameSPNs) {
-            byte[] bytes = Arrays.copyOfRange(spnData, index, index + supportedSPN.getLength());
-            index += supportedSPN.getLength();
-
-            int spnId = supportedSPN.getSpn();
-            SpnDefinition spnDefinition = getSpnDefinition(spnId);
-            String label = spnDefinition.getLabel();
-            int slotNumber = spnDefinition.getSlotNumber();
-            Slot slot = getSlotDefinition(slotNumber, spnId);
-
-            spns.add(new Spn(spnId, label, slot, bytes));
+        for (int i = 0; i < layout.ends.length; i++) {
+            byte[] bytes = Arrays.copyOfRange(spnData, index, layout.ends[i]);
+            index = layout.ends[i];
+            spns.add(new Spn(layout.spnIds[i], layout.labels[i], layout.slots[i], bytes));
         }
         return spns;
     }
 
-    private Slot getSlotDefinition(int slotNumber, int spnId) {
-        return j1939DaRepository.findSLOT(slotNumber, spnId);
-    }
-
-    private SpnDefinition getSpnDefinition(int spnId) {
-        return j1939DaRepository.findSpnDefinition(spnId);
-    }
-
 }
@@ -37,13 +37,41 @@ import org.etools.j1939_84.modules.VehicleInformationModule;
 public class OverallController extends Controller {
     private final List<PartController> partControllers = new ArrayList<>();
     private PartController activeController;
+    private int firstPart = 1;
+    private int firstStep = 1;
+    private int lastPart = Integer.MAX_VALUE;
+    private int lastStep = Integer.MAX_VALUE;
 
     public OverallController() {
-        this(DataRepository.getInstance());
+        this(Executors.newSingleThreadScheduledExecutor());
     }
 
-    private OverallController(DataRepository dataRepository) {
-        this(Executors.newSingleThreadScheduledExecutor(),
+    /**
+     * @param executor
+     *                     the {@link Executor} that runs the parts, as
+     *                     {@link Runnable#run()} to run them in the caller's
+     *                     thread
+     */
+    public OverallController(Executor executor) {
+        this(executor, DataRepository.getInstance());
+    }
+
+    /**
+     * Creates the controller of a session, with its parts and steps, so the
+     * test runs with the repositories and modules of the session.
+     *
+     * @param  session
+     *                      the {@link TestSession} of the test
+     * @param  executor
+     *                      the {@link Executor} that runs the parts
+     * @return          the {@link OverallController}
+     */
+    public static OverallController create(TestSession session, Executor executor) {
+        return session.call(() -> new OverallController(executor));
+    }
+
+    private OverallController(Executor executor, DataRepository dataRepository) {
+        this(executor,
              new BannerModule(),
              DateTimeModule.getInstance(),
              dataRepository,
@@ -93,6 +121,12 @@ public class OverallController extends Controller {
             getBannerModule().reportHeader(getListener());
 
             for (PartController controller : partControllers) {
+                int partNumber = controller.getPartNumber();
+                if (partNumber < firstPart || partNumber > lastPart) {
+                    continue;
+                }
+                controller.setStepRange(partNumber == firstPart ? firstStep : 1,
+                                        partNumber == lastPart ? lastStep : Integer.MAX_VALUE);
                 activeController = controller;
                 activeController.run(getListener(), getJ1939());
                 activeController = null;
@@ -106,6 +140,26 @@ public class OverallController extends Controller {
         }
     }
 
+    /**
+     * Limits the run to the steps from the first to the last given, inclusive.
+     * The whole test is run by default.
+     *
+     * @param firstPart
+     *                      the part of the first step
+     * @param firstStep
+     *                      the first step
+     * @param lastPart
+     *                      the part of the last step
+     * @param lastStep
+     *                      the last step
+     */
+    public void setRange(int firstPart, int firstStep, int lastPart, int lastStep) {
+        this.firstPart = firstPart;
+        this.firstStep = firstStep;
+        this.lastPart = lastPart;
+        this.lastStep = lastStep;
+    }
+
     @Override
     public void stop() {
         Optional.ofNullable(activeController).ifPresent(Controller::stop);
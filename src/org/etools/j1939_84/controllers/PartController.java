@@ -8,6 +8,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
 
 import org.etools.j1939_84.model.ActionOutcome;
 import org.etools.j1939_84.model.Outcome;
@@ -23,6 +24,8 @@ public abstract class PartController extends Controller {
 
     private final List<StepController> stepControllers = new ArrayList<>();
     private final int partNumber;
+    private int firstStep = 1;
+    private int lastStep = Integer.MAX_VALUE;
 
     protected PartController(Executor executor,
                              BannerModule bannerModule,
@@ -49,9 +52,27 @@ public abstract class PartController extends Controller {
         return "Part " + partNumber + " Test";
     }
 
+    public int getPartNumber() {
+        return partNumber;
+    }
+
+    /**
+     * Limits the run to the steps from first to last, inclusive
+     */
+    void setStepRange(int firstStep, int lastStep) {
+        this.firstStep = firstStep;
+        this.lastStep = lastStep;
+    }
+
     @Override
     protected void run() throws Throwable {
         List<StepController> stepControllers = getStepControllers();
+        if (firstStep > 1 || lastStep < Integer.MAX_VALUE) {
+            stepControllers = stepControllers.stream()
+                                             .filter(c -> c.getStepNumber() >= firstStep
+                                                     && c.getStepNumber() <= lastStep)
+                                             .collect(Collectors.toList());
+        }
         int totalSteps = stepControllers.stream()
                                         .mapToInt(StepController::getTotalSteps)
                                         .sum()
@@ -63,7 +84,7 @@ public abstract class PartController extends Controller {
         getListener().onResult("Start " + partResult);
         getListener().onResult("");
 
-        for (StepController controller : getStepControllers()) {
+        for (StepController controller : stepControllers) {
             checkEnding();
 
             StepResult stepResult = getPartResult().getStepResult(controller.getStepNumber());
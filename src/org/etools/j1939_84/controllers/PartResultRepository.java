@@ -20,24 +20,23 @@ import org.etools.j1939_84.model.StepResult;
 
 public class PartResultRepository implements ResultsListener {
 
-    private static PartResultRepository instance;
     private final Map<Integer, PartResult> partResultsMap = new HashMap<>();
     private final PartResultFactory partResultFactory;
 
-    private PartResultRepository() {
+    PartResultRepository() {
         partResultFactory = new PartResultFactory();
     }
 
+    /**
+     * @return the repository of the {@link TestSession} of the calling thread
+     */
     public static PartResultRepository getInstance() {
-        if (instance == null) {
-            instance = new PartResultRepository();
-        }
-        return instance;
+        return TestSession.current().getPartResultRepository();
     }
 
     /** Only used by tests. */
     public static void setInstance(PartResultRepository instance) {
-        PartResultRepository.instance = instance == null ? new PartResultRepository() : instance;
+        TestSession.current().setPartResultRepository(instance);
     }
 
     public PartResult getPartResult(int partNumber) {
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2021. Equipment & Tool Institute
+ */
+package org.etools.j1939_84.controllers;
+
+import java.util.function.Supplier;
+
+import org.etools.j1939_84.controllers.Controller.Ending;
+import org.etools.j1939_84.modules.DateTimeModule;
+
+/**
+ * The state of the test of one vehicle: the {@link DataRepository}, the
+ * {@link PartResultRepository}, the {@link DateTimeModule} and the progress and
+ * ending of the {@link Controller}s. Several sessions can run at once in one
+ * process, each with its own adapter or simulated vehicle; only the J1939DA
+ * tables are shared.
+ *
+ * The getInstance() methods return the pieces of the session of the calling
+ * thread. That is the session the thread {@link #enter()}ed, or else the one
+ * of the thread that started it, or else the {@link #getDefault() default}
+ * session. A pooled thread keeps the session of the thread that started it, so
+ * work handed to a pool has to {@link #run(Runnable)} in its session. A
+ * {@link Controller} belongs to the session it was created in and
+ * runs in it; see {@link OverallController#create(TestSession,
+ * java.util.concurrent.Executor)}.
+ */
+public class TestSession {
+
+    /**
+     * Leaves the session, back to the one the thread was in before.
+     */
+    public static class Scope implements AutoCloseable {
+
+        private final TestSession previous;
+
+        private Scope(TestSession previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            CURRENT.set(previous);
+        }
+    }
+
+    /** the session of the thread, if not the default one */
+    private static final InheritableThreadLocal<TestSession> CURRENT = new InheritableThreadLocal<>();
+
+    private static final TestSession DEFAULT = new TestSession();
+
+    /**
+     * @return the session of the calling thread
+     */
+    public static TestSession current() {
+        TestSession session = CURRENT.get();
+        return session == null ? DEFAULT : session;
+    }
+
+    /**
+     * @return the session of the threads not in another, as the ones of the
+     *         user interface
+     */
+    public static TestSession getDefault() {
+        return DEFAULT;
+    }
+
+    private int currentStep;
+
+    private DataRepository dataRepository;
+
+    private DateTimeModule dateTimeModule;
+
+    private volatile Ending ending;
+
+    private int maxSteps;
+
+    private PartResultRepository partResultRepository;
+
+    /**
+     * Makes this the session of the calling thread, and of the threads it
+     * starts, until the {@link Scope} is closed.
+     *
+     * <pre>
+     * try (TestSession.Scope scope = session.enter()) {
+     *     ...
+     * }
+     * </pre>
+     */
+    public Scope enter() {
+        Scope scope = new Scope(CURRENT.get());
+        CURRENT.set(this);
+        return scope;
+    }
+
+    /**
+     * @return the result of the supplier, got in this session
+     */
+    public <T> T call(Supplier<T> supplier) {
+        Scope scope = enter();
+        try {
+            return supplier.get();
+        } finally {
+            scope.close();
+        }
+    }
+
+    synchronized int getCurrentStep() {
+        return currentStep;
+    }
+
+    synchronized public DataRepository getDataRepository() {
+        if (dataRepository == null) {
+            dataRepository = new DataRepository();
+        }
+        return dataRepository;
+    }
+
+    synchronized public DateTimeModule getDateTimeModule() {
+        if (dateTimeModule == null) {
+            dateTimeModule = new DateTimeModule();
+        }
+        return dateTimeModule;
+    }
+
+    Ending getEnding() {
+        return ending;
+    }
+
+    synchronized int getMaxSteps() {
+        return maxSteps;
+    }
+
+    synchronized public PartResultRepository getPartResultRepository() {
+        if (partResultRepository == null) {
+            partResultRepository = new PartResultRepository();
+        }
+        return partResultRepository;
+    }
+
+    /**
+     * @return the number of the step started
+     */
+    synchronized int nextStep() {
+        return ++currentStep;
+    }
+
+    /**
+     * Runs the runnable in this session, then goes back to the session the
+     * thread was in.
+     */
+    public void run(Runnable runnable) {
+        Scope scope = enter();
+        try {
+            runnable.run();
+        } finally {
+            scope.close();
+        }
+    }
+
+    /**
+     * @param dataRepository
+     *                           the repository, or null for a new one
+     */
+    synchronized public void setDataRepository(DataRepository dataRepository) {
+        this.dataRepository = dataRepository;
+    }
+
+    /**
+     * @param dateTimeModule
+     *                           the module, or null for a new one
+     */
+    synchronized public void setDateTimeModule(DateTimeModule dateTimeModule) {
+        this.dateTimeModule = dateTimeModule;
+    }
+
+    void setEnding(Ending ending) {
+        this.ending = ending;
+    }
+
+    /**
+     * @param partResultRepository
+     *                                 the repository, or null for a new one
+     */
+    synchronized public void setPartResultRepository(PartResultRepository partResultRepository) {
+        this.partResultRepository = partResultRepository;
+    }
+
+    /**
+     * Starts counting the steps again.
+     */
+    synchronized void setupProgress(int maxSteps) {
+        currentStep = 0;
+        this.maxSteps = maxSteps;
+    }
+}
@@ -6,18 +6,17 @@ package org.etools.j1939_84.controllers.part01;
 import static org.etools.j1939_84.utils.StringUtils.containsNonPrintableAsciiCharacter;
 import static org.etools.j1939_84.utils.StringUtils.containsOnlyNumericAsciiCharacters;
 
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
-import java.util.stream.Collectors;
 
-import org.etools.j1939_84.bus.j1939.BusResult;
 import org.etools.j1939_84.bus.j1939.Lookup;
+import org.etools.j1939_84.bus.j1939.RequestScheduler;
 import org.etools.j1939_84.bus.j1939.packets.ComponentIdentificationPacket;
 import org.etools.j1939_84.bus.j1939.packets.ParsedPacket;
 import org.etools.j1939_84.controllers.DataRepository;
 import org.etools.j1939_84.controllers.StepController;
-import org.etools.j1939_84.model.RequestResult;
 import org.etools.j1939_84.modules.BannerModule;
 import org.etools.j1939_84.modules.DateTimeModule;
 import org.etools.j1939_84.modules.DiagnosticMessageModule;
@@ -68,14 +67,16 @@ public class Part01Step09Controller extends StepController {
         // 6.1.9.1.a Destination Specific (DS) Component ID request (PG 59904) for PG 65259 (SPs 586, 587, and 588)
         // to each OBD ECU.
         // 6.1.9.1.b Display each positive return in the log.
-        var dsPackets = getDataRepository().getObdModuleAddresses()
-                                           .stream()
-                                           .map(a -> getVehicleInformationModule().requestComponentIdentification(getListener(),
-                                                                                                                  a))
-                                           .map(BusResult::requestResult)
-                                           .map(RequestResult::getPackets)
-                                           .flatMap(Collection::stream)
-                                           .collect(Collectors.toList());
+        // The requests to the OBD ECUs are sent in parallel and logged in order.
+        List<ComponentIdentificationPacket> dsPackets = new ArrayList<>();
+        RequestScheduler scheduler = new RequestScheduler(getListener());
+        for (int address : getDataRepository().getObdModuleAddresses()) {
+            scheduler.submit(address,
+                             listener -> getVehicleInformationModule().requestComponentIdentification(listener,
+                                                                                                      address),
+                             result -> dsPackets.addAll(result.requestResult().getPackets()));
+        }
+        scheduler.join();
 
         if (dsPackets.isEmpty()) {
             addFailure("6.1.9.2.a - There are no positive responses");
@@ -13,6 +13,7 @@ import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 import org.etools.j1939_84.bus.j1939.Lookup;
+import org.etools.j1939_84.bus.j1939.RequestScheduler;
 import org.etools.j1939_84.bus.j1939.packets.DM30ScaledTestResultsPacket;
 import org.etools.j1939_84.bus.j1939.packets.ScaledTestResult;
 import org.etools.j1939_84.bus.j1939.packets.SupportedSPN;
@@ -90,7 +91,8 @@ public class Part01Step12Controller extends StepController {
         // A.K.A Get all the obdModuleAddresses then send DM7 to each address we have and get supported SPNs
         List<ScaledTestResult> vehicleTestResults = new ArrayList<>();
 
-        // Record the DM30 for each module
+        // Record the DM30 for each module; the modules are requested in parallel
+        RequestScheduler scheduler = new RequestScheduler(getListener());
         for (OBDModuleInformation obdModule : getDataRepository().getObdModules()) {
             List<ScaledTestResult> moduleTestResults = new ArrayList<>();
             int sourceAddress = obdModule.getSourceAddress();
@@ -100,46 +102,54 @@ public class Part01Step12Controller extends StepController {
                      .stream()
                      .mapToInt(SupportedSPN::getSpn)
                      .forEachOrdered(spnId -> {
-                         var dm30Packets = getDiagnosticMessageModule().requestTestResults(getListener(),
-                                                                                           sourceAddress,
-                                                                                           247,
-                                                                                           spnId,
-                                                                                           31);
-                         if (dm30Packets.isEmpty()) {
-                             addFailure("6.1.12.1.a - No test result for Supported SPN " + spnId + " from "
-                                     + moduleName);
-                         } else {
-                             var testResults = dm30Packets
-                                                          .stream()
-                                                          .peek(p -> verifyDM30PacketSupported(p, spnId))
-                                                          .flatMap(p -> p.getTestResults().stream())
-                                                          .collect(Collectors.toList());
-
-                             // 6.1.12.1.d. Warn if any ECU reports more than one set of test results for the same
-                             // SPN+FMI.
-                             tableA7Validator.findDuplicates(testResults)
-                                             .forEach(dup -> {
-                                                 addWarning("6.1.12.2.a (A7.2.b) - " + moduleName
-                                                         + " returned duplicate test results for SPN " + dup.getSpn()
-                                                         + " FMI " + dup.getFmi());
-                                             });
-
-                             moduleTestResults.addAll(testResults);
-                         }
-                         getListener().onResult("");
+                         scheduler.submit(sourceAddress,
+                                          listener -> getDiagnosticMessageModule().requestTestResults(listener,
+                                                                                                      sourceAddress,
+                                                                                                      247,
+                                                                                                      spnId,
+                                                                                                      31),
+                                          dm30Packets -> {
+                                              if (dm30Packets.isEmpty()) {
+                                                  addFailure("6.1.12.1.a - No test result for Supported SPN "
+                                                          + spnId + " from " + moduleName);
+                                              } else {
+                                                  var testResults = dm30Packets
+                                                                               .stream()
+                                                                               .peek(p -> verifyDM30PacketSupported(p,
+                                                                                                                    spnId))
+                                                                               .flatMap(p -> p.getTestResults()
+                                                                                              .stream())
+                                                                               .collect(Collectors.toList());
+
+                                                  // 6.1.12.1.d. Warn if any ECU reports more than one set of test
+                                                  // results for the same SPN+FMI.
+                                                  tableA7Validator.findDuplicates(testResults)
+                                                                  .forEach(dup -> {
+                                                                      addWarning("6.1.12.2.a (A7.2.b) - " + moduleName
+                                                                              + " returned duplicate test results for SPN "
+                                                                              + dup.getSpn() + " FMI " + dup.getFmi());
+                                                                  });
+
+                                                  moduleTestResults.addAll(testResults);
+                                              }
+                                              getListener().onResult("");
+                                          });
                      });
 
-            if (!moduleTestResults.isEmpty()) {
-                getListener().onResult(moduleName + " Test Results:");
-                getListener().onResult(moduleTestResults.stream()
-                                                        .map(ScaledTestResult::toString)
-                                                        .collect(Collectors.toList()));
-
-                obdModule.setScaledTestResults(moduleTestResults);
-                getDataRepository().putObdModule(obdModule);
-                vehicleTestResults.addAll(moduleTestResults);
-            }
+            scheduler.thenRun(() -> {
+                if (!moduleTestResults.isEmpty()) {
+                    getListener().onResult(moduleName + " Test Results:");
+                    getListener().onResult(moduleTestResults.stream()
+                                                            .map(ScaledTestResult::toString)
+                                                            .collect(Collectors.toList()));
+
+                    obdModule.setScaledTestResults(moduleTestResults);
+                    getDataRepository().putObdModule(obdModule);
+                    vehicleTestResults.addAll(moduleTestResults);
+                }
+            });
         }
+        scheduler.join();
 
         // Create list of ECU address+SPN+FMI supported test results.
         // 6.1.12.2.a. Fail/warn per section A.7 Criteria for Test Results Evaluation.
@@ -19,6 +19,8 @@ import java.util.logging.Level;
 
 import org.etools.j1939_84.J1939_84;
 import org.etools.j1939_84.controllers.Controller;
+import org.etools.j1939_84.controllers.TestSession;
+import org.etools.j1939_84.utils.Clock;
 
 /**
  * The Module responsible for the Date/Time
@@ -27,21 +29,36 @@ import org.etools.j1939_84.controllers.Controller;
  *
  */
 public class DateTimeModule {
-    private static DateTimeModule instance = new DateTimeModule();
     private DateTimeFormatter timeFormatter;
+    /** "HH:mm:ss" of the last second formatted by appendTime */
+    private volatile CachedSecond cachedSecond = new CachedSecond(-1, "");
     private long nanoOffset = 0;
-    private Instant last = Instant.now();
+    private Instant last = Clock.get().instant();
 
-    protected DateTimeModule() {
+    public DateTimeModule() {
     }
 
+    /** The rendering of one second of the day. */
+    private static class CachedSecond {
+        final int secondOfDay;
+        final String text;
+
+        CachedSecond(int secondOfDay, String text) {
+            this.secondOfDay = secondOfDay;
+            this.text = text;
+        }
+    }
+
+    /**
+     * @return the module of the {@link TestSession} of the calling thread
+     */
     public static DateTimeModule getInstance() {
-        return instance;
+        return TestSession.current().getDateTimeModule();
     }
 
     /** Only used by tests. */
     public static void setInstance(DateTimeModule instance) {
-        DateTimeModule.instance = instance == null ? new DateTimeModule() : instance;
+        TestSession.current().setDateTimeModule(instance);
     }
 
     /**
@@ -86,18 +103,60 @@ public class DateTimeModule {
         return timeFormatter;
     }
 
+    /**
+     * Appends the time the same as {@link #getTimeFormatter()} does, without
+     * the formatter when it is the default one. The hours, minutes and seconds
+     * are rendered once per second.
+     *
+     * @param  sb
+     *                  the {@link StringBuilder} to append to
+     * @param  time
+     *                  the time to append
+     * @return      sb
+     */
+    public StringBuilder appendTime(StringBuilder sb, LocalDateTime time) {
+        DateTimeFormatter formatter = getTimeFormatter();
+        if (formatter != timeFormatter) {
+            // replaced by a subclass
+            formatter.formatTo(time, sb);
+            return sb;
+        }
+        int secondOfDay = time.toLocalTime().toSecondOfDay();
+        CachedSecond cached = cachedSecond;
+        if (cached.secondOfDay != secondOfDay) {
+            cached = new CachedSecond(secondOfDay,
+                                      String.format("%02d:%02d:%02d",
+                                                    secondOfDay / 3600,
+                                                    secondOfDay / 60 % 60,
+                                                    secondOfDay % 60));
+            cachedSecond = cached;
+        }
+        int fraction = time.getNano() / 100_000;
+        sb.append(cached.text).append('.');
+        if (fraction < 1000) {
+            sb.append('0');
+            if (fraction < 100) {
+                sb.append('0');
+                if (fraction < 10) {
+                    sb.append('0');
+                }
+            }
+        }
+        return sb.append(fraction);
+    }
+
     public int getYear() {
         return now().getYear();
     }
 
     /**
-     * Returns the current date/time. This is exposed to it can be overridden
+     * Returns the current date/time of the {@link Clock}. This is exposed to it can be overridden
      * for testing.
      *
      * @return {@link LocalDateTime}
      */
     protected LocalDateTime now() {
-        Instant now = Instant.now().plusNanos(nanoOffset);
+        Instant now = Clock.get().instant().plusNanos(nanoOffset);
         if (now.isBefore(last)) {
             now = last;
             J1939_84.getLogger().log(Level.INFO, "Reusing now: " + now);
@@ -110,7 +169,7 @@ public class DateTimeModule {
     public void pauseFor(long milliseconds) {
         try {
             Controller.checkEnding();
-            Thread.sleep(milliseconds);
+            Clock.get().sleep(milliseconds);
         } catch (InterruptedException e) {
             throw new RuntimeException(e);
         }
@@ -119,7 +178,7 @@ public class DateTimeModule {
     private static final long GIGA = 1000000000;
 
     public void setNanoTime(long nanoTime) {
-        nanoOffset = Instant.now().until(Instant.ofEpochSecond(nanoTime / GIGA, nanoTime % GIGA), ChronoUnit.NANOS);
+        nanoOffset = Clock.get().instant().until(Instant.ofEpochSecond(nanoTime / GIGA, nanoTime % GIGA), ChronoUnit.NANOS);
     }
 
 }
@@ -19,6 +19,7 @@ import java.util.function.Predicate;
 import java.util.stream.Stream;
 
 import org.etools.j1939_84.bus.Either;
+import org.etools.j1939_84.bus.PacketFilter;
 import org.etools.j1939_84.bus.j1939.packets.AcknowledgmentPacket;
 import org.etools.j1939_84.bus.j1939.packets.EngineSpeedPacket;
 import org.etools.j1939_84.bus.j1939.packets.GenericPacket;
@@ -124,8 +125,7 @@ public class EngineSpeedModule extends FunctionalModule {
         }
 
         executor.submit(() -> {
-            getJ1939().readGenericPacket(stopPredicate)
-                      .filter(p -> p.getSourceAddress() == ENGINE_ADDR)
+            getJ1939().readGenericPacket(PacketFilter.pgns(61444, 65251, 61443).from(ENGINE_ADDR), stopPredicate)
                       .forEach(p -> {
                           int pgn = p.getPacket().getPgn();
                           switch (pgn) {
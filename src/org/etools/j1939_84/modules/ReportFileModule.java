@@ -3,14 +3,17 @@
  */
 package org.etools.j1939_84.modules;
 
+import static java.util.logging.Level.INFO;
 import static java.util.logging.Level.SEVERE;
 import static org.etools.j1939_84.J1939_84.NL;
 import static org.etools.j1939_84.J1939_84.PAGE_BREAK;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.Reader;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
@@ -45,7 +48,7 @@ public class ReportFileModule extends FunctionalModule implements ResultsListene
     /**
      * The Writer used to write results to the report file
      */
-    private Writer writer;
+    private ReportWriter writer;
 
     /**
      * Constructor
@@ -90,11 +93,16 @@ public class ReportFileModule extends FunctionalModule implements ResultsListene
         }
     }
 
+    @Override
+    public void onProgress(int currentStep, int totalSteps, String message) {
+        // the end of a step, so the report is on disk up to here
+        sync();
+    }
+
     @Override
     public void onResult(String result) {
         try {
             write(result);
-            writer.flush();
         } catch (Exception e) {
             logger.log(SEVERE, "Error Writing to file", e);
         }
@@ -112,8 +120,12 @@ public class ReportFileModule extends FunctionalModule implements ResultsListene
         try {
             if (writer != null) {
                 write(getTime() + " End of " + BannerModule.TOOL_NAME + " Execution" + NL);
-                writer.flush();
                 writer.close();
+                logger.log(INFO,
+                           "Report flushes: " + writer.getFlushLatency().getCount() + ", P99 "
+                                   + writer.getFlushLatency().getPercentile(99) + " us, max "
+                                   + writer.getFlushLatency().getMax() + " us, max queue depth "
+                                   + writer.getMaxQueueDepth());
             }
         } catch (IOException e) {
             logger.log(SEVERE, "Error writing end of program statement", e);
@@ -131,6 +143,19 @@ public class ReportFileModule extends FunctionalModule implements ResultsListene
         listener.onResult(getTime() + " File: " + reportFile.getAbsolutePath());
     }
 
+    /**
+     * Waits until the results reported so far are written to the report file.
+     */
+    public void sync() {
+        try {
+            if (writer != null) {
+                writer.sync();
+            }
+        } catch (IOException e) {
+            logger.log(SEVERE, "Error Writing to file", e);
+        }
+    }
+
     /**
      * Sets the File that will be used to log results to
      *
@@ -147,7 +172,7 @@ public class ReportFileModule extends FunctionalModule implements ResultsListene
 
         this.reportFile = reportFile;
         if (reportFile != null) {
-            writer = Files.newBufferedWriter(reportFile.toPath(), StandardOpenOption.APPEND);
+            writer = new ReportWriter(Files.newBufferedWriter(reportFile.toPath(), StandardOpenOption.APPEND));
         }
     }
 
@@ -166,12 +191,15 @@ public class ReportFileModule extends FunctionalModule implements ResultsListene
     @SuppressFBWarnings(value = { "RCN_REDUNDANT_NULLCHECK_WOULD_HAVE_BEEN_A_NPE",
             "REC_CATCH_EXCEPTION" }, justification = "Several places in the calls down the stack can return null")
     private void writeFinalReport() {
+        sync();
         try {
             String pageHeader = bannerModule.getHeader() + NL
                     + "Generated: " + getDate() + " " + getTime() + NL
                     + "Log File Name: " + reportFile;
 
-            Path tempFilePath = Files.createTempFile("report", "J1939-84");
+            // next to the report, so it can be renamed over it
+            Path reportPath = reportFile.toPath().toAbsolutePath();
+            Path tempFilePath = Files.createTempFile(reportPath.getParent(), "report", "J1939-84");
             Writer tempWriter = Files.newBufferedWriter(tempFilePath);
 
             tempWriter.write("Summary of " + BannerModule.TOOL_NAME + " Execution" + NL);
@@ -199,6 +227,11 @@ public class ReportFileModule extends FunctionalModule implements ResultsListene
             } else {
                 tempWriter.write("Error: No addresses were claimed" + NL);
             }
+            tempWriter.write(NL);
+
+            tempWriter.write("Response Latency" + NL);
+            tempWriter.write(getJ1939().getMetrics().getSummary());
+            writeLatencyCsv();
 
             tempWriter.write(PAGE_BREAK);
             tempWriter.write(pageHeader + NL);
@@ -211,32 +244,57 @@ public class ReportFileModule extends FunctionalModule implements ResultsListene
             tempWriter.write(pageHeader + NL);
             tempWriter.write(NL);
 
-            tempWriter.flush();
-
             tempWriter.write("TEST LOG REPORT" + NL + NL);
-            try (Reader reportFileReader = Files.newBufferedReader(reportFile.toPath())) {
-                reportFileReader.transferTo(tempWriter);
-            }
-            tempWriter.write("END TEST LOG REPORT");
-
-            tempWriter.flush();
             tempWriter.close();
 
-            File raw = new File(reportFile + ".raw");
-            boolean reNameSuccess = reportFile.renameTo(raw);
-            if (!reNameSuccess) {
-                logger.log(SEVERE, "Unable to rename file");
+            // the log is copied as bytes, without decoding it
+            try (FileChannel out = FileChannel.open(tempFilePath, StandardOpenOption.APPEND)) {
+                try (FileChannel in = FileChannel.open(reportPath, StandardOpenOption.READ)) {
+                    transfer(in, out);
+                }
+                out.write(ByteBuffer.wrap("END TEST LOG REPORT".getBytes(StandardCharsets.UTF_8)));
             }
-            Files.copy(tempFilePath, reportFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
-            boolean copySuccess = raw.delete();
-            if (!copySuccess) {
-                logger.log(SEVERE, "Unable to delete file");
+
+            try {
+                Files.move(tempFilePath, reportPath, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                // the report is still open elsewhere, so overwrite it instead
+                try (FileChannel in = FileChannel.open(tempFilePath, StandardOpenOption.READ);
+                     FileChannel out = FileChannel.open(reportPath,
+                                                        StandardOpenOption.WRITE,
+                                                        StandardOpenOption.TRUNCATE_EXISTING)) {
+                    transfer(in, out);
+                }
+                Files.delete(tempFilePath);
             }
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Copies the rest of one file to another, letting the OS move the bytes.
+     */
+    private static void transfer(FileChannel in, FileChannel out) throws IOException {
+        long position = in.position();
+        long size = in.size();
+        while (position < size) {
+            position += in.transferTo(position, size - position, out);
+        }
+    }
+
+    /**
+     * Writes the response latencies next to the report, for analysis in a
+     * spreadsheet.
+     */
+    private void writeLatencyCsv() {
+        try (Writer csvWriter = Files.newBufferedWriter(new File(reportFile + ".latency.csv").toPath())) {
+            getJ1939().getMetrics().writeCsv(csvWriter);
+        } catch (IOException e) {
+            logger.log(SEVERE, "Error writing response latency", e);
+        }
+    }
+
     private String getAddressClaimReport() {
         return vehicleInformation.getAddressClaim()
                                  .getPackets()
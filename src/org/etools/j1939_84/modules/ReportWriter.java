@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2021. Equipment & Tool Institute
+ */
+package org.etools.j1939_84.modules;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.etools.j1939_84.bus.j1939.LatencyHistogram;
+
+/**
+ * Writes lines to a {@link Writer} on a background thread, so a slow disk does
+ * not hold up the thread reporting the results, which is often reading the
+ * bus.
+ *
+ * The lines are flushed in groups: when {@value #BATCH_SIZE} lines are
+ * waiting, or {@value #FLUSH_INTERVAL} ms after the first unflushed line.
+ * {@link #sync()} waits until every line written before it is flushed. When
+ * the queue is full, {@link #write(String)} waits for room.
+ */
+public class ReportWriter implements Closeable {
+
+    /** lines written to the file before it is flushed */
+    static final int BATCH_SIZE = 256;
+
+    /** lines waiting to be written */
+    static final int CAPACITY = 8192;
+
+    /** longest time a line waits to be flushed */
+    static final long FLUSH_INTERVAL = 100; // milliseconds
+
+    /** queued to stop the thread */
+    private static final Object CLOSE = new Object();
+
+    private volatile boolean closed;
+
+    private volatile IOException error;
+
+    private final LatencyHistogram flushLatency = new LatencyHistogram();
+
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+    /** {@link String} lines, {@link CountDownLatch} barriers and CLOSE */
+    private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(CAPACITY);
+
+    private final Thread thread;
+
+    private final Writer writer;
+
+    public ReportWriter(Writer writer) {
+        this.writer = writer;
+        thread = new Thread(this::run, "Report Writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Flushes the lines written so far, stops the thread and closes the
+     * {@link Writer}.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            queue.put(CLOSE);
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted closing the report");
+        } finally {
+            writer.close();
+        }
+        throwError();
+    }
+
+    /** @return the time it takes to flush the file, in µs */
+    public LatencyHistogram getFlushLatency() {
+        return flushLatency;
+    }
+
+    /** @return the most lines that were waiting to be written */
+    public int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    /** @return the lines waiting to be written */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    private void flush() throws IOException {
+        long start = System.nanoTime();
+        writer.flush();
+        flushLatency.record((System.nanoTime() - start) / 1000);
+    }
+
+    private void put(Object item) throws IOException {
+        if (closed) {
+            throw new IOException("Report closed");
+        }
+        try {
+            queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted writing the report");
+        }
+        maxQueueDepth.accumulateAndGet(queue.size(), Math::max);
+    }
+
+    private void run() {
+        List<Object> batch = new ArrayList<>(BATCH_SIZE);
+        List<CountDownLatch> barriers = new ArrayList<>();
+        int unflushed = 0;
+        long firstUnflushed = 0;
+        boolean running = true;
+        while (running) {
+            try {
+                Object item;
+                if (unflushed == 0) {
+                    item = queue.take();
+                } else {
+                    long wait = FLUSH_INTERVAL * 1_000_000 - (System.nanoTime() - firstUnflushed);
+                    item = queue.poll(Math.max(wait, 0), TimeUnit.NANOSECONDS);
+                }
+                if (item != null) {
+                    batch.add(item);
+                    queue.drainTo(batch, BATCH_SIZE - 1);
+                }
+                for (Object o : batch) {
+                    if (o == CLOSE) {
+                        running = false;
+                    } else if (o instanceof CountDownLatch) {
+                        barriers.add((CountDownLatch) o);
+                    } else if (error == null) {
+                        try {
+                            writer.write((String) o);
+                        } catch (IOException e) {
+                            error = e;
+                        }
+                        if (unflushed++ == 0) {
+                            firstUnflushed = System.nanoTime();
+                        }
+                    }
+                }
+                batch.clear();
+
+                if (unflushed > 0 && (!running || !barriers.isEmpty() || unflushed >= BATCH_SIZE
+                        || System.nanoTime() - firstUnflushed >= FLUSH_INTERVAL * 1_000_000)) {
+                    unflushed = 0;
+                    if (error == null) {
+                        try {
+                            flush();
+                        } catch (IOException e) {
+                            error = e;
+                        }
+                    }
+                }
+                barriers.forEach(CountDownLatch::countDown);
+                barriers.clear();
+            } catch (InterruptedException e) {
+                // only close stops the thread
+            }
+        }
+    }
+
+    /**
+     * Waits until the lines written so far are flushed to the file.
+     *
+     * @throws IOException
+     *                         if writing the report failed
+     */
+    public void sync() throws IOException {
+        CountDownLatch barrier = new CountDownLatch(1);
+        put(barrier);
+        try {
+            barrier.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted flushing the report");
+        }
+        throwError();
+    }
+
+    private void throwError() throws IOException {
+        IOException e = error;
+        if (e != null) {
+            error = null;
+            throw e;
+        }
+    }
+
+    /**
+     * Queues the text to be written.
+     *
+     * @throws IOException
+     *                         if writing the report failed or the writer is
+     *                         closed
+     */
+    public void write(String text) throws IOException {
+        throwError();
+        put(text);
+    }
+}
@@ -25,7 +25,9 @@ import org.etools.j1939_84.bus.Bus;
 import org.etools.j1939_84.bus.BusException;
 import org.etools.j1939_84.bus.RP1210;
 import org.etools.j1939_84.bus.RP1210Bus;
+import org.etools.j1939_84.bus.j1939.CompletionPolicy;
 import org.etools.j1939_84.bus.j1939.J1939;
+import org.etools.j1939_84.controllers.DataRepository;
 import org.etools.j1939_84.controllers.OverallController;
 import org.etools.j1939_84.controllers.QuestionListener;
 import org.etools.j1939_84.controllers.ResultsListener;
@@ -48,6 +50,12 @@ public class UserInterfacePresenter implements UserInterfaceContract.Presenter {
      */
     static final String FILE_SUFFIX = "j1939-84";
 
+    /**
+     * Set to true to end global requests once all the OBD modules answered,
+     * with the settle time in ms from "j1939_84.settleTime"
+     */
+    public static final String EARLY_COMPLETION_PROPERTY = "j1939_84.earlyCompletion";
+
     private final Executor executor;
 
     private final OverallController overallController;
@@ -496,6 +504,11 @@ public class UserInterfacePresenter implements UserInterfaceContract.Presenter {
         this.bus = bus;
 
         j1939 = new J1939(bus);
+        if (Boolean.getBoolean(EARLY_COMPLETION_PROPERTY)) {
+            j1939.setCompletionPolicy(new CompletionPolicy(DataRepository.getInstance()::getObdModuleAddresses,
+                                                           Long.getLong("j1939_84.settleTime",
+                                                                        CompletionPolicy.DEFAULT_SETTLE_TIME)));
+        }
 
         vehicleInformationModule.setJ1939(getJ1939());
     }
@@ -51,6 +51,7 @@ import org.etools.j1939_84.controllers.QuestionListener;
 import org.etools.j1939_84.model.VehicleInformationListener;
 import org.etools.j1939_84.resources.Resources;
 import org.etools.j1939_84.ui.UserInterfaceContract.Presenter;
+import org.etools.j1939_84.ui.widgets.ReportLogSink;
 import org.etools.j1939_84.ui.widgets.SmartScroller;
 
 /**
@@ -62,6 +63,12 @@ import org.etools.j1939_84.ui.widgets.SmartScroller;
  */
 public class UserInterfaceView implements UserInterfaceContract.View {
 
+    /** shortest time between updates of the report text area */
+    private static final long REPORT_FLUSH_INTERVAL = 100; // milliseconds
+
+    /** lines of the report kept in the text area */
+    private static final int REPORT_MAX_LINES = 20000;
+
     private static final String SELECT_FILE = "Select File...";
     private final BuildNumber buildNumber;
     /**
@@ -82,6 +89,7 @@ public class UserInterfaceView implements UserInterfaceContract.View {
     private JProgressBar progressBar;
     private JButton readVehicleInfoButton;
     private JPanel reportControlPanel;
+    private ReportLogSink reportLogSink;
     private JScrollPane reportScrollPane;
     private JPanel reportSetupPanel;
     private JTextArea reportTextArea;
@@ -136,7 +144,7 @@ public class UserInterfaceView implements UserInterfaceContract.View {
      */
     @Override
     public void appendResults(String result) {
-        refreshUI(() -> getReportTextArea().append(result));
+        getReportLogSink().append(result);
     }
 
     @Override
@@ -562,12 +570,29 @@ public class UserInterfaceView implements UserInterfaceContract.View {
             reportScrollPane.setMinimumSize(new Dimension(500, 100));
             reportScrollPane.setPreferredSize(new Dimension(500, 100));
             new SmartScroller(reportScrollPane, SmartScroller.VERTICAL, SmartScroller.END);
+            getReportLogSink().attach(reportScrollPane);
             reportScrollPane.setVerticalScrollBarPolicy(ScrollPaneConstants.VERTICAL_SCROLLBAR_AS_NEEDED);
             reportScrollPane.setHorizontalScrollBarPolicy(ScrollPaneConstants.HORIZONTAL_SCROLLBAR_AS_NEEDED);
         }
         return reportScrollPane;
     }
 
+    /**
+     * Creates, caches and returns the sink that adds the results to the Report
+     * Text Area
+     *
+     * @return ReportLogSink
+     */
+    private ReportLogSink getReportLogSink() {
+        if (reportLogSink == null) {
+            reportLogSink = new ReportLogSink(getReportTextArea(),
+                                              swingExecutor,
+                                              REPORT_FLUSH_INTERVAL,
+                                              REPORT_MAX_LINES);
+        }
+        return reportLogSink;
+    }
+
     /**
      * Creates, caches and returns the Panel that contains the controls to setup
      * the report
@@ -8,6 +8,7 @@ import static org.etools.j1939_84.J1939_84.getLogger;
 import static org.etools.j1939_84.bus.j1939.packets.ComponentIdentificationPacket.create;
 import static org.etools.j1939_84.controllers.ResultsListener.NOOP;
 
+import java.awt.Component;
 import java.lang.reflect.Proxy;
 import java.util.Collections;
 import java.util.List;
@@ -130,7 +131,14 @@ public class VehicleInformationPresenter implements VehicleInformationContract.P
         this.vinDecoder = vinDecoder;
     }
 
+    /**
+     * Calls the Swing component on the event dispatch thread. Other views, as
+     * the one of a batch run, are called directly.
+     */
     public static <T> T swingProxy(T o, Class<T> cls) {
+        if (!(o instanceof Component)) {
+            return o;
+        }
         return (T) Proxy.newProxyInstance(cls.getClassLoader(),
                                           new Class<?>[] { cls },
                                           (proxy, method, args) -> {
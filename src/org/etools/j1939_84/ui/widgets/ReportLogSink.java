@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2021. Equipment & Tool Institute
+ */
+package org.etools.j1939_84.ui.widgets;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.swing.JScrollBar;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.text.BadLocationException;
+
+/**
+ * Appends the report to a {@link JTextArea} without flooding the Swing thread.
+ *
+ * Text appended from any thread is collected and added to the text area in one
+ * update, at most once every flush interval. Only the last lines are kept in
+ * the text area. Older lines are moved to a spool file a chunk at a time, and
+ * read back when the report is scrolled to the top.
+ */
+public class ReportLogSink {
+
+    /** lines moved to and from the spool file at a time */
+    static final int CHUNK_LINES = 1000;
+
+    /** time spent on the Swing thread adding text, in ns */
+    private final AtomicLong edtNanos = new AtomicLong();
+
+    private final long flushInterval;
+
+    private long lastFlush;
+
+    private final Object lock = new Object();
+
+    private final int maxLines;
+
+    /** appended, but not yet in the text area */
+    private StringBuilder pending = new StringBuilder();
+
+    private boolean scheduled;
+
+    private JScrollBar scrollBar;
+
+    private Path spool;
+
+    /** offset and length of each chunk in the spool file, last on top */
+    private final Deque<long[]> spooled = new ArrayDeque<>();
+
+    private long spoolSize;
+
+    private final Executor swingExecutor;
+
+    private final JTextArea textArea;
+
+    /** delays a flush that comes too soon after the last one */
+    private final Timer timer;
+
+    /**
+     * @param textArea
+     *                          the {@link JTextArea} that shows the report
+     * @param swingExecutor
+     *                          the {@link Executor} that runs on the Swing
+     *                          thread
+     * @param flushInterval
+     *                          the shortest time in ms between updates of the
+     *                          text area
+     * @param maxLines
+     *                          the lines to keep in the text area
+     */
+    public ReportLogSink(JTextArea textArea, Executor swingExecutor, long flushInterval, int maxLines) {
+        this.textArea = textArea;
+        this.swingExecutor = swingExecutor;
+        this.flushInterval = TimeUnit.MILLISECONDS.toNanos(flushInterval);
+        this.maxLines = maxLines;
+        lastFlush = System.nanoTime() - this.flushInterval;
+        timer = new Timer(0, e -> flush());
+        timer.setRepeats(false);
+    }
+
+    /**
+     * Adds the text to the text area soon. May be called from any thread.
+     */
+    public void append(String text) {
+        synchronized (lock) {
+            pending.append(text);
+            if (scheduled) {
+                return;
+            }
+            scheduled = true;
+        }
+        swingExecutor.execute(this::flush);
+    }
+
+    /**
+     * Loads the older lines when the scroll pane is scrolled to the top. The
+     * lines are only trimmed while the scroll pane is at the bottom.
+     */
+    public void attach(JScrollPane scrollPane) {
+        scrollBar = scrollPane.getVerticalScrollBar();
+        scrollBar.addAdjustmentListener(e -> {
+            if (!e.getValueIsAdjusting() && e.getValue() == scrollBar.getMinimum()
+                    && scrollBar.getMaximum() > scrollBar.getVisibleAmount()) {
+                loadOlder();
+            }
+        });
+    }
+
+    private void flush() {
+        long start = System.nanoTime();
+        long wait = flushInterval - (start - lastFlush);
+        if (wait > 0) {
+            timer.setInitialDelay((int) Math.max(1, TimeUnit.NANOSECONDS.toMillis(wait)));
+            timer.restart();
+            return;
+        }
+        String text;
+        synchronized (lock) {
+            text = pending.toString();
+            pending = new StringBuilder();
+            scheduled = false;
+        }
+        lastFlush = start;
+        textArea.append(text);
+        if (isAtEnd()) {
+            trim();
+        }
+        edtNanos.addAndGet(System.nanoTime() - start);
+    }
+
+    /** @return the time spent on the Swing thread adding text, in ns */
+    public long getEdtNanos() {
+        return edtNanos.get();
+    }
+
+    /** @return the lines moved out of the text area */
+    public int getSpooledLines() {
+        return spooled.size() * CHUNK_LINES;
+    }
+
+    private boolean isAtEnd() {
+        return scrollBar == null
+                || scrollBar.getValue() + scrollBar.getVisibleAmount() >= scrollBar.getMaximum();
+    }
+
+    /**
+     * Moves the last chunk in the spool file back to the top of the text area.
+     * Must be called on the Swing thread.
+     */
+    public void loadOlder() {
+        long[] chunk = spooled.pollLast();
+        if (chunk == null) {
+            return;
+        }
+        try (FileChannel in = FileChannel.open(spool, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) chunk[1]);
+            while (buffer.hasRemaining() && in.read(buffer, chunk[0] + buffer.position()) >= 0) {
+                // read the whole chunk
+            }
+            textArea.insert(new String(buffer.array(), StandardCharsets.UTF_8), 0);
+            spoolSize = chunk[0];
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (scrollBar != null) {
+            // keep the line that was at the top in view
+            int height = CHUNK_LINES * textArea.getFontMetrics(textArea.getFont()).getHeight();
+            SwingUtilities.invokeLater(() -> scrollBar.setValue(scrollBar.getValue() + height));
+        }
+    }
+
+    /** Moves chunks of the oldest lines to the spool file. */
+    private void trim() {
+        if (textArea.getLineCount() <= maxLines + CHUNK_LINES) {
+            return;
+        }
+        try {
+            if (spool == null) {
+                spool = Files.createTempFile("report", ".spool");
+                spool.toFile().deleteOnExit();
+            }
+            try (FileChannel out = FileChannel.open(spool, StandardOpenOption.WRITE)) {
+                while (textArea.getLineCount() > maxLines + CHUNK_LINES) {
+                    int end = textArea.getLineStartOffset(CHUNK_LINES);
+                    byte[] bytes = textArea.getText(0, end).getBytes(StandardCharsets.UTF_8);
+                    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                    while (buffer.hasRemaining()) {
+                        out.write(buffer, spoolSize + buffer.position());
+                    }
+                    spooled.addLast(new long[] { spoolSize, bytes.length });
+                    spoolSize += bytes.length;
+                    textArea.getDocument().remove(0, end);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (BadLocationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
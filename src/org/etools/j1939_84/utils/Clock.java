@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2021. Equipment & Tool Institute
+ */
+package org.etools.j1939_84.utils;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The time used by the tool: the timestamps, timeouts, pauses and timers of
+ * the modules, buses and simulator. Every wait with a timeout goes through the
+ * clock, so a {@link VirtualClock} can run a simulated test without waiting
+ * for the wall clock.
+ *
+ * The clock in use is {@link #get()}, the {@link #SYSTEM} clock unless another
+ * one has been set.
+ */
+public abstract class Clock extends java.time.Clock {
+
+    /** The wall clock */
+    private static class SystemClock extends Clock {
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.systemDefault();
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.now();
+        }
+
+        @Override
+        public long millis() {
+            return System.currentTimeMillis();
+        }
+
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public ScheduledExecutorService newScheduledExecutor(int threads, ThreadFactory factory) {
+            return new ScheduledThreadPoolExecutor(threads, factory);
+        }
+
+        @Override
+        public void sleep(long millis) throws InterruptedException {
+            Thread.sleep(millis);
+        }
+
+        @Override
+        public void waitUntil(Object monitor, long deadline) throws InterruptedException {
+            long remaining = deadline - millis();
+            if (remaining > 0) {
+                monitor.wait(remaining);
+            }
+        }
+    }
+
+    public static final Clock SYSTEM = new SystemClock();
+
+    private static volatile Clock clock = SYSTEM;
+
+    public static Clock get() {
+        return clock;
+    }
+
+    /**
+     * @param clock
+     *                  the clock to use from now on, or null for the
+     *                  {@link #SYSTEM} clock
+     */
+    public static void set(Clock clock) {
+        Clock.clock = clock == null ? SYSTEM : clock;
+    }
+
+    /**
+     * Returns this clock; changing the zone is not supported.
+     */
+    @Override
+    public java.time.Clock withZone(ZoneId zone) {
+        if (!zone.equals(getZone())) {
+            throw new UnsupportedOperationException("The zone of the clock cannot be changed.");
+        }
+        return this;
+    }
+
+    /**
+     * @return a monotonic time in ns, as {@link System#nanoTime()}
+     */
+    public abstract long nanoTime();
+
+    /**
+     * Creates an executor whose delays and periods are measured with this
+     * clock.
+     *
+     * @param threads
+     *                    the number of threads
+     * @param factory
+     *                    creates the threads
+     */
+    public abstract ScheduledExecutorService newScheduledExecutor(int threads, ThreadFactory factory);
+
+    /**
+     * Wakes the threads waiting on the monitor with
+     * {@link #waitUntil(Object, long)}. As {@link Object#notifyAll()}, the
+     * caller must hold the monitor.
+     */
+    public void notifyAll(Object monitor) {
+        monitor.notifyAll();
+    }
+
+    /**
+     * Sleeps for the time given, as {@link Thread#sleep(long)}.
+     */
+    public abstract void sleep(long millis) throws InterruptedException;
+
+    /**
+     * Waits on the monitor until notified or until the deadline, as
+     * {@link Object#wait(long)}. The caller must hold the monitor and, as with
+     * {@link Object#wait(long)}, check its condition again after returning.
+     *
+     * @param  monitor
+     *                                  the monitor to wait on
+     * @param  deadline
+     *                                  the time to wait until, in ms as
+     *                                  {@link #millis()}
+     * @throws InterruptedException
+     *                                  if the thread is interrupted
+     */
+    public abstract void waitUntil(Object monitor, long deadline) throws InterruptedException;
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) 2021. Equipment & Tool Institute
+ */
+package org.etools.j1939_84.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A {@link ScheduledExecutorService} whose threads wait for the tasks with a
+ * {@link Clock}, so a {@link VirtualClock} sees them waiting and can move the
+ * time on to the next task. Waiting for the result of a task also goes through
+ * the clock.
+ *
+ * As with the default policy of {@link java.util.concurrent.ScheduledThreadPoolExecutor},
+ * periodic tasks are cancelled by {@link #shutdown()}, and delayed tasks still
+ * run.
+ */
+class ClockExecutor extends AbstractExecutorService implements ScheduledExecutorService {
+
+    private class Task<V> extends FutureTask<V> implements RunnableScheduledFuture<V> {
+
+        /** 0 to run once, &gt; 0 at a fixed rate, &lt; 0 with a fixed delay */
+        private final long period;
+
+        private final long sequence;
+
+        /** the time to run next, in ms */
+        private long time;
+
+        private Task(Callable<V> callable, long time) {
+            super(callable);
+            this.time = time;
+            period = 0;
+            sequence = sequencer++;
+        }
+
+        private Task(Runnable runnable, long time, long period) {
+            super(runnable, null);
+            this.time = time;
+            this.period = period;
+            sequence = sequencer++;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            synchronized (queue) {
+                queue.remove(this);
+            }
+            return cancelled;
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            if (other instanceof Task) {
+                Task<?> that = (Task<?>) other;
+                int c = Long.compare(time, that.time);
+                return c != 0 ? c : Long.compare(sequence, that.sequence);
+            }
+            return Long.compare(getDelay(TimeUnit.MILLISECONDS), other.getDelay(TimeUnit.MILLISECONDS));
+        }
+
+        @Override
+        protected void done() {
+            synchronized (this) {
+                clock.notifyAll(this);
+            }
+        }
+
+        /** Waits with the clock, so a {@link VirtualClock} sees the wait. */
+        @Override
+        public V get() throws InterruptedException, ExecutionException {
+            synchronized (this) {
+                while (!isDone()) {
+                    clock.waitUntil(this, Long.MAX_VALUE);
+                }
+            }
+            return super.get();
+        }
+
+        @Override
+        public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException,
+                TimeoutException {
+            long deadline = clock.millis() + unit.toMillis(timeout);
+            synchronized (this) {
+                while (!isDone() && clock.millis() < deadline) {
+                    clock.waitUntil(this, deadline);
+                }
+            }
+            if (!isDone()) {
+                throw new TimeoutException();
+            }
+            return super.get();
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(time - clock.millis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public boolean isPeriodic() {
+            return period != 0;
+        }
+
+        @Override
+        public void run() {
+            if (!isPeriodic()) {
+                super.run();
+            } else if (runAndReset()) {
+                time = period > 0 ? time + period : clock.millis() - period;
+                synchronized (queue) {
+                    if (!shutdown) {
+                        enqueue(this);
+                    }
+                }
+            }
+        }
+    }
+
+    private final Clock clock;
+
+    /** the tasks by time. Also the monitor of the executor. */
+    private final PriorityQueue<Task<?>> queue = new PriorityQueue<>();
+
+    private long sequencer;
+
+    private boolean shutdown;
+
+    private final List<Thread> workers = new ArrayList<>();
+
+    ClockExecutor(Clock clock, int threads, ThreadFactory factory) {
+        this.clock = clock;
+        for (int i = 0; i < threads; i++) {
+            Thread worker = factory.newThread(this::work);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long end = System.nanoTime() + unit.toNanos(timeout);
+        for (Thread worker : workers) {
+            long remaining = end - System.nanoTime();
+            if (remaining > 0) {
+                TimeUnit.NANOSECONDS.timedJoin(worker, remaining);
+            }
+        }
+        return isTerminated();
+    }
+
+    /** Called with the queue lock held. */
+    private <T extends Task<?>> T enqueue(T task) {
+        if (shutdown) {
+            throw new RejectedExecutionException("Executor has been shut down.");
+        }
+        queue.add(task);
+        clock.notifyAll(queue);
+        return task;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        schedule(command, 0, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public boolean isShutdown() {
+        synchronized (queue) {
+            return shutdown;
+        }
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return isShutdown() && workers.stream().noneMatch(Thread::isAlive);
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        return schedule(Executors.callable(command), delay, unit);
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        synchronized (queue) {
+            return enqueue(new Task<>(callable, clock.millis() + unit.toMillis(delay)));
+        }
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("period must be positive: " + period);
+        }
+        synchronized (queue) {
+            return enqueue(new Task<>(command, clock.millis() + unit.toMillis(initialDelay), unit.toMillis(period)));
+        }
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        if (delay <= 0) {
+            throw new IllegalArgumentException("delay must be positive: " + delay);
+        }
+        synchronized (queue) {
+            return enqueue(new Task<>(command, clock.millis() + unit.toMillis(initialDelay), -unit.toMillis(delay)));
+        }
+    }
+
+    @Override
+    public <T> Future<T> submit(Callable<T> task) {
+        return schedule(task, 0, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Future<?> submit(Runnable task) {
+        return schedule(task, 0, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public <T> Future<T> submit(Runnable task, T result) {
+        return schedule(Executors.callable(task, result), 0, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void shutdown() {
+        synchronized (queue) {
+            shutdown = true;
+            queue.removeIf(Task::isPeriodic);
+            clock.notifyAll(queue);
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> tasks;
+        synchronized (queue) {
+            shutdown = true;
+            tasks = new ArrayList<>(queue);
+            queue.clear();
+            clock.notifyAll(queue);
+        }
+        workers.forEach(Thread::interrupt);
+        return tasks;
+    }
+
+    /** Runs the tasks as they come due, until shut down with nothing left. */
+    private void work() {
+        while (true) {
+            Task<?> task;
+            synchronized (queue) {
+                while (true) {
+                    task = queue.peek();
+                    if (task == null && shutdown) {
+                        return;
+                    }
+                    if (task != null && task.time <= clock.millis()) {
+                        queue.poll();
+                        break;
+                    }
+                    try {
+                        clock.waitUntil(queue, task == null ? Long.MAX_VALUE : task.time);
+                    } catch (InterruptedException e) {
+                        if (shutdown) {
+                            return;
+                        }
+                    }
+                }
+            }
+            task.run();
+        }
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) 2021. Equipment & Tool Institute
+ */
+package org.etools.j1939_84.utils;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A discrete event clock. Time stands still while any thread taking part is
+ * busy, and jumps to the earliest deadline once every one of them is waiting,
+ * so a simulated run takes only the time needed to compute it.
+ *
+ * A thread takes part once it uses the clock, and the threads of its executors
+ * from the start. It is busy while it is runnable, or blocked on a lock,
+ * outside of {@link #waitUntil(Object, long)} and {@link #sleep(long)}. A thread woken by {@link #notifyAll(Object)}
+ * is busy until it runs again, so the time does not move on before it sees
+ * what woke it. Everything waited on with a timeout has to go through the
+ * clock, including the timers; see
+ * {@link #newScheduledExecutor(int, ThreadFactory)}.
+ *
+ * A thread taking part that waits some other way, as on a lock or a queue,
+ * counts as waiting. When it is woken, it only has the quiet time to run
+ * before the time can move on.
+ *
+ * Time does not move on while the threads taking part wait without a deadline,
+ * or while nothing waits at all. Close the clock when the run is over.
+ */
+public class VirtualClock extends Clock implements AutoCloseable {
+
+    /** a thread waiting for a notification or a deadline */
+    private static class Waiter {
+        private final long deadline;
+
+        private final Object monitor;
+
+        private boolean woken;
+
+        private Waiter(Object monitor, long deadline) {
+            this.monitor = monitor;
+            this.deadline = deadline;
+        }
+    }
+
+    /** real time without a change before the time moves on */
+    private static final long QUIET_TIME = TimeUnit.MICROSECONDS.toNanos(200);
+
+    /** the number of waits entered and left; any change restarts the quiet time */
+    private long activity;
+
+    private final Thread advancer;
+
+    /** the number of times the time moved on */
+    private long advances;
+
+    private boolean closed;
+
+    /** ns since the epoch */
+    private volatile long now;
+
+    /** the threads taking part */
+    private final Set<Thread> participants = new HashSet<>();
+
+    /** true once the thread takes part */
+    private final ThreadLocal<Boolean> participating = ThreadLocal.withInitial(() -> false);
+
+    private final Map<Thread, Waiter> waiters = new IdentityHashMap<>();
+
+    /**
+     * Starts at the current time.
+     */
+    public VirtualClock() {
+        this(Instant.now());
+    }
+
+    /**
+     * @param start
+     *                  the time to start at
+     */
+    public VirtualClock(Instant start) {
+        now = TimeUnit.SECONDS.toNanos(start.getEpochSecond()) + start.getNano();
+        advancer = new Thread(this::advance, "Virtual Clock");
+        advancer.setDaemon(true);
+        advancer.start();
+    }
+
+    /**
+     * Moves the time on whenever the threads taking part have all been waiting
+     * for the quiet time.
+     */
+    private void advance() {
+        try {
+            while (true) {
+                long seen;
+                synchronized (this) {
+                    while (!closed && !(isIdle() && nextDeadline() != Long.MAX_VALUE)) {
+                        // woken by any activity; the timeout catches threads going idle elsewhere
+                        wait(1);
+                    }
+                    if (closed) {
+                        return;
+                    }
+                    seen = activity;
+                }
+                LockSupport.parkNanos(QUIET_TIME);
+                List<Object> monitors = new ArrayList<>();
+                synchronized (this) {
+                    if (closed) {
+                        return;
+                    }
+                    if (activity != seen || !isIdle()) {
+                        continue;
+                    }
+                    now = Math.max(now, nextDeadline());
+                    advances++;
+                    for (Waiter w : waiters.values()) {
+                        if (w.deadline <= now) {
+                            w.woken = true;
+                            monitors.add(w.monitor);
+                        }
+                    }
+                    activity++;
+                }
+                for (Object monitor : monitors) {
+                    synchronized (monitor) {
+                        monitor.notifyAll();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // closed
+        }
+    }
+
+    /**
+     * Stops moving the time on.
+     */
+    @Override
+    synchronized public void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    /** @return the number of times the time moved on */
+    synchronized public long getAdvances() {
+        return advances;
+    }
+
+    /** @return the earliest deadline, Long.MAX_VALUE if none. Called with the lock held. */
+    private long nextDeadline() {
+        long next = Long.MAX_VALUE;
+        for (Waiter w : waiters.values()) {
+            next = Math.min(next, w.deadline);
+        }
+        return next;
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return ZoneId.systemDefault();
+    }
+
+    @Override
+    public Instant instant() {
+        participate();
+        long n = now;
+        return Instant.ofEpochSecond(n / 1_000_000_000L, n % 1_000_000_000L);
+    }
+
+    /**
+     * @return true if no thread taking part is busy. Called with the lock held.
+     */
+    private boolean isIdle() {
+        for (Waiter w : waiters.values()) {
+            if (w.woken) {
+                return false;
+            }
+        }
+        participants.removeIf(t -> t.getState() == Thread.State.TERMINATED);
+        for (Thread t : participants) {
+            if (!waiters.containsKey(t)) {
+                Thread.State state = t.getState();
+                if (state != Thread.State.WAITING && state != Thread.State.TIMED_WAITING) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public long millis() {
+        participate();
+        return now / 1_000_000L;
+    }
+
+    @Override
+    public long nanoTime() {
+        participate();
+        return now;
+    }
+
+    /**
+     * The threads of the executor take part from the start, so the time does
+     * not move on before they first wait.
+     */
+    @Override
+    public ScheduledExecutorService newScheduledExecutor(int threads, ThreadFactory factory) {
+        participate();
+        return new ClockExecutor(this, threads, r -> {
+            Thread thread = factory.newThread(r);
+            synchronized (this) {
+                participants.add(thread);
+            }
+            return thread;
+        });
+    }
+
+    @Override
+    public void notifyAll(Object monitor) {
+        participate();
+        synchronized (this) {
+            for (Waiter w : waiters.values()) {
+                if (w.monitor == monitor && !w.woken) {
+                    w.woken = true;
+                    activity++;
+                }
+            }
+            notifyAll();
+        }
+        monitor.notifyAll();
+    }
+
+    /** The current thread takes part from now on. */
+    private void participate() {
+        if (!participating.get()) {
+            participating.set(true);
+            synchronized (this) {
+                participants.add(Thread.currentThread());
+            }
+        }
+    }
+
+    @Override
+    public void sleep(long millis) throws InterruptedException {
+        Object monitor = new Object();
+        synchronized (monitor) {
+            long deadline = millis() + millis;
+            while (millis() < deadline) {
+                waitUntil(monitor, deadline);
+            }
+        }
+    }
+
+    @Override
+    public void waitUntil(Object monitor, long deadline) throws InterruptedException {
+        Thread thread = Thread.currentThread();
+        // a deadline too far to be in ns is no deadline
+        long nanos = deadline >= Long.MAX_VALUE / 1_000_000L ? Long.MAX_VALUE : deadline * 1_000_000L;
+        Waiter waiter = new Waiter(monitor, nanos);
+        synchronized (this) {
+            if (now >= waiter.deadline) {
+                return;
+            }
+            participants.add(thread);
+            waiters.put(thread, waiter);
+            activity++;
+            notifyAll();
+        }
+        try {
+            // the monitor is held until the wait, so the wake up is not missed
+            monitor.wait();
+        } finally {
+            synchronized (this) {
+                waiters.remove(thread);
+                activity++;
+                notifyAll();
+            }
+        }
+    }
+}